@@ -0,0 +1,162 @@
+package org.fenixteam.storage.codec;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Remembers the last persisted serialized form of every model, so a backend can compute which
+ * top-level fields changed and write only those. The tracked forms must not be modified after
+ * being given to the tracker.
+ *
+ * <p>Tracking assumes that the repository is the only writer of its models: a model changed by
+ * another process keeps being diffed against the form this tracker saw.</p>
+ *
+ * <p>Only the saved forms are tracked, a read model is written completely on its first save. The
+ * diff, the write and the mark of a model must be done holding its {@link #lock(String)}, so the
+ * tracked form is always the one the store holds. When full, an arbitrary model is forgotten to keep
+ * the size bounded.</p>
+ *
+ * @param <WriteType> the serialized type of the models
+ * @param <ValueType> the serialized type of the field values
+ */
+public final class ModelChangeTracker<WriteType, ValueType> {
+  public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+  private static final int LOCK_STRIPES = 64;
+  private final Function<WriteType, Map<String, ValueType>> fieldsView;
+  private final int maximumSize;
+  private final Map<String, Map<String, ValueType>> persistedFields;
+  private final Lock[] locks;
+
+  /**
+   * Creates a tracker reading the top-level fields of the serialized models with the given view.
+   *
+   * @param fieldsView the view of the top-level fields of a serialized model, which may be the
+   *                   serialized model itself
+   */
+  public ModelChangeTracker(final @NotNull Function<WriteType, Map<String, ValueType>> fieldsView) {
+    this(fieldsView, DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Creates a tracker reading the top-level fields of the serialized models with the given view.
+   *
+   * @param fieldsView the view of the top-level fields of a serialized model, which may be the
+   *                   serialized model itself
+   * @param maximumSize the max amount of tracked models
+   */
+  public ModelChangeTracker(
+    final @NotNull Function<WriteType, Map<String, ValueType>> fieldsView,
+    final int maximumSize
+  ) {
+    this.fieldsView = fieldsView;
+    this.maximumSize = Math.max(1, maximumSize);
+    this.persistedFields = new ConcurrentHashMap<>();
+    this.locks = new Lock[LOCK_STRIPES];
+    for (var i = 0; i < this.locks.length; i++) {
+      this.locks[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * Returns the lock to hold while diffing, writing and marking the model with the given id. The
+   * locks are striped, so different ids may share a lock.
+   *
+   * @param id the id of the model
+   * @return the lock of the id
+   */
+  public @NotNull Lock lock(final @NotNull String id) {
+    return this.locks[stripe(id)];
+  }
+
+  /**
+   * Acquires the locks of all the given ids, in a fixed order so batches never deadlock.
+   *
+   * @param ids the ids of the models
+   */
+  public void lockAll(final @NotNull Collection<String> ids) {
+    final var stripes = stripes(ids);
+    for (var i = 0; i < stripes.length; i++) {
+      if (stripes[i]) {
+        this.locks[i].lock();
+      }
+    }
+  }
+
+  public void unlockAll(final @NotNull Collection<String> ids) {
+    final var stripes = stripes(ids);
+    for (var i = stripes.length - 1; i >= 0; i--) {
+      if (stripes[i]) {
+        this.locks[i].unlock();
+      }
+    }
+  }
+
+  public @NotNull ModelDelta<ValueType> diff(final @NotNull String id, final @NotNull WriteType serialized) {
+    final var fields = this.fieldsView.apply(serialized);
+    final var persisted = this.persistedFields.get(id);
+    if (persisted == null) {
+      return new ModelDelta<>(fields, List.of(), true);
+    }
+    final var changes = new HashMap<String, ValueType>();
+    for (final var entry : fields.entrySet()) {
+      final var field = entry.getKey();
+      final var value = entry.getValue();
+      if (!persisted.containsKey(field) || !Objects.equals(persisted.get(field), value)) {
+        changes.put(field, value);
+      }
+    }
+    final var removals = new ArrayList<String>(0);
+    for (final var field : persisted.keySet()) {
+      if (!fields.containsKey(field)) {
+        removals.add(field);
+      }
+    }
+    return new ModelDelta<>(changes, removals, false);
+  }
+
+  public void markPersisted(final @NotNull String id, final @NotNull WriteType serialized) {
+    if (this.persistedFields.size() >= this.maximumSize && !this.persistedFields.containsKey(id)) {
+      // forgetting a model is always safe, its next save is just written completely
+      final var iterator = this.persistedFields.keySet()
+                             .iterator();
+      if (iterator.hasNext()) {
+        iterator.next();
+        iterator.remove();
+      }
+    }
+    this.persistedFields.put(id, this.fieldsView.apply(serialized));
+  }
+
+  public void forget(final @NotNull String id) {
+    this.persistedFields.remove(id);
+  }
+
+  public void clear() {
+    this.persistedFields.clear();
+  }
+
+  public int size() {
+    return this.persistedFields.size();
+  }
+
+  private static int stripe(final @NotNull String id) {
+    return Math.floorMod(id.hashCode(), LOCK_STRIPES);
+  }
+
+  private static boolean @NotNull [] stripes(final @NotNull Collection<String> ids) {
+    final var stripes = new boolean[LOCK_STRIPES];
+    for (final var id : ids) {
+      stripes[stripe(id)] = true;
+    }
+    return stripes;
+  }
+}
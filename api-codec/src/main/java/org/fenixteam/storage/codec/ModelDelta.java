@@ -0,0 +1,23 @@
+package org.fenixteam.storage.codec;
+
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Difference between the serialized form of a model and its last persisted form.
+ *
+ * @param changes the top-level fields which are new or changed, with their new value
+ * @param removals the top-level fields which were persisted but aren't present anymore
+ * @param full whether the model isn't tracked, so it must be written completely
+ * @param <ValueType> the serialized type of the field values
+ */
+public record ModelDelta<ValueType>(
+  @NotNull Map<String, ValueType> changes,
+  @NotNull List<String> removals,
+  boolean full
+) {
+  public boolean isEmpty() {
+    return !this.full && this.changes.isEmpty() && this.removals.isEmpty();
+  }
+}
@@ -0,0 +1,15 @@
+package org.fenixteam.storage.codec;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Deserializer reading the fields of a model straight from a streaming reader, so no intermediate
+ * form of the model is built. The reader is already inside the object of the model.
+ *
+ * @param <ModelType> the type of the deserialized models
+ * @param <ReaderType> the type of the reader
+ */
+@FunctionalInterface
+public interface StreamingModelDeserializer<ModelType, ReaderType> {
+  @NotNull ModelType deserialize(final @NotNull ReaderType reader);
+}
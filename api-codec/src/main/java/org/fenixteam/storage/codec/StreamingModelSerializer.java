@@ -0,0 +1,15 @@
+package org.fenixteam.storage.codec;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Serializer writing the fields of a model straight to a streaming writer, so no intermediate
+ * form of the model is built. The writer is already inside the object of the model.
+ *
+ * @param <ModelType> the type of the serialized models
+ * @param <WriterType> the type of the writer
+ */
+@FunctionalInterface
+public interface StreamingModelSerializer<ModelType, WriterType> {
+  void serialize(final @NotNull ModelType model, final @NotNull WriterType writer);
+}
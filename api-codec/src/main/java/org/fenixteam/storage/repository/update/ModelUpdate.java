@@ -0,0 +1,126 @@
+package org.fenixteam.storage.repository.update;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.fenixteam.storage.codec.ModelWriter;
+import org.fenixteam.storage.repository.ModelRepository;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Changes of some fields of a stored model, applied by the backend without reading or rewriting
+ * the whole model. The set fields are written with the usual {@link ModelWriter} methods into the
+ * writer of the backend format; numeric fields can be incremented and fields can be removed.
+ * Nested fields are separated by dots where the backend supports them.
+ *
+ * @param <WriteType> the serialized type of the backend
+ */
+@SuppressWarnings("unused")
+public final class ModelUpdate<WriteType> {
+  private final Consumer<ModelWriter<WriteType>> setter;
+  private final Map<String, Number> increments;
+  private final List<String> unsets;
+
+  private ModelUpdate(
+    final @Nullable Consumer<ModelWriter<WriteType>> setter,
+    final @NotNull Map<String, Number> increments,
+    final @NotNull List<String> unsets
+  ) {
+    this.setter = setter;
+    this.increments = increments;
+    this.unsets = unsets;
+  }
+
+  @Contract(" -> new")
+  public static <W> @NotNull Builder<W> builder() {
+    return new Builder<>();
+  }
+
+  public boolean hasSets() {
+    return this.setter != null;
+  }
+
+  /**
+   * Writes the set fields into the given writer.
+   *
+   * @param writer an empty writer of the backend format
+   * @return the written fields
+   */
+  public @NotNull WriteType writeSets(final @NotNull ModelWriter<WriteType> writer) {
+    if (this.setter != null) {
+      this.setter.accept(writer);
+    }
+    return writer.end();
+  }
+
+  public @NotNull Map<String, Number> increments() {
+    return this.increments;
+  }
+
+  public @NotNull List<String> unsets() {
+    return this.unsets;
+  }
+
+  public boolean isEmpty() {
+    return this.setter == null && this.increments.isEmpty() && this.unsets.isEmpty();
+  }
+
+  public static final class Builder<WriteType> {
+    private Consumer<ModelWriter<WriteType>> setter;
+    private final Map<String, Number> increments = new LinkedHashMap<>();
+    private final List<String> unsets = new ArrayList<>();
+
+    private Builder() {
+    }
+
+    @Contract("_ -> this")
+    public @NotNull Builder<WriteType> set(final @NotNull Consumer<ModelWriter<WriteType>> setter) {
+      this.setter = this.setter == null ? setter : this.setter.andThen(setter);
+      return this;
+    }
+
+    @Contract("_, _ -> this")
+    public @NotNull Builder<WriteType> increment(final @NotNull String field, final @NotNull Number delta) {
+      checkField(field);
+      this.increments.merge(field, delta, Builder::add);
+      return this;
+    }
+
+    @Contract("_ -> this")
+    public @NotNull Builder<WriteType> unset(final @NotNull String field) {
+      checkField(field);
+      this.unsets.add(field);
+      return this;
+    }
+
+    @Contract(" -> new")
+    public @NotNull ModelUpdate<WriteType> build() {
+      return new ModelUpdate<>(
+        this.setter,
+        Collections.unmodifiableMap(new LinkedHashMap<>(this.increments)),
+        List.copyOf(this.unsets));
+    }
+
+    private static void checkField(final @NotNull String field) {
+      if (field.equals(ModelRepository.ID_FIELD)) {
+        throw new IllegalArgumentException("The id of a model can't be updated");
+      }
+    }
+
+    private static @NotNull Number add(final @NotNull Number first, final @NotNull Number second) {
+      if (isIntegral(first) && isIntegral(second)) {
+        return first.longValue() + second.longValue();
+      }
+      return first.doubleValue() + second.doubleValue();
+    }
+  }
+
+  public static boolean isIntegral(final @NotNull Number number) {
+    return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+  }
+}
@@ -0,0 +1,26 @@
+package org.fenixteam.storage.repository.update;
+
+import java.util.concurrent.CompletableFuture;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Repository which can apply a {@link ModelUpdate} to a stored model in place.
+ *
+ * @param <WriteType> the serialized type of the backend
+ */
+public interface UpdatableModelRepository<WriteType> {
+  /**
+   * Applies the update to the stored model with the given id. Models which don't exist aren't
+   * created.
+   *
+   * @param id the id of the updated model
+   * @param update the changes to apply
+   * @return true if the model exists and was updated
+   */
+  boolean updateSync(final @NotNull String id, final @NotNull ModelUpdate<WriteType> update);
+
+  @NotNull CompletableFuture<@NotNull Boolean> update(
+    final @NotNull String id,
+    final @NotNull ModelUpdate<WriteType> update
+  );
+}
@@ -0,0 +1,96 @@
+package org.fenixteam.storage.concurrent;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Executor which never runs more than a fixed amount of tasks at the same time in the delegate
+ * executor. Extra tasks wait in a queue instead of holding a thread, so it caps the concurrency of
+ * the backend (e.g. to the size of a connection pool) even when the delegate starts one virtual
+ * thread per task.
+ */
+public final class BoundedExecutor implements Executor {
+  private final Executor delegate;
+  private final int maxConcurrency;
+  private final Deque<Runnable> pendingTasks;
+  private final AtomicInteger runningTasks;
+
+  public BoundedExecutor(final @NotNull Executor delegate, final int maxConcurrency) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("The max concurrency must be positive");
+    }
+    this.delegate = delegate;
+    this.maxConcurrency = maxConcurrency;
+    this.pendingTasks = new ConcurrentLinkedDeque<>();
+    this.runningTasks = new AtomicInteger();
+  }
+
+  public int maxConcurrency() {
+    return this.maxConcurrency;
+  }
+
+  public int runningTasks() {
+    return this.runningTasks.get();
+  }
+
+  public int pendingTasks() {
+    return this.pendingTasks.size();
+  }
+
+  @Override
+  public void execute(final @NotNull Runnable task) {
+    this.pendingTasks.add(task);
+    try {
+      this.drain();
+    } catch (final RejectedExecutionException e) {
+      // a rejected task goes back to the queue, so only a caller whose own task is still queued
+      // gets the rejection and its task is dropped, like any rejected task
+      if (this.pendingTasks.removeLastOccurrence(task)) {
+        throw e;
+      }
+    }
+  }
+
+  private void drain() {
+    // the task is queued before checking the running count and the count is released before
+    // draining again, so a queued task is always picked by someone
+    while (!this.pendingTasks.isEmpty()) {
+      final var running = this.runningTasks.get();
+      if (running >= this.maxConcurrency) {
+        return;
+      }
+      if (!this.runningTasks.compareAndSet(running, running + 1)) {
+        continue;
+      }
+      final var task = this.pendingTasks.poll();
+      if (task == null) {
+        this.runningTasks.decrementAndGet();
+        continue;
+      }
+      try {
+        this.delegate.execute(() -> this.run(task));
+      } catch (final RejectedExecutionException e) {
+        this.runningTasks.decrementAndGet();
+        this.pendingTasks.addFirst(task);
+        throw e;
+      }
+    }
+  }
+
+  private void run(final @NotNull Runnable task) {
+    try {
+      task.run();
+    } finally {
+      this.runningTasks.decrementAndGet();
+      try {
+        this.drain();
+      } catch (final RejectedExecutionException e) {
+        // the rejected task is back at the head of the queue, the next execution retries it
+      }
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package org.fenixteam.storage.concurrent;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Runs an action over a list of elements (or a range of indexes) using a bounded amount of workers.
+ * The calling thread always works too and only waits for elements which are already being
+ * processed, so it never deadlocks on a saturated executor.
+ */
+public final class ParallelTasks {
+  private ParallelTasks() {
+    throw new UnsupportedOperationException("This class cannot be instantiated");
+  }
+
+  public static <T> void forEach(
+    final @NotNull Executor executor,
+    final int parallelism,
+    final @NotNull List<T> elements,
+    final @NotNull Consumer<T> action
+  ) {
+    forEachIndex(executor, parallelism, elements.size(), index -> action.accept(elements.get(index)));
+  }
+
+  public static void forEachIndex(
+    final @NotNull Executor executor,
+    final int parallelism,
+    final int size,
+    final @NotNull IntConsumer action
+  ) {
+    final var workers = Math.min(parallelism, size);
+    if (workers <= 1) {
+      for (var index = 0; index < size; index++) {
+        action.accept(index);
+      }
+      return;
+    }
+    final var nextIndex = new AtomicInteger();
+    final var remaining = new CountDownLatch(size);
+    final var failure = new AtomicReference<Throwable>();
+    final Runnable worker = () -> {
+      for (var index = nextIndex.getAndIncrement(); index < size; index = nextIndex.getAndIncrement()) {
+        try {
+          if (failure.get() == null) {
+            action.accept(index);
+          }
+        } catch (final RuntimeException | Error e) {
+          failure.compareAndSet(null, e);
+        } finally {
+          remaining.countDown();
+        }
+      }
+    };
+    for (var i = 1; i < workers; i++) {
+      try {
+        executor.execute(worker);
+      } catch (final RejectedExecutionException e) {
+        // the calling thread will take care of the remaining elements
+        break;
+      }
+    }
+    worker.run();
+    awaitUninterruptibly(remaining);
+    final var thrown = failure.get();
+    if (thrown instanceof RuntimeException runtimeException) {
+      throw runtimeException;
+    }
+    if (thrown instanceof Error error) {
+      throw error;
+    }
+  }
+
+  private static void awaitUninterruptibly(final @NotNull CountDownLatch latch) {
+    var interrupted = false;
+    while (true) {
+      try {
+        latch.await();
+        break;
+      } catch (final InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread()
+        .interrupt();
+    }
+  }
+}
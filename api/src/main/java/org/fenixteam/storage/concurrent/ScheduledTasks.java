@@ -0,0 +1,32 @@
+package org.fenixteam.storage.concurrent;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Helpers for the periodic tasks of a {@link java.util.concurrent.ScheduledExecutorService}, which
+ * cancels every later run of a task as soon as one of its runs throws.
+ */
+public final class ScheduledTasks {
+  private ScheduledTasks() {
+    throw new UnsupportedOperationException("This class cannot be instantiated");
+  }
+
+  /**
+   * Wraps a periodic task so a failed run is reported to the uncaught exception handler of its
+   * thread instead of cancelling the next runs, which retry the work.
+   *
+   * @param task the periodic task
+   * @return the wrapped task
+   */
+  public static @NotNull Runnable reportingFailures(final @NotNull Runnable task) {
+    return () -> {
+      try {
+        task.run();
+      } catch (final RuntimeException e) {
+        final var thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler()
+          .uncaughtException(thread, e);
+      }
+    };
+  }
+}
@@ -0,0 +1,108 @@
+package org.fenixteam.storage.concurrent;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Access to virtual threads while the library still targets Java 17. The methods are looked up once
+ * and only work when the running JVM supports virtual threads (Java 21, or 19+ with preview features
+ * enabled); {@link #isSupported()} tells if that is the case.
+ */
+public final class VirtualThreads {
+  private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR;
+  private static final MethodHandle OF_VIRTUAL;
+  private static final MethodHandle BUILDER_NAME;
+  private static final MethodHandle BUILDER_FACTORY;
+
+  static {
+    final var lookup = MethodHandles.publicLookup();
+    MethodHandle newVirtualThreadPerTaskExecutor = null;
+    MethodHandle ofVirtual = null;
+    MethodHandle builderName = null;
+    MethodHandle builderFactory = null;
+    try {
+      final var builderClass = Class.forName("java.lang.Thread$Builder");
+      newVirtualThreadPerTaskExecutor = lookup.findStatic(
+        Executors.class,
+        "newVirtualThreadPerTaskExecutor",
+        MethodType.methodType(ExecutorService.class));
+      ofVirtual = lookup.findStatic(
+        Thread.class,
+        "ofVirtual",
+        MethodType.methodType(Class.forName("java.lang.Thread$Builder$OfVirtual")));
+      builderName = lookup.findVirtual(
+        builderClass,
+        "name",
+        MethodType.methodType(builderClass, String.class, long.class));
+      builderFactory = lookup.findVirtual(builderClass, "factory", MethodType.methodType(ThreadFactory.class));
+      // on preview releases the methods exist but fail unless the preview features are enabled
+      ofVirtual.invoke();
+    } catch (final Throwable e) {
+      newVirtualThreadPerTaskExecutor = null;
+    }
+    NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = newVirtualThreadPerTaskExecutor;
+    OF_VIRTUAL = ofVirtual;
+    BUILDER_NAME = builderName;
+    BUILDER_FACTORY = builderFactory;
+  }
+
+  private VirtualThreads() {
+    throw new UnsupportedOperationException("This class cannot be instantiated");
+  }
+
+  public static boolean isSupported() {
+    return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+  }
+
+  /**
+   * Creates an executor which starts a new virtual thread for each task.
+   *
+   * @return the new executor
+   * @throws UnsupportedOperationException if the running JVM doesn't support virtual threads
+   */
+  @Contract(" -> new")
+  public static @NotNull ExecutorService newVirtualThreadPerTaskExecutor() {
+    final var handle = checkSupported(NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR);
+    try {
+      return (ExecutorService) handle.invoke();
+    } catch (final RuntimeException | Error e) {
+      throw e;
+    } catch (final Throwable e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Creates a factory of virtual threads named with the given prefix followed by a counter.
+   *
+   * @param namePrefix the prefix of the thread names
+   * @return the new thread factory
+   * @throws UnsupportedOperationException if the running JVM doesn't support virtual threads
+   */
+  @Contract("_ -> new")
+  public static @NotNull ThreadFactory newThreadFactory(final @NotNull String namePrefix) {
+    checkSupported(NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR);
+    try {
+      final var builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(), namePrefix, 0L);
+      return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+    } catch (final RuntimeException | Error e) {
+      throw e;
+    } catch (final Throwable e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static @NotNull MethodHandle checkSupported(final @Nullable MethodHandle handle) {
+    if (handle == null) {
+      throw new UnsupportedOperationException("Virtual threads aren't supported by the running JVM");
+    }
+    return handle;
+  }
+}
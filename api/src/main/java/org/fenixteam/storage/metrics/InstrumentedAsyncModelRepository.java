@@ -0,0 +1,259 @@
+package org.fenixteam.storage.metrics;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.query.ModelFilter;
+import org.fenixteam.storage.query.ModelPage;
+import org.fenixteam.storage.query.ModelQuery;
+import org.fenixteam.storage.repository.AsyncModelRepository;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Asynchronous variant of {@link InstrumentedModelRepository}, the asynchronous operations are
+ * measured from the call until the completion of the returned future, which is the delegate one.
+ *
+ * @param <ModelType> the type of the stored models
+ */
+@SuppressWarnings("unused")
+public class InstrumentedAsyncModelRepository<ModelType extends Model>
+  extends InstrumentedModelRepository<ModelType>
+  implements AsyncModelRepository<ModelType> {
+  protected final AsyncModelRepository<ModelType> asyncDelegate;
+
+  protected InstrumentedAsyncModelRepository(
+    final @NotNull AsyncModelRepository<ModelType> delegate,
+    final @NotNull ModelRepositoryMetrics metrics
+  ) {
+    super(delegate, metrics);
+    this.asyncDelegate = delegate;
+  }
+
+  @Contract("_, _ -> new")
+  public static <T extends Model> @NotNull InstrumentedAsyncModelRepository<T> wrap(
+    final @NotNull AsyncModelRepository<T> delegate,
+    final @NotNull ModelRepositoryMetrics metrics
+  ) {
+    return new InstrumentedAsyncModelRepository<>(delegate, metrics);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@Nullable ModelType> find(final @NotNull String id) {
+    final var start = System.nanoTime();
+    return this.recorded(
+      this.asyncDelegate.find(id),
+      ModelOperation.FIND,
+      start,
+      model -> 1);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@Nullable C> find(
+    final @NotNull String field,
+    final @NotNull String value,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var start = System.nanoTime();
+    return this.recorded(
+      this.asyncDelegate.find(field, value, factory),
+      ModelOperation.FIND_BY_FIELD,
+      start,
+      Collection::size);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@NotNull C> findMany(
+    final @NotNull Collection<String> ids,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var start = System.nanoTime();
+    return this.recorded(
+      this.asyncDelegate.findMany(ids, factory),
+      ModelOperation.FIND_MANY,
+      start,
+      Collection::size);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@Nullable Collection<String>> findIds() {
+    final var start = System.nanoTime();
+    return this.recorded(
+      this.asyncDelegate.findIds(),
+      ModelOperation.FIND_IDS,
+      start,
+      Collection::size);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@Nullable C> findAll(
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var start = System.nanoTime();
+    return this.recorded(
+      this.asyncDelegate.findAll(factory),
+      ModelOperation.FIND_ALL,
+      start,
+      Collection::size);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@Nullable C> findAll(
+    final @NotNull Consumer<ModelType> postLoadAction,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var start = System.nanoTime();
+    return this.recorded(
+      this.asyncDelegate.findAll(postLoadAction, factory),
+      ModelOperation.FIND_ALL,
+      start,
+      Collection::size);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@NotNull C> query(
+    final @NotNull ModelQuery query,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var start = System.nanoTime();
+    return this.recorded(
+      this.asyncDelegate.query(query, factory),
+      ModelOperation.QUERY,
+      start,
+      Collection::size);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull ModelPage<ModelType>> findPage(
+    final @Nullable ModelFilter filter,
+    final @Nullable String token,
+    final int pageSize
+  ) {
+    final var start = System.nanoTime();
+    return this.recorded(
+      this.asyncDelegate.findPage(filter, token, pageSize),
+      ModelOperation.FIND_PAGE,
+      start,
+      page -> page.models()
+                .size());
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> exists(final @NotNull String id) {
+    final var start = System.nanoTime();
+    return this.recorded(
+      this.asyncDelegate.exists(id),
+      ModelOperation.EXISTS,
+      start,
+      exists -> 0);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull ModelType> save(final @NotNull ModelType model) {
+    final var start = System.nanoTime();
+    return this.recorded(
+      this.asyncDelegate.save(model),
+      ModelOperation.SAVE,
+      start,
+      savedModel -> 1);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> compareAndSave(
+    final @NotNull ModelType model,
+    final long expectedVersion
+  ) {
+    final var start = System.nanoTime();
+    return this.recorded(
+      this.asyncDelegate.compareAndSave(model, expectedVersion),
+      ModelOperation.COMPARE_AND_SAVE,
+      start,
+      saved -> saved ? 1 : 0);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@NotNull C> saveMany(
+    final @NotNull C models
+  ) {
+    final var start = System.nanoTime();
+    return this.recorded(
+      this.asyncDelegate.saveMany(models),
+      ModelOperation.SAVE_MANY,
+      start,
+      Collection::size);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> delete(final @NotNull ModelType model) {
+    return this.delete(model.id());
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> delete(final @NotNull String id) {
+    final var start = System.nanoTime();
+    return this.recorded(
+      this.asyncDelegate.delete(id),
+      ModelOperation.DELETE,
+      start,
+      deleted -> deleted ? 1 : 0);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Integer> deleteMany(final @NotNull Collection<String> ids) {
+    final var start = System.nanoTime();
+    return this.recorded(
+      this.asyncDelegate.deleteMany(ids),
+      ModelOperation.DELETE_MANY,
+      start,
+      Integer::intValue);
+  }
+
+  /**
+   * Records the operation when the future completes and returns the same future, so the callers
+   * don't chain through the recording stage. A future which is already completed normally, like the
+   * ones of the in-memory repositories, is recorded right away; any other future costs a dependent
+   * stage per call, which is the price of measuring until the completion.
+   *
+   * @param future the future of the operation
+   * @param operation the measured operation
+   * @param start the start of the operation, in nanoseconds
+   * @param models the amount of models of a non-null result
+   * @param <T> the type of the result
+   * @return the given future
+   */
+  protected <T> @NotNull CompletableFuture<T> recorded(
+    final @NotNull CompletableFuture<T> future,
+    final @NotNull ModelOperation operation,
+    final long start,
+    final @NotNull ToIntFunction<? super T> models
+  ) {
+    if (future.isDone() && !future.isCompletedExceptionally()) {
+      final var result = future.getNow(null);
+      this.recordSuccess(operation, start, result == null ? 0 : models.applyAsInt(result));
+      return future;
+    }
+    future.whenComplete((result, throwable) -> this.record(
+      operation,
+      start,
+      result == null ? 0 : models.applyAsInt(result),
+      throwable));
+    return future;
+  }
+
+  protected void record(
+    final @NotNull ModelOperation operation,
+    final long start,
+    final int models,
+    final @Nullable Throwable throwable
+  ) {
+    if (throwable == null) {
+      this.recordSuccess(operation, start, models);
+    } else {
+      this.recordFailure(operation, start);
+    }
+  }
+}
@@ -0,0 +1,259 @@
+package org.fenixteam.storage.metrics;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.query.ModelFilter;
+import org.fenixteam.storage.query.ModelPage;
+import org.fenixteam.storage.query.ModelQuery;
+import org.fenixteam.storage.repository.ModelRepository;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Decorates a repository recording the latency, result size and failures of every operation in
+ * the given metrics.
+ *
+ * @param <ModelType> the type of the stored models
+ */
+@SuppressWarnings("unused")
+public class InstrumentedModelRepository<ModelType extends Model> implements ModelRepository<ModelType> {
+  protected final ModelRepository<ModelType> delegate;
+  protected final ModelRepositoryMetrics metrics;
+
+  protected InstrumentedModelRepository(
+    final @NotNull ModelRepository<ModelType> delegate,
+    final @NotNull ModelRepositoryMetrics metrics
+  ) {
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  @Contract("_, _ -> new")
+  public static <T extends Model> @NotNull InstrumentedModelRepository<T> wrap(
+    final @NotNull ModelRepository<T> delegate,
+    final @NotNull ModelRepositoryMetrics metrics
+  ) {
+    return new InstrumentedModelRepository<>(delegate, metrics);
+  }
+
+  public @NotNull ModelRepository<ModelType> delegate() {
+    return this.delegate;
+  }
+
+  public @NotNull ModelRepositoryMetrics metrics() {
+    return this.metrics;
+  }
+
+  @Override
+  public @Nullable ModelType findSync(final @NotNull String id) {
+    final var start = System.nanoTime();
+    try {
+      final var model = this.delegate.findSync(id);
+      this.recordSuccess(ModelOperation.FIND, start, model == null ? 0 : 1);
+      return model;
+    } catch (final RuntimeException e) {
+      this.recordFailure(ModelOperation.FIND, start);
+      throw e;
+    }
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @Nullable C findSync(
+    final @NotNull String field,
+    final @NotNull String value,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var start = System.nanoTime();
+    try {
+      final var models = this.delegate.findSync(field, value, factory);
+      this.recordSuccess(ModelOperation.FIND_BY_FIELD, start, models == null ? 0 : models.size());
+      return models;
+    } catch (final RuntimeException e) {
+      this.recordFailure(ModelOperation.FIND_BY_FIELD, start);
+      throw e;
+    }
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C findManySync(
+    final @NotNull Collection<String> ids,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var start = System.nanoTime();
+    try {
+      final var models = this.delegate.findManySync(ids, factory);
+      this.recordSuccess(ModelOperation.FIND_MANY, start, models.size());
+      return models;
+    } catch (final RuntimeException e) {
+      this.recordFailure(ModelOperation.FIND_MANY, start);
+      throw e;
+    }
+  }
+
+  @Override
+  public @Nullable Collection<String> findIdsSync() {
+    final var start = System.nanoTime();
+    try {
+      final var ids = this.delegate.findIdsSync();
+      this.recordSuccess(ModelOperation.FIND_IDS, start, ids == null ? 0 : ids.size());
+      return ids;
+    } catch (final RuntimeException e) {
+      this.recordFailure(ModelOperation.FIND_IDS, start);
+      throw e;
+    }
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @Nullable C findAllSync(
+    final @NotNull Consumer<ModelType> postLoadAction,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var start = System.nanoTime();
+    try {
+      final var models = this.delegate.findAllSync(postLoadAction, factory);
+      this.recordSuccess(ModelOperation.FIND_ALL, start, models == null ? 0 : models.size());
+      return models;
+    } catch (final RuntimeException e) {
+      this.recordFailure(ModelOperation.FIND_ALL, start);
+      throw e;
+    }
+  }
+
+  @Override
+  public @NotNull Stream<ModelType> streamAllSync(final int batchSize) {
+    // only the opening is measured, the stream is consumed at the pace of the caller
+    final var start = System.nanoTime();
+    try {
+      final var models = this.delegate.streamAllSync(batchSize);
+      this.recordSuccess(ModelOperation.STREAM_ALL, start, 0);
+      return models;
+    } catch (final RuntimeException e) {
+      this.recordFailure(ModelOperation.STREAM_ALL, start);
+      throw e;
+    }
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C querySync(
+    final @NotNull ModelQuery query,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var start = System.nanoTime();
+    try {
+      final var models = this.delegate.querySync(query, factory);
+      this.recordSuccess(ModelOperation.QUERY, start, models.size());
+      return models;
+    } catch (final RuntimeException e) {
+      this.recordFailure(ModelOperation.QUERY, start);
+      throw e;
+    }
+  }
+
+  @Override
+  public @NotNull ModelPage<ModelType> findPageSync(
+    final @Nullable ModelFilter filter,
+    final @Nullable String token,
+    final int pageSize
+  ) {
+    final var start = System.nanoTime();
+    try {
+      final var page = this.delegate.findPageSync(filter, token, pageSize);
+      this.recordSuccess(ModelOperation.FIND_PAGE, start, page.models()
+                                                          .size());
+      return page;
+    } catch (final RuntimeException e) {
+      this.recordFailure(ModelOperation.FIND_PAGE, start);
+      throw e;
+    }
+  }
+
+  @Override
+  public boolean existsSync(final @NotNull String id) {
+    final var start = System.nanoTime();
+    try {
+      final var exists = this.delegate.existsSync(id);
+      this.recordSuccess(ModelOperation.EXISTS, start, 0);
+      return exists;
+    } catch (final RuntimeException e) {
+      this.recordFailure(ModelOperation.EXISTS, start);
+      throw e;
+    }
+  }
+
+  @Override
+  public @NotNull ModelType saveSync(final @NotNull ModelType model) {
+    final var start = System.nanoTime();
+    try {
+      this.delegate.saveSync(model);
+      this.recordSuccess(ModelOperation.SAVE, start, 1);
+      return model;
+    } catch (final RuntimeException e) {
+      this.recordFailure(ModelOperation.SAVE, start);
+      throw e;
+    }
+  }
+
+  @Override
+  public boolean compareAndSaveSync(final @NotNull ModelType model, final long expectedVersion) {
+    final var start = System.nanoTime();
+    try {
+      final var saved = this.delegate.compareAndSaveSync(model, expectedVersion);
+      this.recordSuccess(ModelOperation.COMPARE_AND_SAVE, start, saved ? 1 : 0);
+      return saved;
+    } catch (final RuntimeException e) {
+      this.recordFailure(ModelOperation.COMPARE_AND_SAVE, start);
+      throw e;
+    }
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C saveManySync(final @NotNull C models) {
+    final var start = System.nanoTime();
+    try {
+      this.delegate.saveManySync(models);
+      this.recordSuccess(ModelOperation.SAVE_MANY, start, models.size());
+      return models;
+    } catch (final RuntimeException e) {
+      this.recordFailure(ModelOperation.SAVE_MANY, start);
+      throw e;
+    }
+  }
+
+  @Override
+  public boolean deleteSync(final @NotNull String id) {
+    final var start = System.nanoTime();
+    try {
+      final var deleted = this.delegate.deleteSync(id);
+      this.recordSuccess(ModelOperation.DELETE, start, deleted ? 1 : 0);
+      return deleted;
+    } catch (final RuntimeException e) {
+      this.recordFailure(ModelOperation.DELETE, start);
+      throw e;
+    }
+  }
+
+  @Override
+  public int deleteManySync(final @NotNull Collection<String> ids) {
+    final var start = System.nanoTime();
+    try {
+      final var deleted = this.delegate.deleteManySync(ids);
+      this.recordSuccess(ModelOperation.DELETE_MANY, start, deleted);
+      return deleted;
+    } catch (final RuntimeException e) {
+      this.recordFailure(ModelOperation.DELETE_MANY, start);
+      throw e;
+    }
+  }
+
+  protected void recordSuccess(final @NotNull ModelOperation operation, final long start, final int models) {
+    this.metrics.recordOperation(operation, System.nanoTime() - start, models, false);
+  }
+
+  protected void recordFailure(final @NotNull ModelOperation operation, final long start) {
+    this.metrics.recordOperation(operation, System.nanoTime() - start, 0, true);
+  }
+}
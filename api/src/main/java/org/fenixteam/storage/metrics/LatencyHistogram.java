@@ -0,0 +1,88 @@
+package org.fenixteam.storage.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations with one bucket per power of two nanoseconds, so recording is
+ * a couple of adder increments and percentiles are accurate to a factor of two.
+ */
+public final class LatencyHistogram {
+  private static final int BUCKETS = 64;
+  private final LongAdder[] buckets;
+  private final LongAdder totalNanos;
+  private final LongAccumulator maxNanos;
+
+  public LatencyHistogram() {
+    this.buckets = new LongAdder[BUCKETS];
+    for (var i = 0; i < BUCKETS; i++) {
+      this.buckets[i] = new LongAdder();
+    }
+    this.totalNanos = new LongAdder();
+    this.maxNanos = new LongAccumulator(Math::max, 0);
+  }
+
+  public void record(final long durationNanos) {
+    final var nanos = Math.max(0, durationNanos);
+    this.buckets[BUCKETS - Long.numberOfLeadingZeros(nanos)].increment();
+    this.totalNanos.add(nanos);
+    this.maxNanos.accumulate(nanos);
+  }
+
+  public long count() {
+    var count = 0L;
+    for (final var bucket : this.buckets) {
+      count += bucket.sum();
+    }
+    return count;
+  }
+
+  public long totalNanos() {
+    return this.totalNanos.sum();
+  }
+
+  public long maxNanos() {
+    return this.maxNanos.get();
+  }
+
+  public double meanNanos() {
+    final var count = this.count();
+    return count == 0 ? 0 : (double) this.totalNanos() / count;
+  }
+
+  /**
+   * Estimates a percentile of the recorded durations, returning the upper bound of the bucket
+   * where it falls.
+   *
+   * @param percentile the percentile, between 0 and 100
+   * @return the estimated duration in nanoseconds, or 0 if nothing was recorded
+   */
+  public long percentileNanos(final double percentile) {
+    final var counts = new long[BUCKETS];
+    var count = 0L;
+    for (var i = 0; i < BUCKETS; i++) {
+      counts[i] = this.buckets[i].sum();
+      count += counts[i];
+    }
+    if (count == 0) {
+      return 0;
+    }
+    final var rank = Math.max(1, (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100));
+    var seen = 0L;
+    for (var i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min((1L << i) - 1, this.maxNanos());
+      }
+    }
+    return this.maxNanos();
+  }
+
+  public void reset() {
+    for (final var bucket : this.buckets) {
+      bucket.reset();
+    }
+    this.totalNanos.reset();
+    this.maxNanos.reset();
+  }
+}
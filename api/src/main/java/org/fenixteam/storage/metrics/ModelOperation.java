@@ -0,0 +1,18 @@
+package org.fenixteam.storage.metrics;
+
+public enum ModelOperation {
+  FIND,
+  FIND_BY_FIELD,
+  FIND_MANY,
+  FIND_IDS,
+  FIND_ALL,
+  STREAM_ALL,
+  QUERY,
+  FIND_PAGE,
+  EXISTS,
+  SAVE,
+  SAVE_MANY,
+  COMPARE_AND_SAVE,
+  DELETE,
+  DELETE_MANY
+}
@@ -0,0 +1,48 @@
+package org.fenixteam.storage.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Receives the measures of a repository. The methods are called in the hot path of every
+ * operation, so implementations must be thread-safe, cheap and shouldn't allocate. Every method
+ * does nothing by default.
+ */
+public interface ModelRepositoryMetrics {
+  ModelRepositoryMetrics NOOP = new ModelRepositoryMetrics() {
+  };
+
+  /**
+   * Records a finished operation.
+   *
+   * @param operation the operation
+   * @param durationNanos how long the operation took
+   * @param models the amount of models read or written by the operation
+   * @param failed if the operation threw an exception
+   */
+  default void recordOperation(
+    final @NotNull ModelOperation operation,
+    final long durationNanos,
+    final int models,
+    final boolean failed
+  ) {
+  }
+
+  default void recordCacheHits(final int count) {
+  }
+
+  default void recordCacheMisses(final int count) {
+  }
+
+  /**
+   * Records a load of a missing model from the persistent repository into the cache.
+   *
+   * @param durationNanos how long the load took
+   * @param found if the model existed in the persistent repository
+   * @param failed if the load threw an exception
+   */
+  default void recordCacheLoad(final long durationNanos, final boolean found, final boolean failed) {
+  }
+
+  default void recordCacheEvictions(final int count) {
+  }
+}
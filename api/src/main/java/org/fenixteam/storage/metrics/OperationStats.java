@@ -0,0 +1,47 @@
+package org.fenixteam.storage.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.jetbrains.annotations.NotNull;
+
+public final class OperationStats {
+  private final LatencyHistogram latency;
+  private final LongAdder errors;
+  private final LongAdder models;
+
+  OperationStats() {
+    this.latency = new LatencyHistogram();
+    this.errors = new LongAdder();
+    this.models = new LongAdder();
+  }
+
+  void record(final long durationNanos, final int models, final boolean failed) {
+    this.latency.record(durationNanos);
+    if (failed) {
+      this.errors.increment();
+    } else if (models > 0) {
+      this.models.add(models);
+    }
+  }
+
+  public @NotNull LatencyHistogram latency() {
+    return this.latency;
+  }
+
+  public long count() {
+    return this.latency.count();
+  }
+
+  public long errors() {
+    return this.errors.sum();
+  }
+
+  public long models() {
+    return this.models.sum();
+  }
+
+  public void reset() {
+    this.latency.reset();
+    this.errors.reset();
+    this.models.reset();
+  }
+}
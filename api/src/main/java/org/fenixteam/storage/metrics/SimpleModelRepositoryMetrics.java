@@ -0,0 +1,125 @@
+package org.fenixteam.storage.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * In-memory metrics of a single repository, keeping a latency histogram and the error and model
+ * counts of every operation besides the cache counters. The throughput is the difference between
+ * two reads of the counts divided by the time between them.
+ */
+@SuppressWarnings("unused")
+public class SimpleModelRepositoryMetrics implements ModelRepositoryMetrics {
+  private static final ModelOperation[] OPERATIONS = ModelOperation.values();
+  private final String name;
+  private final OperationStats[] operations;
+  private final LongAdder cacheHits;
+  private final LongAdder cacheMisses;
+  private final LongAdder cacheEvictions;
+  private final LongAdder cacheLoadMisses;
+  private final LongAdder cacheLoadFailures;
+  private final LatencyHistogram cacheLoadLatency;
+
+  public SimpleModelRepositoryMetrics(final @NotNull String name) {
+    this.name = name;
+    this.operations = new OperationStats[OPERATIONS.length];
+    for (var i = 0; i < OPERATIONS.length; i++) {
+      this.operations[i] = new OperationStats();
+    }
+    this.cacheHits = new LongAdder();
+    this.cacheMisses = new LongAdder();
+    this.cacheEvictions = new LongAdder();
+    this.cacheLoadMisses = new LongAdder();
+    this.cacheLoadFailures = new LongAdder();
+    this.cacheLoadLatency = new LatencyHistogram();
+  }
+
+  public @NotNull String name() {
+    return this.name;
+  }
+
+  public @NotNull OperationStats operation(final @NotNull ModelOperation operation) {
+    return this.operations[operation.ordinal()];
+  }
+
+  public long cacheHits() {
+    return this.cacheHits.sum();
+  }
+
+  public long cacheMisses() {
+    return this.cacheMisses.sum();
+  }
+
+  public double cacheHitRatio() {
+    final var hits = this.cacheHits();
+    final var requests = hits + this.cacheMisses();
+    return requests == 0 ? 1 : (double) hits / requests;
+  }
+
+  public long cacheEvictions() {
+    return this.cacheEvictions.sum();
+  }
+
+  public long cacheLoads() {
+    return this.cacheLoadLatency.count();
+  }
+
+  public long cacheLoadMisses() {
+    return this.cacheLoadMisses.sum();
+  }
+
+  public long cacheLoadFailures() {
+    return this.cacheLoadFailures.sum();
+  }
+
+  public @NotNull LatencyHistogram cacheLoadLatency() {
+    return this.cacheLoadLatency;
+  }
+
+  @Override
+  public void recordOperation(
+    final @NotNull ModelOperation operation,
+    final long durationNanos,
+    final int models,
+    final boolean failed
+  ) {
+    this.operations[operation.ordinal()].record(durationNanos, models, failed);
+  }
+
+  @Override
+  public void recordCacheHits(final int count) {
+    this.cacheHits.add(count);
+  }
+
+  @Override
+  public void recordCacheMisses(final int count) {
+    this.cacheMisses.add(count);
+  }
+
+  @Override
+  public void recordCacheLoad(final long durationNanos, final boolean found, final boolean failed) {
+    this.cacheLoadLatency.record(durationNanos);
+    if (failed) {
+      this.cacheLoadFailures.increment();
+    } else if (!found) {
+      this.cacheLoadMisses.increment();
+    }
+  }
+
+  @Override
+  public void recordCacheEvictions(final int count) {
+    this.cacheEvictions.add(count);
+  }
+
+  public void reset() {
+    for (final var operation : this.operations) {
+      operation.reset();
+    }
+    this.cacheHits.reset();
+    this.cacheMisses.reset();
+    this.cacheEvictions.reset();
+    this.cacheLoadMisses.reset();
+    this.cacheLoadFailures.reset();
+    this.cacheLoadLatency.reset();
+  }
+}
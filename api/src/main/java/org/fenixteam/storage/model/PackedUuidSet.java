@@ -0,0 +1,252 @@
+package org.fenixteam.storage.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Set of UUID ids packed as pairs of longs in an open-addressing table, taking 16 bytes per id
+ * plus the free slots instead of a string object per id. The ids are exposed as strings, so the
+ * set can be returned as the ids of a repository; they are only created while iterating. The nil
+ * UUID is kept apart since a zeroed slot means a free one. This class isn't thread-safe.
+ */
+@SuppressWarnings("unused")
+public final class PackedUuidSet extends AbstractSet<String> {
+  private long[] slots;
+  private boolean containsNil;
+  private int size;
+
+  public PackedUuidSet() {
+    this(16);
+  }
+
+  public PackedUuidSet(final int expectedSize) {
+    this.slots = new long[capacityFor(expectedSize) * 2];
+  }
+
+  // smallest power of two keeping the table at most two thirds full
+  private static int capacityFor(final int expectedSize) {
+    final var minimumCapacity = Math.max(16, (int) Math.min(1 << 30, expectedSize * 3L / 2 + 1));
+    return Integer.highestOneBit(minimumCapacity - 1) << 1;
+  }
+
+  private static int hash(final long mostBits, final long leastBits) {
+    final var hash = (mostBits ^ leastBits) * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32));
+  }
+
+  public boolean addUuid(final long mostBits, final long leastBits) {
+    if (mostBits == 0 && leastBits == 0) {
+      if (this.containsNil) {
+        return false;
+      }
+      this.containsNil = true;
+      this.size++;
+      return true;
+    }
+    var slot = this.slotOf(mostBits, leastBits);
+    if (slot >= 0) {
+      return false;
+    }
+    if ((this.size + 1) * 3L > this.slots.length) {
+      this.resize(this.slots.length);
+    }
+    final var mask = this.slots.length / 2 - 1;
+    slot = hash(mostBits, leastBits) & mask;
+    while (this.slots[slot * 2] != 0 || this.slots[slot * 2 + 1] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    this.slots[slot * 2] = mostBits;
+    this.slots[slot * 2 + 1] = leastBits;
+    this.size++;
+    return true;
+  }
+
+  public boolean addUuid(final @NotNull UUID uuid) {
+    return this.addUuid(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+  }
+
+  /**
+   * Adds the UUID represented by the given id.
+   *
+   * @param id the id
+   * @return true if the id wasn't in the set
+   * @throws IllegalArgumentException if the id isn't a UUID
+   */
+  @Override
+  public boolean add(final @NotNull String id) {
+    return this.addUuid(UUID.fromString(id));
+  }
+
+  public boolean containsUuid(final long mostBits, final long leastBits) {
+    if (mostBits == 0 && leastBits == 0) {
+      return this.containsNil;
+    }
+    return this.slotOf(mostBits, leastBits) >= 0;
+  }
+
+  @Override
+  public boolean contains(final Object object) {
+    if (object instanceof UUID uuid) {
+      return this.containsUuid(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+    if (!(object instanceof String id)) {
+      return false;
+    }
+    try {
+      return this.contains(UUID.fromString(id));
+    } catch (final IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  public boolean removeUuid(final long mostBits, final long leastBits) {
+    if (mostBits == 0 && leastBits == 0) {
+      if (!this.containsNil) {
+        return false;
+      }
+      this.containsNil = false;
+      this.size--;
+      return true;
+    }
+    final var slot = this.slotOf(mostBits, leastBits);
+    if (slot < 0) {
+      return false;
+    }
+    // backward shift deletion, moves back the following ids which can't be found past the gap
+    final var mask = this.slots.length / 2 - 1;
+    var gap = slot;
+    var next = (gap + 1) & mask;
+    while (this.slots[next * 2] != 0 || this.slots[next * 2 + 1] != 0) {
+      final var home = hash(this.slots[next * 2], this.slots[next * 2 + 1]) & mask;
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        this.slots[gap * 2] = this.slots[next * 2];
+        this.slots[gap * 2 + 1] = this.slots[next * 2 + 1];
+        gap = next;
+      }
+      next = (next + 1) & mask;
+    }
+    this.slots[gap * 2] = 0;
+    this.slots[gap * 2 + 1] = 0;
+    this.size--;
+    return true;
+  }
+
+  @Override
+  public boolean remove(final Object object) {
+    if (object instanceof UUID uuid) {
+      return this.removeUuid(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+    if (!(object instanceof String id)) {
+      return false;
+    }
+    try {
+      return this.remove(UUID.fromString(id));
+    } catch (final IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  public void forEachUuid(final @NotNull UuidConsumer action) {
+    if (this.containsNil) {
+      action.accept(0, 0);
+    }
+    for (var i = 0; i < this.slots.length; i += 2) {
+      if (this.slots[i] != 0 || this.slots[i + 1] != 0) {
+        action.accept(this.slots[i], this.slots[i + 1]);
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(this.slots, 0);
+    this.containsNil = false;
+    this.size = 0;
+  }
+
+  /**
+   * Iterates the ids as strings, the iterator doesn't support removals.
+   *
+   * @return the iterator of the ids
+   */
+  @Override
+  public @NotNull Iterator<String> iterator() {
+    return new Iterator<>() {
+      private boolean nilPending = PackedUuidSet.this.containsNil;
+      private int index = this.advance(0);
+
+      // returns the index of the first used slot from the given index, or the table length
+      private int advance(final int from) {
+        final var slots = PackedUuidSet.this.slots;
+        var index = from;
+        while (index < slots.length && slots[index] == 0 && slots[index + 1] == 0) {
+          index += 2;
+        }
+        return index;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return this.nilPending || this.index < PackedUuidSet.this.slots.length;
+      }
+
+      @Override
+      public String next() {
+        if (this.nilPending) {
+          this.nilPending = false;
+          return new UUID(0, 0).toString();
+        }
+        final var slots = PackedUuidSet.this.slots;
+        if (this.index >= slots.length) {
+          throw new NoSuchElementException();
+        }
+        final var id = new UUID(slots[this.index], slots[this.index + 1]).toString();
+        this.index = this.advance(this.index + 2);
+        return id;
+      }
+    };
+  }
+
+  // returns the slot of the non-nil UUID, or -1 if it isn't in the set
+  private int slotOf(final long mostBits, final long leastBits) {
+    final var mask = this.slots.length / 2 - 1;
+    for (var slot = hash(mostBits, leastBits) & mask;
+         this.slots[slot * 2] != 0 || this.slots[slot * 2 + 1] != 0;
+         slot = (slot + 1) & mask) {
+      if (this.slots[slot * 2] == mostBits && this.slots[slot * 2 + 1] == leastBits) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private void resize(final int capacity) {
+    final var oldSlots = this.slots;
+    this.slots = new long[capacity * 2];
+    final var mask = capacity - 1;
+    for (var i = 0; i < oldSlots.length; i += 2) {
+      if (oldSlots[i] != 0 || oldSlots[i + 1] != 0) {
+        var slot = hash(oldSlots[i], oldSlots[i + 1]) & mask;
+        while (this.slots[slot * 2] != 0 || this.slots[slot * 2 + 1] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        this.slots[slot * 2] = oldSlots[i];
+        this.slots[slot * 2 + 1] = oldSlots[i + 1];
+      }
+    }
+  }
+
+  @FunctionalInterface
+  public interface UuidConsumer {
+    void accept(final long mostBits, final long leastBits);
+  }
+}
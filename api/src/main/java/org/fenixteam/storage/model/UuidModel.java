@@ -0,0 +1,24 @@
+package org.fenixteam.storage.model;
+
+import java.util.UUID;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Model identified by a UUID. Its id is the canonical form of the UUID, so the repositories which
+ * know about this interface can key the model by the two halves of the UUID instead of a string.
+ */
+public interface UuidModel extends Model {
+  long mostBits();
+
+  long leastBits();
+
+  default @NotNull UUID uuid() {
+    return new UUID(this.mostBits(), this.leastBits());
+  }
+
+  @Override
+  default @NotNull String id() {
+    return this.uuid()
+             .toString();
+  }
+}
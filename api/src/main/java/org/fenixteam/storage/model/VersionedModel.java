@@ -0,0 +1,42 @@
+package org.fenixteam.storage.model;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Model carrying a version stamp for the optimistic concurrency of
+ * {@link org.fenixteam.storage.repository.ModelRepository#compareAndSaveSync(Model, long)}. The
+ * serializers must write the version to the {@link #VERSION_FIELD} field, so the backends can
+ * compare it without deserializing the stored model.
+ */
+public interface VersionedModel extends Model {
+  String VERSION_FIELD = "version";
+
+  /**
+   * Version which means that the model was never stored.
+   */
+  long NO_VERSION = 0;
+
+  long version();
+
+  /**
+   * Checks the version of a model stored in memory.
+   *
+   * @param stored the stored model, or null if there is none
+   * @param expectedVersion the expected version, {@link #NO_VERSION} if no model should be stored
+   * @return true if the stored model has the expected version
+   * @throws IllegalArgumentException if a version is expected and the stored model isn't versioned
+   */
+  static boolean hasVersion(final @Nullable Model stored, final long expectedVersion) {
+    if (stored == null) {
+      return expectedVersion == NO_VERSION;
+    }
+    // any stored model fails an insert, versioned or not
+    if (expectedVersion == NO_VERSION) {
+      return false;
+    }
+    if (!(stored instanceof VersionedModel versioned)) {
+      throw new IllegalArgumentException("The model " + stored.id() + " isn't versioned");
+    }
+    return versioned.version() == expectedVersion;
+  }
+}
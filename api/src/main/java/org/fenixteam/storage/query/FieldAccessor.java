@@ -0,0 +1,15 @@
+package org.fenixteam.storage.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads the value of a field of a model, or of its serialized form, for the in-memory evaluation of
+ * the queries.
+ *
+ * @param <T> the type of the read elements
+ */
+@FunctionalInterface
+public interface FieldAccessor<T> {
+  @Nullable Object get(final @NotNull T element, final @NotNull String field);
+}
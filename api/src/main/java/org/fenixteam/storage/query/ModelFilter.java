@@ -0,0 +1,79 @@
+package org.fenixteam.storage.query;
+
+import java.util.Collection;
+import java.util.List;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Condition over the fields of a model. Nested fields are separated by dots and the values are
+ * compared numerically when both sides are numbers, or by their string representation otherwise.
+ */
+public sealed interface ModelFilter permits ModelFilter.Comparison, ModelFilter.In, ModelFilter.And {
+  @Contract("_, _ -> new")
+  static @NotNull ModelFilter eq(final @NotNull String field, final @NotNull Object value) {
+    return new Comparison(field, Operator.EQ, value);
+  }
+
+  @Contract("_, _ -> new")
+  static @NotNull ModelFilter ne(final @NotNull String field, final @NotNull Object value) {
+    return new Comparison(field, Operator.NE, value);
+  }
+
+  @Contract("_, _ -> new")
+  static @NotNull ModelFilter gt(final @NotNull String field, final @NotNull Object value) {
+    return new Comparison(field, Operator.GT, value);
+  }
+
+  @Contract("_, _ -> new")
+  static @NotNull ModelFilter gte(final @NotNull String field, final @NotNull Object value) {
+    return new Comparison(field, Operator.GTE, value);
+  }
+
+  @Contract("_, _ -> new")
+  static @NotNull ModelFilter lt(final @NotNull String field, final @NotNull Object value) {
+    return new Comparison(field, Operator.LT, value);
+  }
+
+  @Contract("_, _ -> new")
+  static @NotNull ModelFilter lte(final @NotNull String field, final @NotNull Object value) {
+    return new Comparison(field, Operator.LTE, value);
+  }
+
+  @Contract("_, _, _ -> new")
+  static @NotNull ModelFilter between(
+    final @NotNull String field,
+    final @NotNull Object from,
+    final @NotNull Object to
+  ) {
+    return and(gte(field, from), lt(field, to));
+  }
+
+  @Contract("_, _ -> new")
+  static @NotNull ModelFilter in(final @NotNull String field, final @NotNull Collection<?> values) {
+    return new In(field, List.copyOf(values));
+  }
+
+  @Contract("_ -> new")
+  static @NotNull ModelFilter and(final @NotNull ModelFilter... filters) {
+    return new And(List.of(filters));
+  }
+
+  enum Operator {
+    EQ,
+    NE,
+    GT,
+    GTE,
+    LT,
+    LTE
+  }
+
+  record Comparison(@NotNull String field, @NotNull Operator operator, @NotNull Object value) implements ModelFilter {
+  }
+
+  record In(@NotNull String field, @NotNull List<?> values) implements ModelFilter {
+  }
+
+  record And(@NotNull List<ModelFilter> filters) implements ModelFilter {
+  }
+}
@@ -0,0 +1,63 @@
+package org.fenixteam.storage.query;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import org.fenixteam.storage.model.Model;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Page of models read with a continuation token. The token is opaque to the callers: each backend
+ * stores its own position in it (the last id of the page, a SCAN cursor, ...), so reading the next
+ * page costs the same however deep the page is.
+ *
+ * @param models the models of this page
+ * @param nextToken the token of the next page, or null if this is the last one
+ * @param <ModelType> the type of the models
+ */
+public record ModelPage<ModelType extends Model>(
+  @NotNull List<ModelType> models,
+  @Nullable String nextToken
+) {
+  private static final Base64.Encoder TOKEN_ENCODER = Base64.getUrlEncoder()
+                                                        .withoutPadding();
+  private static final Base64.Decoder TOKEN_DECODER = Base64.getUrlDecoder();
+
+  @Contract("_, _ -> new")
+  public static <T extends Model> @NotNull ModelPage<T> of(
+    final @NotNull List<T> models,
+    final @Nullable String position
+  ) {
+    return new ModelPage<>(models, position == null ? null : encodeToken(position));
+  }
+
+  public boolean hasNext() {
+    return this.nextToken != null;
+  }
+
+  public static @NotNull String encodeToken(final @NotNull String position) {
+    return TOKEN_ENCODER.encodeToString(position.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodes the backend position stored in a token.
+   *
+   * @param token the token, or null for the first page
+   * @return the position, or null for the first page
+   * @throws IllegalArgumentException if the token is malformed
+   */
+  public static @Nullable String decodeToken(final @Nullable String token) {
+    if (token == null) {
+      return null;
+    }
+    return new String(TOKEN_DECODER.decode(token), StandardCharsets.UTF_8);
+  }
+
+  public static void checkPageSize(final int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("The page size must be positive");
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package org.fenixteam.storage.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Query over the models of a repository: an optional filter, the sort order, how many of the
+ * sorted models are skipped and returned and which fields are loaded. Backends which can't push a
+ * part of the query down evaluate it in memory.
+ */
+@SuppressWarnings("unused")
+public final class ModelQuery {
+  private static final ModelQuery ALL = new ModelQuery(null, List.of(), 0, 0, List.of());
+  private final ModelFilter filter;
+  private final List<ModelSort> sorts;
+  private final int skip;
+  private final int limit;
+  private final List<String> projection;
+
+  private ModelQuery(
+    final @Nullable ModelFilter filter,
+    final @NotNull List<ModelSort> sorts,
+    final int skip,
+    final int limit,
+    final @NotNull List<String> projection
+  ) {
+    this.filter = filter;
+    this.sorts = sorts;
+    this.skip = skip;
+    this.limit = limit;
+    this.projection = projection;
+  }
+
+  public static @NotNull ModelQuery all() {
+    return ALL;
+  }
+
+  @Contract(" -> new")
+  public static @NotNull Builder builder() {
+    return new Builder();
+  }
+
+  public @Nullable ModelFilter filter() {
+    return this.filter;
+  }
+
+  public @NotNull List<ModelSort> sorts() {
+    return this.sorts;
+  }
+
+  public int skip() {
+    return this.skip;
+  }
+
+  /**
+   * Returns the max amount of returned models.
+   *
+   * @return the limit, or 0 if the amount isn't limited
+   */
+  public int limit() {
+    return this.limit;
+  }
+
+  /**
+   * Returns the fields loaded from the backend, besides the id. The deserializer must tolerate the
+   * missing fields when it isn't empty.
+   *
+   * @return the projected fields, or an empty list to load every field
+   */
+  public @NotNull List<String> projection() {
+    return this.projection;
+  }
+
+  /**
+   * Returns the query of the first {@code skip + limit} models of this one, which every partition
+   * of a table must return so the page of this query can be computed by merging them.
+   *
+   * @return the query without skip, this one if it doesn't skip any model
+   */
+  public @NotNull ModelQuery prefix() {
+    if (this.skip == 0) {
+      return this;
+    }
+    final var limit = this.limit == 0 ? 0 : (int) Math.min(Integer.MAX_VALUE, (long) this.skip + this.limit);
+    return new ModelQuery(this.filter, this.sorts, 0, limit, this.projection);
+  }
+
+  public static class Builder {
+    private ModelFilter filter;
+    private final List<ModelSort> sorts = new ArrayList<>();
+    private int skip;
+    private int limit;
+    private final List<String> projection = new ArrayList<>();
+
+    protected Builder() {
+    }
+
+    @Contract("_ -> this")
+    public @NotNull Builder filter(final @NotNull ModelFilter filter) {
+      this.filter = this.filter == null ? filter : ModelFilter.and(this.filter, filter);
+      return this;
+    }
+
+    @Contract("_ -> this")
+    public @NotNull Builder sort(final @NotNull ModelSort sort) {
+      this.sorts.add(sort);
+      return this;
+    }
+
+    @Contract("_ -> this")
+    public @NotNull Builder skip(final int skip) {
+      if (skip < 0) {
+        throw new IllegalArgumentException("The skip must not be negative");
+      }
+      this.skip = skip;
+      return this;
+    }
+
+    @Contract("_ -> this")
+    public @NotNull Builder limit(final int limit) {
+      if (limit < 0) {
+        throw new IllegalArgumentException("The limit must not be negative");
+      }
+      this.limit = limit;
+      return this;
+    }
+
+    @Contract("_ -> this")
+    public @NotNull Builder projection(final @NotNull String... fields) {
+      this.projection.addAll(List.of(fields));
+      return this;
+    }
+
+    @Contract(" -> new")
+    public @NotNull ModelQuery build() {
+      return new ModelQuery(this.filter, List.copyOf(this.sorts), this.skip, this.limit, List.copyOf(this.projection));
+    }
+  }
+}
@@ -0,0 +1,16 @@
+package org.fenixteam.storage.query;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+public record ModelSort(@NotNull String field, boolean ascending) {
+  @Contract("_ -> new")
+  public static @NotNull ModelSort ascending(final @NotNull String field) {
+    return new ModelSort(field, true);
+  }
+
+  @Contract("_ -> new")
+  public static @NotNull ModelSort descending(final @NotNull String field) {
+    return new ModelSort(field, false);
+  }
+}
@@ -0,0 +1,85 @@
+package org.fenixteam.storage.query;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Applies a query to a sequence of elements offered one by one. With a sort and a limit only the
+ * best {@code skip + limit} elements are kept in a bounded heap, so top-N queries don't hold the
+ * whole table in memory; without a sort it asks to stop as soon as the page is complete.
+ *
+ * @param <T> the type of the collected elements
+ */
+public final class QueryCollector<T> {
+  private final ModelQuery query;
+  private final FieldAccessor<T> accessor;
+  private final Comparator<T> comparator;
+  private final int capacity;
+  private final List<T> elements;
+  private final PriorityQueue<T> heap;
+
+  public QueryCollector(final @NotNull ModelQuery query, final @NotNull FieldAccessor<T> accessor) {
+    this.query = query;
+    this.accessor = accessor;
+    this.comparator = QueryEvaluator.comparator(query.sorts(), accessor);
+    this.capacity = query.limit() == 0 ? Integer.MAX_VALUE : (int) Math.min(
+      Integer.MAX_VALUE,
+      (long) query.skip() + query.limit());
+    if (this.comparator != null && query.limit() != 0) {
+      // the worst kept element is at the head, ready to be replaced
+      this.heap = new PriorityQueue<>(Math.min(this.capacity, 1024) + 1, this.comparator.reversed());
+      this.elements = null;
+    } else {
+      this.heap = null;
+      this.elements = new ArrayList<>();
+    }
+  }
+
+  /**
+   * Offers an element, which is kept if it matches the filter of the query.
+   *
+   * @param element the offered element
+   * @return false if no more elements are needed
+   */
+  public boolean offer(final @NotNull T element) {
+    if (!QueryEvaluator.matches(this.query.filter(), element, this.accessor)) {
+      return true;
+    }
+    if (this.heap != null) {
+      if (this.heap.size() < this.capacity) {
+        this.heap.add(element);
+      } else if (this.comparator.compare(element, this.heap.peek()) < 0) {
+        this.heap.poll();
+        this.heap.add(element);
+      }
+      return true;
+    }
+    this.elements.add(element);
+    return this.comparator != null || this.elements.size() < this.capacity;
+  }
+
+  /**
+   * Returns the page of the query from the offered elements, sorted, skipped and limited.
+   *
+   * @return the resulting elements
+   */
+  public @NotNull List<T> results() {
+    final List<T> sorted;
+    if (this.heap != null) {
+      sorted = new ArrayList<>(this.heap);
+      sorted.sort(this.comparator);
+    } else {
+      sorted = this.elements;
+      if (this.comparator != null) {
+        sorted.sort(this.comparator);
+      }
+    }
+    final var from = Math.min(this.query.skip(), sorted.size());
+    final var limit = this.query.limit() == 0 ? Integer.MAX_VALUE : this.query.limit();
+    final var to = (int) Math.min(sorted.size(), (long) from + limit);
+    return sorted.subList(from, to);
+  }
+}
@@ -0,0 +1,147 @@
+package org.fenixteam.storage.query;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import org.fenixteam.storage.query.ModelFilter.Operator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * In-memory evaluation of the queries for the backends which can't push them down.
+ */
+public final class QueryEvaluator {
+  private QueryEvaluator() {
+    throw new UnsupportedOperationException("This class cannot be instantiated");
+  }
+
+  public static <T> boolean matches(
+    final @Nullable ModelFilter filter,
+    final @NotNull T element,
+    final @NotNull FieldAccessor<T> accessor
+  ) {
+    if (filter == null) {
+      return true;
+    }
+    if (filter instanceof ModelFilter.And and) {
+      for (final var child : and.filters()) {
+        if (!matches(child, element, accessor)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (filter instanceof ModelFilter.In in) {
+      final var value = accessor.get(element, in.field());
+      if (value == null) {
+        return false;
+      }
+      for (final var candidate : in.values()) {
+        if (anyMatches(value, Operator.EQ, candidate)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    final var comparison = (ModelFilter.Comparison) filter;
+    final var value = accessor.get(element, comparison.field());
+    if (value == null) {
+      // a missing field is only different to any value
+      return comparison.operator() == Operator.NE;
+    }
+    if (comparison.operator() == Operator.NE) {
+      return !anyMatches(value, Operator.EQ, comparison.value());
+    }
+    return anyMatches(value, comparison.operator(), comparison.value());
+  }
+
+  // collections match when any of their elements does, like the array fields of MongoDB
+  private static boolean anyMatches(
+    final @NotNull Object value,
+    final @NotNull Operator operator,
+    final @NotNull Object expected
+  ) {
+    if (value instanceof Collection<?> values) {
+      for (final var element : values) {
+        if (element != null && anyMatches(element, operator, expected)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    final var result = compareValues(value, expected);
+    return switch (operator) {
+      case EQ -> result == 0;
+      case NE -> result != 0;
+      case GT -> result > 0;
+      case GTE -> result >= 0;
+      case LT -> result < 0;
+      case LTE -> result <= 0;
+    };
+  }
+
+  /**
+   * Creates a comparator following the given sort order, placing the elements without the sorted
+   * field at the end.
+   *
+   * @param sorts the sort order
+   * @param accessor the accessor of the sorted fields
+   * @param <T> the type of the sorted elements
+   * @return the comparator, or null if there is nothing to sort
+   */
+  public static <T> @Nullable Comparator<T> comparator(
+    final @NotNull List<ModelSort> sorts,
+    final @NotNull FieldAccessor<T> accessor
+  ) {
+    if (sorts.isEmpty()) {
+      return null;
+    }
+    return (first, second) -> {
+      for (final var sort : sorts) {
+        final var firstValue = accessor.get(first, sort.field());
+        final var secondValue = accessor.get(second, sort.field());
+        final int result;
+        if (firstValue == null || secondValue == null) {
+          result = firstValue == secondValue ? 0 : firstValue == null ? 1 : -1;
+        } else {
+          final var comparison = compareValues(firstValue, secondValue);
+          result = sort.ascending() ? comparison : -comparison;
+        }
+        if (result != 0) {
+          return result;
+        }
+      }
+      return 0;
+    };
+  }
+
+  public static int compareValues(final @NotNull Object first, final @NotNull Object second) {
+    if (first instanceof Number firstNumber && second instanceof Number secondNumber) {
+      return compareNumbers(firstNumber, secondNumber);
+    }
+    if (first instanceof Boolean firstBoolean && second instanceof Boolean secondBoolean) {
+      return firstBoolean.compareTo(secondBoolean);
+    }
+    return first.toString()
+             .compareTo(second.toString());
+  }
+
+  private static int compareNumbers(final @NotNull Number first, final @NotNull Number second) {
+    if (isIntegral(first) && isIntegral(second)) {
+      return Long.compare(first.longValue(), second.longValue());
+    }
+    final var firstDouble = first.doubleValue();
+    final var secondDouble = second.doubleValue();
+    if (Double.isNaN(firstDouble) || Double.isInfinite(firstDouble)
+        || Double.isNaN(secondDouble) || Double.isInfinite(secondDouble)) {
+      return Double.compare(firstDouble, secondDouble);
+    }
+    // the exact comparison also covers lazily parsed json numbers and longs beyond double precision
+    return new BigDecimal(first.toString()).compareTo(new BigDecimal(second.toString()));
+  }
+
+  private static boolean isIntegral(final @NotNull Number number) {
+    return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+  }
+}
@@ -6,6 +6,9 @@ import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.query.ModelFilter;
+import org.fenixteam.storage.query.ModelPage;
+import org.fenixteam.storage.query.ModelQuery;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -30,6 +33,14 @@ public abstract class AbstractAsyncModelRepository<ModelType extends Model> impl
     return CompletableFuture.supplyAsync(() -> this.findSync(field, value, factory), this.executor);
   }
 
+  @Override
+  public @NotNull <C extends Collection<ModelType>> CompletableFuture<@NotNull C> findMany(
+    final @NotNull Collection<String> ids,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    return CompletableFuture.supplyAsync(() -> this.findManySync(ids, factory), this.executor);
+  }
+
   @Override
   public @NotNull <C extends Collection<ModelType>> CompletableFuture<@Nullable C> findAll(
     final @NotNull Function<Integer, C> factory
@@ -50,6 +61,23 @@ public abstract class AbstractAsyncModelRepository<ModelType extends Model> impl
     return CompletableFuture.supplyAsync(this::findIdsSync, this.executor);
   }
 
+  @Override
+  public @NotNull <C extends Collection<ModelType>> CompletableFuture<@NotNull C> query(
+    final @NotNull ModelQuery query,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    return CompletableFuture.supplyAsync(() -> this.querySync(query, factory), this.executor);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull ModelPage<ModelType>> findPage(
+    final @Nullable ModelFilter filter,
+    final @Nullable String token,
+    final int pageSize
+  ) {
+    return CompletableFuture.supplyAsync(() -> this.findPageSync(filter, token, pageSize), this.executor);
+  }
+
   @Override
   public @NotNull CompletableFuture<@NotNull Boolean> exists(final @NotNull String id) {
     return CompletableFuture.supplyAsync(() -> this.existsSync(id), this.executor);
@@ -60,6 +88,19 @@ public abstract class AbstractAsyncModelRepository<ModelType extends Model> impl
     return CompletableFuture.supplyAsync(() -> this.saveSync(model), this.executor);
   }
 
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> compareAndSave(
+    final @NotNull ModelType model,
+    final long expectedVersion
+  ) {
+    return CompletableFuture.supplyAsync(() -> this.compareAndSaveSync(model, expectedVersion), this.executor);
+  }
+
+  @Override
+  public @NotNull <C extends Collection<ModelType>> CompletableFuture<@NotNull C> saveMany(final @NotNull C models) {
+    return CompletableFuture.supplyAsync(() -> this.saveManySync(models), this.executor);
+  }
+
   @Override
   public @NotNull CompletableFuture<@NotNull Boolean> delete(final @NotNull ModelType model) {
     return CompletableFuture.supplyAsync(() -> this.deleteSync(model), this.executor);
@@ -69,4 +110,9 @@ public abstract class AbstractAsyncModelRepository<ModelType extends Model> impl
   public @NotNull CompletableFuture<@NotNull Boolean> delete(final @NotNull String id) {
     return CompletableFuture.supplyAsync(() -> this.deleteSync(id), this.executor);
   }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Integer> deleteMany(final @NotNull Collection<String> ids) {
+    return CompletableFuture.supplyAsync(() -> this.deleteManySync(ids), this.executor);
+  }
 }
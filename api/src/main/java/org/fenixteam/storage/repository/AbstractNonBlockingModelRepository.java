@@ -0,0 +1,128 @@
+package org.fenixteam.storage.repository;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.query.ModelFilter;
+import org.fenixteam.storage.query.ModelPage;
+import org.fenixteam.storage.query.ModelQuery;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Base class for repositories whose backend driver is natively asynchronous. The asynchronous
+ * methods never hold a thread while waiting for the backend, and the synchronous methods just wait
+ * for them.
+ *
+ * @param <ModelType> the type of the stored models
+ */
+public abstract class AbstractNonBlockingModelRepository<ModelType extends Model>
+  implements AsyncModelRepository<ModelType> {
+  @Override
+  public @Nullable ModelType findSync(final @NotNull String id) {
+    return join(this.find(id));
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @Nullable C findSync(
+    final @NotNull String field,
+    final @NotNull String value,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    return join(this.find(field, value, factory));
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C findManySync(
+    final @NotNull Collection<String> ids,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    return join(this.findMany(ids, factory));
+  }
+
+  @Override
+  public @Nullable Collection<String> findIdsSync() {
+    return join(this.findIds());
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @Nullable C findAllSync(
+    final @NotNull Consumer<ModelType> postLoadAction,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    return join(this.findAll(postLoadAction, factory));
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C querySync(
+    final @NotNull ModelQuery query,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    return join(this.query(query, factory));
+  }
+
+  @Override
+  public @NotNull ModelPage<ModelType> findPageSync(
+    final @Nullable ModelFilter filter,
+    final @Nullable String token,
+    final int pageSize
+  ) {
+    return join(this.findPage(filter, token, pageSize));
+  }
+
+  @Override
+  public boolean existsSync(final @NotNull String id) {
+    return join(this.exists(id));
+  }
+
+  @Override
+  public @NotNull ModelType saveSync(final @NotNull ModelType model) {
+    return join(this.save(model));
+  }
+
+  @Override
+  public boolean compareAndSaveSync(final @NotNull ModelType model, final long expectedVersion) {
+    return join(this.compareAndSave(model, expectedVersion));
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C saveManySync(final @NotNull C models) {
+    return join(this.saveMany(models));
+  }
+
+  @Override
+  public boolean deleteSync(final @NotNull String id) {
+    return join(this.delete(id));
+  }
+
+  @Override
+  public int deleteManySync(final @NotNull Collection<String> ids) {
+    return join(this.deleteMany(ids));
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@Nullable C> findAll(
+    final @NotNull Function<Integer, C> factory
+  ) {
+    return this.findAll(modelType -> { }, factory);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> delete(final @NotNull ModelType model) {
+    return this.delete(model.id());
+  }
+
+  protected static <T> T join(final @NotNull CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (final CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+}
@@ -5,6 +5,9 @@ import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.query.ModelFilter;
+import org.fenixteam.storage.query.ModelPage;
+import org.fenixteam.storage.query.ModelQuery;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -18,6 +21,11 @@ public interface AsyncModelRepository<ModelType extends Model> extends ModelRepo
     final @NotNull Function<Integer, C> factory
   );
 
+  <C extends Collection<ModelType>> @NotNull CompletableFuture<@NotNull C> findMany(
+    final @NotNull Collection<String> ids,
+    final @NotNull Function<Integer, C> factory
+  );
+
   @NotNull CompletableFuture<@Nullable Collection<String>> findIds();
 
   <C extends Collection<ModelType>> @NotNull CompletableFuture<@Nullable C> findAll(
@@ -29,11 +37,31 @@ public interface AsyncModelRepository<ModelType extends Model> extends ModelRepo
     final @NotNull Function<Integer, C> factory
   );
 
+  <C extends Collection<ModelType>> @NotNull CompletableFuture<@NotNull C> query(
+    final @NotNull ModelQuery query,
+    final @NotNull Function<Integer, C> factory
+  );
+
+  @NotNull CompletableFuture<@NotNull ModelPage<ModelType>> findPage(
+    final @Nullable ModelFilter filter,
+    final @Nullable String token,
+    final int pageSize
+  );
+
   @NotNull CompletableFuture<@NotNull Boolean> exists(final @NotNull String id);
 
   @NotNull CompletableFuture<@NotNull ModelType> save(final @NotNull ModelType model);
 
+  @NotNull CompletableFuture<@NotNull Boolean> compareAndSave(
+    final @NotNull ModelType model,
+    final long expectedVersion
+  );
+
+  <C extends Collection<ModelType>> @NotNull CompletableFuture<@NotNull C> saveMany(final @NotNull C models);
+
   @NotNull CompletableFuture<@NotNull Boolean> delete(final @NotNull ModelType model);
 
   @NotNull CompletableFuture<@NotNull Boolean> delete(final @NotNull String id);
+
+  @NotNull CompletableFuture<@NotNull Integer> deleteMany(final @NotNull Collection<String> ids);
 }
@@ -0,0 +1,147 @@
+package org.fenixteam.storage.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Options of the warm up of a {@link CachedModelRepository}: the ids are split in partitions which
+ * are fetched from the persistent repository and saved in the cache by up to {@code parallelism}
+ * workers. The hot ids are loaded before the rest of the repository, so the caller can start
+ * serving once {@link Listener#hotSetLoaded(int)} is called.
+ */
+@SuppressWarnings("unused")
+public final class CacheWarmUp {
+  private final int parallelism;
+  private final int partitionSize;
+  private final List<String> hotIds;
+  private final Predicate<String> idFilter;
+  private final Listener listener;
+
+  private CacheWarmUp(
+    final int parallelism,
+    final int partitionSize,
+    final @NotNull List<String> hotIds,
+    final @Nullable Predicate<String> idFilter,
+    final @NotNull Listener listener
+  ) {
+    this.parallelism = parallelism;
+    this.partitionSize = partitionSize;
+    this.hotIds = hotIds;
+    this.idFilter = idFilter;
+    this.listener = listener;
+  }
+
+  @Contract(" -> new")
+  public static @NotNull Builder builder() {
+    return new Builder();
+  }
+
+  public int parallelism() {
+    return this.parallelism;
+  }
+
+  public int partitionSize() {
+    return this.partitionSize;
+  }
+
+  public @NotNull List<String> hotIds() {
+    return this.hotIds;
+  }
+
+  /**
+   * Returns the filter of the loaded ids, applied to the hot ids too.
+   *
+   * @return the filter, or null if every id is loaded
+   */
+  public @Nullable Predicate<String> idFilter() {
+    return this.idFilter;
+  }
+
+  public @NotNull Listener listener() {
+    return this.listener;
+  }
+
+  /**
+   * Receives the progress of a warm up. The methods are called from the workers of the warm up, so
+   * they must be thread-safe.
+   */
+  public interface Listener {
+    Listener NOOP = new Listener() {
+    };
+
+    default void hotSetLoaded(final int models) {
+    }
+
+    /**
+     * Called after every partition of the ids which aren't hot.
+     *
+     * @param processedIds the amount of processed ids, including the ones that were already cached
+     * @param totalIds the amount of ids to process, excluding the hot ones
+     */
+    default void progress(final int processedIds, final int totalIds) {
+    }
+  }
+
+  public static class Builder {
+    private int parallelism = Runtime.getRuntime()
+                                .availableProcessors();
+    private int partitionSize = 500;
+    private final List<String> hotIds = new ArrayList<>();
+    private Predicate<String> idFilter;
+    private Listener listener = Listener.NOOP;
+
+    protected Builder() {
+    }
+
+    @Contract("_ -> this")
+    public @NotNull Builder parallelism(final int parallelism) {
+      if (parallelism <= 0) {
+        throw new IllegalArgumentException("The parallelism must be positive");
+      }
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    @Contract("_ -> this")
+    public @NotNull Builder partitionSize(final int partitionSize) {
+      if (partitionSize <= 0) {
+        throw new IllegalArgumentException("The partition size must be positive");
+      }
+      this.partitionSize = partitionSize;
+      return this;
+    }
+
+    @Contract("_ -> this")
+    public @NotNull Builder hotIds(final @NotNull Collection<String> ids) {
+      this.hotIds.addAll(ids);
+      return this;
+    }
+
+    @Contract("_ -> this")
+    public @NotNull Builder idFilter(final @NotNull Predicate<String> idFilter) {
+      this.idFilter = this.idFilter == null ? idFilter : this.idFilter.and(idFilter);
+      return this;
+    }
+
+    @Contract("_ -> this")
+    public @NotNull Builder listener(final @NotNull Listener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    @Contract(" -> new")
+    public @NotNull CacheWarmUp build() {
+      return new CacheWarmUp(
+        this.parallelism,
+        this.partitionSize,
+        List.copyOf(this.hotIds),
+        this.idFilter,
+        this.listener);
+    }
+  }
+}
@@ -1,12 +1,31 @@
 package org.fenixteam.storage.repository;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import org.fenixteam.storage.concurrent.ParallelTasks;
+import org.fenixteam.storage.metrics.ModelRepositoryMetrics;
 import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.model.VersionedModel;
+import org.fenixteam.storage.query.ModelFilter;
+import org.fenixteam.storage.query.ModelPage;
+import org.fenixteam.storage.query.ModelQuery;
+import org.fenixteam.storage.repository.snapshot.ModelSnapshotCodec;
+import org.fenixteam.storage.repository.snapshot.ModelSnapshots;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -15,15 +34,103 @@ import org.jetbrains.annotations.Nullable;
 public class CachedModelRepository<ModelType extends Model> extends AbstractAsyncModelRepository<ModelType> {
   protected final ModelRepository<ModelType> cacheModelRepository;
   protected final ModelRepository<ModelType> persistModelRepository;
+  private final WriteBehindQueue<ModelType> writeBehindQueue;
+  private final Map<String, CompletableFuture<ModelType>> inFlightLoads;
+  private final MissingIdCache missingIdCache;
+  private final ModelRepositoryMetrics metrics;
+  private final @Nullable ModelInvalidationBus invalidationBus;
+  private final boolean refreshOnInvalidation;
+  private volatile boolean conditionalCacheWrites = true;
 
   public CachedModelRepository(
     final @NotNull Executor executor,
     final @NotNull ModelRepository<ModelType> cacheModelRepository,
     final @NotNull ModelRepository<ModelType> persistModelRepository
+  ) {
+    this(
+      executor,
+      cacheModelRepository,
+      persistModelRepository,
+      null,
+      0,
+      0,
+      0,
+      0,
+      ModelRepositoryMetrics.NOOP);
+  }
+
+  protected CachedModelRepository(
+    final @NotNull Executor executor,
+    final @NotNull ModelRepository<ModelType> cacheModelRepository,
+    final @NotNull ModelRepository<ModelType> persistModelRepository,
+    final @Nullable ScheduledExecutorService writeBehindScheduler,
+    final long writeBehindPeriodMillis,
+    final int writeBehindBatchSize,
+    final int negativeCacheMaximumSize,
+    final long negativeCacheExpireAfterNanos,
+    final @NotNull ModelRepositoryMetrics metrics
+  ) {
+    this(
+      executor,
+      cacheModelRepository,
+      persistModelRepository,
+      writeBehindScheduler,
+      writeBehindPeriodMillis,
+      writeBehindBatchSize,
+      negativeCacheMaximumSize,
+      negativeCacheExpireAfterNanos,
+      metrics,
+      null,
+      false);
+  }
+
+  protected CachedModelRepository(
+    final @NotNull Executor executor,
+    final @NotNull ModelRepository<ModelType> cacheModelRepository,
+    final @NotNull ModelRepository<ModelType> persistModelRepository,
+    final @Nullable ScheduledExecutorService writeBehindScheduler,
+    final long writeBehindPeriodMillis,
+    final int writeBehindBatchSize,
+    final int negativeCacheMaximumSize,
+    final long negativeCacheExpireAfterNanos,
+    final @NotNull ModelRepositoryMetrics metrics,
+    final @Nullable ModelInvalidationBus invalidationBus,
+    final boolean refreshOnInvalidation
   ) {
     super(executor);
     this.cacheModelRepository = cacheModelRepository;
     this.persistModelRepository = persistModelRepository;
+    this.metrics = metrics;
+    this.inFlightLoads = new ConcurrentHashMap<>();
+    if (negativeCacheMaximumSize <= 0 || negativeCacheExpireAfterNanos <= 0) {
+      this.missingIdCache = null;
+    } else {
+      this.missingIdCache = new MissingIdCache(negativeCacheMaximumSize, negativeCacheExpireAfterNanos);
+    }
+    if (writeBehindScheduler == null) {
+      this.writeBehindQueue = null;
+    } else {
+      this.writeBehindQueue = new WriteBehindQueue<>(
+        persistModelRepository,
+        writeBehindScheduler,
+        writeBehindPeriodMillis,
+        writeBehindBatchSize,
+        invalidationBus == null ? null : this::publishInvalidation);
+    }
+    this.invalidationBus = invalidationBus;
+    this.refreshOnInvalidation = refreshOnInvalidation;
+    if (invalidationBus != null) {
+      invalidationBus.subscribe(this::invalidate);
+    }
+  }
+
+  @Contract("_, _, _ -> new")
+  public static <T extends Model> @NotNull CachedModelRepositoryBuilder<T> builder(
+    final @NotNull Executor executor,
+    final @NotNull ModelRepository<T> cacheModelRepository,
+    final @NotNull ModelRepository<T> persistModelRepository
+  ) {
+    return new CachedModelRepositoryBuilder<>(executor, cacheModelRepository, persistModelRepository);
   }
 
   public @NotNull ModelRepository<ModelType> cacheModelRepository() {
@@ -34,11 +141,16 @@ public class CachedModelRepository<ModelType extends Model> extends AbstractAsyn
     return this.persistModelRepository;
   }
 
+  public @NotNull ModelRepositoryMetrics metrics() {
+    return this.metrics;
+  }
+
   public @Nullable ModelType findAndCacheSync(final @NotNull String id) {
     final var model = this.findSync(id);
     if (model == null) {
       return null;
     }
+    this.forgetMissing(id);
     this.cacheModelRepository.saveSync(model);
     return model;
   }
@@ -48,24 +160,43 @@ public class CachedModelRepository<ModelType extends Model> extends AbstractAsyn
   }
 
   public @Nullable ModelType findInBothSync(final @NotNull String id) {
+    final var missingEpoch = this.missingEpoch(id);
     final var model = this.findInCacheSync(id);
     if (model != null) {
+      this.metrics.recordCacheHits(1);
       return model;
     }
-    return this.findSync(id);
+    this.metrics.recordCacheMisses(1);
+    final var pendingModel = this.pendingWrite(id);
+    if (pendingModel != null) {
+      return pendingModel;
+    }
+    if (this.isKnownMissing(id)) {
+      return null;
+    }
+    final var foundModel = this.findSync(id);
+    if (foundModel == null) {
+      this.rememberMissing(id, missingEpoch);
+    }
+    return foundModel;
   }
 
   public @Nullable ModelType findInBothAndCacheSync(final @NotNull String id) {
     final var cachedModel = this.findInCacheSync(id);
     if (cachedModel != null) {
+      this.metrics.recordCacheHits(1);
       return cachedModel;
     }
-    final var foundModel = this.findSync(id);
-    if (foundModel == null) {
-      return null;
+    this.metrics.recordCacheMisses(1);
+    final var load = this.loadAndCache(id);
+    try {
+      return load.join();
+    } catch (final CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
     }
-    this.cacheModelRepository.saveSync(foundModel);
-    return foundModel;
   }
 
   public @Nullable Collection<String> findAllCachedIdsSync() {
@@ -92,15 +223,220 @@ public class CachedModelRepository<ModelType extends Model> extends AbstractAsyn
       return null;
     }
     for (final var model : models) {
-      this.cacheModelRepository.saveSync(model);
+      this.forgetMissing(model.id());
     }
+    this.cacheModelRepository.saveManySync(models);
     return models;
   }
 
+  /**
+   * Loads the models of the persistent repository in the cache, the hot ids first and then the
+   * rest of the ids, in partitions fetched by parallel workers. The ids which are already cached
+   * or have a pending write when their partition is processed are skipped, so the models loaded by
+   * the traffic served while warming up aren't fetched again.
+   *
+   * @param warmUp the options of the warm up
+   * @return the amount of models loaded in the cache
+   */
+  public int warmUpSync(final @NotNull CacheWarmUp warmUp) {
+    final var idFilter = warmUp.idFilter();
+    final var listener = warmUp.listener();
+    final var hotIds = new LinkedHashSet<String>(warmUp.hotIds()
+                                                   .size());
+    for (final var id : warmUp.hotIds()) {
+      if (idFilter == null || idFilter.test(id)) {
+        hotIds.add(id);
+      }
+    }
+    final var loadedHotModels = new AtomicInteger();
+    ParallelTasks.forEach(
+      super.executor,
+      warmUp.parallelism(),
+      partition(hotIds, warmUp.partitionSize()),
+      partition -> loadedHotModels.addAndGet(this.warmUpPartition(partition)));
+    listener.hotSetLoaded(loadedHotModels.get());
+    final var persistedIds = this.persistModelRepository.findIdsSync();
+    if (persistedIds == null) {
+      return loadedHotModels.get();
+    }
+    final var ids = new ArrayList<String>(persistedIds.size());
+    for (final var id : persistedIds) {
+      if (!hotIds.contains(id) && (idFilter == null || idFilter.test(id))) {
+        ids.add(id);
+      }
+    }
+    final var loadedModels = new AtomicInteger();
+    final var processedIds = new AtomicInteger();
+    ParallelTasks.forEach(
+      super.executor,
+      warmUp.parallelism(),
+      partition(ids, warmUp.partitionSize()),
+      partition -> {
+        loadedModels.addAndGet(this.warmUpPartition(partition));
+        listener.progress(processedIds.addAndGet(partition.size()), ids.size());
+      });
+    return loadedHotModels.get() + loadedModels.get();
+  }
+
+  public int saveSnapshotSync(final @NotNull Path file, final @NotNull ModelSnapshotCodec<ModelType> codec) {
+    return ModelSnapshots.writeSync(file, codec, this.cacheModelRepository);
+  }
+
+  /**
+   * Loads the models of a snapshot of the cache, if it isn't older than the given age. The
+   * versioned models are only restored if the persistent repository stores the same version, so
+   * neither the deleted nor the updated models are restored. Each other model is only checked to
+   * still exist, so their updates stay stale until they are invalidated or the cache expires them.
+   * The ids which are already cached or have a pending write are skipped.
+   *
+   * @param file the snapshot file
+   * @param codec the codec of the models
+   * @param maxAge the max age of the snapshot
+   * @param unit the unit of the max age
+   * @return the amount of restored models
+   */
+  public int restoreSnapshotSync(
+    final @NotNull Path file,
+    final @NotNull ModelSnapshotCodec<ModelType> codec,
+    final long maxAge,
+    final @NotNull TimeUnit unit
+  ) {
+    final var models = ModelSnapshots.readSync(file, codec, maxAge, unit);
+    if (models == null || models.isEmpty()) {
+      return 0;
+    }
+    final var versionedModels = new ArrayList<ModelType>(models.size());
+    final var unversionedModels = new ArrayList<ModelType>();
+    for (final var model : models) {
+      if (model instanceof VersionedModel) {
+        versionedModels.add(model);
+      } else {
+        unversionedModels.add(model);
+      }
+    }
+    final var currentModels = this.withPersistedVersion(versionedModels);
+    currentModels.addAll(this.withPersistedId(unversionedModels));
+    final var restoredModels = new ArrayList<ModelType>(currentModels.size());
+    for (final var model : currentModels) {
+      final var id = model.id();
+      if (this.pendingWrite(id) == null &&
+          !this.cacheModelRepository.existsSync(id)) {
+        this.forgetMissing(id);
+        restoredModels.add(model);
+      }
+    }
+    return this.cacheIfAbsent(restoredModels);
+  }
+
+  // keeps the snapshot models whose version is still the persisted one
+  private @NotNull List<ModelType> withPersistedVersion(final @NotNull List<ModelType> models) {
+    if (models.isEmpty()) {
+      return new ArrayList<>();
+    }
+    final var ids = new ArrayList<String>(models.size());
+    for (final var model : models) {
+      ids.add(model.id());
+    }
+    final var versions = this.persistModelRepository.findVersionsSync(ids);
+    final var currentModels = new ArrayList<ModelType>(models.size());
+    for (final var model : models) {
+      final var version = versions.get(model.id());
+      if (version != null && version == ((VersionedModel) model).version()) {
+        currentModels.add(model);
+      }
+    }
+    return currentModels;
+  }
+
+  // keeps the snapshot models which are still persisted, checking only their ids
+  private @NotNull List<ModelType> withPersistedId(final @NotNull List<ModelType> models) {
+    if (models.isEmpty()) {
+      return List.of();
+    }
+    final var ids = new ArrayList<String>(models.size());
+    for (final var model : models) {
+      ids.add(model.id());
+    }
+    final var persistedIds = this.persistModelRepository.findExistingIdsSync(ids);
+    final var currentModels = new ArrayList<ModelType>(models.size());
+    for (final var model : models) {
+      if (persistedIds.contains(model.id())) {
+        currentModels.add(model);
+      }
+    }
+    return currentModels;
+  }
+
+  // splits the ids in lists of at most the given size
+  private static @NotNull List<List<String>> partition(final @NotNull Collection<String> ids, final int size) {
+    final var partitions = new ArrayList<List<String>>(ids.size() / size + 1);
+    var partition = new ArrayList<String>(Math.min(ids.size(), size));
+    for (final var id : ids) {
+      partition.add(id);
+      if (partition.size() == size) {
+        partitions.add(partition);
+        partition = new ArrayList<>(size);
+      }
+    }
+    if (!partition.isEmpty()) {
+      partitions.add(partition);
+    }
+    return partitions;
+  }
+
+  // loads the ids that aren't cached yet with a single bulk read and write
+  private int warmUpPartition(final @NotNull List<String> ids) {
+    final var missingIds = new ArrayList<String>(ids.size());
+    for (final var id : ids) {
+      if (this.pendingWrite(id) == null &&
+          !this.cacheModelRepository.existsSync(id)) {
+        missingIds.add(id);
+      }
+    }
+    if (missingIds.isEmpty()) {
+      return 0;
+    }
+    final var models = this.persistModelRepository.findManySync(missingIds, ArrayList::new);
+    for (final var model : models) {
+      this.forgetMissing(model.id());
+    }
+    return this.cacheIfAbsent(models);
+  }
+
+  /**
+   * Caches the models read from the persistent repository, skipping the ids a concurrent save
+   * cached meanwhile, since their cached model is newer. A cache which can't insert conditionally
+   * is written unchecked.
+   *
+   * @param models the models to cache
+   * @return the amount of cached models
+   */
+  protected int cacheIfAbsent(final @NotNull Collection<ModelType> models) {
+    var cached = 0;
+    for (final var model : models) {
+      if (this.conditionalCacheWrites) {
+        try {
+          if (this.cacheModelRepository.compareAndSaveSync(model, VersionedModel.NO_VERSION)) {
+            cached++;
+          }
+          continue;
+        } catch (final UnsupportedOperationException e) {
+          this.conditionalCacheWrites = false;
+        }
+      }
+      this.cacheModelRepository.saveSync(model);
+      cached++;
+    }
+    return cached;
+  }
+
   @Contract("_ -> param1")
   public @NotNull ModelType uploadSync(final @NotNull ModelType model) {
     this.cacheModelRepository.deleteSync(model);
+    this.discardPendingWrite(model.id());
     this.persistModelRepository.saveSync(model);
+    this.forgetMissing(model.id());
+    this.publishInvalidation(model.id());
     return model;
   }
 
@@ -109,9 +445,13 @@ public class CachedModelRepository<ModelType extends Model> extends AbstractAsyn
       model -> {
         preUploadAction.accept(model);
         this.cacheModelRepository.deleteSync(model);
+        this.discardPendingWrite(model.id());
         this.persistModelRepository.saveSync(model);
+        this.forgetMissing(model.id());
+        this.publishInvalidation(model.id());
       },
       ArrayList::new);
+    this.flushSync();
   }
 
   public boolean existsInCacheSync(final @NotNull String id) {
@@ -119,7 +459,18 @@ public class CachedModelRepository<ModelType extends Model> extends AbstractAsyn
   }
 
   public boolean existsInCacheOrPersistentSync(final @NotNull String id) {
-    return this.existsInCacheSync(id) || this.persistModelRepository.existsSync(id);
+    final var missingEpoch = this.missingEpoch(id);
+    if (this.existsInCacheSync(id)) {
+      return true;
+    }
+    if (this.isKnownMissing(id)) {
+      return false;
+    }
+    final var exists = this.persistModelRepository.existsSync(id);
+    if (!exists) {
+      this.rememberMissing(id, missingEpoch);
+    }
+    return exists;
   }
 
   public boolean existsInBothSync(final @NotNull String id) {
@@ -129,32 +480,220 @@ public class CachedModelRepository<ModelType extends Model> extends AbstractAsyn
   @Contract("_ -> param1")
   public @NotNull ModelType saveInCacheSync(final @NotNull ModelType model) {
     this.cacheModelRepository.saveSync(model);
+    this.forgetMissing(model.id());
+    if (this.writeBehindQueue != null) {
+      this.writeBehindQueue.markDirty(model);
+    }
     return model;
   }
 
   @Contract("_ -> param1")
   public @NotNull ModelType saveInBothSync(final @NotNull ModelType model) {
     this.cacheModelRepository.saveSync(model);
+    this.discardPendingWrite(model.id());
     this.persistModelRepository.saveSync(model);
+    this.forgetMissing(model.id());
+    this.publishInvalidation(model.id());
     return model;
   }
 
+  /**
+   * Saves the model in the persistent repository if its stored version is the expected one, then
+   * caches it. When the versions don't match the cached model is stale, so it's removed from the
+   * cache and the next lookup loads the stored one.
+   *
+   * @param model the model to save
+   * @param expectedVersion the version the persisted model must have
+   * @return true if the model was saved
+   */
+  public boolean compareAndSaveInBothSync(final @NotNull ModelType model, final long expectedVersion) {
+    this.discardPendingWrite(model.id());
+    if (!this.persistModelRepository.compareAndSaveSync(model, expectedVersion)) {
+      this.cacheModelRepository.deleteSync(model.id());
+      return false;
+    }
+    this.forgetMissing(model.id());
+    this.cacheModelRepository.saveSync(model);
+    this.publishInvalidation(model.id());
+    return true;
+  }
+
   public boolean deleteInCacheSync(final @NotNull String id) {
     return this.cacheModelRepository.deleteSync(id);
   }
 
   public boolean deleteInBothSync(final @NotNull String id) {
-    return this.cacheModelRepository.deleteSync(id) &&
-           this.persistModelRepository.deleteSync(id);
+    this.discardPendingWrite(id);
+    final var deleted = this.cacheModelRepository.deleteSync(id) &&
+                        this.persistModelRepository.deleteSync(id);
+    this.publishInvalidation(id);
+    return deleted;
   }
 
   public void saveAllSync(final @NotNull Consumer<ModelType> preSaveAction) {
     this.cacheModelRepository.findAllSync(
       model -> {
         preSaveAction.accept(model);
+        this.discardPendingWrite(model.id());
         this.persistModelRepository.saveSync(model);
+        this.forgetMissing(model.id());
+        this.publishInvalidation(model.id());
       },
       ArrayList::new);
+    this.flushSync();
+  }
+
+  public boolean writeBehind() {
+    return this.writeBehindQueue != null;
+  }
+
+  public int pendingWritesSync() {
+    if (this.writeBehindQueue == null) {
+      return 0;
+    }
+    return this.writeBehindQueue.size();
+  }
+
+  public int flushSync() {
+    if (this.writeBehindQueue == null) {
+      return 0;
+    }
+    return this.writeBehindQueue.flush();
+  }
+
+  public void close() {
+    if (this.writeBehindQueue != null) {
+      this.writeBehindQueue.close();
+    }
+  }
+
+  /**
+   * Loads the model from the persistent repository and caches it, sharing a single load between
+   * every concurrent caller which misses the same id. The caller which starts the load runs it in
+   * its own thread, the others just receive the in-flight future.
+   *
+   * @param id the id of the model to load
+   * @return a future completed with the loaded model, or null if it doesn't exist
+   */
+  protected @NotNull CompletableFuture<@Nullable ModelType> loadAndCache(final @NotNull String id) {
+    final var load = new CompletableFuture<ModelType>();
+    final var inFlightLoad = this.inFlightLoads.putIfAbsent(id, load);
+    if (inFlightLoad != null) {
+      return inFlightLoad;
+    }
+    final var start = System.nanoTime();
+    try {
+      // another load may have finished between the cache miss and the registration of this one
+      final var missingEpoch = this.missingEpoch(id);
+      var model = this.findInCacheSync(id);
+      if (model == null) {
+        model = this.pendingWrite(id);
+        if (model != null) {
+          this.cacheIfAbsent(List.of(model));
+        }
+      }
+      if (model == null && !this.isKnownMissing(id)) {
+        model = this.findSync(id);
+        if (model == null) {
+          this.rememberMissing(id, missingEpoch);
+        } else {
+          this.cacheIfAbsent(List.of(model));
+        }
+        this.metrics.recordCacheLoad(System.nanoTime() - start, model != null, false);
+      }
+      load.complete(model);
+    } catch (final RuntimeException e) {
+      this.metrics.recordCacheLoad(System.nanoTime() - start, false, true);
+      load.completeExceptionally(e);
+    } finally {
+      this.inFlightLoads.remove(id, load);
+    }
+    return load;
+  }
+
+  /**
+   * Drops or reloads the cached models which other nodes wrote. Only the models this node has
+   * cached are reloaded, in the executor of this repository, since the invalidations are received
+   * in the thread of the bus.
+   *
+   * @param ids the ids of the written models
+   */
+  protected void invalidate(final @NotNull Collection<String> ids) {
+    for (final var id : ids) {
+      this.forgetMissing(id);
+    }
+    if (!this.refreshOnInvalidation) {
+      this.cacheModelRepository.deleteManySync(ids);
+      return;
+    }
+    super.executor.execute(() -> {
+      final var cachedIds = new ArrayList<String>(ids.size());
+      for (final var id : ids) {
+        // the cached model of a pending write is newer than the persisted one
+        if (this.pendingWrite(id) == null && this.cacheModelRepository.existsSync(id)) {
+          cachedIds.add(id);
+        }
+      }
+      if (cachedIds.isEmpty()) {
+        return;
+      }
+      final var models = this.persistModelRepository.findManySync(cachedIds, ArrayList::new);
+      final var deletedIds = new HashSet<>(cachedIds);
+      for (final var model : models) {
+        deletedIds.remove(model.id());
+      }
+      this.cacheModelRepository.saveManySync(models);
+      this.cacheModelRepository.deleteManySync(deletedIds);
+    });
+  }
+
+  protected void publishInvalidation(final @NotNull String id) {
+    if (this.invalidationBus != null) {
+      this.invalidationBus.publish(List.of(id));
+    }
+  }
+
+  protected void publishInvalidation(final @NotNull Collection<? extends Model> models) {
+    if (this.invalidationBus == null || models.isEmpty()) {
+      return;
+    }
+    final var ids = new ArrayList<String>(models.size());
+    for (final var model : models) {
+      ids.add(model.id());
+    }
+    this.invalidationBus.publish(ids);
+  }
+
+  // a model waiting in the write-behind queue is newer than the persisted one
+  protected @Nullable ModelType pendingWrite(final @NotNull String id) {
+    return this.writeBehindQueue == null ? null : this.writeBehindQueue.pending(id);
+  }
+
+  protected void discardPendingWrite(final @NotNull String id) {
+    if (this.writeBehindQueue != null) {
+      this.writeBehindQueue.discard(id);
+    }
+  }
+
+  protected boolean isKnownMissing(final @NotNull String id) {
+    return this.missingIdCache != null && this.missingIdCache.contains(id);
+  }
+
+  // read before looking the id up, so a save finished meanwhile stops the id from being remembered
+  protected long missingEpoch(final @NotNull String id) {
+    return this.missingIdCache == null ? 0 : this.missingIdCache.epoch(id);
+  }
+
+  protected void rememberMissing(final @NotNull String id, final long epoch) {
+    if (this.missingIdCache != null) {
+      this.missingIdCache.add(id, epoch);
+    }
+  }
+
+  protected void forgetMissing(final @NotNull String id) {
+    if (this.missingIdCache != null) {
+      this.missingIdCache.remove(id);
+    }
   }
 
   @Override
@@ -171,6 +710,14 @@ public class CachedModelRepository<ModelType extends Model> extends AbstractAsyn
     return this.persistModelRepository.findSync(field, value, factory);
   }
 
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C findManySync(
+    final @NotNull Collection<String> ids,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    return this.persistModelRepository.findManySync(ids, factory);
+  }
+
   @Override
   public @Nullable Collection<String> findIdsSync() {
     return this.persistModelRepository.findIdsSync();
@@ -184,6 +731,28 @@ public class CachedModelRepository<ModelType extends Model> extends AbstractAsyn
     return this.persistModelRepository.findAllSync(postLoadAction, factory);
   }
 
+  @Override
+  public @NotNull Stream<ModelType> streamAllSync(final int batchSize) {
+    return this.persistModelRepository.streamAllSync(batchSize);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C querySync(
+    final @NotNull ModelQuery query,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    return this.persistModelRepository.querySync(query, factory);
+  }
+
+  @Override
+  public @NotNull ModelPage<ModelType> findPageSync(
+    final @Nullable ModelFilter filter,
+    final @Nullable String token,
+    final int pageSize
+  ) {
+    return this.persistModelRepository.findPageSync(filter, token, pageSize);
+  }
+
   @Override
   public boolean existsSync(final @NotNull String id) {
     return this.persistModelRepository.existsSync(id);
@@ -191,12 +760,55 @@ public class CachedModelRepository<ModelType extends Model> extends AbstractAsyn
 
   @Override
   public @NotNull ModelType saveSync(final @NotNull ModelType model) {
-    return this.persistModelRepository.saveSync(model);
+    this.discardPendingWrite(model.id());
+    this.persistModelRepository.saveSync(model);
+    this.forgetMissing(model.id());
+    this.publishInvalidation(model.id());
+    return model;
+  }
+
+  @Override
+  public boolean compareAndSaveSync(final @NotNull ModelType model, final long expectedVersion) {
+    this.discardPendingWrite(model.id());
+    if (!this.persistModelRepository.compareAndSaveSync(model, expectedVersion)) {
+      return false;
+    }
+    this.forgetMissing(model.id());
+    this.publishInvalidation(model.id());
+    return true;
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C saveManySync(final @NotNull C models) {
+    for (final var model : models) {
+      this.discardPendingWrite(model.id());
+    }
+    this.persistModelRepository.saveManySync(models);
+    for (final var model : models) {
+      this.forgetMissing(model.id());
+    }
+    this.publishInvalidation(models);
+    return models;
   }
 
   @Override
   public boolean deleteSync(final @NotNull String id) {
-    return this.persistModelRepository.deleteSync(id);
+    this.discardPendingWrite(id);
+    final var deleted = this.persistModelRepository.deleteSync(id);
+    this.publishInvalidation(id);
+    return deleted;
+  }
+
+  @Override
+  public int deleteManySync(final @NotNull Collection<String> ids) {
+    for (final var id : ids) {
+      this.discardPendingWrite(id);
+    }
+    final var deleted = this.persistModelRepository.deleteManySync(ids);
+    if (this.invalidationBus != null && !ids.isEmpty()) {
+      this.invalidationBus.publish(ids);
+    }
+    return deleted;
   }
 
   public @NotNull CompletableFuture<@Nullable ModelType> findAndCache(final @NotNull String id) {
@@ -214,7 +826,15 @@ public class CachedModelRepository<ModelType extends Model> extends AbstractAsyn
   public @NotNull CompletableFuture<@Nullable ModelType> findInBothAndCache(
     final @NotNull String id
   ) {
-    return CompletableFuture.supplyAsync(() -> this.findInBothAndCacheSync(id), super.executor);
+    return CompletableFuture.supplyAsync(() -> this.findInCacheSync(id), super.executor)
+             .thenCompose(cachedModel -> {
+               if (cachedModel != null) {
+                 this.metrics.recordCacheHits(1);
+                 return CompletableFuture.completedFuture(cachedModel);
+               }
+               this.metrics.recordCacheMisses(1);
+               return this.loadAndCache(id);
+             });
   }
 
   public @NotNull CompletableFuture<@Nullable Collection<String>> findAllCachedIds() {
@@ -241,6 +861,26 @@ public class CachedModelRepository<ModelType extends Model> extends AbstractAsyn
     return CompletableFuture.supplyAsync(() -> this.loadAllSync(postLoadAction, factory), super.executor);
   }
 
+  public @NotNull CompletableFuture<@NotNull Integer> warmUp(final @NotNull CacheWarmUp warmUp) {
+    return CompletableFuture.supplyAsync(() -> this.warmUpSync(warmUp), super.executor);
+  }
+
+  public @NotNull CompletableFuture<@NotNull Integer> saveSnapshot(
+    final @NotNull Path file,
+    final @NotNull ModelSnapshotCodec<ModelType> codec
+  ) {
+    return CompletableFuture.supplyAsync(() -> this.saveSnapshotSync(file, codec), super.executor);
+  }
+
+  public @NotNull CompletableFuture<@NotNull Integer> restoreSnapshot(
+    final @NotNull Path file,
+    final @NotNull ModelSnapshotCodec<ModelType> codec,
+    final long maxAge,
+    final @NotNull TimeUnit unit
+  ) {
+    return CompletableFuture.supplyAsync(() -> this.restoreSnapshotSync(file, codec, maxAge, unit), super.executor);
+  }
+
   public @NotNull CompletableFuture<@NotNull ModelType> upload(final @NotNull ModelType model) {
     return CompletableFuture.supplyAsync(() -> this.uploadSync(model), super.executor);
   }
@@ -275,6 +915,13 @@ public class CachedModelRepository<ModelType extends Model> extends AbstractAsyn
     return CompletableFuture.supplyAsync(() -> this.saveInBothSync(model), super.executor);
   }
 
+  public @NotNull CompletableFuture<@NotNull Boolean> compareAndSaveInBoth(
+    final @NotNull ModelType model,
+    final long expectedVersion
+  ) {
+    return CompletableFuture.supplyAsync(() -> this.compareAndSaveInBothSync(model, expectedVersion), super.executor);
+  }
+
   public @NotNull CompletableFuture<Boolean> deleteInCache(final @NotNull String id) {
     return CompletableFuture.supplyAsync(() -> this.deleteInCacheSync(id), super.executor);
   }
@@ -290,4 +937,8 @@ public class CachedModelRepository<ModelType extends Model> extends AbstractAsyn
   public @NotNull CompletableFuture<Void> saveAll(final @NotNull Consumer<ModelType> preSaveAction) {
     return CompletableFuture.runAsync(() -> this.saveAllSync(preSaveAction), super.executor);
   }
+
+  public @NotNull CompletableFuture<@NotNull Integer> flush() {
+    return CompletableFuture.supplyAsync(this::flushSync, super.executor);
+  }
 }
@@ -0,0 +1,110 @@
+package org.fenixteam.storage.repository;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.fenixteam.storage.metrics.ModelRepositoryMetrics;
+import org.fenixteam.storage.model.Model;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+@SuppressWarnings("unused")
+public final class CachedModelRepositoryBuilder<ModelType extends Model> {
+  private final Executor executor;
+  private final ModelRepository<ModelType> cacheModelRepository;
+  private final ModelRepository<ModelType> persistModelRepository;
+  private ScheduledExecutorService writeBehindScheduler;
+  private long writeBehindPeriodMillis;
+  private int writeBehindBatchSize = 500;
+  private int negativeCacheMaximumSize;
+  private long negativeCacheExpireAfterNanos;
+  private ModelRepositoryMetrics metrics = ModelRepositoryMetrics.NOOP;
+  private ModelInvalidationBus invalidationBus;
+  private boolean refreshOnInvalidation;
+
+  CachedModelRepositoryBuilder(
+    final @NotNull Executor executor,
+    final @NotNull ModelRepository<ModelType> cacheModelRepository,
+    final @NotNull ModelRepository<ModelType> persistModelRepository
+  ) {
+    this.executor = executor;
+    this.cacheModelRepository = cacheModelRepository;
+    this.persistModelRepository = persistModelRepository;
+  }
+
+  @Contract("_, _, _ -> this")
+  public @NotNull CachedModelRepositoryBuilder<ModelType> writeBehind(
+    final @NotNull ScheduledExecutorService scheduler,
+    final long flushPeriod,
+    final @NotNull TimeUnit unit
+  ) {
+    this.writeBehindScheduler = scheduler;
+    this.writeBehindPeriodMillis = unit.toMillis(flushPeriod);
+    return this;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull CachedModelRepositoryBuilder<ModelType> writeBehindBatchSize(final int batchSize) {
+    this.writeBehindBatchSize = batchSize;
+    return this;
+  }
+
+  @Contract("_, _, _ -> this")
+  public @NotNull CachedModelRepositoryBuilder<ModelType> negativeCache(
+    final int maximumSize,
+    final long expireAfter,
+    final @NotNull TimeUnit unit
+  ) {
+    this.negativeCacheMaximumSize = maximumSize;
+    this.negativeCacheExpireAfterNanos = unit.toNanos(expireAfter);
+    return this;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull CachedModelRepositoryBuilder<ModelType> metrics(final @NotNull ModelRepositoryMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull CachedModelRepositoryBuilder<ModelType> invalidationBus(final @NotNull ModelInvalidationBus bus) {
+    return this.invalidationBus(bus, false);
+  }
+
+  /**
+   * Publishes the ids of the models this repository writes in the given bus and drops, or reloads
+   * when {@code refresh} is enabled, the cached models that other nodes write.
+   *
+   * @param bus the bus shared by every node caching the same persistent repository
+   * @param refresh whether the invalidated models are reloaded instead of dropped
+   * @return this builder
+   */
+  @Contract("_, _ -> this")
+  public @NotNull CachedModelRepositoryBuilder<ModelType> invalidationBus(
+    final @NotNull ModelInvalidationBus bus,
+    final boolean refresh
+  ) {
+    this.invalidationBus = bus;
+    this.refreshOnInvalidation = refresh;
+    return this;
+  }
+
+  @Contract(" -> new")
+  public @NotNull CachedModelRepository<ModelType> build() {
+    if (this.writeBehindScheduler != null && this.writeBehindPeriodMillis <= 0) {
+      throw new IllegalArgumentException("Write-behind flush period must be positive");
+    }
+    return new CachedModelRepository<>(
+      this.executor,
+      this.cacheModelRepository,
+      this.persistModelRepository,
+      this.writeBehindScheduler,
+      this.writeBehindPeriodMillis,
+      this.writeBehindBatchSize,
+      this.negativeCacheMaximumSize,
+      this.negativeCacheExpireAfterNanos,
+      this.metrics,
+      this.invalidationBus,
+      this.refreshOnInvalidation);
+  }
+}
@@ -2,11 +2,17 @@ package org.fenixteam.storage.repository;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
 import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.model.VersionedModel;
+import org.fenixteam.storage.query.ModelQuery;
+import org.fenixteam.storage.repository.index.ModelIndex;
+import org.fenixteam.storage.repository.index.ModelIndexes;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -14,11 +20,22 @@ import org.jetbrains.annotations.Nullable;
 @SuppressWarnings("unused")
 public final class LocalModelRepository<ModelType extends Model> implements ModelRepository<ModelType> {
   private final Map<String, ModelType> cache;
+  private final ModelIndexes<ModelType> indexes;
 
-  private LocalModelRepository(final @NotNull Map<String, ModelType> cache) {
+  private LocalModelRepository(
+    final @NotNull Map<String, ModelType> cache,
+    final @NotNull ModelIndexes<ModelType> indexes
+  ) {
     this.cache = cache;
+    this.indexes = indexes;
   }
 
+  /**
+   * Returns the backing map of this repository. Changes done directly in the map aren't reflected
+   * in the secondary indexes.
+   *
+   * @return the backing map
+   */
   public @NotNull Map<String, ModelType> cache() {
     return this.cache;
   }
@@ -34,7 +51,26 @@ public final class LocalModelRepository<ModelType extends Model> implements Mode
     final @NotNull String value,
     final @NotNull Function<Integer, C> factory
   ) {
-    throw new UnsupportedOperationException("Local repository does not support findSync(String, String, Function)");
+    if (field.equals(ModelRepository.ID_FIELD)) {
+      final var model = this.cache.get(value);
+      final var foundModels = factory.apply(model == null ? 0 : 1);
+      if (model != null) {
+        foundModels.add(model);
+      }
+      return foundModels;
+    }
+    final var ids = this.indexes.find(field, value);
+    if (ids == null) {
+      throw new UnsupportedOperationException("Local repository has no index for field " + field);
+    }
+    final var foundModels = factory.apply(ids.size());
+    for (final var id : ids) {
+      final var model = this.cache.get(id);
+      if (model != null && this.indexes.matches(field, value, model)) {
+        foundModels.add(model);
+      }
+    }
+    return foundModels;
   }
 
   @Override
@@ -56,6 +92,30 @@ public final class LocalModelRepository<ModelType extends Model> implements Mode
     return collection;
   }
 
+  @Override
+  public @NotNull Stream<ModelType> streamAllSync(final int batchSize) {
+    return this.cache.values()
+             .stream();
+  }
+
+  /**
+   * Runs the query in memory. The filtered and sorted fields must be the id or fields with a
+   * declared index, whose extractors are used to read them; the projection is ignored since the
+   * models are already loaded.
+   *
+   * @param query the query to run
+   * @param factory the factory of the returned collection
+   * @param <C> the type of the returned collection
+   * @return the matching models, in the order of the query
+   */
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C querySync(
+    final @NotNull ModelQuery query,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    return this.indexes.query(query, this.cache, factory);
+  }
+
   @Override
   public boolean existsSync(final @NotNull String id) {
     return this.cache.containsKey(id);
@@ -63,13 +123,44 @@ public final class LocalModelRepository<ModelType extends Model> implements Mode
 
   @Override
   public @NotNull ModelType saveSync(final @NotNull ModelType model) {
-    this.cache.put(model.id(), model);
+    if (this.indexes.isEmpty()) {
+      this.cache.put(model.id(), model);
+      return model;
+    }
+    // computing on the id updates the indexes atomically with the stored model
+    this.cache.compute(model.id(), (id, stored) -> {
+      this.indexes.add(model);
+      return model;
+    });
     return model;
   }
 
+  @Override
+  public boolean compareAndSaveSync(final @NotNull ModelType model, final long expectedVersion) {
+    final var saved = new boolean[1];
+    this.cache.compute(model.id(), (id, stored) -> {
+      if (!VersionedModel.hasVersion(stored, expectedVersion)) {
+        return stored;
+      }
+      saved[0] = true;
+      this.indexes.add(model);
+      return model;
+    });
+    return saved[0];
+  }
+
   @Override
   public boolean deleteSync(final @NotNull String id) {
-    return this.cache.remove(id) != null;
+    if (this.indexes.isEmpty()) {
+      return this.cache.remove(id) != null;
+    }
+    final var removed = new boolean[1];
+    this.cache.computeIfPresent(id, (unused, stored) -> {
+      removed[0] = true;
+      this.indexes.remove(id);
+      return null;
+    });
+    return removed[0];
   }
 
   @Contract(" -> new")
@@ -82,8 +173,32 @@ public final class LocalModelRepository<ModelType extends Model> implements Mode
     return LocalModelRepository.create(new ConcurrentHashMap<>());
   }
 
+  @Contract("_ -> new")
+  public static <T extends Model> @NotNull LocalModelRepository<T> concurrent(
+    final @NotNull Collection<? extends ModelIndex<T>> indexes
+  ) {
+    return LocalModelRepository.create(new ConcurrentHashMap<>(), indexes);
+  }
+
   @Contract("_ -> new")
   public static <T extends Model> @NotNull LocalModelRepository<T> create(final @NotNull Map<String, T> cache) {
-    return new LocalModelRepository<>(cache);
+    return LocalModelRepository.create(cache, List.of());
+  }
+
+  /**
+   * Creates a repository whose {@link #findSync(String, String, Function)} looks up the given
+   * secondary indexes instead of scanning every model.
+   *
+   * @param cache the backing map, which should be empty
+   * @param indexes the declared secondary indexes
+   * @param <T> the type of the stored models
+   * @return the new repository
+   */
+  @Contract("_, _ -> new")
+  public static <T extends Model> @NotNull LocalModelRepository<T> create(
+    final @NotNull Map<String, T> cache,
+    final @NotNull Collection<? extends ModelIndex<T>> indexes
+  ) {
+    return new LocalModelRepository<>(cache, new ModelIndexes<>(indexes));
   }
 }
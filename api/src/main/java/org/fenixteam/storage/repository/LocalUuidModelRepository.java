@@ -0,0 +1,326 @@
+package org.fenixteam.storage.repository;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.fenixteam.storage.model.PackedUuidSet;
+import org.fenixteam.storage.model.UuidModel;
+import org.fenixteam.storage.model.VersionedModel;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Local repository of models identified by UUIDs, keyed by the two halves of the UUID in an
+ * open-addressing table instead of a map of strings, so every model costs two longs and a
+ * reference besides itself. The string ids are parsed on the way in and the ids are returned as a
+ * {@link PackedUuidSet}; the methods taking a {@link UUID} skip the parsing.
+ *
+ * @param <ModelType> the type of the stored models
+ */
+@SuppressWarnings("unused")
+public final class LocalUuidModelRepository<ModelType extends UuidModel> implements ModelRepository<ModelType> {
+  private final ReadWriteLock lock;
+  private long[] keys;
+  private Object[] models;
+  private int size;
+
+  private LocalUuidModelRepository(final int expectedSize) {
+    this.lock = new ReentrantReadWriteLock();
+    final var minimumCapacity = Math.max(16, (int) Math.min(1 << 30, expectedSize * 3L / 2 + 1));
+    final var capacity = Integer.highestOneBit(minimumCapacity - 1) << 1;
+    this.keys = new long[capacity * 2];
+    this.models = new Object[capacity];
+  }
+
+  @Contract(" -> new")
+  public static <T extends UuidModel> @NotNull LocalUuidModelRepository<T> create() {
+    return new LocalUuidModelRepository<>(16);
+  }
+
+  @Contract("_ -> new")
+  public static <T extends UuidModel> @NotNull LocalUuidModelRepository<T> create(final int expectedSize) {
+    return new LocalUuidModelRepository<>(expectedSize);
+  }
+
+  private static int hash(final long mostBits, final long leastBits) {
+    final var hash = (mostBits ^ leastBits) * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32));
+  }
+
+  // the repository can't hold a model whose id isn't a UUID, so such ids are never found
+  private static @Nullable UUID parse(final @NotNull String id) {
+    try {
+      return UUID.fromString(id);
+    } catch (final IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  public @Nullable ModelType findSync(final @NotNull UUID uuid) {
+    this.lock.readLock()
+      .lock();
+    try {
+      final var slot = this.slotOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+      return slot < 0 ? null : this.modelAt(slot);
+    } finally {
+      this.lock.readLock()
+        .unlock();
+    }
+  }
+
+  @Override
+  public @Nullable ModelType findSync(final @NotNull String id) {
+    final var uuid = parse(id);
+    return uuid == null ? null : this.findSync(uuid);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @Nullable C findSync(
+    final @NotNull String field,
+    final @NotNull String value,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    if (!field.equals(ModelRepository.ID_FIELD)) {
+      throw new UnsupportedOperationException("UUID repository can only find models by id");
+    }
+    final var model = this.findSync(value);
+    final var foundModels = factory.apply(model == null ? 0 : 1);
+    if (model != null) {
+      foundModels.add(model);
+    }
+    return foundModels;
+  }
+
+  @Override
+  public @NotNull PackedUuidSet findIdsSync() {
+    this.lock.readLock()
+      .lock();
+    try {
+      final var ids = new PackedUuidSet(this.size);
+      for (var slot = 0; slot < this.models.length; slot++) {
+        if (this.models[slot] != null) {
+          ids.addUuid(this.keys[slot * 2], this.keys[slot * 2 + 1]);
+        }
+      }
+      return ids;
+    } finally {
+      this.lock.readLock()
+        .unlock();
+    }
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C findAllSync(
+    final @NotNull Consumer<ModelType> postLoadAction,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    this.lock.readLock()
+      .lock();
+    try {
+      final var foundModels = factory.apply(this.size);
+      for (var slot = 0; slot < this.models.length; slot++) {
+        if (this.models[slot] != null) {
+          final var model = this.modelAt(slot);
+          postLoadAction.accept(model);
+          foundModels.add(model);
+        }
+      }
+      return foundModels;
+    } finally {
+      this.lock.readLock()
+        .unlock();
+    }
+  }
+
+  public boolean existsSync(final @NotNull UUID uuid) {
+    this.lock.readLock()
+      .lock();
+    try {
+      return this.slotOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) >= 0;
+    } finally {
+      this.lock.readLock()
+        .unlock();
+    }
+  }
+
+  @Override
+  public boolean existsSync(final @NotNull String id) {
+    final var uuid = parse(id);
+    return uuid != null && this.existsSync(uuid);
+  }
+
+  @Override
+  public @NotNull ModelType saveSync(final @NotNull ModelType model) {
+    this.lock.writeLock()
+      .lock();
+    try {
+      this.put(model);
+    } finally {
+      this.lock.writeLock()
+        .unlock();
+    }
+    return model;
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C saveManySync(final @NotNull C models) {
+    this.lock.writeLock()
+      .lock();
+    try {
+      for (final var model : models) {
+        this.put(model);
+      }
+    } finally {
+      this.lock.writeLock()
+        .unlock();
+    }
+    return models;
+  }
+
+  @Override
+  public boolean compareAndSaveSync(final @NotNull ModelType model, final long expectedVersion) {
+    this.lock.writeLock()
+      .lock();
+    try {
+      final var slot = this.slotOf(model.mostBits(), model.leastBits());
+      if (!VersionedModel.hasVersion(slot < 0 ? null : this.modelAt(slot), expectedVersion)) {
+        return false;
+      }
+      this.put(model);
+      return true;
+    } finally {
+      this.lock.writeLock()
+        .unlock();
+    }
+  }
+
+  public boolean deleteSync(final @NotNull UUID uuid) {
+    this.lock.writeLock()
+      .lock();
+    try {
+      return this.remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    } finally {
+      this.lock.writeLock()
+        .unlock();
+    }
+  }
+
+  @Override
+  public boolean deleteSync(final @NotNull String id) {
+    final var uuid = parse(id);
+    return uuid != null && this.deleteSync(uuid);
+  }
+
+  @Override
+  public int deleteManySync(final @NotNull Collection<String> ids) {
+    this.lock.writeLock()
+      .lock();
+    try {
+      var deleted = 0;
+      for (final var id : ids) {
+        final var uuid = parse(id);
+        if (uuid != null && this.remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits())) {
+          deleted++;
+        }
+      }
+      return deleted;
+    } finally {
+      this.lock.writeLock()
+        .unlock();
+    }
+  }
+
+  public int size() {
+    this.lock.readLock()
+      .lock();
+    try {
+      return this.size;
+    } finally {
+      this.lock.readLock()
+        .unlock();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private @NotNull ModelType modelAt(final int slot) {
+    return (ModelType) this.models[slot];
+  }
+
+  // returns the slot of the UUID, or -1 if it isn't stored
+  private int slotOf(final long mostBits, final long leastBits) {
+    final var mask = this.models.length - 1;
+    for (var slot = hash(mostBits, leastBits) & mask; this.models[slot] != null; slot = (slot + 1) & mask) {
+      if (this.keys[slot * 2] == mostBits && this.keys[slot * 2 + 1] == leastBits) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private void put(final @NotNull ModelType model) {
+    final var mostBits = model.mostBits();
+    final var leastBits = model.leastBits();
+    var slot = this.slotOf(mostBits, leastBits);
+    if (slot < 0) {
+      if ((this.size + 1) * 3L > this.models.length * 2L) {
+        this.resize(this.models.length * 2);
+      }
+      final var mask = this.models.length - 1;
+      slot = hash(mostBits, leastBits) & mask;
+      while (this.models[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      this.keys[slot * 2] = mostBits;
+      this.keys[slot * 2 + 1] = leastBits;
+      this.size++;
+    }
+    this.models[slot] = model;
+  }
+
+  private boolean remove(final long mostBits, final long leastBits) {
+    final var slot = this.slotOf(mostBits, leastBits);
+    if (slot < 0) {
+      return false;
+    }
+    // backward shift deletion, moves back the following models which can't be found past the gap
+    final var mask = this.models.length - 1;
+    var gap = slot;
+    var next = (gap + 1) & mask;
+    while (this.models[next] != null) {
+      final var home = hash(this.keys[next * 2], this.keys[next * 2 + 1]) & mask;
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        this.keys[gap * 2] = this.keys[next * 2];
+        this.keys[gap * 2 + 1] = this.keys[next * 2 + 1];
+        this.models[gap] = this.models[next];
+        gap = next;
+      }
+      next = (next + 1) & mask;
+    }
+    this.models[gap] = null;
+    this.size--;
+    return true;
+  }
+
+  private void resize(final int capacity) {
+    final var oldKeys = this.keys;
+    final var oldModels = this.models;
+    this.keys = new long[capacity * 2];
+    this.models = new Object[capacity];
+    final var mask = capacity - 1;
+    for (var i = 0; i < oldModels.length; i++) {
+      if (oldModels[i] != null) {
+        var slot = hash(oldKeys[i * 2], oldKeys[i * 2 + 1]) & mask;
+        while (this.models[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        this.keys[slot * 2] = oldKeys[i * 2];
+        this.keys[slot * 2 + 1] = oldKeys[i * 2 + 1];
+        this.models[slot] = oldModels[i];
+      }
+    }
+  }
+}
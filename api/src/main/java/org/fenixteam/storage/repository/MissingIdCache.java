@@ -0,0 +1,76 @@
+package org.fenixteam.storage.repository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Remembers ids which are known to not exist in a repository for a limited time, so repeated
+ * lookups of missing ids don't reach the backend. When full, an arbitrary entry is evicted to keep
+ * the size bounded.
+ *
+ * <p>Every removal bumps the epoch of the id, and an id is only added if its epoch didn't change
+ * since the lookup which found it missing began, so a lookup racing a save never marks the saved id
+ * as missing. The epochs are striped, two ids sharing a stripe just skip some additions.</p>
+ */
+final class MissingIdCache {
+  private static final int EPOCH_STRIPES = 1024;
+  private final int maximumSize;
+  private final long expireAfterNanos;
+  private final Map<String, Long> expirations;
+  private final AtomicLongArray epochs;
+
+  MissingIdCache(final int maximumSize, final long expireAfterNanos) {
+    this.maximumSize = maximumSize;
+    this.expireAfterNanos = expireAfterNanos;
+    this.expirations = new ConcurrentHashMap<>();
+    this.epochs = new AtomicLongArray(EPOCH_STRIPES);
+  }
+
+  // read before looking the id up, and given back to add
+  long epoch(final @NotNull String id) {
+    return this.epochs.get(stripe(id));
+  }
+
+  boolean contains(final @NotNull String id) {
+    final var expiration = this.expirations.get(id);
+    if (expiration == null) {
+      return false;
+    }
+    if (System.nanoTime() - expiration < 0) {
+      return true;
+    }
+    this.expirations.remove(id, expiration);
+    return false;
+  }
+
+  void add(final @NotNull String id, final long epoch) {
+    if (this.epoch(id) != epoch) {
+      return;
+    }
+    if (this.expirations.size() >= this.maximumSize) {
+      final var iterator = this.expirations.keySet()
+                             .iterator();
+      if (iterator.hasNext()) {
+        iterator.next();
+        iterator.remove();
+      }
+    }
+    final var expiration = System.nanoTime() + this.expireAfterNanos;
+    this.expirations.put(id, expiration);
+    // a removal between the check and the put bumped the epoch, so the entry is dropped again
+    if (this.epoch(id) != epoch) {
+      this.expirations.remove(id, expiration);
+    }
+  }
+
+  void remove(final @NotNull String id) {
+    this.epochs.incrementAndGet(stripe(id));
+    this.expirations.remove(id);
+  }
+
+  private static int stripe(final @NotNull String id) {
+    return Math.floorMod(id.hashCode(), EPOCH_STRIPES);
+  }
+}
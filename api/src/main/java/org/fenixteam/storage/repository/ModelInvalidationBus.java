@@ -0,0 +1,21 @@
+package org.fenixteam.storage.repository;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Broadcasts the ids of the models written by this node to the other nodes sharing the persistent
+ * repository, so they drop or reload the stale copies held in their local caches. Only the ids are
+ * sent, and the implementations may batch them before sending.
+ */
+public interface ModelInvalidationBus {
+  void publish(final @NotNull Collection<String> ids);
+
+  /**
+   * Registers a listener of the ids written by the other nodes.
+   *
+   * @param listener the listener, called with every received batch of ids
+   */
+  void subscribe(final @NotNull Consumer<Collection<String>> listener);
+}
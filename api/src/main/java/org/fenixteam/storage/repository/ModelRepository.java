@@ -1,15 +1,28 @@
 package org.fenixteam.storage.repository;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.model.VersionedModel;
+import org.fenixteam.storage.query.ModelFilter;
+import org.fenixteam.storage.query.ModelPage;
+import org.fenixteam.storage.query.ModelQuery;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public interface ModelRepository<ModelType extends Model> {
   String ID_FIELD = "id";
+  int DEFAULT_STREAM_BATCH_SIZE = 100;
 
   @Nullable ModelType findSync(final @NotNull String id);
 
@@ -19,6 +32,20 @@ public interface ModelRepository<ModelType extends Model> {
     final @NotNull Function<Integer, C> factory
   );
 
+  default <C extends Collection<ModelType>> @NotNull C findManySync(
+    final @NotNull Collection<String> ids,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var foundModels = factory.apply(ids.size());
+    for (final var id : ids) {
+      final var model = this.findSync(id);
+      if (model != null) {
+        foundModels.add(model);
+      }
+    }
+    return foundModels;
+  }
+
   @Nullable Collection<String> findIdsSync();
 
   default <C extends Collection<ModelType>> @Nullable C findAllSync(
@@ -32,14 +59,176 @@ public interface ModelRepository<ModelType extends Model> {
     final @NotNull Function<Integer, C> factory
   );
 
+  default @NotNull Stream<ModelType> streamAllSync() {
+    return this.streamAllSync(DEFAULT_STREAM_BATCH_SIZE);
+  }
+
+  /**
+   * Lazily streams every model of this repository, fetching them in batches from the backend
+   * instead of loading the whole table at once. The returned stream may hold backend resources,
+   * so it should be closed, for example by using a try-with-resources statement.
+   *
+   * @param batchSize the amount of models fetched from the backend at once, when supported
+   * @return a lazy stream of every stored model
+   */
+  default @NotNull Stream<ModelType> streamAllSync(final int batchSize) {
+    final var models = this.findAllSync(ArrayList::new);
+    if (models == null) {
+      return Stream.empty();
+    }
+    return models.stream();
+  }
+
+  /**
+   * Finds the models matching the given query. Backends push the filter, sort, skip, limit and
+   * projection down when they can and evaluate the rest in memory.
+   *
+   * @param query the query to run
+   * @param factory the factory of the returned collection
+   * @param <C> the type of the returned collection
+   * @return the matching models, in the order of the query
+   * @throws UnsupportedOperationException if this repository can't run queries
+   */
+  default <C extends Collection<ModelType>> @NotNull C querySync(
+    final @NotNull ModelQuery query,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    throw new UnsupportedOperationException("This repository doesn't support queries");
+  }
+
+  default @NotNull ModelPage<ModelType> findPageSync(final @Nullable String token, final int pageSize) {
+    return this.findPageSync(null, token, pageSize);
+  }
+
+  /**
+   * Finds a page of the models matching the given filter, ordered by the backend position instead
+   * of loading the whole table. The first page is read with a null token and the following ones
+   * with the {@link ModelPage#nextToken()} of the previous page.
+   *
+   * @param filter the filter of the models, or null to read every model
+   * @param token the token of the page, or null for the first page
+   * @param pageSize the max amount of models of the page, which is only a hint for some backends
+   * @return the page of models
+   * @throws UnsupportedOperationException if this repository can't read pages
+   */
+  default @NotNull ModelPage<ModelType> findPageSync(
+    final @Nullable ModelFilter filter,
+    final @Nullable String token,
+    final int pageSize
+  ) {
+    throw new UnsupportedOperationException("This repository doesn't support pagination");
+  }
+
   boolean existsSync(final @NotNull String id);
 
+  /**
+   * Saves the model only if the stored version of the model is the expected one, atomically. The
+   * given model should carry a newer version than the expected one, usually the next one. The
+   * stored version is read from the {@link VersionedModel#VERSION_FIELD} field of the serialized
+   * model, or from {@link VersionedModel#version()} by the in-memory repositories.
+   *
+   * @param model the model to save
+   * @param expectedVersion the version the stored model must have, or
+   *                        {@link VersionedModel#NO_VERSION} if the model must not be stored yet
+   * @return true if the model was saved, false if the stored version is another one
+   * @throws UnsupportedOperationException if this repository can't compare the versions
+   */
+  default boolean compareAndSaveSync(final @NotNull ModelType model, final long expectedVersion) {
+    throw new UnsupportedOperationException("This repository doesn't support versioned saves");
+  }
+
+  /**
+   * Reads the model, applies the change and saves the result with
+   * {@link #compareAndSaveSync(Model, long)}, reading and applying the change again when another
+   * writer saved the model meanwhile. The change must return a model with a newer version.
+   *
+   * @param id the id of the changed model
+   * @param change the change to apply, which may be called once per attempt
+   * @param maxAttempts the maximum amount of attempts
+   * @return the saved model, or null if there is no model with the id
+   * @throws ConcurrentModificationException if every attempt conflicted with another writer
+   */
+  default @Nullable ModelType compareAndUpdateSync(
+    final @NotNull String id,
+    final @NotNull UnaryOperator<ModelType> change,
+    final int maxAttempts
+  ) {
+    for (var attempt = 0; attempt < maxAttempts; attempt++) {
+      final var current = this.findSync(id);
+      if (current == null) {
+        return null;
+      }
+      if (!(current instanceof VersionedModel versioned)) {
+        throw new IllegalArgumentException("The model " + id + " isn't versioned");
+      }
+      final var changed = change.apply(current);
+      if (this.compareAndSaveSync(changed, versioned.version())) {
+        return changed;
+      }
+    }
+    throw new ConcurrentModificationException("The model " + id + " kept changing after " + maxAttempts + " attempts");
+  }
+
+  /**
+   * Checks which of the given ids are stored, without reading every stored id.
+   *
+   * @param ids the ids to check
+   * @return the ids which are stored
+   */
+  default @NotNull Set<String> findExistingIdsSync(final @NotNull Collection<String> ids) {
+    final var existingIds = new HashSet<String>(ids.size() * 2);
+    for (final var id : ids) {
+      if (this.existsSync(id)) {
+        existingIds.add(id);
+      }
+    }
+    return existingIds;
+  }
+
+  /**
+   * Reads the stored versions of the models. The repositories which can read the
+   * {@link VersionedModel#VERSION_FIELD} field alone do it without deserializing the models.
+   *
+   * @param ids the ids of the models
+   * @return the stored version of every found model, by id
+   * @throws IllegalArgumentException if a stored model isn't versioned
+   */
+  default @NotNull Map<String, Long> findVersionsSync(final @NotNull Collection<String> ids) {
+    final var models = this.findManySync(ids, ArrayList::new);
+    final var versions = new HashMap<String, Long>(models.size() * 2);
+    for (final var model : models) {
+      if (!(model instanceof VersionedModel versioned)) {
+        throw new IllegalArgumentException("The model " + model.id() + " isn't versioned");
+      }
+      versions.put(model.id(), versioned.version());
+    }
+    return versions;
+  }
+
   @Contract("_ -> param1")
   @NotNull ModelType saveSync(final @NotNull ModelType model);
 
+  @Contract("_ -> param1")
+  default <C extends Collection<ModelType>> @NotNull C saveManySync(final @NotNull C models) {
+    for (final var model : models) {
+      this.saveSync(model);
+    }
+    return models;
+  }
+
   default boolean deleteSync(final @NotNull ModelType model) {
     return this.deleteSync(model.id());
   }
 
   boolean deleteSync(final @NotNull String id);
+
+  default int deleteManySync(final @NotNull Collection<String> ids) {
+    var deleted = 0;
+    for (final var id : ids) {
+      if (this.deleteSync(id)) {
+        deleted++;
+      }
+    }
+    return deleted;
+  }
 }
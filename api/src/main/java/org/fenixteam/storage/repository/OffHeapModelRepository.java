@@ -0,0 +1,634 @@
+package org.fenixteam.storage.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.model.VersionedModel;
+import org.fenixteam.storage.repository.snapshot.ByteBufferInputStream;
+import org.fenixteam.storage.repository.snapshot.ModelSnapshotCodec;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Local repository keeping the models serialized in direct memory instead of the heap, so large
+ * sets of models don't add to the garbage collection work. The encoded models are appended to
+ * fixed size slabs and located through an open-addressing index made of primitive arrays; they are
+ * decoded on every read, unless they are in the optional on-heap layer of recently used models.
+ *
+ * <p>A record is the length of the encoded model, the length of the id, the UTF-8 id and the
+ * encoded model. Overwritten and deleted records leave garbage in their slab, the slabs without
+ * live records are reused and the sparse ones are compacted once the garbage exceeds the live
+ * records.</p>
+ *
+ * @param <ModelType> the type of the stored models
+ */
+@SuppressWarnings("unused")
+public final class OffHeapModelRepository<ModelType extends Model> implements ModelRepository<ModelType> {
+  private static final int RECORD_HEADER_SIZE = 8;
+  private final ModelSnapshotCodec<ModelType> codec;
+  private final int slabSize;
+  private final List<ByteBuffer> slabs;
+  private final Deque<Integer> freeSlabs;
+  private final Map<String, ModelType> hotModels;
+  private final ReadWriteLock lock;
+  private int[] slabLiveBytes;
+  private int[] slabUsedBytes;
+  private int currentSlab;
+  private int currentOffset;
+  private long liveBytes;
+  private long garbageBytes;
+  // the address of a record is its slab index plus one in the upper half and its offset in the
+  // lower half, so an empty slot is 0
+  private long[] addresses;
+  private int[] hashes;
+  private int size;
+
+  OffHeapModelRepository(
+    final @NotNull ModelSnapshotCodec<ModelType> codec,
+    final int slabSize,
+    final int initialCapacity,
+    final int hotModelsSize
+  ) {
+    this.codec = codec;
+    this.slabSize = slabSize;
+    this.slabs = new ArrayList<>();
+    this.freeSlabs = new ArrayDeque<>();
+    this.hotModels = hotModelsSize <= 0 ? null : new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, ModelType> eldest) {
+        return this.size() > hotModelsSize;
+      }
+    };
+    this.lock = new ReentrantReadWriteLock();
+    this.slabLiveBytes = new int[4];
+    this.slabUsedBytes = new int[4];
+    this.currentSlab = -1;
+    final var capacity = Integer.highestOneBit(Math.max(16, initialCapacity * 2 - 1)) << 1;
+    this.addresses = new long[capacity];
+    this.hashes = new int[capacity];
+  }
+
+  @Contract("_ -> new")
+  public static <T extends Model> @NotNull OffHeapModelRepositoryBuilder<T> builder(
+    final @NotNull ModelSnapshotCodec<T> codec
+  ) {
+    return new OffHeapModelRepositoryBuilder<>(codec);
+  }
+
+  private static int hash(final @NotNull String id) {
+    final var hash = id.hashCode() * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  private static int slabOf(final long address) {
+    return (int) (address >>> 32) - 1;
+  }
+
+  private static int offsetOf(final long address) {
+    return (int) address;
+  }
+
+  public int size() {
+    this.lock.readLock()
+      .lock();
+    try {
+      return this.size;
+    } finally {
+      this.lock.readLock()
+        .unlock();
+    }
+  }
+
+  /**
+   * Returns the amount of direct memory held by the slabs of this repository, including the
+   * garbage of the overwritten and deleted records.
+   *
+   * @return the allocated bytes
+   */
+  public long allocatedBytes() {
+    this.lock.readLock()
+      .lock();
+    try {
+      var allocated = 0L;
+      for (final var slab : this.slabs) {
+        if (slab != null) {
+          allocated += slab.capacity();
+        }
+      }
+      return allocated;
+    } finally {
+      this.lock.readLock()
+        .unlock();
+    }
+  }
+
+  public long liveBytes() {
+    this.lock.readLock()
+      .lock();
+    try {
+      return this.liveBytes;
+    } finally {
+      this.lock.readLock()
+        .unlock();
+    }
+  }
+
+  @Override
+  public @Nullable ModelType findSync(final @NotNull String id) {
+    this.lock.readLock()
+      .lock();
+    try {
+      if (this.hotModels != null) {
+        synchronized (this.hotModels) {
+          final var model = this.hotModels.get(id);
+          if (model != null) {
+            return model;
+          }
+        }
+      }
+      final var slot = this.slotOf(id.getBytes(StandardCharsets.UTF_8), hash(id));
+      if (slot < 0) {
+        return null;
+      }
+      final var model = this.decode(this.addresses[slot]);
+      // cached while holding the read lock, so a concurrent save can't be replaced by this model
+      if (this.hotModels != null) {
+        synchronized (this.hotModels) {
+          this.hotModels.put(id, model);
+        }
+      }
+      return model;
+    } finally {
+      this.lock.readLock()
+        .unlock();
+    }
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @Nullable C findSync(
+    final @NotNull String field,
+    final @NotNull String value,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    if (!field.equals(ModelRepository.ID_FIELD)) {
+      throw new UnsupportedOperationException("Off-heap repository can only find models by id");
+    }
+    final var model = this.findSync(value);
+    final var foundModels = factory.apply(model == null ? 0 : 1);
+    if (model != null) {
+      foundModels.add(model);
+    }
+    return foundModels;
+  }
+
+  @Override
+  public @NotNull Collection<String> findIdsSync() {
+    this.lock.readLock()
+      .lock();
+    try {
+      final var ids = new ArrayList<String>(this.size);
+      for (final var address : this.addresses) {
+        if (address != 0) {
+          ids.add(this.decodeId(address));
+        }
+      }
+      return ids;
+    } finally {
+      this.lock.readLock()
+        .unlock();
+    }
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C findAllSync(
+    final @NotNull Consumer<ModelType> postLoadAction,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    this.lock.readLock()
+      .lock();
+    try {
+      final var models = factory.apply(this.size);
+      for (final var address : this.addresses) {
+        if (address != 0) {
+          final var model = this.decode(address);
+          postLoadAction.accept(model);
+          models.add(model);
+        }
+      }
+      return models;
+    } finally {
+      this.lock.readLock()
+        .unlock();
+    }
+  }
+
+  @Override
+  public boolean existsSync(final @NotNull String id) {
+    this.lock.readLock()
+      .lock();
+    try {
+      return this.slotOf(id.getBytes(StandardCharsets.UTF_8), hash(id)) >= 0;
+    } finally {
+      this.lock.readLock()
+        .unlock();
+    }
+  }
+
+  @Override
+  public @NotNull ModelType saveSync(final @NotNull ModelType model) {
+    final var id = model.id();
+    final var idBytes = id.getBytes(StandardCharsets.UTF_8);
+    final var encodedModel = this.encode(model);
+    this.lock.writeLock()
+      .lock();
+    try {
+      this.put(id, idBytes, encodedModel, model);
+    } finally {
+      this.lock.writeLock()
+        .unlock();
+    }
+    return model;
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C saveManySync(final @NotNull C models) {
+    // encoded before taking the lock so the readers are only blocked while copying the records
+    final var idBytes = new byte[models.size()][];
+    final var encodedModels = new EncodedModel[models.size()];
+    var i = 0;
+    for (final var model : models) {
+      idBytes[i] = model.id()
+                     .getBytes(StandardCharsets.UTF_8);
+      encodedModels[i] = this.encode(model);
+      i++;
+    }
+    this.lock.writeLock()
+      .lock();
+    try {
+      i = 0;
+      for (final var model : models) {
+        this.put(model.id(), idBytes[i], encodedModels[i], model);
+        i++;
+      }
+    } finally {
+      this.lock.writeLock()
+        .unlock();
+    }
+    return models;
+  }
+
+  @Override
+  public boolean compareAndSaveSync(final @NotNull ModelType model, final long expectedVersion) {
+    final var id = model.id();
+    final var idBytes = id.getBytes(StandardCharsets.UTF_8);
+    final var encodedModel = this.encode(model);
+    this.lock.writeLock()
+      .lock();
+    try {
+      final var slot = this.slotOf(idBytes, hash(id));
+      final var stored = slot < 0 ? null : this.decode(this.addresses[slot]);
+      if (!VersionedModel.hasVersion(stored, expectedVersion)) {
+        return false;
+      }
+      this.put(id, idBytes, encodedModel, model);
+      return true;
+    } finally {
+      this.lock.writeLock()
+        .unlock();
+    }
+  }
+
+  @Override
+  public boolean deleteSync(final @NotNull String id) {
+    this.lock.writeLock()
+      .lock();
+    try {
+      return this.remove(id);
+    } finally {
+      this.lock.writeLock()
+        .unlock();
+    }
+  }
+
+  @Override
+  public int deleteManySync(final @NotNull Collection<String> ids) {
+    this.lock.writeLock()
+      .lock();
+    try {
+      var deleted = 0;
+      for (final var id : ids) {
+        if (this.remove(id)) {
+          deleted++;
+        }
+      }
+      return deleted;
+    } finally {
+      this.lock.writeLock()
+        .unlock();
+    }
+  }
+
+  /**
+   * Moves the records of the slabs which are at least half garbage to the end of the current slab,
+   * releasing the slabs left without live records.
+   */
+  public void compactSync() {
+    this.lock.writeLock()
+      .lock();
+    try {
+      this.compact();
+    } finally {
+      this.lock.writeLock()
+        .unlock();
+    }
+  }
+
+  private @NotNull EncodedModel encode(final @NotNull ModelType model) {
+    final var encodedModel = new EncodedModel();
+    try {
+      this.codec.write(model, new DataOutputStream(encodedModel));
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return encodedModel;
+  }
+
+  private @NotNull ModelType decode(final long address) {
+    final var slab = this.slabs.get(slabOf(address));
+    final var offset = offsetOf(address);
+    final var modelLength = slab.getInt(offset);
+    final var start = offset + RECORD_HEADER_SIZE + slab.getInt(offset + 4);
+    final var record = slab.duplicate()
+                         .limit(start + modelLength)
+                         .position(start);
+    try {
+      return this.codec.read(new DataInputStream(new ByteBufferInputStream(record)));
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private @NotNull String decodeId(final long address) {
+    final var slab = this.slabs.get(slabOf(address));
+    final var offset = offsetOf(address);
+    final var idBytes = new byte[slab.getInt(offset + 4)];
+    slab.get(offset + RECORD_HEADER_SIZE, idBytes);
+    return new String(idBytes, StandardCharsets.UTF_8);
+  }
+
+  private int recordSize(final long address) {
+    final var slab = this.slabs.get(slabOf(address));
+    final var offset = offsetOf(address);
+    return RECORD_HEADER_SIZE + slab.getInt(offset) + slab.getInt(offset + 4);
+  }
+
+  // returns the slot of the id, or -1 if it isn't stored
+  private int slotOf(final byte @NotNull [] idBytes, final int hash) {
+    final var mask = this.addresses.length - 1;
+    for (var slot = hash & mask; this.addresses[slot] != 0; slot = (slot + 1) & mask) {
+      if (this.hashes[slot] == hash && this.hasId(this.addresses[slot], idBytes)) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private boolean hasId(final long address, final byte @NotNull [] idBytes) {
+    final var slab = this.slabs.get(slabOf(address));
+    final var offset = offsetOf(address);
+    if (slab.getInt(offset + 4) != idBytes.length) {
+      return false;
+    }
+    final var idOffset = offset + RECORD_HEADER_SIZE;
+    for (var i = 0; i < idBytes.length; i++) {
+      if (slab.get(idOffset + i) != idBytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void put(
+    final @NotNull String id,
+    final byte @NotNull [] idBytes,
+    final @NotNull EncodedModel encodedModel,
+    final @NotNull ModelType model
+  ) {
+    final var hash = hash(id);
+    var slot = this.slotOf(idBytes, hash);
+    if (slot >= 0) {
+      this.release(this.addresses[slot]);
+    }
+    final var address = this.append(idBytes, encodedModel);
+    if (slot < 0) {
+      if ((this.size + 1) * 2 > this.addresses.length) {
+        this.resize(this.addresses.length * 2);
+      }
+      final var mask = this.addresses.length - 1;
+      slot = hash & mask;
+      while (this.addresses[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      this.hashes[slot] = hash;
+      this.size++;
+    }
+    this.addresses[slot] = address;
+    if (this.hotModels != null) {
+      synchronized (this.hotModels) {
+        this.hotModels.replace(id, model);
+      }
+    }
+    if (this.garbageBytes > this.liveBytes && this.garbageBytes > 2L * this.slabSize) {
+      this.compact();
+    }
+  }
+
+  private boolean remove(final @NotNull String id) {
+    final var slot = this.slotOf(id.getBytes(StandardCharsets.UTF_8), hash(id));
+    if (slot < 0) {
+      return false;
+    }
+    this.release(this.addresses[slot]);
+    this.size--;
+    // backward shift deletion, moves back the following entries which can't be found past the gap
+    final var mask = this.addresses.length - 1;
+    var gap = slot;
+    var next = (gap + 1) & mask;
+    while (this.addresses[next] != 0) {
+      final var home = this.hashes[next] & mask;
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        this.addresses[gap] = this.addresses[next];
+        this.hashes[gap] = this.hashes[next];
+        gap = next;
+      }
+      next = (next + 1) & mask;
+    }
+    this.addresses[gap] = 0;
+    if (this.hotModels != null) {
+      synchronized (this.hotModels) {
+        this.hotModels.remove(id);
+      }
+    }
+    return true;
+  }
+
+  private void resize(final int capacity) {
+    final var oldAddresses = this.addresses;
+    final var oldHashes = this.hashes;
+    this.addresses = new long[capacity];
+    this.hashes = new int[capacity];
+    final var mask = capacity - 1;
+    for (var i = 0; i < oldAddresses.length; i++) {
+      if (oldAddresses[i] != 0) {
+        var slot = oldHashes[i] & mask;
+        while (this.addresses[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        this.addresses[slot] = oldAddresses[i];
+        this.hashes[slot] = oldHashes[i];
+      }
+    }
+  }
+
+  private long append(final byte @NotNull [] idBytes, final @NotNull EncodedModel encodedModel) {
+    final var recordSize = RECORD_HEADER_SIZE + idBytes.length + encodedModel.size();
+    final var slabIndex = this.reserve(recordSize);
+    final var slab = this.slabs.get(slabIndex);
+    final var offset = slabIndex == this.currentSlab ? this.currentOffset : 0;
+    slab.putInt(offset, encodedModel.size());
+    slab.putInt(offset + 4, idBytes.length);
+    slab.put(offset + RECORD_HEADER_SIZE, idBytes);
+    slab.put(offset + RECORD_HEADER_SIZE + idBytes.length, encodedModel.buffer(), 0, encodedModel.size());
+    this.claim(slabIndex, recordSize);
+    return ((long) (slabIndex + 1) << 32) | offset;
+  }
+
+  // returns the slab where a record of the given size is written, a record bigger than a slab
+  // gets a dedicated slab which is released with it
+  private int reserve(final int recordSize) {
+    if (recordSize > this.slabSize) {
+      return this.newSlab(ByteBuffer.allocateDirect(recordSize));
+    }
+    if (this.currentSlab < 0 || this.currentOffset + recordSize > this.slabSize) {
+      final var previousSlab = this.currentSlab;
+      final var freeSlab = this.freeSlabs.poll();
+      this.currentSlab = freeSlab != null ? freeSlab : this.newSlab(ByteBuffer.allocateDirect(this.slabSize));
+      this.currentOffset = 0;
+      if (previousSlab >= 0 && this.slabLiveBytes[previousSlab] == 0) {
+        this.releaseSlab(previousSlab);
+      }
+    }
+    return this.currentSlab;
+  }
+
+  // accounts a record written at the end of the slab
+  private void claim(final int slabIndex, final int recordSize) {
+    if (slabIndex == this.currentSlab) {
+      this.currentOffset += recordSize;
+    }
+    this.slabLiveBytes[slabIndex] += recordSize;
+    this.slabUsedBytes[slabIndex] += recordSize;
+    this.liveBytes += recordSize;
+  }
+
+  private int newSlab(final @NotNull ByteBuffer slab) {
+    for (var i = 0; i < this.slabs.size(); i++) {
+      if (this.slabs.get(i) == null) {
+        this.slabs.set(i, slab);
+        return i;
+      }
+    }
+    this.slabs.add(slab);
+    if (this.slabs.size() > this.slabLiveBytes.length) {
+      this.slabLiveBytes = Arrays.copyOf(this.slabLiveBytes, this.slabLiveBytes.length * 2);
+      this.slabUsedBytes = Arrays.copyOf(this.slabUsedBytes, this.slabUsedBytes.length * 2);
+    }
+    return this.slabs.size() - 1;
+  }
+
+  private void release(final long address) {
+    final var slabIndex = slabOf(address);
+    final var recordSize = this.recordSize(address);
+    this.slabLiveBytes[slabIndex] -= recordSize;
+    this.liveBytes -= recordSize;
+    this.garbageBytes += recordSize;
+    if (this.slabLiveBytes[slabIndex] == 0 && slabIndex != this.currentSlab) {
+      this.releaseSlab(slabIndex);
+    }
+  }
+
+  // keeps a single empty slab for reuse, the rest are left to the garbage collector
+  private void releaseSlab(final int slabIndex) {
+    final var slab = this.slabs.get(slabIndex);
+    this.garbageBytes -= this.slabUsedBytes[slabIndex];
+    this.slabUsedBytes[slabIndex] = 0;
+    if (slab.capacity() == this.slabSize && this.freeSlabs.isEmpty()) {
+      this.freeSlabs.push(slabIndex);
+    } else {
+      this.slabs.set(slabIndex, null);
+    }
+  }
+
+  private void compact() {
+    final var sparseSlabs = new boolean[this.slabs.size()];
+    var anySparse = false;
+    for (var i = 0; i < sparseSlabs.length; i++) {
+      final var slab = this.slabs.get(i);
+      if (slab != null && i != this.currentSlab && this.slabLiveBytes[i] > 0 &&
+          this.slabLiveBytes[i] * 2L <= slab.capacity()) {
+        sparseSlabs[i] = true;
+        anySparse = true;
+      }
+    }
+    if (!anySparse) {
+      return;
+    }
+    for (var slot = 0; slot < this.addresses.length; slot++) {
+      final var address = this.addresses[slot];
+      if (address == 0) {
+        continue;
+      }
+      final var slabIndex = slabOf(address);
+      if (slabIndex >= sparseSlabs.length || !sparseSlabs[slabIndex]) {
+        continue;
+      }
+      final var recordSize = this.recordSize(address);
+      final var record = this.slabs.get(slabIndex)
+                           .duplicate()
+                           .limit(offsetOf(address) + recordSize)
+                           .position(offsetOf(address));
+      final var targetSlab = this.reserve(recordSize);
+      final var targetOffset = targetSlab == this.currentSlab ? this.currentOffset : 0;
+      this.slabs.get(targetSlab)
+        .put(targetOffset, record, record.position(), recordSize);
+      this.claim(targetSlab, recordSize);
+      this.release(address);
+      this.addresses[slot] = ((long) (targetSlab + 1) << 32) | targetOffset;
+    }
+  }
+
+  // exposes the array of the stream, so the encoded model is written to the slab without copying
+  // it to a new array first
+  private static final class EncodedModel extends ByteArrayOutputStream {
+    private byte @NotNull [] buffer() {
+      return this.buf;
+    }
+  }
+}
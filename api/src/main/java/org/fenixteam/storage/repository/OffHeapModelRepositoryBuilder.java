@@ -0,0 +1,51 @@
+package org.fenixteam.storage.repository;
+
+import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.repository.snapshot.ModelSnapshotCodec;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+@SuppressWarnings("unused")
+public final class OffHeapModelRepositoryBuilder<ModelType extends Model> {
+  private final ModelSnapshotCodec<ModelType> codec;
+  private int slabSize = 16 * 1024 * 1024;
+  private int initialCapacity = 1024;
+  private int hotModelsSize;
+
+  OffHeapModelRepositoryBuilder(final @NotNull ModelSnapshotCodec<ModelType> codec) {
+    this.codec = codec;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull OffHeapModelRepositoryBuilder<ModelType> slabSize(final int bytes) {
+    if (bytes <= 0) {
+      throw new IllegalArgumentException("The slab size must be positive");
+    }
+    this.slabSize = bytes;
+    return this;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull OffHeapModelRepositoryBuilder<ModelType> initialCapacity(final int models) {
+    this.initialCapacity = models;
+    return this;
+  }
+
+  /**
+   * Keeps the given amount of the most recently read models deserialized on the heap, so the hot
+   * models aren't decoded on every read.
+   *
+   * @param models the max amount of models kept on the heap, 0 to decode every read
+   * @return this builder
+   */
+  @Contract("_ -> this")
+  public @NotNull OffHeapModelRepositoryBuilder<ModelType> hotModels(final int models) {
+    this.hotModelsSize = models;
+    return this;
+  }
+
+  @Contract(" -> new")
+  public @NotNull OffHeapModelRepository<ModelType> build() {
+    return new OffHeapModelRepository<>(this.codec, this.slabSize, this.initialCapacity, this.hotModelsSize);
+  }
+}
@@ -0,0 +1,562 @@
+package org.fenixteam.storage.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.fenixteam.storage.metrics.ModelRepositoryMetrics;
+import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.query.ModelFilter;
+import org.fenixteam.storage.query.ModelPage;
+import org.fenixteam.storage.query.ModelQuery;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Stacks an ordered list of repositories, from the fastest (e.g. an in-process cache) to the
+ * source of truth (e.g. a database). A lookup reads the tiers from the top and promotes the found
+ * model to every tier above the one which had it, so a model pulled into a shared tier by one node
+ * is found there by the others. The saves reach every tier following its {@link WritePolicy}, and
+ * the deletions invalidate the model in every tier, from the top to the bottom.
+ *
+ * <p>A save or deletion is marked as in progress while it runs and bumps the generation of its id
+ * when it ends. A promotion which overlapped a write, because the write is still in progress or the
+ * generation moved, removes its copy from the upper tiers, so a stale model never outlives the
+ * write which replaced it.</p>
+ *
+ * <p>The whole-table reads (ids, all models, field lookups, queries and pages) go to the last
+ * tier, which holds every model.</p>
+ *
+ * @param <ModelType> the type of the stored models
+ */
+@SuppressWarnings("unused")
+public class TieredModelRepository<ModelType extends Model> extends AbstractAsyncModelRepository<ModelType> {
+  private static final int GENERATION_STRIPES = 1024;
+
+  private final List<Tier<ModelType>> tiers;
+  private final Tier<ModelType> lastTier;
+  private final Map<String, CompletableFuture<ModelType>> inFlightLoads;
+  private final ModelRepositoryMetrics metrics;
+  private final AtomicLongArray generations;
+  private final AtomicIntegerArray writesInProgress;
+
+  protected TieredModelRepository(
+    final @NotNull Executor executor,
+    final @NotNull List<ModelRepository<ModelType>> repositories,
+    final @NotNull List<WritePolicy> writePolicies,
+    final @Nullable ScheduledExecutorService writeBehindScheduler,
+    final long writeBehindPeriodMillis,
+    final int writeBehindBatchSize,
+    final @NotNull ModelRepositoryMetrics metrics
+  ) {
+    super(executor);
+    if (repositories.isEmpty() || repositories.size() != writePolicies.size()) {
+      throw new IllegalArgumentException("Every tier needs a repository and a write policy");
+    }
+    if (writePolicies.get(writePolicies.size() - 1) == WritePolicy.AROUND) {
+      throw new IllegalArgumentException("The last tier holds every model, it can't be written around");
+    }
+    final var tiers = new ArrayList<Tier<ModelType>>(repositories.size());
+    for (var i = 0; i < repositories.size(); i++) {
+      final var repository = repositories.get(i);
+      final var writePolicy = writePolicies.get(i);
+      WriteBehindQueue<ModelType> writeBehindQueue = null;
+      if (writePolicy == WritePolicy.BEHIND) {
+        if (writeBehindScheduler == null) {
+          throw new IllegalArgumentException("The write-behind tiers need a write-behind scheduler");
+        }
+        writeBehindQueue = new WriteBehindQueue<>(
+          repository,
+          writeBehindScheduler,
+          writeBehindPeriodMillis,
+          writeBehindBatchSize,
+          null);
+      }
+      tiers.add(new Tier<>(repository, writePolicy, writeBehindQueue));
+    }
+    this.tiers = List.copyOf(tiers);
+    this.lastTier = this.tiers.get(this.tiers.size() - 1);
+    this.inFlightLoads = new ConcurrentHashMap<>();
+    this.metrics = metrics;
+    this.generations = new AtomicLongArray(GENERATION_STRIPES);
+    this.writesInProgress = new AtomicIntegerArray(GENERATION_STRIPES);
+  }
+
+  @Contract("_ -> new")
+  public static <T extends Model> @NotNull TieredModelRepositoryBuilder<T> builder(final @NotNull Executor executor) {
+    return new TieredModelRepositoryBuilder<>(executor);
+  }
+
+  public int tierCount() {
+    return this.tiers.size();
+  }
+
+  public @NotNull ModelRepository<ModelType> tier(final int index) {
+    return this.tiers.get(index).repository;
+  }
+
+  public @NotNull WritePolicy writePolicy(final int index) {
+    return this.tiers.get(index).writePolicy;
+  }
+
+  public @NotNull ModelRepositoryMetrics metrics() {
+    return this.metrics;
+  }
+
+  public int pendingWritesSync() {
+    var pendingWrites = 0;
+    for (final var tier : this.tiers) {
+      if (tier.writeBehindQueue != null) {
+        pendingWrites += tier.writeBehindQueue.size();
+      }
+    }
+    return pendingWrites;
+  }
+
+  public int flushSync() {
+    var flushed = 0;
+    for (final var tier : this.tiers) {
+      if (tier.writeBehindQueue != null) {
+        flushed += tier.writeBehindQueue.flush();
+      }
+    }
+    return flushed;
+  }
+
+  public @NotNull CompletableFuture<@NotNull Integer> flush() {
+    return CompletableFuture.supplyAsync(this::flushSync, super.executor);
+  }
+
+  public void close() {
+    for (final var tier : this.tiers) {
+      if (tier.writeBehindQueue != null) {
+        tier.writeBehindQueue.close();
+      }
+    }
+  }
+
+  @Override
+  public @Nullable ModelType findSync(final @NotNull String id) {
+    final var model = this.tiers.get(0)
+                        .find(id);
+    if (model != null) {
+      this.metrics.recordCacheHits(1);
+      return model;
+    }
+    this.metrics.recordCacheMisses(1);
+    if (this.tiers.size() == 1) {
+      return null;
+    }
+    try {
+      return this.load(id)
+               .join();
+    } catch (final CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C findManySync(
+    final @NotNull Collection<String> ids,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var found = new HashMap<String, ModelType>(ids.size() * 2);
+    var missing = new ArrayList<>(new LinkedHashSet<>(ids));
+    for (var i = 0; i < this.tiers.size() && !missing.isEmpty(); i++) {
+      final var generations = i == 0 ? null : this.generations(missing);
+      final var tierModels = this.tiers.get(i)
+                               .findMany(missing);
+      if (i == 0) {
+        this.metrics.recordCacheHits(tierModels.size());
+        this.metrics.recordCacheMisses(missing.size() - tierModels.size());
+      }
+      if (tierModels.isEmpty()) {
+        continue;
+      }
+      // the models found in this tier are promoted with one batch per upper tier
+      for (var j = i - 1; j >= 0; j--) {
+        this.tiers.get(j).repository.saveManySync(tierModels);
+      }
+      if (i > 0) {
+        this.removeChangedPromotions(i, tierModels, missing, generations);
+      }
+      final var stillMissing = new ArrayList<String>(missing.size() - tierModels.size());
+      for (final var model : tierModels) {
+        found.put(model.id(), model);
+      }
+      for (final var id : missing) {
+        if (!found.containsKey(id)) {
+          stillMissing.add(id);
+        }
+      }
+      missing = stillMissing;
+    }
+    final var models = factory.apply(found.size());
+    models.addAll(found.values());
+    return models;
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @Nullable C findSync(
+    final @NotNull String field,
+    final @NotNull String value,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    return this.lastTier.repository.findSync(field, value, factory);
+  }
+
+  @Override
+  public @Nullable Collection<String> findIdsSync() {
+    return this.lastTier.repository.findIdsSync();
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @Nullable C findAllSync(
+    final @NotNull Consumer<ModelType> postLoadAction,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    return this.lastTier.repository.findAllSync(postLoadAction, factory);
+  }
+
+  @Override
+  public @NotNull Stream<ModelType> streamAllSync(final int batchSize) {
+    return this.lastTier.repository.streamAllSync(batchSize);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C querySync(
+    final @NotNull ModelQuery query,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    return this.lastTier.repository.querySync(query, factory);
+  }
+
+  @Override
+  public @NotNull ModelPage<ModelType> findPageSync(
+    final @Nullable ModelFilter filter,
+    final @Nullable String token,
+    final int pageSize
+  ) {
+    return this.lastTier.repository.findPageSync(filter, token, pageSize);
+  }
+
+  @Override
+  public boolean existsSync(final @NotNull String id) {
+    for (final var tier : this.tiers) {
+      if (tier.pending(id) != null || tier.repository.existsSync(id)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public @NotNull ModelType saveSync(final @NotNull ModelType model) {
+    this.beginWrite(model.id());
+    try {
+      // from the bottom, so an upper tier never holds a model its lower tiers failed to save
+      for (var i = this.tiers.size() - 1; i >= 0; i--) {
+        this.tiers.get(i)
+          .write(model);
+      }
+    } finally {
+      this.endWrite(model.id());
+    }
+    return model;
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C saveManySync(final @NotNull C models) {
+    if (models.isEmpty()) {
+      return models;
+    }
+    for (final var model : models) {
+      this.beginWrite(model.id());
+    }
+    try {
+      for (var i = this.tiers.size() - 1; i >= 0; i--) {
+        this.tiers.get(i)
+          .writeMany(models);
+      }
+    } finally {
+      for (final var model : models) {
+        this.endWrite(model.id());
+      }
+    }
+    return models;
+  }
+
+  /**
+   * Compares and saves the model in the last tier, then writes it to the upper tiers. A pending
+   * write-behind save of the model is flushed first, so the comparison sees the latest version.
+   * On a conflict the upper tiers hold a stale model, so it's removed from them.
+   *
+   * @param model the model to save
+   * @param expectedVersion the version the stored model must have
+   * @return true if the model was saved
+   */
+  @Override
+  public boolean compareAndSaveSync(final @NotNull ModelType model, final long expectedVersion) {
+    this.beginWrite(model.id());
+    try {
+      if (this.lastTier.writeBehindQueue != null) {
+        this.lastTier.writeBehindQueue.flush(model.id());
+      }
+      final var saved = this.lastTier.repository.compareAndSaveSync(model, expectedVersion);
+      for (var i = this.tiers.size() - 2; i >= 0; i--) {
+        final var tier = this.tiers.get(i);
+        if (saved) {
+          tier.write(model);
+        } else {
+          tier.invalidate(model.id());
+        }
+      }
+      return saved;
+    } finally {
+      this.endWrite(model.id());
+    }
+  }
+
+  @Override
+  public boolean deleteSync(final @NotNull String id) {
+    this.beginWrite(id);
+    try {
+      var deleted = false;
+      for (final var tier : this.tiers) {
+        deleted |= tier.invalidate(id);
+      }
+      return deleted;
+    } finally {
+      this.endWrite(id);
+    }
+  }
+
+  @Override
+  public int deleteManySync(final @NotNull Collection<String> ids) {
+    if (ids.isEmpty()) {
+      return 0;
+    }
+    for (final var id : ids) {
+      this.beginWrite(id);
+    }
+    try {
+      var deleted = 0;
+      for (final var tier : this.tiers) {
+        if (tier.writeBehindQueue != null) {
+          for (final var id : ids) {
+            tier.writeBehindQueue.discard(id);
+          }
+        }
+        deleted = tier.repository.deleteManySync(ids);
+      }
+      return deleted;
+    } finally {
+      for (final var id : ids) {
+        this.endWrite(id);
+      }
+    }
+  }
+
+  /**
+   * Reads the model from the tiers below the first one and promotes it, sharing a single load
+   * between every concurrent caller which misses the same id.
+   *
+   * @param id the id of the model to load
+   * @return a future completed with the loaded model, or null if no tier has it
+   */
+  protected @NotNull CompletableFuture<@Nullable ModelType> load(final @NotNull String id) {
+    final var load = new CompletableFuture<ModelType>();
+    final var inFlightLoad = this.inFlightLoads.putIfAbsent(id, load);
+    if (inFlightLoad != null) {
+      return inFlightLoad;
+    }
+    final var start = System.nanoTime();
+    try {
+      // another load may have promoted the model between the miss and the registration of this one
+      var model = this.tiers.get(0)
+                    .find(id);
+      if (model == null) {
+        for (var i = 1; i < this.tiers.size() && model == null; i++) {
+          final var generation = this.generation(id);
+          model = this.tiers.get(i)
+                    .find(id);
+          if (model != null) {
+            for (var j = i - 1; j >= 0; j--) {
+              this.tiers.get(j).repository.saveSync(model);
+            }
+            // a write which ran meanwhile may be older than the promotion, so the copies are removed
+            if (this.changedSince(id, generation)) {
+              for (var j = i - 1; j >= 0; j--) {
+                this.tiers.get(j).repository.deleteSync(id);
+              }
+            }
+          }
+        }
+        this.metrics.recordCacheLoad(System.nanoTime() - start, model != null, false);
+      }
+      load.complete(model);
+    } catch (final RuntimeException e) {
+      this.metrics.recordCacheLoad(System.nanoTime() - start, false, true);
+      load.completeExceptionally(e);
+    } finally {
+      this.inFlightLoads.remove(id, load);
+    }
+    return load;
+  }
+
+  private long generation(final @NotNull String id) {
+    return this.generations.get(generationStripe(id));
+  }
+
+  private void beginWrite(final @NotNull String id) {
+    this.writesInProgress.incrementAndGet(generationStripe(id));
+  }
+
+  // the generation moves before the write stops being in progress, so a promotion which overlapped
+  // the write always sees one of both
+  private void endWrite(final @NotNull String id) {
+    final var stripe = generationStripe(id);
+    this.generations.incrementAndGet(stripe);
+    this.writesInProgress.decrementAndGet(stripe);
+  }
+
+  // reads the writes in progress first, since a write ends bumping the generation before them
+  private boolean changedSince(final @NotNull String id, final long generation) {
+    final var stripe = generationStripe(id);
+    return this.writesInProgress.get(stripe) != 0 || this.generations.get(stripe) != generation;
+  }
+
+  private long @NotNull [] generations(final @NotNull List<String> ids) {
+    final var generations = new long[ids.size()];
+    for (var i = 0; i < generations.length; i++) {
+      generations[i] = this.generation(ids.get(i));
+    }
+    return generations;
+  }
+
+  // removes the promoted models whose id was written while or since the generations were read
+  private void removeChangedPromotions(
+    final int tierIndex,
+    final @NotNull List<ModelType> promoted,
+    final @NotNull List<String> ids,
+    final long @NotNull [] generations
+  ) {
+    final var promotedIds = new HashSet<String>(promoted.size() * 2);
+    for (final var model : promoted) {
+      promotedIds.add(model.id());
+    }
+    final var changed = new ArrayList<String>();
+    for (var i = 0; i < generations.length; i++) {
+      final var id = ids.get(i);
+      if (promotedIds.contains(id) && this.changedSince(id, generations[i])) {
+        changed.add(id);
+      }
+    }
+    if (changed.isEmpty()) {
+      return;
+    }
+    for (var j = tierIndex - 1; j >= 0; j--) {
+      this.tiers.get(j).repository.deleteManySync(changed);
+    }
+  }
+
+  private static int generationStripe(final @NotNull String id) {
+    return (id.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+  }
+
+  private static final class Tier<ModelType extends Model> {
+    private final ModelRepository<ModelType> repository;
+    private final WritePolicy writePolicy;
+    private final @Nullable WriteBehindQueue<ModelType> writeBehindQueue;
+
+    private Tier(
+      final @NotNull ModelRepository<ModelType> repository,
+      final @NotNull WritePolicy writePolicy,
+      final @Nullable WriteBehindQueue<ModelType> writeBehindQueue
+    ) {
+      this.repository = repository;
+      this.writePolicy = writePolicy;
+      this.writeBehindQueue = writeBehindQueue;
+    }
+
+    private @Nullable ModelType pending(final @NotNull String id) {
+      return this.writeBehindQueue == null ? null : this.writeBehindQueue.pending(id);
+    }
+
+    // a queued save is newer than the model stored in the tier
+    private @Nullable ModelType find(final @NotNull String id) {
+      final var pending = this.pending(id);
+      return pending == null ? this.repository.findSync(id) : pending;
+    }
+
+    private @NotNull List<ModelType> findMany(final @NotNull List<String> ids) {
+      if (this.writeBehindQueue == null) {
+        return this.repository.findManySync(ids, ArrayList::new);
+      }
+      final var models = new ArrayList<ModelType>(ids.size());
+      final var stored = new ArrayList<String>(ids.size());
+      for (final var id : ids) {
+        final var pending = this.writeBehindQueue.pending(id);
+        if (pending == null) {
+          stored.add(id);
+        } else {
+          models.add(pending);
+        }
+      }
+      if (!stored.isEmpty()) {
+        models.addAll(this.repository.findManySync(stored, ArrayList::new));
+      }
+      return models;
+    }
+
+    private void write(final @NotNull ModelType model) {
+      switch (this.writePolicy) {
+        case THROUGH -> this.repository.saveSync(model);
+        case BEHIND -> this.writeBehindQueue.markDirty(model);
+        case AROUND -> this.repository.deleteSync(model.id());
+      }
+    }
+
+    private void writeMany(final @NotNull Collection<ModelType> models) {
+      switch (this.writePolicy) {
+        case THROUGH -> this.repository.saveManySync(models);
+        case BEHIND -> {
+          for (final var model : models) {
+            this.writeBehindQueue.markDirty(model);
+          }
+        }
+        case AROUND -> {
+          final var ids = new ArrayList<String>(models.size());
+          for (final var model : models) {
+            ids.add(model.id());
+          }
+          this.repository.deleteManySync(ids);
+        }
+      }
+    }
+
+    private boolean invalidate(final @NotNull String id) {
+      if (this.writeBehindQueue != null) {
+        this.writeBehindQueue.discard(id);
+      }
+      return this.repository.deleteSync(id);
+    }
+  }
+}
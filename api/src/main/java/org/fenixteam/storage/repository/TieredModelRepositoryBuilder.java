@@ -0,0 +1,81 @@
+package org.fenixteam.storage.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.fenixteam.storage.metrics.ModelRepositoryMetrics;
+import org.fenixteam.storage.model.Model;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+@SuppressWarnings("unused")
+public final class TieredModelRepositoryBuilder<ModelType extends Model> {
+  private final Executor executor;
+  private final List<ModelRepository<ModelType>> repositories = new ArrayList<>();
+  private final List<WritePolicy> writePolicies = new ArrayList<>();
+  private ScheduledExecutorService writeBehindScheduler;
+  private long writeBehindPeriodMillis;
+  private int writeBehindBatchSize = 500;
+  private ModelRepositoryMetrics metrics = ModelRepositoryMetrics.NOOP;
+
+  TieredModelRepositoryBuilder(final @NotNull Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Adds a tier below the previously added ones, the last tier must hold every model.
+   *
+   * @param repository the repository of the tier
+   * @param writePolicy how the saves reach the tier
+   * @return this builder
+   */
+  @Contract("_, _ -> this")
+  public @NotNull TieredModelRepositoryBuilder<ModelType> tier(
+    final @NotNull ModelRepository<ModelType> repository,
+    final @NotNull WritePolicy writePolicy
+  ) {
+    this.repositories.add(repository);
+    this.writePolicies.add(writePolicy);
+    return this;
+  }
+
+  @Contract("_, _, _ -> this")
+  public @NotNull TieredModelRepositoryBuilder<ModelType> writeBehind(
+    final @NotNull ScheduledExecutorService scheduler,
+    final long flushPeriod,
+    final @NotNull TimeUnit unit
+  ) {
+    this.writeBehindScheduler = scheduler;
+    this.writeBehindPeriodMillis = unit.toMillis(flushPeriod);
+    return this;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull TieredModelRepositoryBuilder<ModelType> writeBehindBatchSize(final int batchSize) {
+    this.writeBehindBatchSize = batchSize;
+    return this;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull TieredModelRepositoryBuilder<ModelType> metrics(final @NotNull ModelRepositoryMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  @Contract(" -> new")
+  public @NotNull TieredModelRepository<ModelType> build() {
+    if (this.writeBehindScheduler != null && this.writeBehindPeriodMillis <= 0) {
+      throw new IllegalArgumentException("Write-behind flush period must be positive");
+    }
+    return new TieredModelRepository<>(
+      this.executor,
+      List.copyOf(this.repositories),
+      List.copyOf(this.writePolicies),
+      this.writeBehindScheduler,
+      this.writeBehindPeriodMillis,
+      this.writeBehindBatchSize,
+      this.metrics);
+  }
+}
@@ -0,0 +1,165 @@
+package org.fenixteam.storage.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import org.fenixteam.storage.concurrent.ScheduledTasks;
+import org.fenixteam.storage.model.Model;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps the latest unsaved version of every dirty model and periodically writes them in batches to
+ * the target repository, so many saves of the same model inside one flush window become a single
+ * write.
+ *
+ * <p>Discarding a model whose batch is being written waits for that write to end, so the save or
+ * delete done by the caller afterwards always replaces it.</p>
+ *
+ * @param <ModelType> the type of the queued models
+ */
+final class WriteBehindQueue<ModelType extends Model> {
+  private final ModelRepository<ModelType> targetModelRepository;
+  private final int batchSize;
+  private final Map<String, ModelType> dirtyModels;
+  // the ids of the batch being written, only one batch is written at a time
+  private final Map<String, InFlightWrite> inFlightWrites;
+  private final Lock flushLock;
+  private final ScheduledFuture<?> flushTask;
+  private final @Nullable Consumer<List<ModelType>> writeListener;
+
+  WriteBehindQueue(
+    final @NotNull ModelRepository<ModelType> targetModelRepository,
+    final @NotNull ScheduledExecutorService scheduler,
+    final long flushPeriodMillis,
+    final int batchSize,
+    final @Nullable Consumer<List<ModelType>> writeListener
+  ) {
+    this.targetModelRepository = targetModelRepository;
+    this.writeListener = writeListener;
+    this.batchSize = Math.max(1, batchSize);
+    this.dirtyModels = new ConcurrentHashMap<>();
+    this.inFlightWrites = new ConcurrentHashMap<>();
+    this.flushLock = new ReentrantLock();
+    this.flushTask = scheduler.scheduleWithFixedDelay(
+      ScheduledTasks.reportingFailures(this::flush),
+      flushPeriodMillis,
+      flushPeriodMillis,
+      TimeUnit.MILLISECONDS);
+  }
+
+  void markDirty(final @NotNull ModelType model) {
+    this.dirtyModels.put(model.id(), model);
+  }
+
+  void discard(final @NotNull String id) {
+    this.dirtyModels.remove(id);
+    final var inFlightWrite = this.inFlightWrites.get(id);
+    if (inFlightWrite != null) {
+      inFlightWrite.discarded = true;
+      inFlightWrite.done.join();
+    }
+  }
+
+  @Nullable ModelType pending(final @NotNull String id) {
+    return this.dirtyModels.get(id);
+  }
+
+  // writes the pending model of the id right away, if any
+  void flush(final @NotNull String id) {
+    this.flushLock.lock();
+    try {
+      final var batch = new ArrayList<ModelType>(1);
+      this.take(id, batch);
+      if (!batch.isEmpty()) {
+        this.write(batch);
+      }
+    } finally {
+      this.flushLock.unlock();
+    }
+  }
+
+  int size() {
+    return this.dirtyModels.size();
+  }
+
+  int flush() {
+    this.flushLock.lock();
+    try {
+      var flushed = 0;
+      var batch = new ArrayList<ModelType>(Math.min(this.batchSize, this.dirtyModels.size()));
+      for (final var id : this.dirtyModels.keySet()) {
+        this.take(id, batch);
+        if (batch.size() >= this.batchSize) {
+          this.write(batch);
+          flushed += batch.size();
+          batch = new ArrayList<>(this.batchSize);
+        }
+      }
+      if (!batch.isEmpty()) {
+        this.write(batch);
+        flushed += batch.size();
+      }
+      return flushed;
+    } finally {
+      this.flushLock.unlock();
+    }
+  }
+
+  void close() {
+    this.flushTask.cancel(false);
+    this.flush();
+  }
+
+  // moves the pending model of the id to the batch, marking it in flight before it leaves the queue
+  private void take(final @NotNull String id, final @NotNull List<ModelType> batch) {
+    final var inFlightWrite = new InFlightWrite();
+    this.inFlightWrites.put(id, inFlightWrite);
+    final var model = this.dirtyModels.remove(id);
+    if (model == null) {
+      this.inFlightWrites.remove(id);
+      inFlightWrite.done.complete(null);
+      return;
+    }
+    batch.add(model);
+  }
+
+  private void write(final @NotNull List<ModelType> batch) {
+    try {
+      this.targetModelRepository.saveManySync(batch);
+    } catch (final RuntimeException e) {
+      // keep the models dirty so the next flush retries them, unless they were saved again or
+      // discarded meanwhile
+      for (final var model : batch) {
+        final var inFlightWrite = this.inFlightWrites.get(model.id());
+        if (inFlightWrite == null || !inFlightWrite.discarded) {
+          this.dirtyModels.putIfAbsent(model.id(), model);
+        }
+      }
+      throw e;
+    } finally {
+      for (final var model : batch) {
+        final var inFlightWrite = this.inFlightWrites.remove(model.id());
+        if (inFlightWrite != null) {
+          inFlightWrite.done.complete(null);
+        }
+      }
+    }
+    if (this.writeListener != null) {
+      this.writeListener.accept(batch);
+    }
+  }
+
+  private static final class InFlightWrite {
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private volatile boolean discarded;
+  }
+}
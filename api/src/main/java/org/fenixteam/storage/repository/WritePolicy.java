@@ -0,0 +1,21 @@
+package org.fenixteam.storage.repository;
+
+/**
+ * How the saves of a {@link TieredModelRepository} reach one of its tiers.
+ */
+public enum WritePolicy {
+  /**
+   * The model is saved in the tier before the save completes.
+   */
+  THROUGH,
+  /**
+   * The model is queued and saved in the tier by the periodic write-behind flush, coalescing the
+   * saves of the same model inside a flush period.
+   */
+  BEHIND,
+  /**
+   * The model isn't saved in the tier, its stale copy is removed instead and the next read which
+   * reaches a lower tier promotes it again.
+   */
+  AROUND
+}
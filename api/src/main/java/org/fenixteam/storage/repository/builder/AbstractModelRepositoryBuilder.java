@@ -1,9 +1,14 @@
 package org.fenixteam.storage.repository.builder;
 
 import java.util.concurrent.Executor;
+import org.fenixteam.storage.concurrent.BoundedExecutor;
+import org.fenixteam.storage.concurrent.VirtualThreads;
+import org.fenixteam.storage.metrics.InstrumentedAsyncModelRepository;
+import org.fenixteam.storage.metrics.ModelRepositoryMetrics;
 import org.fenixteam.storage.model.Model;
 import org.fenixteam.storage.repository.AsyncModelRepository;
 import org.fenixteam.storage.repository.CachedModelRepository;
+import org.fenixteam.storage.repository.CachedModelRepositoryBuilder;
 import org.fenixteam.storage.repository.ModelRepository;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
@@ -13,6 +18,29 @@ public abstract class AbstractModelRepositoryBuilder<ModelType extends Model> {
   @Contract("_ -> new")
   public abstract @NotNull AsyncModelRepository<ModelType> build(final @NotNull Executor executor);
 
+  @Contract("_, _ -> new")
+  public @NotNull AsyncModelRepository<ModelType> buildInstrumented(
+    final @NotNull Executor executor,
+    final @NotNull ModelRepositoryMetrics metrics
+  ) {
+    return InstrumentedAsyncModelRepository.wrap(this.build(executor), metrics);
+  }
+
+  /**
+   * Builds the repository running every asynchronous operation in its own virtual thread, with at
+   * most {@code maxConcurrency} operations using the backend at the same time. The blocking calls
+   * of the backend park the virtual threads instead of holding platform threads, and the limit
+   * should match the size of the backend connection pool so waiting operations don't exhaust it.
+   *
+   * @param maxConcurrency the max amount of operations running at the same time
+   * @return the new repository
+   * @throws UnsupportedOperationException if the running JVM doesn't support virtual threads
+   */
+  @Contract("_ -> new")
+  public @NotNull AsyncModelRepository<ModelType> buildVirtual(final int maxConcurrency) {
+    return this.build(new BoundedExecutor(VirtualThreads.newVirtualThreadPerTaskExecutor(), maxConcurrency));
+  }
+
   @Contract("_, _ -> new")
   public @NotNull CachedModelRepository<ModelType> buildCached(
     final @NotNull Executor executor,
@@ -20,4 +48,12 @@ public abstract class AbstractModelRepositoryBuilder<ModelType extends Model> {
   ) {
     return new CachedModelRepository<>(executor, cacheModelRepository, this.build(executor));
   }
+
+  @Contract("_, _ -> new")
+  public @NotNull CachedModelRepositoryBuilder<ModelType> cachedBuilder(
+    final @NotNull Executor executor,
+    final @NotNull ModelRepository<ModelType> cacheModelRepository
+  ) {
+    return CachedModelRepository.builder(executor, cacheModelRepository, this.build(executor));
+  }
 }
@@ -0,0 +1,29 @@
+package org.fenixteam.storage.repository.index;
+
+import java.util.function.Function;
+import org.fenixteam.storage.model.Model;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Declares a secondary index of an in-memory repository. The extractor returns the indexed value
+ * of a model, which is compared with the queried value by its string representation; a collection
+ * indexes the model under each of its elements and null doesn't index the model at all.
+ *
+ * @param field the name of the indexed field, used by the queries
+ * @param extractor the function returning the indexed value of a model
+ * @param <ModelType> the type of the indexed models
+ */
+public record ModelIndex<ModelType extends Model>(
+  @NotNull String field,
+  @NotNull Function<ModelType, @Nullable Object> extractor
+) {
+  @Contract("_, _ -> new")
+  public static <T extends Model> @NotNull ModelIndex<T> of(
+    final @NotNull String field,
+    final @NotNull Function<T, @Nullable Object> extractor
+  ) {
+    return new ModelIndex<>(field, extractor);
+  }
+}
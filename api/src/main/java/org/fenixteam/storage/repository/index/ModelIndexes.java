@@ -0,0 +1,270 @@
+package org.fenixteam.storage.repository.index;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.query.ModelFilter;
+import org.fenixteam.storage.query.ModelQuery;
+import org.fenixteam.storage.query.QueryCollector;
+import org.fenixteam.storage.repository.ModelRepository;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps the secondary indexes of an in-memory repository, mapping every indexed value to the ids
+ * of the models holding it. The repository must call {@link #add(Model)} when storing a model and
+ * {@link #remove(String)} when removing it, atomically with the change of the stored model; both
+ * are atomic per model id. The found ids are candidates, which {@link #matches} re-checks against
+ * the stored models.
+ *
+ * @param <ModelType> the type of the indexed models
+ */
+public final class ModelIndexes<ModelType extends Model> {
+  private static final String[] NO_KEYS = new String[0];
+  private final Map<String, Index<ModelType>> indexes;
+
+  public ModelIndexes(final @NotNull Collection<? extends ModelIndex<ModelType>> indexes) {
+    this.indexes = new HashMap<>(indexes.size());
+    for (final var index : indexes) {
+      if (this.indexes.put(index.field(), new Index<>(index)) != null) {
+        throw new IllegalArgumentException("Duplicated index for field " + index.field());
+      }
+    }
+  }
+
+  public boolean isEmpty() {
+    return this.indexes.isEmpty();
+  }
+
+  public boolean isIndexed(final @NotNull String field) {
+    return this.indexes.containsKey(field);
+  }
+
+  /**
+   * Returns the value of the given field in the model, as extracted by its index declaration.
+   *
+   * @param field the id field or an indexed field
+   * @param model the model to read
+   * @return the value of the field, may be null
+   * @throws UnsupportedOperationException if the field isn't indexed
+   */
+  public @Nullable Object value(final @NotNull String field, final @NotNull ModelType model) {
+    if (field.equals(ModelRepository.ID_FIELD)) {
+      return model.id();
+    }
+    final var index = this.indexes.get(field);
+    if (index == null) {
+      throw new UnsupportedOperationException("In-memory repository has no index for field " + field);
+    }
+    return index.declaration.extractor()
+             .apply(model);
+  }
+
+  /**
+   * Checks whether the indexed field of the model still has the given value, so a stale id found
+   * in the index isn't returned.
+   *
+   * @param field the indexed field
+   * @param value the string representation of the value
+   * @param model the stored model
+   * @return true if the field of the model has the value
+   */
+  public boolean matches(final @NotNull String field, final @NotNull String value, final @NotNull ModelType model) {
+    final var index = this.indexes.get(field);
+    if (index == null) {
+      return false;
+    }
+    for (final var key : index.keys(model)) {
+      if (key.equals(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Runs a query over the given models, reading the fields through the index declarations. An
+   * equality filter over an indexed field, alone or inside a conjunction, narrows the evaluated
+   * models to the ones found in its index instead of scanning every model.
+   *
+   * @param query the query to run
+   * @param models the models by their id
+   * @param factory the factory of the returned collection
+   * @param <C> the type of the returned collection
+   * @return the matching models, in the order of the query
+   * @throws UnsupportedOperationException if the query reads a field which isn't indexed
+   */
+  public <C extends Collection<ModelType>> @NotNull C query(
+    final @NotNull ModelQuery query,
+    final @NotNull Map<String, ModelType> models,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var collector = new QueryCollector<ModelType>(query, (model, field) -> this.value(field, model));
+    final var candidateIds = this.candidateIds(query.filter());
+    if (candidateIds == null) {
+      for (final var model : models.values()) {
+        if (!collector.offer(model)) {
+          break;
+        }
+      }
+    } else {
+      for (final var id : candidateIds) {
+        final var model = models.get(id);
+        if (model != null && !collector.offer(model)) {
+          break;
+        }
+      }
+    }
+    final var results = collector.results();
+    final var foundModels = factory.apply(results.size());
+    foundModels.addAll(results);
+    return foundModels;
+  }
+
+  private @Nullable Collection<String> candidateIds(final @Nullable ModelFilter filter) {
+    if (filter instanceof ModelFilter.And and) {
+      Collection<String> smallest = null;
+      for (final var child : and.filters()) {
+        final var ids = this.candidateIds(child);
+        if (ids != null && (smallest == null || ids.size() < smallest.size())) {
+          smallest = ids;
+        }
+      }
+      return smallest;
+    }
+    if (!(filter instanceof ModelFilter.Comparison comparison)
+        || comparison.operator() != ModelFilter.Operator.EQ) {
+      return null;
+    }
+    if (comparison.field()
+          .equals(ModelRepository.ID_FIELD)) {
+      return List.of(comparison.value()
+                       .toString());
+    }
+    // the live view is copied so the scan doesn't see concurrent changes of the index
+    final var ids = this.find(comparison.field(), comparison.value()
+                                                   .toString());
+    return ids == null ? null : List.copyOf(ids);
+  }
+
+  public void add(final @NotNull ModelType model) {
+    for (final var index : this.indexes.values()) {
+      index.add(model);
+    }
+  }
+
+  public void remove(final @NotNull String id) {
+    for (final var index : this.indexes.values()) {
+      index.remove(id);
+    }
+  }
+
+  public void clear() {
+    for (final var index : this.indexes.values()) {
+      index.clear();
+    }
+  }
+
+  /**
+   * Finds the ids of the models whose indexed field has the given value.
+   *
+   * @param field the indexed field
+   * @param value the string representation of the value
+   * @return a live view of the matching ids, or null if the field isn't indexed
+   */
+  public @Nullable Set<String> find(final @NotNull String field, final @NotNull String value) {
+    final var index = this.indexes.get(field);
+    if (index == null) {
+      return null;
+    }
+    return index.find(value);
+  }
+
+  private static final class Index<ModelType extends Model> {
+    private final ModelIndex<ModelType> declaration;
+    private final Map<String, Set<String>> idsByKey;
+    private final Map<String, String[]> keysById;
+
+    private Index(final @NotNull ModelIndex<ModelType> declaration) {
+      this.declaration = declaration;
+      this.idsByKey = new ConcurrentHashMap<>();
+      this.keysById = new ConcurrentHashMap<>();
+    }
+
+    private void add(final @NotNull ModelType model) {
+      final var id = model.id();
+      final var newKeys = this.keys(model);
+      // computing on the id serializes the updates of the same model
+      this.keysById.compute(id, (unused, oldKeys) -> {
+        if (oldKeys != null) {
+          for (final var oldKey : oldKeys) {
+            this.unlink(oldKey, id);
+          }
+        }
+        for (final var newKey : newKeys) {
+          this.link(newKey, id);
+        }
+        return newKeys.length == 0 ? null : newKeys;
+      });
+    }
+
+    private void remove(final @NotNull String id) {
+      this.keysById.computeIfPresent(id, (unused, oldKeys) -> {
+        for (final var oldKey : oldKeys) {
+          this.unlink(oldKey, id);
+        }
+        return null;
+      });
+    }
+
+    private void clear() {
+      this.keysById.clear();
+      this.idsByKey.clear();
+    }
+
+    private @NotNull Set<String> find(final @NotNull String key) {
+      final var ids = this.idsByKey.get(key);
+      return ids == null ? Set.of() : ids;
+    }
+
+    private void link(final @NotNull String key, final @NotNull String id) {
+      this.idsByKey.compute(key, (unused, ids) -> {
+        final var linkedIds = ids == null ? ConcurrentHashMap.<String>newKeySet() : ids;
+        linkedIds.add(id);
+        return linkedIds;
+      });
+    }
+
+    private void unlink(final @NotNull String key, final @NotNull String id) {
+      this.idsByKey.computeIfPresent(key, (unused, ids) -> {
+        ids.remove(id);
+        return ids.isEmpty() ? null : ids;
+      });
+    }
+
+    private @NotNull String[] keys(final @NotNull ModelType model) {
+      final var value = this.declaration.extractor()
+                          .apply(model);
+      if (value == null) {
+        return NO_KEYS;
+      }
+      if (!(value instanceof Collection<?> values)) {
+        return new String[] {value.toString()};
+      }
+      final var keys = new String[values.size()];
+      var size = 0;
+      for (final var element : values) {
+        if (element != null) {
+          keys[size++] = element.toString();
+        }
+      }
+      return size == keys.length ? keys : Arrays.copyOf(keys, size);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package org.fenixteam.storage.repository.shard;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Immutable consistent hash ring assigning each id to a named shard. Every shard owns many points
+ * (virtual nodes) of the ring, placed by hashing its name, and an id belongs to the owner of the
+ * first point after its hash. Adding or removing a shard only moves the ids of the ring arcs it
+ * gains or loses, roughly {@code 1 / shards} of them, and the points of a shard don't depend on
+ * the other shards so every node computes the same routing.
+ *
+ * @param <T> the type of the shards
+ */
+public final class ConsistentHashRing<T> {
+  private final int virtualNodes;
+  private final SortedMap<String, T> shards;
+  private final long[] points;
+  private final Object[] owners;
+
+  private ConsistentHashRing(final int virtualNodes, final @NotNull SortedMap<String, T> shards) {
+    this.virtualNodes = virtualNodes;
+    this.shards = Collections.unmodifiableSortedMap(shards);
+    final var pointCount = shards.size() * virtualNodes;
+    final var entries = new long[pointCount][];
+    final var shardOwners = new Object[shards.size()];
+    var shardIndex = 0;
+    var entryIndex = 0;
+    for (final var entry : shards.entrySet()) {
+      shardOwners[shardIndex] = entry.getValue();
+      for (var i = 0; i < virtualNodes; i++) {
+        entries[entryIndex++] = new long[] {hash(entry.getKey() + '#' + i), shardIndex};
+      }
+      shardIndex++;
+    }
+    Arrays.sort(entries, (first, second) -> Long.compare(first[0], second[0]));
+    this.points = new long[pointCount];
+    this.owners = new Object[pointCount];
+    for (var i = 0; i < pointCount; i++) {
+      this.points[i] = entries[i][0];
+      this.owners[i] = shardOwners[(int) entries[i][1]];
+    }
+  }
+
+  @Contract("_, _ -> new")
+  public static <T> @NotNull ConsistentHashRing<T> create(
+    final @NotNull Map<String, T> shards,
+    final int virtualNodes
+  ) {
+    if (virtualNodes < 1) {
+      throw new IllegalArgumentException("The virtual nodes per shard must be positive");
+    }
+    return new ConsistentHashRing<>(virtualNodes, new TreeMap<>(shards));
+  }
+
+  @Contract("_, _ -> new")
+  public @NotNull ConsistentHashRing<T> withShard(final @NotNull String name, final @NotNull T shard) {
+    if (this.shards.containsKey(name)) {
+      throw new IllegalArgumentException("There is already a shard named " + name);
+    }
+    final var shards = new TreeMap<>(this.shards);
+    shards.put(name, shard);
+    return new ConsistentHashRing<>(this.virtualNodes, shards);
+  }
+
+  @Contract("_ -> new")
+  public @NotNull ConsistentHashRing<T> withoutShard(final @NotNull String name) {
+    if (!this.shards.containsKey(name)) {
+      throw new IllegalArgumentException("There is no shard named " + name);
+    }
+    final var shards = new TreeMap<>(this.shards);
+    shards.remove(name);
+    return new ConsistentHashRing<>(this.virtualNodes, shards);
+  }
+
+  /**
+   * Returns the shards by their name, in the order of the names.
+   *
+   * @return the shards of the ring
+   */
+  public @NotNull SortedMap<String, T> shards() {
+    return this.shards;
+  }
+
+  public int virtualNodes() {
+    return this.virtualNodes;
+  }
+
+  /**
+   * Finds the shard which owns the given id.
+   *
+   * @param id the id to route
+   * @return the owner shard
+   * @throws IllegalStateException if the ring has no shards
+   */
+  @SuppressWarnings("unchecked")
+  public @NotNull T route(final @NotNull String id) {
+    if (this.points.length == 0) {
+      throw new IllegalStateException("The ring has no shards");
+    }
+    final var index = Arrays.binarySearch(this.points, hash(id));
+    final var point = index >= 0 ? index : -index - 1;
+    return (T) this.owners[point == this.points.length ? 0 : point];
+  }
+
+  // FNV-1a over the chars, mixed with the MurmurHash3 finalizer so similar keys spread over the ring
+  static long hash(final @NotNull String key) {
+    var hash = 0xcbf29ce484222325L;
+    for (var i = 0; i < key.length(); i++) {
+      hash ^= key.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
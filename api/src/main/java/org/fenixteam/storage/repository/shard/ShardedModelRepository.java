@@ -0,0 +1,664 @@
+package org.fenixteam.storage.repository.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.model.VersionedModel;
+import org.fenixteam.storage.query.FieldAccessor;
+import org.fenixteam.storage.query.ModelFilter;
+import org.fenixteam.storage.query.ModelPage;
+import org.fenixteam.storage.query.ModelQuery;
+import org.fenixteam.storage.query.QueryEvaluator;
+import org.fenixteam.storage.repository.AbstractNonBlockingModelRepository;
+import org.fenixteam.storage.repository.AsyncModelRepository;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Partitions the models across several repositories, routing every id to its shard with a
+ * {@link ConsistentHashRing}. The single-id operations reach only the owner shard, the batch
+ * operations send one request per involved shard, and the scans (ids, all models, field lookups
+ * and queries) run on every shard in parallel and merge the results.
+ *
+ * <p>Shards can be added or removed while the repository is in use: the ids which change their
+ * owner are moved in batches, and until the move completes the lookups which miss in the new owner
+ * fall back to the previous one.</p>
+ *
+ * @param <ModelType> the type of the stored models
+ */
+@SuppressWarnings("unused")
+public class ShardedModelRepository<ModelType extends Model> extends AbstractNonBlockingModelRepository<ModelType> {
+  private static final char TOKEN_SEPARATOR = '\0';
+  protected final @Nullable FieldAccessor<ModelType> fieldAccessor;
+  protected final int rebalanceBatchSize;
+  private volatile ConsistentHashRing<AsyncModelRepository<ModelType>> ring;
+  private volatile @Nullable ConsistentHashRing<AsyncModelRepository<ModelType>> previousRing;
+  private boolean rebalancing;
+
+  protected ShardedModelRepository(
+    final @NotNull ConsistentHashRing<AsyncModelRepository<ModelType>> ring,
+    final @Nullable FieldAccessor<ModelType> fieldAccessor,
+    final int rebalanceBatchSize
+  ) {
+    if (ring.shards()
+          .isEmpty()) {
+      throw new IllegalArgumentException("A sharded repository needs at least one shard");
+    }
+    this.ring = ring;
+    this.fieldAccessor = fieldAccessor;
+    this.rebalanceBatchSize = rebalanceBatchSize;
+  }
+
+  @Contract(" -> new")
+  public static <T extends Model> @NotNull ShardedModelRepositoryBuilder<T> builder() {
+    return new ShardedModelRepositoryBuilder<>();
+  }
+
+  public @NotNull ConsistentHashRing<AsyncModelRepository<ModelType>> ring() {
+    return this.ring;
+  }
+
+  public @NotNull AsyncModelRepository<ModelType> shardOf(final @NotNull String id) {
+    return this.ring.route(id);
+  }
+
+  /**
+   * Adds a shard and moves to it the models it now owns, about {@code 1 / shards} of them.
+   *
+   * @param name the name of the shard, which places it in the ring
+   * @param shard the repository of the shard
+   * @return a future completed with the amount of moved models
+   * @throws IllegalStateException if the shards are already being rebalanced
+   */
+  public @NotNull CompletableFuture<@NotNull Integer> addShard(
+    final @NotNull String name,
+    final @NotNull AsyncModelRepository<ModelType> shard
+  ) {
+    return this.reshard(ring -> ring.withShard(name, shard));
+  }
+
+  /**
+   * Removes a shard and moves its models to their new owners.
+   *
+   * @param name the name of the removed shard
+   * @return a future completed with the amount of moved models
+   * @throws IllegalStateException if the shards are already being rebalanced
+   */
+  public @NotNull CompletableFuture<@NotNull Integer> removeShard(final @NotNull String name) {
+    return this.reshard(ring -> ring.withoutShard(name));
+  }
+
+  /**
+   * Moves every model stored out of its owner shard to the owner, to resume a rebalance which
+   * failed. The lookups keep falling back to the previous owners until a rebalance completes.
+   *
+   * @return a future completed with the amount of moved models
+   * @throws IllegalStateException if the shards are already being rebalanced
+   */
+  public @NotNull CompletableFuture<@NotNull Integer> rebalance() {
+    return this.reshard(Function.identity());
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@Nullable ModelType> find(final @NotNull String id) {
+    final var owner = this.ring.route(id);
+    final var previousOwner = this.previousOwner(id, owner);
+    if (previousOwner == null) {
+      return owner.find(id);
+    }
+    return owner.find(id)
+             .thenCompose(model -> model == null ? previousOwner.find(id) : CompletableFuture.completedFuture(model));
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@Nullable C> find(
+    final @NotNull String field,
+    final @NotNull String value,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    return this.fanOut(shard -> shard.find(field, value, ArrayList::new))
+             .thenApply(results -> this.merge(results, factory));
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@NotNull C> findMany(
+    final @NotNull Collection<String> ids,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    if (ids.isEmpty()) {
+      return CompletableFuture.completedFuture(factory.apply(0));
+    }
+    final var ring = this.ring;
+    return this.findMany(ring, ids)
+             .thenCompose(models -> {
+               final var previousRing = this.previousRing;
+               if (previousRing == null || models.size() == ids.size()) {
+                 return CompletableFuture.completedFuture(models);
+               }
+               final var found = new HashSet<String>(models.size() * 2);
+               for (final var model : models) {
+                 found.add(model.id());
+               }
+               final var missing = new ArrayList<String>(ids.size() - models.size());
+               for (final var id : ids) {
+                 if (!found.contains(id) && previousRing.route(id) != ring.route(id)) {
+                   missing.add(id);
+                 }
+               }
+               if (missing.isEmpty()) {
+                 return CompletableFuture.completedFuture(models);
+               }
+               return this.findMany(previousRing, missing)
+                        .thenApply(previousModels -> {
+                          models.addAll(previousModels);
+                          return models;
+                        });
+             })
+             .thenApply(models -> {
+               final var collection = factory.apply(models.size());
+               collection.addAll(models);
+               return collection;
+             });
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@Nullable Collection<String>> findIds() {
+    final var deduplicate = this.previousRing != null;
+    return this.fanOut(AsyncModelRepository::findIds)
+             .thenApply(results -> {
+               var size = 0;
+               for (final var ids : results) {
+                 size += ids == null ? 0 : ids.size();
+               }
+               // a moving model may be in both shards for a while
+               final Collection<String> merged = deduplicate ? new HashSet<>(size * 2) : new ArrayList<>(size);
+               for (final var ids : results) {
+                 if (ids != null) {
+                   merged.addAll(ids);
+                 }
+               }
+               return merged;
+             });
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@Nullable C> findAll(
+    final @NotNull Consumer<ModelType> postLoadAction,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    return this.fanOut(shard -> shard.findAll(postLoadAction, ArrayList::new))
+             .thenApply(results -> this.merge(results, factory));
+  }
+
+  @Override
+  public @NotNull Stream<ModelType> streamAllSync(final int batchSize) {
+    return this.ring.shards()
+             .values()
+             .stream()
+             .flatMap(shard -> shard.streamAllSync(batchSize));
+  }
+
+  /**
+   * Runs the query on every shard and merges the results. The shards return the first
+   * {@code skip + limit} models of the query, and the page is skipped and limited after merging.
+   * The sorted queries need the field accessor of the builder to merge the shard results.
+   *
+   * @param query the query to run
+   * @param factory the factory of the returned collection
+   * @param <C> the type of the returned collection
+   * @return the matching models, in the order of the query
+   * @throws UnsupportedOperationException if the query is sorted and there is no field accessor
+   */
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@NotNull C> query(
+    final @NotNull ModelQuery query,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var comparator = this.fieldAccessor == null ? null : QueryEvaluator.comparator(
+      query.sorts(),
+      this.fieldAccessor);
+    if (comparator == null && !query.sorts()
+                                 .isEmpty()) {
+      throw new UnsupportedOperationException("Sorted queries over shards need a field accessor");
+    }
+    final var shardQuery = query.prefix();
+    return this.fanOut(shard -> shard.query(shardQuery, ArrayList::new))
+             .thenApply(results -> {
+               final var merged = this.merge(results, ArrayList::new);
+               if (comparator != null) {
+                 // the shard results are sorted runs, which the merge sort joins in linear passes
+                 merged.sort(comparator);
+               }
+               final var from = Math.min(query.skip(), merged.size());
+               final var to = query.limit() == 0 ? merged.size() : (int) Math.min(
+                 merged.size(),
+                 (long) from + query.limit());
+               final var collection = factory.apply(to - from);
+               collection.addAll(merged.subList(from, to));
+               return collection;
+             });
+  }
+
+  /**
+   * Reads the shards one after another in the order of their names. The token holds the name of
+   * the current shard and its own token, so it stays valid while other shards are added, but the
+   * pages read while the shards are rebalanced may miss or repeat moving models.
+   *
+   * @param filter the filter of the models, or null to read every model
+   * @param token the token of the page, or null for the first page
+   * @param pageSize the max amount of models of the page
+   * @return the page
+   */
+  @Override
+  public @NotNull CompletableFuture<@NotNull ModelPage<ModelType>> findPage(
+    final @Nullable ModelFilter filter,
+    final @Nullable String token,
+    final int pageSize
+  ) {
+    ModelPage.checkPageSize(pageSize);
+    final var shards = List.copyOf(this.ring.shards()
+                                     .entrySet());
+    final var position = ModelPage.decodeToken(token);
+    if (position == null) {
+      return this.findPage(shards, 0, filter, null, pageSize, new ArrayList<>(pageSize));
+    }
+    final var separator = position.indexOf(TOKEN_SEPARATOR);
+    if (separator == -1) {
+      throw new IllegalArgumentException("Malformed page token");
+    }
+    final var name = position.substring(0, separator);
+    var shardIndex = 0;
+    while (shardIndex < shards.size() && !shards.get(shardIndex)
+                                            .getKey()
+                                            .equals(name)) {
+      shardIndex++;
+    }
+    if (shardIndex == shards.size()) {
+      throw new IllegalArgumentException("The page token refers to the removed shard " + name);
+    }
+    final var shardToken = separator + 1 == position.length() ? null : position.substring(separator + 1);
+    return this.findPage(shards, shardIndex, filter, shardToken, pageSize, new ArrayList<>(pageSize));
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> exists(final @NotNull String id) {
+    final var owner = this.ring.route(id);
+    final var previousOwner = this.previousOwner(id, owner);
+    if (previousOwner == null) {
+      return owner.exists(id);
+    }
+    return owner.exists(id)
+             .thenCompose(exists -> exists ? CompletableFuture.completedFuture(true) : previousOwner.exists(id));
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull ModelType> save(final @NotNull ModelType model) {
+    final var owner = this.ring.route(model.id());
+    final var previousOwner = this.previousOwner(model.id(), owner);
+    if (previousOwner == null) {
+      return owner.save(model);
+    }
+    // the stale copy is removed so the rebalance doesn't move it over the saved model
+    return owner.save(model)
+             .thenCompose(saved -> previousOwner.delete(model.id())
+                                     .thenApply(deleted -> saved));
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> compareAndSave(
+    final @NotNull ModelType model,
+    final long expectedVersion
+  ) {
+    final var owner = this.ring.route(model.id());
+    final var previousOwner = this.previousOwner(model.id(), owner);
+    if (previousOwner == null) {
+      return owner.compareAndSave(model, expectedVersion);
+    }
+    // the model may still be in its previous owner, it's moved first so its version is compared
+    return previousOwner.findMany(List.of(model.id()), ArrayList::new)
+             .thenCompose(stale -> copyIfAbsent(owner, stale))
+             .thenCompose(copied -> previousOwner.delete(model.id()))
+             .thenCompose(deleted -> owner.compareAndSave(model, expectedVersion));
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@NotNull C> saveMany(
+    final @NotNull C models
+  ) {
+    if (models.isEmpty()) {
+      return CompletableFuture.completedFuture(models);
+    }
+    final var previousRing = this.previousRing;
+    final var groups = partition(this.ring, models, Model::id);
+    final var saves = new CompletableFuture<?>[groups.size()];
+    var index = 0;
+    for (final var group : groups.entrySet()) {
+      final var shard = group.getKey();
+      final var shardModels = group.getValue();
+      final var save = shard.saveMany(shardModels);
+      saves[index++] = previousRing == null
+                         ? save
+                         : save.thenCompose(saved -> this.deleteStaleCopies(previousRing, shard, shardModels));
+    }
+    return CompletableFuture.allOf(saves)
+             .thenApply(unused -> models);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> delete(final @NotNull String id) {
+    final var owner = this.ring.route(id);
+    final var previousOwner = this.previousOwner(id, owner);
+    if (previousOwner == null) {
+      return owner.delete(id);
+    }
+    return owner.delete(id)
+             .thenCombine(previousOwner.delete(id), (deleted, previousDeleted) -> deleted || previousDeleted);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Integer> deleteMany(final @NotNull Collection<String> ids) {
+    if (ids.isEmpty()) {
+      return CompletableFuture.completedFuture(0);
+    }
+    final var deletions = new ArrayList<CompletableFuture<Integer>>();
+    for (final var group : partition(this.ring, ids, Function.identity()).entrySet()) {
+      deletions.add(group.getKey()
+                      .deleteMany(group.getValue()));
+    }
+    final var previousRing = this.previousRing;
+    if (previousRing != null) {
+      for (final var group : partition(previousRing, ids, Function.identity()).entrySet()) {
+        deletions.add(group.getKey()
+                        .deleteMany(group.getValue()));
+      }
+    }
+    return CompletableFuture.allOf(deletions.toArray(CompletableFuture[]::new))
+             .thenApply(unused -> {
+               var deleted = 0;
+               for (final var deletion : deletions) {
+                 deleted += deletion.join();
+               }
+               return deleted;
+             });
+  }
+
+  protected @Nullable AsyncModelRepository<ModelType> previousOwner(
+    final @NotNull String id,
+    final @NotNull AsyncModelRepository<ModelType> owner
+  ) {
+    final var previousRing = this.previousRing;
+    if (previousRing == null) {
+      return null;
+    }
+    final var previousOwner = previousRing.route(id);
+    return previousOwner == owner ? null : previousOwner;
+  }
+
+  protected <R> @NotNull CompletableFuture<@NotNull List<R>> fanOut(
+    final @NotNull Function<AsyncModelRepository<ModelType>, CompletableFuture<R>> operation
+  ) {
+    final var shards = this.ring.shards()
+                         .values();
+    final var futures = new ArrayList<CompletableFuture<R>>(shards.size());
+    for (final var shard : shards) {
+      futures.add(operation.apply(shard));
+    }
+    return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+             .thenApply(unused -> {
+               final var results = new ArrayList<R>(futures.size());
+               for (final var future : futures) {
+                 results.add(future.join());
+               }
+               return results;
+             });
+  }
+
+  // joins the shard results, null if every shard returned null
+  private <C extends Collection<ModelType>> @Nullable C merge(
+    final @NotNull List<? extends @Nullable Collection<ModelType>> results,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    var size = 0;
+    var allNull = true;
+    for (final var models : results) {
+      if (models != null) {
+        size += models.size();
+        allNull = false;
+      }
+    }
+    if (allNull) {
+      return null;
+    }
+    final var merged = factory.apply(size);
+    for (final var models : results) {
+      if (models != null) {
+        merged.addAll(models);
+      }
+    }
+    return merged;
+  }
+
+  private @NotNull CompletableFuture<@NotNull List<ModelType>> findMany(
+    final @NotNull ConsistentHashRing<AsyncModelRepository<ModelType>> ring,
+    final @NotNull Collection<String> ids
+  ) {
+    final var groups = partition(ring, ids, Function.identity());
+    final var futures = new ArrayList<CompletableFuture<ArrayList<ModelType>>>(groups.size());
+    for (final var group : groups.entrySet()) {
+      futures.add(group.getKey()
+                    .findMany(group.getValue(), ArrayList::new));
+    }
+    return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+             .thenApply(unused -> {
+               final var models = new ArrayList<ModelType>(ids.size());
+               for (final var future : futures) {
+                 models.addAll(future.join());
+               }
+               return models;
+             });
+  }
+
+  private @NotNull CompletableFuture<@NotNull ModelPage<ModelType>> findPage(
+    final @NotNull List<Map.Entry<String, AsyncModelRepository<ModelType>>> shards,
+    final int shardIndex,
+    final @Nullable ModelFilter filter,
+    final @Nullable String shardToken,
+    final int pageSize,
+    final @NotNull List<ModelType> models
+  ) {
+    final var shard = shards.get(shardIndex);
+    return shard.getValue()
+             .findPage(filter, shardToken, pageSize - models.size())
+             .thenCompose(page -> {
+               models.addAll(page.models());
+               if (page.nextToken() != null) {
+                 if (models.size() >= pageSize) {
+                   return CompletableFuture.completedFuture(ModelPage.of(
+                     models,
+                     shard.getKey() + TOKEN_SEPARATOR + page.nextToken()));
+                 }
+                 return this.findPage(shards, shardIndex, filter, page.nextToken(), pageSize, models);
+               }
+               if (shardIndex + 1 == shards.size()) {
+                 return CompletableFuture.completedFuture(new ModelPage<>(models, null));
+               }
+               if (models.size() >= pageSize) {
+                 return CompletableFuture.completedFuture(ModelPage.of(
+                   models,
+                   shards.get(shardIndex + 1)
+                     .getKey() + TOKEN_SEPARATOR));
+               }
+               return this.findPage(shards, shardIndex + 1, filter, null, pageSize, models);
+             });
+  }
+
+  private @NotNull CompletableFuture<@NotNull Integer> reshard(
+    final @NotNull Function<ConsistentHashRing<AsyncModelRepository<ModelType>>,
+      ConsistentHashRing<AsyncModelRepository<ModelType>>> change
+  ) {
+    final ConsistentHashRing<AsyncModelRepository<ModelType>> next;
+    final Collection<AsyncModelRepository<ModelType>> sources;
+    synchronized (this) {
+      if (this.rebalancing) {
+        throw new IllegalStateException("The shards are already being rebalanced");
+      }
+      next = change.apply(this.ring);
+      // a failed rebalance leaves models in the shards of the older rings, so all of them are read
+      final var previousRing = this.previousRing == null ? this.ring : this.previousRing;
+      final var shards = new LinkedHashMap<AsyncModelRepository<ModelType>, Boolean>();
+      for (final var shard : previousRing.shards()
+                               .values()) {
+        shards.put(shard, true);
+      }
+      for (final var shard : this.ring.shards()
+                               .values()) {
+        shards.put(shard, true);
+      }
+      sources = shards.keySet();
+      if (this.previousRing == null && next != this.ring) {
+        this.previousRing = this.ring;
+      }
+      this.ring = next;
+      this.rebalancing = true;
+    }
+    final var moves = new ArrayList<CompletableFuture<Integer>>(sources.size());
+    for (final var source : sources) {
+      moves.add(this.moveMisplaced(source, next));
+    }
+    return CompletableFuture.allOf(moves.toArray(CompletableFuture[]::new))
+             .thenApply(unused -> {
+               var moved = 0;
+               for (final var move : moves) {
+                 moved += move.join();
+               }
+               return moved;
+             })
+             .whenComplete((moved, throwable) -> {
+               synchronized (this) {
+                 this.rebalancing = false;
+                 if (throwable == null) {
+                   this.previousRing = null;
+                 }
+               }
+             });
+  }
+
+  private @NotNull CompletableFuture<@NotNull Integer> moveMisplaced(
+    final @NotNull AsyncModelRepository<ModelType> source,
+    final @NotNull ConsistentHashRing<AsyncModelRepository<ModelType>> ring
+  ) {
+    return source.findIds()
+             .thenCompose(ids -> {
+               var moves = CompletableFuture.completedFuture(0);
+               if (ids == null) {
+                 return moves;
+               }
+               final var misplaced = new ArrayList<String>();
+               for (final var id : ids) {
+                 if (ring.route(id) != source) {
+                   misplaced.add(id);
+                 }
+               }
+               // the batches run one after another to bound the models held in memory
+               for (var from = 0; from < misplaced.size(); from += this.rebalanceBatchSize) {
+                 final var batch = misplaced.subList(from, Math.min(misplaced.size(), from + this.rebalanceBatchSize));
+                 moves = moves.thenCompose(moved -> this.moveBatch(source, ring, batch)
+                                                      .thenApply(batchMoved -> moved + batchMoved));
+               }
+               return moves;
+             });
+  }
+
+  private @NotNull CompletableFuture<@NotNull Integer> moveBatch(
+    final @NotNull AsyncModelRepository<ModelType> source,
+    final @NotNull ConsistentHashRing<AsyncModelRepository<ModelType>> ring,
+    final @NotNull List<String> ids
+  ) {
+    final var groups = partition(ring, ids, Function.identity());
+    final var moves = new ArrayList<CompletableFuture<Integer>>(groups.size());
+    for (final var group : groups.entrySet()) {
+      final var target = group.getKey();
+      final var targetIds = group.getValue();
+      // the models saved in the target since the rebalance started are newer than the source ones, so
+      // the copies are only inserted where the target has no model
+      moves.add(source.findMany(targetIds, ArrayList::new)
+                  .thenCompose(models -> copyIfAbsent(target, models))
+                  .thenCompose(moved -> source.deleteMany(targetIds)
+                                          .thenApply(deleted -> moved)));
+    }
+    return CompletableFuture.allOf(moves.toArray(CompletableFuture[]::new))
+             .thenApply(unused -> {
+               var moved = 0;
+               for (final var move : moves) {
+                 moved += move.join();
+               }
+               return moved;
+             });
+  }
+
+  // saves every model which isn't stored in the target yet, in a single atomic step per model
+  private static <T extends Model> @NotNull CompletableFuture<@NotNull Integer> copyIfAbsent(
+    final @NotNull AsyncModelRepository<T> target,
+    final @NotNull Collection<T> models
+  ) {
+    final var copies = new ArrayList<CompletableFuture<Boolean>>(models.size());
+    for (final var model : models) {
+      copies.add(target.compareAndSave(model, VersionedModel.NO_VERSION));
+    }
+    return CompletableFuture.allOf(copies.toArray(CompletableFuture[]::new))
+             .thenApply(unused -> {
+               var copied = 0;
+               for (final var copy : copies) {
+                 if (copy.join()) {
+                   copied++;
+                 }
+               }
+               return copied;
+             });
+  }
+
+  private @NotNull CompletableFuture<Void> deleteStaleCopies(
+    final @NotNull ConsistentHashRing<AsyncModelRepository<ModelType>> previousRing,
+    final @NotNull AsyncModelRepository<ModelType> owner,
+    final @NotNull Collection<ModelType> models
+  ) {
+    final var stale = new ArrayList<CompletableFuture<Integer>>();
+    for (final var group : partition(previousRing, models, Model::id).entrySet()) {
+      if (group.getKey() == owner) {
+        continue;
+      }
+      final var ids = new ArrayList<String>(group.getValue()
+                                              .size());
+      for (final var model : group.getValue()) {
+        ids.add(model.id());
+      }
+      stale.add(group.getKey()
+                  .deleteMany(ids));
+    }
+    return CompletableFuture.allOf(stale.toArray(CompletableFuture[]::new));
+  }
+
+  // groups the elements by the shard owning their id, comparing the shards by identity
+  private static <R, E> @NotNull Map<R, List<E>> partition(
+    final @NotNull ConsistentHashRing<R> ring,
+    final @NotNull Collection<E> elements,
+    final @NotNull Function<E, String> id
+  ) {
+    final var groups = new IdentityHashMap<R, List<E>>();
+    for (final var element : elements) {
+      groups.computeIfAbsent(ring.route(id.apply(element)), shard -> new ArrayList<>())
+        .add(element);
+    }
+    return groups;
+  }
+}
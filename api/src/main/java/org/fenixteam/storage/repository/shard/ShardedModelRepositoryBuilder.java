@@ -0,0 +1,83 @@
+package org.fenixteam.storage.repository.shard;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.query.FieldAccessor;
+import org.fenixteam.storage.repository.AsyncModelRepository;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+@SuppressWarnings("unused")
+public final class ShardedModelRepositoryBuilder<ModelType extends Model> {
+  private final Map<String, AsyncModelRepository<ModelType>> shards = new LinkedHashMap<>();
+  private int virtualNodes = 160;
+  private FieldAccessor<ModelType> fieldAccessor;
+  private int rebalanceBatchSize = 500;
+
+  ShardedModelRepositoryBuilder() {
+  }
+
+  /**
+   * Adds a shard. The name places the shard in the hash ring, so it must stay the same across
+   * restarts and nodes for the ids to keep their owner.
+   *
+   * @param name the unique name of the shard
+   * @param shard the repository of the shard
+   * @return this builder
+   */
+  @Contract("_, _ -> this")
+  public @NotNull ShardedModelRepositoryBuilder<ModelType> shard(
+    final @NotNull String name,
+    final @NotNull AsyncModelRepository<ModelType> shard
+  ) {
+    if (this.shards.putIfAbsent(name, shard) != null) {
+      throw new IllegalArgumentException("There is already a shard named " + name);
+    }
+    return this;
+  }
+
+  /**
+   * Sets the points of every shard in the hash ring. More points spread the ids more evenly
+   * across the shards, at the cost of a larger ring to search.
+   *
+   * @param virtualNodes the points per shard
+   * @return this builder
+   */
+  @Contract("_ -> this")
+  public @NotNull ShardedModelRepositoryBuilder<ModelType> virtualNodes(final int virtualNodes) {
+    this.virtualNodes = virtualNodes;
+    return this;
+  }
+
+  /**
+   * Sets the accessor used to merge the results of the sorted queries of the shards.
+   *
+   * @param fieldAccessor the accessor of the model fields
+   * @return this builder
+   */
+  @Contract("_ -> this")
+  public @NotNull ShardedModelRepositoryBuilder<ModelType> fieldAccessor(
+    final @NotNull FieldAccessor<ModelType> fieldAccessor
+  ) {
+    this.fieldAccessor = fieldAccessor;
+    return this;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull ShardedModelRepositoryBuilder<ModelType> rebalanceBatchSize(final int rebalanceBatchSize) {
+    if (rebalanceBatchSize < 1) {
+      throw new IllegalArgumentException("The rebalance batch size must be positive");
+    }
+    this.rebalanceBatchSize = rebalanceBatchSize;
+    return this;
+  }
+
+  @Contract(" -> new")
+  public @NotNull ShardedModelRepository<ModelType> build() {
+    return new ShardedModelRepository<>(
+      ConsistentHashRing.create(this.shards, this.virtualNodes),
+      this.fieldAccessor,
+      this.rebalanceBatchSize);
+  }
+}
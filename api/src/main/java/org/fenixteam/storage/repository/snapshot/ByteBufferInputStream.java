@@ -0,0 +1,41 @@
+package org.fenixteam.storage.repository.snapshot;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Input stream over the remaining bytes of a buffer, advancing the position of the buffer as it's
+ * read. Used to decode models with a {@link ModelSnapshotCodec} straight from mapped or direct
+ * memory.
+ */
+public final class ByteBufferInputStream extends InputStream {
+  private final ByteBuffer buffer;
+
+  public ByteBufferInputStream(final @NotNull ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public int read() {
+    return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+  }
+
+  @Override
+  public int read(final byte @NotNull [] bytes, final int offset, final int length) {
+    if (length == 0) {
+      return 0;
+    }
+    if (!this.buffer.hasRemaining()) {
+      return -1;
+    }
+    final var read = Math.min(length, this.buffer.remaining());
+    this.buffer.get(bytes, offset, read);
+    return read;
+  }
+
+  @Override
+  public int available() {
+    return this.buffer.remaining();
+  }
+}
@@ -0,0 +1,19 @@
+package org.fenixteam.storage.repository.snapshot;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.fenixteam.storage.model.Model;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Compact binary encoding of the models stored in a snapshot. The id must be written by the codec
+ * too, and every read must consume exactly the bytes written for the model.
+ *
+ * @param <ModelType> the type of the encoded models
+ */
+public interface ModelSnapshotCodec<ModelType extends Model> {
+  void write(final @NotNull ModelType model, final @NotNull DataOutput output) throws IOException;
+
+  @NotNull ModelType read(final @NotNull DataInput input) throws IOException;
+}
@@ -0,0 +1,217 @@
+package org.fenixteam.storage.repository.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import org.fenixteam.storage.concurrent.ScheduledTasks;
+import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.repository.ModelRepository;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Dumps the models of a local repository to a snapshot file and loads them back, so a restarted
+ * server doesn't have to refill its cache from the persistent repository. A snapshot is a header
+ * followed by the length-prefixed models encoded by a {@link ModelSnapshotCodec}; it's written
+ * through a {@link FileChannel} to a temporary file which atomically replaces the previous
+ * snapshot, and read from a memory-mapped file, so snapshots are limited to 2 GiB.
+ */
+public final class ModelSnapshots {
+  private static final int MAGIC = 0x4D534E50;
+  private static final int FORMAT_VERSION = 1;
+  // magic, format version, creation time, model count, body length and body checksum
+  private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 8 + 8;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private ModelSnapshots() {
+    throw new UnsupportedOperationException("This class cannot be instantiated");
+  }
+
+  /**
+   * Writes every model of the repository in the snapshot file, replacing the previous snapshot
+   * once the new one is complete. The creation time of the snapshot is the time the dump started.
+   *
+   * @param file the snapshot file
+   * @param codec the codec of the models
+   * @param repository the repository whose models are dumped
+   * @param <T> the type of the models
+   * @return the amount of written models
+   */
+  public static <T extends Model> int writeSync(
+    final @NotNull Path file,
+    final @NotNull ModelSnapshotCodec<T> codec,
+    final @NotNull ModelRepository<T> repository
+  ) {
+    final var temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+    final var createdAt = System.currentTimeMillis();
+    var count = 0;
+    try (
+      final var channel = FileChannel.open(
+        temporaryFile,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+      final var models = repository.streamAllSync()
+    ) {
+      channel.position(HEADER_SIZE);
+      final var checksum = new CRC32();
+      final var output = new DataOutputStream(new BufferedOutputStream(
+        new CheckedOutputStream(Channels.newOutputStream(channel), checksum),
+        BUFFER_SIZE));
+      // every model is encoded apart first since its length prefixes it
+      final var entry = new ByteArrayOutputStream();
+      final var entryOutput = new DataOutputStream(entry);
+      final var iterator = models.iterator();
+      while (iterator.hasNext()) {
+        entry.reset();
+        codec.write(iterator.next(), entryOutput);
+        output.writeInt(entry.size());
+        entry.writeTo(output);
+        count++;
+      }
+      output.flush();
+      final var header = ByteBuffer.allocate(HEADER_SIZE)
+                           .putInt(MAGIC)
+                           .putInt(FORMAT_VERSION)
+                           .putLong(createdAt)
+                           .putInt(count)
+                           .putLong(channel.size() - HEADER_SIZE)
+                           .putLong(checksum.getValue())
+                           .flip();
+      while (header.hasRemaining()) {
+        channel.write(header, header.position());
+      }
+      channel.force(true);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    try {
+      Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return count;
+  }
+
+  /**
+   * Reads the models of the snapshot file if it exists and isn't older than the given age.
+   *
+   * @param file the snapshot file
+   * @param codec the codec of the models
+   * @param maxAge the max age of the snapshot
+   * @param unit the unit of the max age
+   * @param <T> the type of the models
+   * @return the models of the snapshot, or null if there's no snapshot or it's too old
+   */
+  public static <T extends Model> @Nullable List<T> readSync(
+    final @NotNull Path file,
+    final @NotNull ModelSnapshotCodec<T> codec,
+    final long maxAge,
+    final @NotNull TimeUnit unit
+  ) {
+    try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      final var size = channel.size();
+      if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot " + file + " has an invalid size of " + size + " bytes");
+      }
+      final var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("File " + file + " isn't a model snapshot");
+      }
+      final var formatVersion = buffer.getInt();
+      if (formatVersion != FORMAT_VERSION) {
+        throw new IOException("Snapshot " + file + " has the unsupported format version " + formatVersion);
+      }
+      final var createdAt = buffer.getLong();
+      if (System.currentTimeMillis() - createdAt > unit.toMillis(maxAge)) {
+        return null;
+      }
+      final var count = buffer.getInt();
+      final var bodyLength = buffer.getLong();
+      final var expectedChecksum = buffer.getLong();
+      if (bodyLength != size - HEADER_SIZE) {
+        throw new IOException("Snapshot " + file + " is truncated");
+      }
+      final var checksum = new CRC32();
+      checksum.update(buffer.duplicate());
+      if (checksum.getValue() != expectedChecksum) {
+        throw new IOException("Snapshot " + file + " is corrupted");
+      }
+      final var input = new DataInputStream(new ByteBufferInputStream(buffer));
+      final var models = new ArrayList<T>(count);
+      for (var i = 0; i < count; i++) {
+        final var length = buffer.getInt();
+        final var start = buffer.position();
+        models.add(codec.read(input));
+        if (buffer.position() - start != length) {
+          throw new IOException("Codec read " + (buffer.position() - start) + " bytes of a model of " + length
+                                + " bytes from snapshot " + file);
+        }
+      }
+      return models;
+    } catch (final NoSuchFileException e) {
+      return null;
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Saves the models of the snapshot file in the repository, if it exists and isn't older than
+   * the given age.
+   *
+   * @param file the snapshot file
+   * @param codec the codec of the models
+   * @param repository the repository where the models are saved
+   * @param maxAge the max age of the snapshot
+   * @param unit the unit of the max age
+   * @param <T> the type of the models
+   * @return the amount of restored models
+   */
+  public static <T extends Model> int restoreSync(
+    final @NotNull Path file,
+    final @NotNull ModelSnapshotCodec<T> codec,
+    final @NotNull ModelRepository<T> repository,
+    final long maxAge,
+    final @NotNull TimeUnit unit
+  ) {
+    final var models = readSync(file, codec, maxAge, unit);
+    if (models == null) {
+      return 0;
+    }
+    repository.saveManySync(models);
+    return models.size();
+  }
+
+  public static <T extends Model> @NotNull ScheduledFuture<?> schedule(
+    final @NotNull ScheduledExecutorService scheduler,
+    final long period,
+    final @NotNull TimeUnit unit,
+    final @NotNull Path file,
+    final @NotNull ModelSnapshotCodec<T> codec,
+    final @NotNull ModelRepository<T> repository
+  ) {
+    return scheduler.scheduleWithFixedDelay(
+      ScheduledTasks.reportingFailures(() -> writeSync(file, codec, repository)),
+      period,
+      period,
+      unit);
+  }
+}
@@ -0,0 +1,22 @@
+plugins {
+  id("me.champeau.jmh") version "0.7.1"
+}
+
+dependencies {
+  jmh(project(":storage-api"))
+  jmh(project(":storage-caffeine-dist"))
+  jmh(project(":storage-gson-dist"))
+  jmh(project(":storage-mongo-legacy-dist"))
+  jmh("com.google.code.gson:gson:2.9.0")
+}
+
+jmh {
+  // report the allocation rate of every benchmark besides its throughput
+  profilers.add("gc")
+  resultFormat.set("JSON")
+}
+
+// benchmarks are only run from the build, never published
+tasks.withType<AbstractPublishToMaven>().configureEach {
+  enabled = false
+}
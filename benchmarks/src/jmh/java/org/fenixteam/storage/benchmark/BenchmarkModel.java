@@ -0,0 +1,92 @@
+package org.fenixteam.storage.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.fenixteam.storage.codec.ModelReader;
+import org.fenixteam.storage.codec.ModelWriter;
+import org.fenixteam.storage.model.Model;
+import org.jetbrains.annotations.NotNull;
+
+// representative model for the benchmarks: scalar fields, a list of strings, a list of uuids and a
+// nested object, written with the generic codec API so every format runs the same code
+public record BenchmarkModel(
+  @NotNull String id,
+  @NotNull String name,
+  @NotNull UUID owner,
+  int level,
+  double balance,
+  boolean online,
+  @NotNull List<String> tags,
+  @NotNull List<UUID> friends,
+  @NotNull Stats stats
+) implements Model {
+  public static @NotNull BenchmarkModel random(final int index, final int collectionSize, final @NotNull Random random) {
+    final var tags = new ArrayList<String>(collectionSize);
+    final var friends = new ArrayList<UUID>(collectionSize);
+    for (var i = 0; i < collectionSize; i++) {
+      tags.add("tag-" + random.nextInt(1_000));
+      friends.add(new UUID(random.nextLong(), random.nextLong()));
+    }
+    return new BenchmarkModel(
+      "model-" + index,
+      "name-" + random.nextInt(),
+      new UUID(random.nextLong(), random.nextLong()),
+      random.nextInt(100),
+      random.nextDouble() * 1_000_000,
+      random.nextBoolean(),
+      tags,
+      friends,
+      new Stats(random.nextInt(10_000), random.nextInt(10_000), random.nextLong()));
+  }
+
+  public static <W> @NotNull W write(
+    final @NotNull BenchmarkModel model,
+    final @NotNull Supplier<ModelWriter<W>> writerFactory
+  ) {
+    return writerFactory.get()
+             .writeString("id", model.id)
+             .writeString("name", model.name)
+             .writeUuid("owner", model.owner)
+             .writeNumber("level", model.level)
+             .writeNumber("balance", model.balance)
+             .writeBoolean("online", model.online)
+             .writeRawCollection("tags", model.tags)
+             .writeDetailedUuids("friends", model.friends)
+             .writeObject("stats", model.stats, stats -> writerFactory.get()
+                                                          .writeNumber("kills", stats.kills)
+                                                          .writeNumber("deaths", stats.deaths)
+                                                          .writeNumber("playTime", stats.playTime)
+                                                          .end())
+             .end();
+  }
+
+  public static <R> @NotNull BenchmarkModel read(
+    final @NotNull R serialized,
+    final @NotNull Function<R, ? extends ModelReader<R>> readerFactory
+  ) {
+    final var reader = readerFactory.apply(serialized);
+    final List<String> tags = reader.readRawCollection("tags", String.class, ArrayList::new);
+    final List<UUID> friends = reader.readDetailedUuids("friends", ArrayList::new);
+    final var stats = reader.readObject("stats", serializedStats -> {
+      final var statsReader = readerFactory.apply(serializedStats);
+      return new Stats(statsReader.readInt("kills"), statsReader.readInt("deaths"), statsReader.readLong("playTime"));
+    });
+    return new BenchmarkModel(
+      reader.readString("id"),
+      reader.readString("name"),
+      reader.readUuid("owner"),
+      reader.readInt("level"),
+      reader.readDouble("balance"),
+      reader.readBoolean("online"),
+      tags == null ? List.of() : tags,
+      friends == null ? List.of() : friends,
+      stats == null ? new Stats(0, 0, 0) : stats);
+  }
+
+  public record Stats(int kills, int deaths, long playTime) {
+  }
+}
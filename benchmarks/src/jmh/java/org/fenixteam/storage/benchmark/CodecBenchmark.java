@@ -0,0 +1,62 @@
+package org.fenixteam.storage.benchmark;
+
+import com.google.gson.JsonObject;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.bson.Document;
+import org.fenixteam.storage.gson.codec.JsonReader;
+import org.fenixteam.storage.gson.codec.JsonWriter;
+import org.fenixteam.storage.mongo.codec.DocumentReader;
+import org.fenixteam.storage.mongo.codec.DocumentWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+  @Param({"4", "64"})
+  private int collectionSize;
+  private BenchmarkModel model;
+  private JsonObject jsonObject;
+  private Document document;
+
+  @Setup
+  public void prepare() {
+    this.model = BenchmarkModel.random(0, this.collectionSize, new Random(42));
+    this.jsonObject = BenchmarkModel.write(this.model, JsonWriter::create);
+    this.document = BenchmarkModel.write(this.model, DocumentWriter::create);
+  }
+
+  @Benchmark
+  public JsonObject serializeJson() {
+    return BenchmarkModel.write(this.model, JsonWriter::create);
+  }
+
+  @Benchmark
+  public BenchmarkModel deserializeJson() {
+    return BenchmarkModel.read(this.jsonObject, JsonReader.FACTORY);
+  }
+
+  @Benchmark
+  public Document serializeDocument() {
+    return BenchmarkModel.write(this.model, DocumentWriter::create);
+  }
+
+  @Benchmark
+  public BenchmarkModel deserializeDocument() {
+    return BenchmarkModel.read(this.document, DocumentReader.FACTORY);
+  }
+}
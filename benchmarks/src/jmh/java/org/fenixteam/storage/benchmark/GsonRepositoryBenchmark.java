@@ -0,0 +1,126 @@
+package org.fenixteam.storage.benchmark;
+
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.fenixteam.storage.gson.GsonModelRepository;
+import org.fenixteam.storage.gson.codec.JsonReader;
+import org.fenixteam.storage.gson.codec.JsonWriter;
+import org.fenixteam.storage.repository.ModelRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * File backed repository operations over a temporary folder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GsonRepositoryBenchmark {
+  private static final int BULK_SIZE = 100;
+  @Param({"1000"})
+  private int size;
+  private Path folder;
+  private ExecutorService executor;
+  private ModelRepository<BenchmarkModel> repository;
+  private BenchmarkModel[] models;
+  private List<String> bulkIds;
+  private List<BenchmarkModel> bulkModels;
+  private int next;
+
+  @Setup
+  public void prepare() throws IOException {
+    this.folder = Files.createTempDirectory("storage-benchmark");
+    this.executor = Executors.newFixedThreadPool(Runtime.getRuntime()
+                                                   .availableProcessors());
+    this.repository = GsonModelRepository.builder(BenchmarkModel.class)
+                        .folder(this.folder)
+                        .modelSerializer(model -> BenchmarkModel.write(model, JsonWriter::create))
+                        .modelDeserializer((JsonObject jsonObject) -> BenchmarkModel.read(
+                          jsonObject,
+                          JsonReader.FACTORY))
+                        .build(this.executor);
+    final var random = new Random(42);
+    this.models = new BenchmarkModel[this.size];
+    for (var i = 0; i < this.size; i++) {
+      this.models[i] = BenchmarkModel.random(i, 8, random);
+      this.repository.saveSync(this.models[i]);
+    }
+    this.bulkIds = new ArrayList<>(BULK_SIZE);
+    this.bulkModels = new ArrayList<>(BULK_SIZE);
+    for (var i = 0; i < BULK_SIZE; i++) {
+      final var model = this.models[random.nextInt(this.size)];
+      this.bulkIds.add(model.id());
+      this.bulkModels.add(model);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    this.executor.shutdown();
+    try (final var paths = Files.walk(this.folder)) {
+      for (final var path : paths.sorted(Comparator.reverseOrder())
+                              .toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  private BenchmarkModel nextModel() {
+    final var index = this.next++;
+    if (this.next == this.size) {
+      this.next = 0;
+    }
+    return this.models[index];
+  }
+
+  @Benchmark
+  public BenchmarkModel find() {
+    return this.repository.findSync(this.nextModel()
+                                      .id());
+  }
+
+  @Benchmark
+  public BenchmarkModel save() {
+    return this.repository.saveSync(this.nextModel());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BULK_SIZE)
+  public List<BenchmarkModel> findMany() {
+    return this.repository.findManySync(this.bulkIds, ArrayList::new);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BULK_SIZE)
+  public List<BenchmarkModel> saveMany() {
+    return this.repository.saveManySync(this.bulkModels);
+  }
+
+  @Benchmark
+  public List<BenchmarkModel> findAll() {
+    return this.repository.findAllSync(ArrayList::new);
+  }
+}
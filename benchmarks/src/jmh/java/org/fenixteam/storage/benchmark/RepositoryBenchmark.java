@@ -0,0 +1,139 @@
+package org.fenixteam.storage.benchmark;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.fenixteam.storage.caffeine.CaffeineModelRepository;
+import org.fenixteam.storage.repository.CachedModelRepository;
+import org.fenixteam.storage.repository.LocalModelRepository;
+import org.fenixteam.storage.repository.ModelRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single and bulk operations of the in-memory repositories. The cached repository uses a Caffeine
+ * cache in front of a concurrent map which stands in for the persistent backend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryBenchmark {
+  private static final int BULK_SIZE = 100;
+  @Param({"local", "caffeine", "cached"})
+  private String repositoryType;
+  @Param({"10000"})
+  private int size;
+  private ModelRepository<BenchmarkModel> repository;
+  private CachedModelRepository<BenchmarkModel> cachedRepository;
+  private BenchmarkModel[] models;
+  private List<String> bulkIds;
+  private List<BenchmarkModel> bulkModels;
+  private int next;
+
+  @Setup
+  public void prepare() {
+    final var random = new Random(42);
+    this.models = new BenchmarkModel[this.size];
+    for (var i = 0; i < this.size; i++) {
+      this.models[i] = BenchmarkModel.random(i, 8, random);
+    }
+    this.repository = switch (this.repositoryType) {
+      case "local" -> LocalModelRepository.concurrent();
+      case "caffeine" -> CaffeineModelRepository.create(Caffeine.newBuilder()
+                                                          .maximumSize(this.size)
+                                                          .build());
+      case "cached" -> {
+        this.cachedRepository = new CachedModelRepository<>(
+          Runnable::run,
+          CaffeineModelRepository.create(Caffeine.newBuilder()
+                                           .maximumSize(this.size)
+                                           .build()),
+          LocalModelRepository.concurrent());
+        yield this.cachedRepository;
+      }
+      default -> throw new IllegalArgumentException("Unknown repository type: " + this.repositoryType);
+    };
+    for (final var model : this.models) {
+      this.repository.saveSync(model);
+    }
+    if (this.cachedRepository != null) {
+      for (final var model : this.models) {
+        this.cachedRepository.saveInCacheSync(model);
+      }
+    }
+    this.bulkIds = new ArrayList<>(BULK_SIZE);
+    this.bulkModels = new ArrayList<>(BULK_SIZE);
+    for (var i = 0; i < BULK_SIZE; i++) {
+      final var model = this.models[random.nextInt(this.size)];
+      this.bulkIds.add(model.id());
+      this.bulkModels.add(model);
+    }
+  }
+
+  private BenchmarkModel nextModel() {
+    final var index = this.next++;
+    if (this.next == this.size) {
+      this.next = 0;
+    }
+    return this.models[index];
+  }
+
+  @Benchmark
+  public BenchmarkModel find() {
+    final var id = this.nextModel()
+                     .id();
+    if (this.cachedRepository != null) {
+      return this.cachedRepository.findInBothSync(id);
+    }
+    return this.repository.findSync(id);
+  }
+
+  @Benchmark
+  public BenchmarkModel findMissing() {
+    if (this.cachedRepository != null) {
+      return this.cachedRepository.findInBothSync("missing");
+    }
+    return this.repository.findSync("missing");
+  }
+
+  @Benchmark
+  public BenchmarkModel save() {
+    final var model = this.nextModel();
+    if (this.cachedRepository != null) {
+      return this.cachedRepository.saveInBothSync(model);
+    }
+    return this.repository.saveSync(model);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BULK_SIZE)
+  public List<BenchmarkModel> findMany() {
+    return this.repository.findManySync(this.bulkIds, ArrayList::new);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BULK_SIZE)
+  public List<BenchmarkModel> saveMany() {
+    return this.repository.saveManySync(this.bulkModels);
+  }
+
+  @Benchmark
+  public List<BenchmarkModel> findAll() {
+    return this.repository.findAllSync(ArrayList::new);
+  }
+}
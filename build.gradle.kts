@@ -8,6 +8,11 @@ plugins {
   id("com.diffplug.spotless") version "6.18.0"
 }
 
+// -PjavaTarget=21 builds the Java 21 variant, which runs the blocking backends on virtual threads
+val javaTarget = providers.gradleProperty("javaTarget")
+  .map(String::toInt)
+  .getOrElse(17)
+
 subprojects {
   apply(plugin = "java-library")
   apply(plugin = "maven-publish")
@@ -15,6 +20,10 @@ subprojects {
   apply(plugin = "net.kyori.indra.checkstyle")
   apply(plugin = "com.diffplug.spotless")
 
+  if (javaTarget != 17) {
+    version = "$version-java$javaTarget"
+  }
+
   repositories {
     maven("https://repo.houtave.com/repository/libs/") {
       name = "houtaveRepository"
@@ -24,8 +33,8 @@ subprojects {
 
   indra {
     javaVersions {
-      target(17)
-      minimumToolchain(17)
+      target(javaTarget)
+      minimumToolchain(javaTarget)
     }
     checkstyle("10.8.0")
   }
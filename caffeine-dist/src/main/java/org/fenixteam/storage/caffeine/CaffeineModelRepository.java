@@ -1,11 +1,21 @@
 package org.fenixteam.storage.caffeine;
 
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import org.fenixteam.storage.metrics.ModelRepositoryMetrics;
 import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.model.VersionedModel;
+import org.fenixteam.storage.query.ModelQuery;
 import org.fenixteam.storage.repository.ModelRepository;
+import org.fenixteam.storage.repository.index.ModelIndex;
+import org.fenixteam.storage.repository.index.ModelIndexes;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -13,9 +23,18 @@ import org.jetbrains.annotations.Nullable;
 @SuppressWarnings("unused")
 public class CaffeineModelRepository<ModelType extends Model> implements ModelRepository<ModelType> {
   private final Cache<String, ModelType> cache;
+  private final ModelIndexes<ModelType> indexes;
 
   protected CaffeineModelRepository(final @NotNull Cache<String, ModelType> cache) {
+    this(cache, new ModelIndexes<>(List.of()));
+  }
+
+  protected CaffeineModelRepository(
+    final @NotNull Cache<String, ModelType> cache,
+    final @NotNull ModelIndexes<ModelType> indexes
+  ) {
     this.cache = cache;
+    this.indexes = indexes;
   }
 
   @Contract(value = "_ -> new")
@@ -23,6 +42,51 @@ public class CaffeineModelRepository<ModelType extends Model> implements ModelRe
     return new CaffeineModelRepository<>(cache);
   }
 
+  /**
+   * Creates a repository whose cache reports its hits, misses, loads and evictions to the given
+   * metrics, the rest of the cache configuration is taken from the given builder.
+   *
+   * @param caffeine the cache builder
+   * @param metrics the metrics receiving the cache counters
+   * @param <T> the type of the stored models
+   * @return the new repository
+   */
+  @Contract(value = "_, _ -> new")
+  public static <T extends Model> @NotNull CaffeineModelRepository<T> create(
+    final @NotNull Caffeine<Object, Object> caffeine,
+    final @NotNull ModelRepositoryMetrics metrics
+  ) {
+    return CaffeineModelRepository.create(caffeine.recordStats(() -> new ModelMetricsStatsCounter(metrics)), List.of());
+  }
+
+  /**
+   * Creates a repository whose {@link #findSync(String, String, Function)} looks up the given
+   * secondary indexes, which are kept up to date when the cache evicts a model. The rest of the
+   * cache configuration is taken from the given builder, which mustn't have an eviction listener.
+   *
+   * @param caffeine the cache builder
+   * @param indexes the declared secondary indexes
+   * @param <T> the type of the stored models
+   * @return the new repository
+   */
+  @Contract(value = "_, _ -> new")
+  public static <T extends Model> @NotNull CaffeineModelRepository<T> create(
+    final @NotNull Caffeine<Object, Object> caffeine,
+    final @NotNull Collection<? extends ModelIndex<T>> indexes
+  ) {
+    final var modelIndexes = new ModelIndexes<T>(indexes);
+    if (modelIndexes.isEmpty()) {
+      return new CaffeineModelRepository<>(caffeine.build(), modelIndexes);
+    }
+    // the listener runs atomically with the eviction, before the model can be saved again
+    final var evictingCaffeine = caffeine.evictionListener((String id, T model, RemovalCause cause) -> {
+      if (id != null) {
+        modelIndexes.remove(id);
+      }
+    });
+    return new CaffeineModelRepository<>(evictingCaffeine.build(), modelIndexes);
+  }
+
   @Override
   public @Nullable ModelType findSync(final @NotNull String id) {
     return this.cache.getIfPresent(id);
@@ -34,7 +98,37 @@ public class CaffeineModelRepository<ModelType extends Model> implements ModelRe
     final @NotNull String value,
     final @NotNull Function<Integer, C> factory
   ) {
-    throw new UnsupportedOperationException("Not implemented yet");
+    if (field.equals(ModelRepository.ID_FIELD)) {
+      final var model = this.cache.getIfPresent(value);
+      final var foundModels = factory.apply(model == null ? 0 : 1);
+      if (model != null) {
+        foundModels.add(model);
+      }
+      return foundModels;
+    }
+    final var ids = this.indexes.find(field, value);
+    if (ids == null) {
+      throw new UnsupportedOperationException("Caffeine repository has no index for field " + field);
+    }
+    final var foundModels = factory.apply(ids.size());
+    for (final var id : ids) {
+      final var model = this.cache.getIfPresent(id);
+      if (model != null && this.indexes.matches(field, value, model)) {
+        foundModels.add(model);
+      }
+    }
+    return foundModels;
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C findManySync(
+    final @NotNull Collection<String> ids,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var presentModels = this.cache.getAllPresent(ids);
+    final var foundModels = factory.apply(presentModels.size());
+    foundModels.addAll(presentModels.values());
+    return foundModels;
   }
 
   @Override
@@ -58,6 +152,21 @@ public class CaffeineModelRepository<ModelType extends Model> implements ModelRe
     return foundModels;
   }
 
+  @Override
+  public @NotNull Stream<ModelType> streamAllSync(final int batchSize) {
+    return this.cache.asMap()
+             .values()
+             .stream();
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C querySync(
+    final @NotNull ModelQuery query,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    return this.indexes.query(query, this.cache.asMap(), factory);
+  }
+
   @Override
   public boolean existsSync(final @NotNull String id) {
     return this.cache.asMap()
@@ -66,13 +175,61 @@ public class CaffeineModelRepository<ModelType extends Model> implements ModelRe
 
   @Override
   public @NotNull ModelType saveSync(final @NotNull ModelType model) {
-    this.cache.put(model.id(), model);
+    if (this.indexes.isEmpty()) {
+      this.cache.put(model.id(), model);
+      return model;
+    }
+    // computing on the id updates the indexes atomically with the cached model and its eviction
+    this.cache.asMap()
+      .compute(model.id(), (id, stored) -> {
+        this.indexes.add(model);
+        return model;
+      });
     return model;
   }
 
+  @Override
+  public boolean compareAndSaveSync(final @NotNull ModelType model, final long expectedVersion) {
+    final var saved = new boolean[1];
+    this.cache.asMap()
+      .compute(model.id(), (id, stored) -> {
+        if (!VersionedModel.hasVersion(stored, expectedVersion)) {
+          return stored;
+        }
+        saved[0] = true;
+        this.indexes.add(model);
+        return model;
+      });
+    return saved[0];
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C saveManySync(final @NotNull C models) {
+    if (!this.indexes.isEmpty()) {
+      for (final var model : models) {
+        this.saveSync(model);
+      }
+      return models;
+    }
+    final var entries = new HashMap<String, ModelType>(models.size());
+    for (final var model : models) {
+      entries.put(model.id(), model);
+    }
+    this.cache.putAll(entries);
+    return models;
+  }
+
   @Override
   public boolean deleteSync(final @NotNull String id) {
-    this.cache.invalidate(id);
+    if (this.indexes.isEmpty()) {
+      this.cache.invalidate(id);
+      return true;
+    }
+    this.cache.asMap()
+      .computeIfPresent(id, (unused, stored) -> {
+        this.indexes.remove(id);
+        return null;
+      });
     return true;
   }
 }
@@ -0,0 +1,57 @@
+package org.fenixteam.storage.caffeine;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import org.fenixteam.storage.metrics.ModelRepositoryMetrics;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Caffeine stats counter which also reports the hits, misses, loads and evictions of the cache to
+ * the repository metrics.
+ */
+public final class ModelMetricsStatsCounter implements StatsCounter {
+  private final ModelRepositoryMetrics metrics;
+  private final StatsCounter stats;
+
+  public ModelMetricsStatsCounter(final @NotNull ModelRepositoryMetrics metrics) {
+    this.metrics = metrics;
+    this.stats = new ConcurrentStatsCounter();
+  }
+
+  @Override
+  public void recordHits(final int count) {
+    this.stats.recordHits(count);
+    this.metrics.recordCacheHits(count);
+  }
+
+  @Override
+  public void recordMisses(final int count) {
+    this.stats.recordMisses(count);
+    this.metrics.recordCacheMisses(count);
+  }
+
+  @Override
+  public void recordLoadSuccess(final long loadTime) {
+    this.stats.recordLoadSuccess(loadTime);
+    this.metrics.recordCacheLoad(loadTime, true, false);
+  }
+
+  @Override
+  public void recordLoadFailure(final long loadTime) {
+    this.stats.recordLoadFailure(loadTime);
+    this.metrics.recordCacheLoad(loadTime, false, true);
+  }
+
+  @Override
+  public void recordEviction(final int weight, final @NotNull RemovalCause cause) {
+    this.stats.recordEviction(weight, cause);
+    this.metrics.recordCacheEvictions(1);
+  }
+
+  @Override
+  public @NotNull CacheStats snapshot() {
+    return this.stats.snapshot();
+  }
+}
@@ -1,50 +1,120 @@
 package org.fenixteam.storage.gson;
 
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 import com.google.gson.internal.bind.TypeAdapters;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.fenixteam.storage.codec.ModelDeserializer;
 import org.fenixteam.storage.codec.ModelSerializer;
+import org.fenixteam.storage.codec.StreamingModelDeserializer;
+import org.fenixteam.storage.codec.StreamingModelSerializer;
+import org.fenixteam.storage.concurrent.ParallelTasks;
+import org.fenixteam.storage.gson.codec.JsonStreamReader;
+import org.fenixteam.storage.gson.codec.JsonStreamWriter;
 import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.model.VersionedModel;
+import org.fenixteam.storage.query.ModelFilter;
+import org.fenixteam.storage.query.ModelPage;
+import org.fenixteam.storage.query.ModelQuery;
+import org.fenixteam.storage.query.QueryEvaluator;
 import org.fenixteam.storage.repository.AbstractAsyncModelRepository;
 import org.fenixteam.storage.repository.ModelRepository;
+import org.fenixteam.storage.repository.update.ModelUpdate;
+import org.fenixteam.storage.repository.update.UpdatableModelRepository;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 @SuppressWarnings("unused")
-public class GsonModelRepository<ModelType extends Model> extends AbstractAsyncModelRepository<ModelType> {
+public class GsonModelRepository<ModelType extends Model>
+  extends AbstractAsyncModelRepository<ModelType>
+  implements UpdatableModelRepository<JsonObject> {
+  private static final int FILE_LOCK_STRIPES = 64;
+  private static final String LOCK_FILE_NAME = ".lock";
   protected final Class<ModelType> modelType;
   protected final Path folderPath;
   protected final boolean prettyPrinting;
+  protected final int parallelism;
   protected final ModelSerializer<ModelType, JsonObject> modelSerializer;
   protected final ModelDeserializer<ModelType, JsonObject> modelDeserializer;
+  protected final @Nullable StreamingModelSerializer<ModelType, JsonStreamWriter> streamingSerializer;
+  protected final @Nullable StreamingModelDeserializer<ModelType, JsonStreamReader> streamingDeserializer;
+  // serializes the writes of the same file, striped to bound the memory; they aren't monitors so
+  // a virtual thread waiting for the file doesn't pin its carrier
+  protected final Lock[] fileLocks;
 
   protected GsonModelRepository(
     final @NotNull Executor executor,
     final @NotNull Class<ModelType> modelType,
     final @NotNull Path folderPath,
     final boolean prettyPrinting,
+    final int parallelism,
     final @NotNull ModelSerializer<ModelType, JsonObject> modelSerializer,
     final @NotNull ModelDeserializer<ModelType, JsonObject> modelDeserializer
+  ) {
+    this(
+      executor,
+      modelType,
+      folderPath,
+      prettyPrinting,
+      parallelism,
+      modelSerializer,
+      modelDeserializer,
+      null,
+      null);
+  }
+
+  protected GsonModelRepository(
+    final @NotNull Executor executor,
+    final @NotNull Class<ModelType> modelType,
+    final @NotNull Path folderPath,
+    final boolean prettyPrinting,
+    final int parallelism,
+    final @Nullable ModelSerializer<ModelType, JsonObject> modelSerializer,
+    final @Nullable ModelDeserializer<ModelType, JsonObject> modelDeserializer,
+    final @Nullable StreamingModelSerializer<ModelType, JsonStreamWriter> streamingSerializer,
+    final @Nullable StreamingModelDeserializer<ModelType, JsonStreamReader> streamingDeserializer
   ) {
     super(executor);
     this.prettyPrinting = prettyPrinting;
+    this.parallelism = parallelism;
     this.modelType = modelType;
     this.folderPath = folderPath;
     this.modelSerializer = modelSerializer;
-    this.modelDeserializer = modelDeserializer;
+    // the queries still evaluate the trees, a streaming deserializer reads them too
+    this.modelDeserializer = modelDeserializer == null
+                               ? JsonStreamReader.treeDeserializer(Objects.requireNonNull(streamingDeserializer))
+                               : modelDeserializer;
+    this.streamingSerializer = streamingSerializer;
+    this.streamingDeserializer = streamingDeserializer;
+    this.fileLocks = new Lock[FILE_LOCK_STRIPES];
+    for (var i = 0; i < this.fileLocks.length; i++) {
+      this.fileLocks[i] = new ReentrantLock();
+    }
   }
 
   @Contract("_ -> new")
@@ -75,17 +145,44 @@ public class GsonModelRepository<ModelType extends Model> extends AbstractAsyncM
     return collection;
   }
 
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C findManySync(
+    final @NotNull Collection<String> ids,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var idList = List.copyOf(ids);
+    final var models = new AtomicReferenceArray<ModelType>(idList.size());
+    ParallelTasks.forEachIndex(
+      this.executor,
+      this.parallelism,
+      idList.size(),
+      index -> models.set(index, this.findSync(idList.get(index))));
+    final var foundModels = factory.apply(idList.size());
+    for (var i = 0; i < models.length(); i++) {
+      final var model = models.get(i);
+      if (model != null) {
+        foundModels.add(model);
+      }
+    }
+    return foundModels;
+  }
+
   @Override
   public @Nullable Collection<String> findIdsSync() {
-    try (final var walk = Files.walk(this.folderPath)) {
-      return walk.filter(Files::isRegularFile)
-               .map(Path::getFileName)
-               .map(Path::toString)
-               .map(fileName -> fileName.substring(0, fileName.length() - 5))
-               .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+    final var ids = new ArrayList<String>();
+    // only the model files, the folder also holds the lock file and the temporary files
+    try (final var directoryStream = Files.newDirectoryStream(this.folderPath, "*.json")) {
+      for (final var file : directoryStream) {
+        if (Files.isRegularFile(file)) {
+          final var fileName = file.getFileName()
+                                 .toString();
+          ids.add(fileName.substring(0, fileName.length() - 5));
+        }
+      }
     } catch (final IOException e) {
       throw new RuntimeException(e);
     }
+    return ids;
   }
 
   @Override
@@ -93,21 +190,111 @@ public class GsonModelRepository<ModelType extends Model> extends AbstractAsyncM
     final @NotNull Consumer<ModelType> postLoadAction,
     final @NotNull Function<Integer, C> factory
   ) {
-    try (final var walk = Files.walk(this.folderPath, 1)) {
+    try (final var directoryStream = Files.newDirectoryStream(this.folderPath, "*.json")) {
       final var foundModels = factory.apply(1);
-      walk.filter(Files::isRegularFile)
-        .map(this::internalFind)
-        .filter(Objects::nonNull)
-        .forEach(model -> {
+      for (final var file : directoryStream) {
+        if (!Files.isRegularFile(file)) {
+          continue;
+        }
+        final var model = this.internalFind(file);
+        if (model != null) {
           postLoadAction.accept(model);
           foundModels.add(model);
-        });
+        }
+      }
       return foundModels;
     } catch (final IOException e) {
       throw new RuntimeException(e);
     }
   }
 
+  @Override
+  public @NotNull Stream<ModelType> streamAllSync(final int batchSize) {
+    final DirectoryStream<Path> directoryStream;
+    try {
+      directoryStream = Files.newDirectoryStream(this.folderPath, "*.json");
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return StreamSupport.stream(directoryStream.spliterator(), false)
+             .onClose(() -> {
+               try {
+                 directoryStream.close();
+               } catch (final IOException e) {
+                 throw new RuntimeException(e);
+               }
+             })
+             .filter(Files::isRegularFile)
+             .map(this::internalFind)
+             .filter(Objects::nonNull);
+  }
+
+  /**
+   * Runs the query over the stored files, evaluating it on their JSON form so only the matching
+   * models are deserialized.
+   *
+   * @param query the query to run
+   * @param factory the factory of the returned collection
+   * @param <C> the type of the returned collection
+   * @return the matching models, in the order of the query
+   */
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C querySync(
+    final @NotNull ModelQuery query,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var collector = JsonQueries.collector(query);
+    try (final var directoryStream = Files.newDirectoryStream(this.folderPath, "*.json")) {
+      for (final var file : directoryStream) {
+        final var jsonObject = this.readJson(file);
+        if (jsonObject != null && !collector.offer(jsonObject)) {
+          break;
+        }
+      }
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return JsonQueries.deserialize(collector, query, this.modelDeserializer, factory);
+  }
+
+  /**
+   * Reads a page in the order of the model ids, storing the last read id in the token. Each page
+   * lists the folder keeping only the next ids in a bounded set, so the memory used doesn't grow
+   * with the amount of stored models.
+   *
+   * @param filter the filter of the models, or null to read every model
+   * @param token the token of the page, or null for the first page
+   * @param pageSize the max amount of models of the page
+   * @return the page of models
+   */
+  @Override
+  public @NotNull ModelPage<ModelType> findPageSync(
+    final @Nullable ModelFilter filter,
+    final @Nullable String token,
+    final int pageSize
+  ) {
+    ModelPage.checkPageSize(pageSize);
+    final var models = new ArrayList<ModelType>(pageSize);
+    var after = ModelPage.decodeToken(token);
+    while (true) {
+      // one extra id tells if there is a next page
+      final var ids = this.sortedIdsAfter(after, pageSize + 1);
+      for (final var id : ids) {
+        if (models.size() == pageSize) {
+          return ModelPage.of(models, after);
+        }
+        after = id;
+        final var jsonObject = this.readJson(this.resolveChild(id));
+        if (jsonObject != null && QueryEvaluator.matches(filter, jsonObject, JsonQueries.ACCESSOR)) {
+          models.add(this.modelDeserializer.deserialize(jsonObject));
+        }
+      }
+      if (ids.size() <= pageSize) {
+        return ModelPage.of(models, null);
+      }
+    }
+  }
+
   @Override
   public boolean existsSync(final @NotNull String id) {
     return Files.exists(this.resolveChild(id));
@@ -115,41 +302,221 @@ public class GsonModelRepository<ModelType extends Model> extends AbstractAsyncM
 
   @Override
   public @NotNull ModelType saveSync(final @NotNull ModelType model) {
-    final var modelPath = this.resolveChild(model.id());
+    // a streamed model is written while holding the lock, without building its JSON first
+    final var jsonObject = this.streamingSerializer == null ? this.modelSerializer.serialize(model) : null;
+    final var lock = this.fileLock(model.id());
+    lock.lock();
     try {
-      if (Files.notExists(modelPath)) {
-        Files.createFile(modelPath);
+      if (jsonObject == null) {
+        this.replaceFile(this.resolveChild(model.id()), path -> this.writeModel(path, model));
+      } else {
+        this.writeJson(this.resolveChild(model.id()), jsonObject);
       }
-    } catch (final IOException e) {
-      throw new RuntimeException(e);
+    } finally {
+      lock.unlock();
     }
-    try (final var writer = new JsonWriter(Files.newBufferedWriter(modelPath, StandardCharsets.UTF_8))) {
-      writer.setSerializeNulls(false);
-      if (this.prettyPrinting) {
-        writer.setIndent("  ");
+    return model;
+  }
+
+  /**
+   * Compares the version field of the stored JSON and replaces the file while holding both the
+   * lock of the id and the same stripe of a lock file in the folder, so the versioned saves of other
+   * processes sharing the folder are excluded too. The new JSON is written to a temporary file and
+   * moved over the old one, so readers never see a partially written file.
+   *
+   * @param model the model to save
+   * @param expectedVersion the version the stored model must have
+   * @return true if the model was saved
+   */
+  @Override
+  public boolean compareAndSaveSync(final @NotNull ModelType model, final long expectedVersion) {
+    // a streamed model is written while holding the locks, without building its JSON first
+    final var jsonObject = this.streamingSerializer == null ? this.modelSerializer.serialize(model) : null;
+    final var modelPath = this.resolveChild(model.id());
+    final var lock = this.fileLock(model.id());
+    lock.lock();
+    try (final var lockChannel = FileChannel.open(
+      this.folderPath.resolve(LOCK_FILE_NAME),
+      StandardOpenOption.CREATE,
+      StandardOpenOption.WRITE)) {
+      // released when the channel is closed, before the lock of the id
+      lockChannel.lock(Math.floorMod(model.id()
+                                       .hashCode(), FILE_LOCK_STRIPES), 1, false);
+      final var stored = this.readJson(modelPath);
+      if (stored == null ? expectedVersion != VersionedModel.NO_VERSION : !hasVersion(stored, expectedVersion)) {
+        return false;
       }
-      final var jsonObject = this.modelSerializer.serialize(model);
-      TypeAdapters.JSON_ELEMENT.write(writer, jsonObject);
-      return model;
+      this.replaceFile(modelPath, path -> {
+        if (jsonObject == null) {
+          this.writeModel(path, model);
+        } else {
+          this.writeJson(path, jsonObject);
+        }
+      });
+      return true;
     } catch (final IOException e) {
       throw new RuntimeException(e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Patches the stored JSON of the model, without deserializing it. The file is still rewritten,
+   * but the model doesn't need to be loaded or serialized again.
+   *
+   * @param id the id of the updated model
+   * @param update the changes to apply
+   * @return true if the model exists and was updated
+   */
+  @Override
+  public boolean updateSync(final @NotNull String id, final @NotNull ModelUpdate<JsonObject> update) {
+    final var modelPath = this.resolveChild(id);
+    final var lock = this.fileLock(id);
+    lock.lock();
+    try {
+      final var jsonObject = this.readJson(modelPath);
+      if (jsonObject == null) {
+        return false;
+      }
+      if (!update.isEmpty()) {
+        JsonUpdates.apply(jsonObject, update);
+        this.writeJson(modelPath, jsonObject);
+      }
+      return true;
+    } finally {
+      lock.unlock();
     }
   }
 
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> update(
+    final @NotNull String id,
+    final @NotNull ModelUpdate<JsonObject> update
+  ) {
+    return CompletableFuture.supplyAsync(() -> this.updateSync(id, update), this.executor);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C saveManySync(final @NotNull C models) {
+    ParallelTasks.forEach(this.executor, this.parallelism, List.copyOf(models), this::saveSync);
+    return models;
+  }
+
   @Override
   public boolean deleteSync(final @NotNull String id) {
+    final var lock = this.fileLock(id);
+    lock.lock();
     try {
       return Files.deleteIfExists(this.resolveChild(id));
     } catch (final IOException e) {
       throw new RuntimeException(e);
+    } finally {
+      lock.unlock();
     }
   }
 
+  @Override
+  public int deleteManySync(final @NotNull Collection<String> ids) {
+    final var deleted = new AtomicInteger();
+    ParallelTasks.forEach(this.executor, this.parallelism, List.copyOf(ids), id -> {
+      if (this.deleteSync(id)) {
+        deleted.incrementAndGet();
+      }
+    });
+    return deleted.get();
+  }
+
   protected @NotNull Path resolveChild(final @NotNull String id) {
     return this.folderPath.resolve(id + ".json");
   }
 
+  protected @NotNull Lock fileLock(final @NotNull String id) {
+    return this.fileLocks[Math.floorMod(id.hashCode(), this.fileLocks.length)];
+  }
+
+  protected void writeJson(final @NotNull Path modelPath, final @NotNull JsonObject jsonObject) {
+    try (final var writer = this.newJsonWriter(modelPath)) {
+      TypeAdapters.JSON_ELEMENT.write(writer, jsonObject);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  protected void writeModel(final @NotNull Path modelPath, final @NotNull ModelType model) {
+    try (final var writer = this.newJsonWriter(modelPath)) {
+      JsonStreamWriter.serialize(writer, model, Objects.requireNonNull(this.streamingSerializer));
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // writes a temporary file moved over the given one, so a write which fails halfway, like a
+  // throwing streaming serializer, never leaves a truncated model behind
+  protected void replaceFile(final @NotNull Path modelPath, final @NotNull Consumer<Path> write) {
+    final var temporaryPath = modelPath.resolveSibling(modelPath.getFileName() + ".tmp");
+    var moved = false;
+    try {
+      write.accept(temporaryPath);
+      Files.move(temporaryPath, modelPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      moved = true;
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      if (!moved) {
+        try {
+          Files.deleteIfExists(temporaryPath);
+        } catch (final IOException ignored) {
+          // the failure of the write is the one reported
+        }
+      }
+    }
+  }
+
+  protected @NotNull JsonWriter newJsonWriter(final @NotNull Path modelPath) throws IOException {
+    final var writer = new JsonWriter(Files.newBufferedWriter(modelPath, StandardCharsets.UTF_8));
+    writer.setSerializeNulls(false);
+    if (this.prettyPrinting) {
+      writer.setIndent("  ");
+    }
+    return writer;
+  }
+
+  protected @NotNull Collection<String> sortedIdsAfter(final @Nullable String after, final int limit) {
+    final var ids = new TreeSet<String>();
+    try (final var directoryStream = Files.newDirectoryStream(this.folderPath, "*.json")) {
+      for (final var file : directoryStream) {
+        final var fileName = file.getFileName()
+                               .toString();
+        final var id = fileName.substring(0, fileName.length() - 5);
+        if (after != null && id.compareTo(after) <= 0) {
+          continue;
+        }
+        if (ids.size() < limit) {
+          ids.add(id);
+        } else if (id.compareTo(ids.last()) < 0) {
+          ids.pollLast();
+          ids.add(id);
+        }
+      }
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return ids;
+  }
+
   protected @Nullable ModelType internalFind(final @NotNull Path file) {
+    if (this.streamingDeserializer != null) {
+      return this.readModel(file);
+    }
+    final var jsonObject = this.readJson(file);
+    if (jsonObject == null) {
+      return null;
+    }
+    return this.modelDeserializer.deserialize(jsonObject);
+  }
+
+  protected @Nullable JsonObject readJson(final @NotNull Path file) {
     if (Files.notExists(file)) {
       return null;
     }
@@ -160,9 +527,26 @@ public class GsonModelRepository<ModelType extends Model> extends AbstractAsyncM
         jsonObject.add(reader.nextName(), TypeAdapters.JSON_ELEMENT.read(reader));
       }
       reader.endObject();
-      return this.modelDeserializer.deserialize(jsonObject);
+      return jsonObject;
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  protected @Nullable ModelType readModel(final @NotNull Path file) {
+    if (Files.notExists(file)) {
+      return null;
+    }
+    try (final var reader = new JsonReader(Files.newBufferedReader(file))) {
+      return JsonStreamReader.deserialize(reader, Objects.requireNonNull(this.streamingDeserializer));
     } catch (final IOException e) {
       throw new RuntimeException(e);
     }
   }
+
+  private static boolean hasVersion(final @NotNull JsonObject jsonObject, final long version) {
+    return jsonObject.get(VersionedModel.VERSION_FIELD) instanceof JsonPrimitive primitive
+             && primitive.isNumber()
+             && primitive.getAsLong() == version;
+  }
 }
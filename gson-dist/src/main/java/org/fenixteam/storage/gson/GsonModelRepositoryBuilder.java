@@ -7,8 +7,11 @@ import java.nio.file.Path;
 import java.util.concurrent.Executor;
 import org.fenixteam.storage.codec.ModelDeserializer;
 import org.fenixteam.storage.codec.ModelSerializer;
+import org.fenixteam.storage.codec.StreamingModelDeserializer;
+import org.fenixteam.storage.codec.StreamingModelSerializer;
+import org.fenixteam.storage.gson.codec.JsonStreamReader;
+import org.fenixteam.storage.gson.codec.JsonStreamWriter;
 import org.fenixteam.storage.model.Model;
-import org.fenixteam.storage.repository.AsyncModelRepository;
 import org.fenixteam.storage.repository.builder.AbstractModelRepositoryBuilder;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
@@ -19,8 +22,12 @@ public final class GsonModelRepositoryBuilder<ModelType extends Model>
   private final Class<ModelType> modelType;
   private Path folderPath;
   private boolean prettyPrinting;
+  private int parallelism = Runtime.getRuntime()
+                              .availableProcessors();
   private ModelSerializer<ModelType, JsonObject> writer;
   private ModelDeserializer<ModelType, JsonObject> reader;
+  private StreamingModelSerializer<ModelType, JsonStreamWriter> streamingWriter;
+  private StreamingModelDeserializer<ModelType, JsonStreamReader> streamingReader;
 
   GsonModelRepositoryBuilder(final @NotNull Class<ModelType> type) {
     this.modelType = type;
@@ -38,6 +45,12 @@ public final class GsonModelRepositoryBuilder<ModelType extends Model>
     return this;
   }
 
+  @Contract("_ -> this")
+  public @NotNull GsonModelRepositoryBuilder<ModelType> parallelism(final int parallelism) {
+    this.parallelism = parallelism;
+    return this;
+  }
+
   @Contract("_ -> this")
   public @NotNull GsonModelRepositoryBuilder<ModelType> modelSerializer(
     final @NotNull ModelSerializer<ModelType, JsonObject> writer
@@ -46,6 +59,21 @@ public final class GsonModelRepositoryBuilder<ModelType extends Model>
     return this;
   }
 
+  /**
+   * Sets a serializer streaming the models straight to their files, used by the saves instead of
+   * the model serializer so no {@link JsonObject} is built.
+   *
+   * @param writer the streaming serializer of the models
+   * @return this builder
+   */
+  @Contract("_ -> this")
+  public @NotNull GsonModelRepositoryBuilder<ModelType> streamingSerializer(
+    final @NotNull StreamingModelSerializer<ModelType, JsonStreamWriter> writer
+  ) {
+    this.streamingWriter = writer;
+    return this;
+  }
+
   @Contract("_ -> this")
   public @NotNull GsonModelRepositoryBuilder<ModelType> modelDeserializer(
     final @NotNull ModelDeserializer<ModelType, JsonObject> reader
@@ -54,8 +82,24 @@ public final class GsonModelRepositoryBuilder<ModelType extends Model>
     return this;
   }
 
+  /**
+   * Sets a deserializer reading the models straight from their files, used by the finds instead of
+   * the model deserializer so no {@link JsonObject} is built. The model deserializer may be left
+   * unset, the filtered reads then adapt this one to the trees they evaluate.
+   *
+   * @param reader the streaming deserializer of the models
+   * @return this builder
+   */
+  @Contract("_ -> this")
+  public @NotNull GsonModelRepositoryBuilder<ModelType> streamingDeserializer(
+    final @NotNull StreamingModelDeserializer<ModelType, JsonStreamReader> reader
+  ) {
+    this.streamingReader = reader;
+    return this;
+  }
+
   @Contract("_ -> new")
-  public @NotNull AsyncModelRepository<ModelType> build(final @NotNull Executor executor) {
+  public @NotNull GsonModelRepository<ModelType> build(final @NotNull Executor executor) {
     if (Files.notExists(this.folderPath)) {
       try {
         Files.createDirectories(this.folderPath);
@@ -68,7 +112,10 @@ public final class GsonModelRepositoryBuilder<ModelType extends Model>
       this.modelType,
       this.folderPath,
       this.prettyPrinting,
+      this.parallelism,
       this.writer,
-      this.reader);
+      this.reader,
+      this.streamingWriter,
+      this.streamingReader);
   }
 }
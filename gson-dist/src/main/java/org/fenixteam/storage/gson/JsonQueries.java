@@ -0,0 +1,128 @@
+package org.fenixteam.storage.gson;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.function.Function;
+import org.fenixteam.storage.codec.ModelDeserializer;
+import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.query.FieldAccessor;
+import org.fenixteam.storage.query.ModelQuery;
+import org.fenixteam.storage.query.QueryCollector;
+import org.fenixteam.storage.repository.ModelRepository;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Evaluates the repository queries over the serialized JSON form of the models, so only the
+ * matching models are deserialized. Used by the JSON based backends which can't evaluate them
+ * natively.
+ */
+public final class JsonQueries {
+  public static final FieldAccessor<JsonObject> ACCESSOR = JsonQueries::value;
+
+  private JsonQueries() {
+    throw new UnsupportedOperationException("This class cannot be instantiated");
+  }
+
+  @Contract("_ -> new")
+  public static @NotNull QueryCollector<JsonObject> collector(final @NotNull ModelQuery query) {
+    return new QueryCollector<>(query, ACCESSOR);
+  }
+
+  /**
+   * Returns the value of a field, following the dots of nested fields. Numbers, booleans and
+   * strings are converted to their Java values and arrays to lists of them.
+   *
+   * @param object the serialized model
+   * @param field the field, nested fields separated by dots
+   * @return the value, or null if the field is missing or is an object
+   */
+  public static @Nullable Object value(final @NotNull JsonObject object, final @NotNull String field) {
+    JsonElement element = object;
+    var start = 0;
+    while (start <= field.length()) {
+      if (!(element instanceof JsonObject parent)) {
+        return null;
+      }
+      var end = field.indexOf('.', start);
+      if (end == -1) {
+        end = field.length();
+      }
+      element = parent.get(field.substring(start, end));
+      start = end + 1;
+    }
+    return convert(element);
+  }
+
+  /**
+   * Deserializes the collected models, keeping only the id and the projected fields of the query.
+   *
+   * @param collector the collector of the serialized models
+   * @param query the collected query
+   * @param deserializer the model deserializer
+   * @param factory the factory of the returned collection
+   * @param <T> the type of the models
+   * @param <C> the type of the returned collection
+   * @return the deserialized models, in the order of the query
+   */
+  public static <T extends Model, C extends Collection<T>> @NotNull C deserialize(
+    final @NotNull QueryCollector<JsonObject> collector,
+    final @NotNull ModelQuery query,
+    final @NotNull ModelDeserializer<T, JsonObject> deserializer,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var results = collector.results();
+    final var foundModels = factory.apply(results.size());
+    for (final var object : results) {
+      foundModels.add(deserializer.deserialize(project(object, query)));
+    }
+    return foundModels;
+  }
+
+  public static @NotNull JsonObject project(final @NotNull JsonObject object, final @NotNull ModelQuery query) {
+    if (query.projection()
+          .isEmpty()) {
+      return object;
+    }
+    final var projected = new JsonObject();
+    final var id = object.get(ModelRepository.ID_FIELD);
+    if (id != null) {
+      projected.add(ModelRepository.ID_FIELD, id);
+    }
+    for (final var field : query.projection()) {
+      // nested fields are projected with their whole top-level object
+      final var dot = field.indexOf('.');
+      final var topLevelField = dot == -1 ? field : field.substring(0, dot);
+      final var value = object.get(topLevelField);
+      if (value != null) {
+        projected.add(topLevelField, value);
+      }
+    }
+    return projected;
+  }
+
+  private static @Nullable Object convert(final @Nullable JsonElement element) {
+    if (element instanceof JsonPrimitive primitive) {
+      if (primitive.isNumber()) {
+        return primitive.getAsNumber();
+      }
+      if (primitive.isBoolean()) {
+        return primitive.getAsBoolean();
+      }
+      return primitive.getAsString();
+    }
+    if (element instanceof JsonArray array) {
+      final var values = new ArrayList<>(array.size());
+      for (final var child : array) {
+        values.add(convert(child));
+      }
+      return values;
+    }
+    return null;
+  }
+}
@@ -0,0 +1,97 @@
+package org.fenixteam.storage.gson;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.math.BigDecimal;
+import org.fenixteam.storage.gson.codec.JsonWriter;
+import org.fenixteam.storage.repository.update.ModelUpdate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Applies the model updates to the serialized JSON form of a model, following the MongoDB
+ * semantics: missing parents of nested fields are created and missing numbers are incremented
+ * from zero.
+ */
+public final class JsonUpdates {
+  private JsonUpdates() {
+    throw new UnsupportedOperationException("This class cannot be instantiated");
+  }
+
+  public static void apply(final @NotNull JsonObject object, final @NotNull ModelUpdate<JsonObject> update) {
+    for (final var entry : sets(update).entrySet()) {
+      set(object, entry.getKey(), entry.getValue());
+    }
+    for (final var entry : update.increments()
+                             .entrySet()) {
+      final var field = entry.getKey();
+      set(object, field, increment(get(object, field), entry.getValue()));
+    }
+    for (final var field : update.unsets()) {
+      final var dot = field.lastIndexOf('.');
+      final var parent = dot == -1 ? object : parent(object, field.substring(0, dot), false);
+      if (parent != null) {
+        parent.remove(field.substring(dot + 1));
+      }
+    }
+  }
+
+  public static @NotNull JsonObject sets(final @NotNull ModelUpdate<JsonObject> update) {
+    return update.writeSets(JsonWriter.create());
+  }
+
+  /**
+   * Adds the delta to a JSON number, keeping it integral when both numbers are integral.
+   *
+   * @param current the current value, or null to increment from zero
+   * @param delta the added delta
+   * @return the incremented number
+   * @throws IllegalArgumentException if the current value isn't a number
+   */
+  public static @NotNull JsonPrimitive increment(final @Nullable JsonElement current, final @NotNull Number delta) {
+    if (current == null || current.isJsonNull()) {
+      return new JsonPrimitive(delta);
+    }
+    if (!current.isJsonPrimitive() || !current.getAsJsonPrimitive()
+                                          .isNumber()) {
+      throw new IllegalArgumentException("Only numbers can be incremented, found " + current);
+    }
+    final var text = current.getAsString();
+    final var sum = new BigDecimal(text).add(new BigDecimal(delta.toString()));
+    if (ModelUpdate.isIntegral(delta) && text.indexOf('.') == -1 && text.indexOf('e') == -1
+        && text.indexOf('E') == -1) {
+      return new JsonPrimitive(sum.longValueExact());
+    }
+    return new JsonPrimitive(sum.doubleValue());
+  }
+
+  private static @Nullable JsonElement get(final @NotNull JsonObject object, final @NotNull String field) {
+    final var dot = field.lastIndexOf('.');
+    final var parent = dot == -1 ? object : parent(object, field.substring(0, dot), false);
+    return parent == null ? null : parent.get(field.substring(dot + 1));
+  }
+
+  private static void set(final @NotNull JsonObject object, final @NotNull String field, final @NotNull JsonElement value) {
+    final var dot = field.lastIndexOf('.');
+    final var parent = dot == -1 ? object : parent(object, field.substring(0, dot), true);
+    parent.add(field.substring(dot + 1), value);
+  }
+
+  private static JsonObject parent(final @NotNull JsonObject object, final @NotNull String path, final boolean create) {
+    var parent = object;
+    for (final var name : path.split("\\.")) {
+      final var child = parent.get(name);
+      if (child instanceof JsonObject childObject) {
+        parent = childObject;
+      } else if (create) {
+        final var childObject = new JsonObject();
+        parent.add(name, childObject);
+        parent = childObject;
+      } else {
+        return null;
+      }
+    }
+    return parent;
+  }
+}
@@ -0,0 +1,506 @@
+package org.fenixteam.storage.gson.codec;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.internal.bind.JsonTreeReader;
+import com.google.gson.internal.bind.TypeAdapters;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import org.fenixteam.storage.codec.ModelDeserializer;
+import org.fenixteam.storage.codec.ModelReader;
+import org.fenixteam.storage.codec.StreamingModelDeserializer;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Model reader pulling the fields from a Gson {@link JsonReader}, so the models are read without
+ * building a {@link JsonObject} first. Fields read in the order they were written come straight
+ * from the stream; reading a field further on buffers the skipped fields as trees, and reading a
+ * missing field buffers all the remaining ones. Every field can be read once. The fields are read
+ * in the same form as {@link org.fenixteam.storage.gson.codec.JsonReader} does, and children read
+ * by a {@link ModelDeserializer} are still built as trees.
+ *
+ * <p>Since no tree is built, {@link #raw()} isn't supported.</p>
+ */
+@SuppressWarnings("unused")
+public class JsonStreamReader implements ModelReader<JsonObject> {
+  // the size of a streamed array isn't known before reading it
+  private static final int UNKNOWN_SIZE = 10;
+  private final @Nullable JsonReader reader;
+  // the JSON of every field is read apart from this map when it's present
+  private final @Nullable Map<String, String> fields;
+  private @Nullable Map<String, JsonElement> bufferedFields;
+
+  protected JsonStreamReader(final @Nullable JsonReader reader, final @Nullable Map<String, String> fields) {
+    this.reader = reader;
+    this.fields = fields;
+  }
+
+  /**
+   * Creates a reader of the fields of the object the given reader is in.
+   *
+   * @param reader the reader of the JSON, already inside the object
+   * @return the new reader
+   */
+  @Contract("_ -> new")
+  public static @NotNull JsonStreamReader create(final @NotNull JsonReader reader) {
+    return new JsonStreamReader(reader, null);
+  }
+
+  /**
+   * Creates a reader of the fields whose JSON is stored apart in the given map, as written by
+   * {@link JsonStreamWriter#fields(Map)}. These fields can be read in any order and many times.
+   *
+   * @param fields the JSON of the fields
+   * @return the new reader
+   */
+  @Contract("_ -> new")
+  public static @NotNull JsonStreamReader fields(final @NotNull Map<String, String> fields) {
+    return new JsonStreamReader(null, fields);
+  }
+
+  /**
+   * Reads a model from the JSON object the reader is at, consuming the whole object.
+   *
+   * @param reader the reader of the JSON
+   * @param deserializer the deserializer of the model
+   * @param <T> the type of the model
+   * @return the read model
+   */
+  public static <T> @NotNull T deserialize(
+    final @NotNull JsonReader reader,
+    final @NotNull StreamingModelDeserializer<T, JsonStreamReader> deserializer
+  ) {
+    try {
+      reader.beginObject();
+      final var streamReader = create(reader);
+      final var model = deserializer.deserialize(streamReader);
+      streamReader.skipRemaining();
+      reader.endObject();
+      return model;
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Adapts the streaming deserializer to the trees, for the code which already holds them.
+   *
+   * @param deserializer the streaming deserializer
+   * @param <T> the type of the models
+   * @return the deserializer of the trees
+   */
+  @Contract("_ -> new")
+  public static <T> @NotNull ModelDeserializer<T, JsonObject> treeDeserializer(
+    final @NotNull StreamingModelDeserializer<T, JsonStreamReader> deserializer
+  ) {
+    return jsonObject -> deserialize(new JsonTreeReader(jsonObject), deserializer);
+  }
+
+  /**
+   * Not supported, the read fields aren't kept.
+   *
+   * @return never returns
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public @NotNull JsonObject raw() {
+    throw new UnsupportedOperationException("A stream reader doesn't build the read object");
+  }
+
+  @Override
+  public @Nullable JsonObject readThis(final @NotNull String field) {
+    try {
+      final var in = this.beginField(field);
+      if (in == null) {
+        return null;
+      }
+      return TypeAdapters.JSON_ELEMENT.read(in)
+               .getAsJsonObject();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public @Nullable UUID readDetailedUuid(final @NotNull String field) {
+    try {
+      final var in = this.beginField(field);
+      if (in == null) {
+        return null;
+      }
+      if (in.peek() != JsonToken.BEGIN_OBJECT) {
+        in.skipValue();
+        return null;
+      }
+      return readDetailedUuid(in);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public @Nullable <C extends Collection<UUID>> C readDetailedUuids(
+    final @NotNull String field,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    try {
+      final var in = this.beginField(field);
+      if (in == null) {
+        return null;
+      }
+      final var uuids = factory.apply(UNKNOWN_SIZE);
+      in.beginArray();
+      while (in.hasNext()) {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+          in.skipValue();
+          continue;
+        }
+        uuids.add(readDetailedUuid(in));
+      }
+      in.endArray();
+      return uuids;
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public @Nullable String readString(final @NotNull String field) {
+    try {
+      final var in = this.beginField(field);
+      return in == null ? null : in.nextString();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public @Nullable Number readNumber(final @NotNull String field) {
+    try {
+      final var in = this.beginField(field);
+      return in == null ? null : new LazilyParsedNumber(in.nextString());
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public boolean readBoolean(final @NotNull String field) {
+    try {
+      final var in = this.beginField(field);
+      if (in == null) {
+        return false;
+      }
+      if (in.peek() == JsonToken.STRING) {
+        return Boolean.parseBoolean(in.nextString());
+      }
+      return in.nextBoolean();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T, C extends Collection<T>> @Nullable C readRawCollection(
+    final @NotNull String field,
+    final @NotNull Class<T> clazz,
+    final @NotNull Function<Integer, C> collectionFactory
+  ) {
+    try {
+      final var in = this.beginField(field);
+      if (in == null) {
+        return null;
+      }
+      final var collection = collectionFactory.apply(UNKNOWN_SIZE);
+      in.beginArray();
+      while (in.hasNext()) {
+        collection.add((T) readPrimitive(in, clazz));
+      }
+      in.endArray();
+      return collection;
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public <T> @Nullable T readObject(
+    final @NotNull String field,
+    final @NotNull ModelDeserializer<T, JsonObject> modelDeserializer
+  ) {
+    final var jsonObject = this.readThis(field);
+    if (jsonObject == null) {
+      return null;
+    }
+    return modelDeserializer.deserialize(jsonObject);
+  }
+
+  public <T> @Nullable T readStreamedObject(
+    final @NotNull String field,
+    final @NotNull StreamingModelDeserializer<T, JsonStreamReader> deserializer
+  ) {
+    try {
+      final var in = this.beginField(field);
+      return in == null ? null : deserialize(in, deserializer);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public @Nullable <K, V> Map<K, V> readMap(
+    final @NotNull String field,
+    final @NotNull Function<V, K> keyParser,
+    final @NotNull ModelDeserializer<V, JsonObject> modelDeserializer
+  ) {
+    try {
+      final var in = this.beginField(field);
+      if (in == null) {
+        return null;
+      }
+      final var map = new HashMap<K, V>();
+      in.beginArray();
+      while (in.hasNext()) {
+        final var value = modelDeserializer.deserialize(TypeAdapters.JSON_ELEMENT.read(in)
+                                                          .getAsJsonObject());
+        map.put(keyParser.apply(value), value);
+      }
+      in.endArray();
+      return map;
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public @Nullable <K, V> Map<K, V> readStreamedMap(
+    final @NotNull String field,
+    final @NotNull Function<V, K> keyParser,
+    final @NotNull StreamingModelDeserializer<V, JsonStreamReader> deserializer
+  ) {
+    try {
+      final var in = this.beginField(field);
+      if (in == null) {
+        return null;
+      }
+      final var map = new HashMap<K, V>();
+      in.beginArray();
+      while (in.hasNext()) {
+        final var value = deserialize(in, deserializer);
+        map.put(keyParser.apply(value), value);
+      }
+      in.endArray();
+      return map;
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public <T, C extends Collection<T>> @Nullable C readCollection(
+    final @NotNull String field,
+    final @NotNull Function<Integer, C> collectionFactory,
+    final @NotNull ModelDeserializer<T, JsonObject> modelDeserializer
+  ) {
+    try {
+      final var in = this.beginField(field);
+      if (in == null) {
+        return null;
+      }
+      final var objects = collectionFactory.apply(UNKNOWN_SIZE);
+      in.beginArray();
+      while (in.hasNext()) {
+        objects.add(modelDeserializer.deserialize(TypeAdapters.JSON_ELEMENT.read(in)
+                                                    .getAsJsonObject()));
+      }
+      in.endArray();
+      return objects;
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public <T, C extends Collection<T>> @Nullable C readStreamedCollection(
+    final @NotNull String field,
+    final @NotNull Function<Integer, C> collectionFactory,
+    final @NotNull StreamingModelDeserializer<T, JsonStreamReader> deserializer
+  ) {
+    try {
+      final var in = this.beginField(field);
+      if (in == null) {
+        return null;
+      }
+      final var objects = collectionFactory.apply(UNKNOWN_SIZE);
+      in.beginArray();
+      while (in.hasNext()) {
+        objects.add(deserialize(in, deserializer));
+      }
+      in.endArray();
+      return objects;
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public <T, C extends Collection<T>> @Nullable C readPrimitiveCollection(
+    final @NotNull String field,
+    final @NotNull Function<JsonElement, T> reader,
+    final @NotNull Function<Integer, C> collectionFactory
+  ) {
+    try {
+      final var in = this.beginField(field);
+      if (in == null) {
+        return null;
+      }
+      final var objects = collectionFactory.apply(UNKNOWN_SIZE);
+      in.beginArray();
+      while (in.hasNext()) {
+        objects.add(reader.apply(TypeAdapters.JSON_ELEMENT.read(in)));
+      }
+      in.endArray();
+      return objects;
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public <T> @Nullable T[] readPrimitiveArray(
+    final @NotNull String field,
+    final @NotNull Function<JsonElement, T> reader,
+    final @NotNull Function<Integer, T[]> arrayFactory
+  ) {
+    final var objects = this.readPrimitiveCollection(field, reader, ArrayList::new);
+    if (objects == null) {
+      return null;
+    }
+    return objects.toArray(arrayFactory.apply(objects.size()));
+  }
+
+  public <K, V, M extends Map<K, V>> @Nullable M readPrimitiveMap(
+    final @NotNull String field,
+    final @NotNull Function<String, K> keyParser,
+    final @NotNull Function<JsonElement, V> valueParser,
+    final @NotNull Function<Integer, M> mapFactory
+  ) {
+    try {
+      final var in = this.beginField(field);
+      if (in == null) {
+        return null;
+      }
+      if (in.peek() != JsonToken.BEGIN_OBJECT) {
+        in.skipValue();
+        return null;
+      }
+      final var map = mapFactory.apply(UNKNOWN_SIZE);
+      in.beginObject();
+      while (in.hasNext()) {
+        final var key = keyParser.apply(in.nextName());
+        map.put(key, valueParser.apply(TypeAdapters.JSON_ELEMENT.read(in)));
+      }
+      in.endObject();
+      return map;
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static @Nullable UUID readDetailedUuid(final @NotNull JsonReader in) throws IOException {
+    Long mostBits = null;
+    Long leastBits = null;
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "most" -> mostBits = in.nextLong();
+        case "least" -> leastBits = in.nextLong();
+        default -> in.skipValue();
+      }
+    }
+    in.endObject();
+    if (mostBits == null || leastBits == null) {
+      return null;
+    }
+    return new UUID(mostBits, leastBits);
+  }
+
+  private static @NotNull Object readPrimitive(final @NotNull JsonReader in, final @NotNull Class<?> clazz)
+    throws IOException {
+    if (clazz == String.class) {
+      return in.nextString();
+    } else if (clazz == Integer.class) {
+      return in.nextInt();
+    } else if (clazz == Long.class) {
+      return in.nextLong();
+    } else if (clazz == Double.class) {
+      return in.nextDouble();
+    } else if (clazz == Float.class) {
+      return (float) in.nextDouble();
+    } else if (clazz == Boolean.class) {
+      return in.nextBoolean();
+    } else if (clazz == Byte.class) {
+      return (byte) in.nextInt();
+    } else if (clazz == Short.class) {
+      return (short) in.nextInt();
+    }
+    throw new IllegalArgumentException("Unsupported raw collection type " + clazz.getName());
+  }
+
+  // returns the reader positioned at the value of the field, or null if it's missing or null
+  private @Nullable JsonReader beginField(final @NotNull String name) throws IOException {
+    final JsonReader in;
+    if (this.fields != null) {
+      final var value = this.fields.get(name);
+      in = value == null ? null : new JsonReader(new StringReader(value));
+    } else {
+      in = this.seekField(name);
+    }
+    if (in == null) {
+      return null;
+    }
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    return in;
+  }
+
+  // advances the stream up to the field, buffering the skipped ones
+  private @Nullable JsonReader seekField(final @NotNull String name) throws IOException {
+    final var bufferedField = this.bufferedFields == null ? null : this.bufferedFields.remove(name);
+    if (bufferedField != null) {
+      return new JsonTreeReader(bufferedField);
+    }
+    while (this.reader.hasNext()) {
+      final var nextName = this.reader.nextName();
+      if (nextName.equals(name)) {
+        return this.reader;
+      }
+      if (this.bufferedFields == null) {
+        this.bufferedFields = new HashMap<>();
+      }
+      this.bufferedFields.put(nextName, TypeAdapters.JSON_ELEMENT.read(this.reader));
+    }
+    return null;
+  }
+
+  // skips the fields which weren't read, so the object can be ended
+  private void skipRemaining() throws IOException {
+    if (this.reader == null) {
+      return;
+    }
+    while (this.reader.hasNext()) {
+      this.reader.nextName();
+      this.reader.skipValue();
+    }
+  }
+}
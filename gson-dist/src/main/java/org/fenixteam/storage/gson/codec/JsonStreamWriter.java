@@ -0,0 +1,432 @@
+package org.fenixteam.storage.gson.codec;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.internal.bind.TypeAdapters;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import org.fenixteam.storage.codec.ModelSerializer;
+import org.fenixteam.storage.codec.ModelWriter;
+import org.fenixteam.storage.codec.StreamingModelSerializer;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Model writer emitting the fields straight to a Gson {@link JsonWriter}, writing the JSON in a
+ * single pass without building a {@link JsonObject} first. The fields are written in the same
+ * form as {@link org.fenixteam.storage.gson.codec.JsonWriter} does, so the output is read back as
+ * usual. Children serialized by a {@link ModelSerializer} are still built as trees, the ones
+ * serialized by a {@link StreamingModelSerializer} are streamed too.
+ *
+ * <p>Since no tree is built, {@link #current()} and {@link #end()} aren't supported; the object
+ * of the model is opened and closed by whoever streams it, see
+ * {@link #serialize(JsonWriter, Object, StreamingModelSerializer)}.</p>
+ */
+@SuppressWarnings("unused")
+public class JsonStreamWriter implements ModelWriter<JsonObject> {
+  private final @Nullable JsonWriter writer;
+  // the JSON of every field is stored apart in this map when it's present
+  private final @Nullable Map<String, String> fields;
+  private @Nullable String fieldName;
+  private @Nullable StringWriter fieldBuffer;
+
+  protected JsonStreamWriter(
+    final @Nullable JsonWriter writer,
+    final @Nullable Map<String, String> fields
+  ) {
+    this.writer = writer;
+    this.fields = fields;
+  }
+
+  @Contract("_ -> new")
+  public static @NotNull JsonStreamWriter create(final @NotNull JsonWriter writer) {
+    return new JsonStreamWriter(writer, null);
+  }
+
+  /**
+   * Creates a writer storing the JSON of every field in the given map, as the JSON of the values
+   * of a {@link JsonObject} written one by one.
+   *
+   * @param fields the map where the JSON of the fields is stored
+   * @return the new writer
+   */
+  @Contract("_ -> new")
+  public static @NotNull JsonStreamWriter fields(final @NotNull Map<String, String> fields) {
+    return new JsonStreamWriter(null, fields);
+  }
+
+  /**
+   * Writes the model as a JSON object.
+   *
+   * @param writer the writer of the JSON
+   * @param model the model to write
+   * @param serializer the serializer of the model
+   * @param <T> the type of the model
+   */
+  public static <T> void serialize(
+    final @NotNull JsonWriter writer,
+    final @NotNull T model,
+    final @NotNull StreamingModelSerializer<T, JsonStreamWriter> serializer
+  ) {
+    try {
+      writer.beginObject();
+      serializer.serialize(model, create(writer));
+      writer.endObject();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  @Contract("_, _ -> this")
+  public @NotNull JsonStreamWriter writeThis(final @NotNull String key, final @Nullable JsonObject value) {
+    if (value == null) {
+      return this;
+    }
+    try {
+      TypeAdapters.JSON_ELEMENT.write(this.beginField(key), value);
+      this.endField();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return this;
+  }
+
+  @Override
+  @Contract("_, _ -> this")
+  public @NotNull JsonStreamWriter writeDetailedUuid(final @NotNull String key, final @Nullable UUID uuid) {
+    if (uuid == null) {
+      return this;
+    }
+    try {
+      writeDetailedUuid(this.beginField(key), uuid);
+      this.endField();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return this;
+  }
+
+  @Override
+  @Contract("_, _ -> this")
+  public @NotNull JsonStreamWriter writeDetailedUuids(
+    final @NotNull String key,
+    final @Nullable Collection<@NotNull UUID> uuids
+  ) {
+    if (uuids == null) {
+      return this;
+    }
+    try {
+      final var out = this.beginField(key);
+      out.beginArray();
+      for (final var uuid : uuids) {
+        if (uuid != null) {
+          writeDetailedUuid(out, uuid);
+        }
+      }
+      out.endArray();
+      this.endField();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return this;
+  }
+
+  @Override
+  @Contract("_, _ -> this")
+  public @NotNull JsonStreamWriter writeUuid(final @NotNull String field, final @Nullable UUID uuid) {
+    if (uuid == null) {
+      return this;
+    }
+    return this.writeString(field, uuid.toString());
+  }
+
+  @Override
+  @Contract("_, _ -> this")
+  public @NotNull JsonStreamWriter writeString(final @NotNull String field, final @Nullable String value) {
+    if (value == null) {
+      return this;
+    }
+    try {
+      this.beginField(field)
+        .value(value);
+      this.endField();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return this;
+  }
+
+  @Override
+  @Contract("_, _ -> this")
+  public @NotNull JsonStreamWriter writeNumber(final @NotNull String field, final @Nullable Number value) {
+    if (value == null) {
+      return this;
+    }
+    try {
+      this.beginField(field)
+        .value(value);
+      this.endField();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return this;
+  }
+
+  @Override
+  @Contract("_, _ -> this")
+  public @NotNull JsonStreamWriter writeBoolean(final @NotNull String field, final @Nullable Boolean value) {
+    if (value == null) {
+      return this;
+    }
+    try {
+      this.beginField(field)
+        .value(value);
+      this.endField();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return this;
+  }
+
+  @Override
+  @Contract("_, _, _ -> this")
+  public <T> @NotNull JsonStreamWriter writeObject(
+    final @NotNull String field,
+    final @Nullable T child,
+    final @NotNull ModelSerializer<T, JsonObject> modelSerializer
+  ) {
+    if (child == null) {
+      return this;
+    }
+    return this.writeThis(field, modelSerializer.serialize(child));
+  }
+
+  @Contract("_, _, _ -> this")
+  public <T> @NotNull JsonStreamWriter writeObject(
+    final @NotNull String field,
+    final @Nullable T child,
+    final @NotNull StreamingModelSerializer<T, JsonStreamWriter> serializer
+  ) {
+    if (child == null) {
+      return this;
+    }
+    try {
+      final var out = this.beginField(field);
+      out.beginObject();
+      serializer.serialize(child, this.nested(out));
+      out.endObject();
+      this.endField();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return this;
+  }
+
+  @Override
+  @Contract("_, _ -> this")
+  public <T> @NotNull JsonStreamWriter writeRawCollection(
+    final @NotNull String field,
+    final @Nullable Collection<T> children
+  ) {
+    if (children == null) {
+      return this;
+    }
+    try {
+      final var out = this.beginField(field);
+      out.beginArray();
+      for (final var child : children) {
+        if (child != null) {
+          out.value(child.toString());
+        }
+      }
+      out.endArray();
+      this.endField();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return this;
+  }
+
+  @Override
+  @Contract("_, _, _ -> this")
+  public <T> @NotNull JsonStreamWriter writeCollection(
+    final @NotNull String field,
+    final @Nullable Collection<T> children,
+    final @NotNull ModelSerializer<T, JsonObject> modelSerializer
+  ) {
+    if (children == null) {
+      return this;
+    }
+    try {
+      final var out = this.beginField(field);
+      out.beginArray();
+      for (final var child : children) {
+        TypeAdapters.JSON_ELEMENT.write(out, modelSerializer.serialize(child));
+      }
+      out.endArray();
+      this.endField();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return this;
+  }
+
+  @Contract("_, _, _ -> this")
+  public <T> @NotNull JsonStreamWriter writeCollection(
+    final @NotNull String field,
+    final @Nullable Collection<T> children,
+    final @NotNull StreamingModelSerializer<T, JsonStreamWriter> serializer
+  ) {
+    if (children == null) {
+      return this;
+    }
+    try {
+      final var out = this.beginField(field);
+      final var nested = this.nested(out);
+      out.beginArray();
+      for (final var child : children) {
+        out.beginObject();
+        serializer.serialize(child, nested);
+        out.endObject();
+      }
+      out.endArray();
+      this.endField();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return this;
+  }
+
+  @Contract("_, _, _ -> this")
+  public <T> @NotNull JsonStreamWriter writePrimitiveCollection(
+    final @NotNull String field,
+    final @Nullable Collection<T> children,
+    final @NotNull Function<T, JsonElement> writer
+  ) {
+    if (children == null) {
+      return this;
+    }
+    try {
+      final var out = this.beginField(field);
+      out.beginArray();
+      for (final var child : children) {
+        TypeAdapters.JSON_ELEMENT.write(out, writer.apply(child));
+      }
+      out.endArray();
+      this.endField();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return this;
+  }
+
+  public <T> @NotNull JsonStreamWriter writePrimitiveArray(
+    final @NotNull String field,
+    final @Nullable T[] children,
+    final @NotNull Function<T, JsonElement> writer
+  ) {
+    if (children == null) {
+      return this;
+    }
+    try {
+      final var out = this.beginField(field);
+      out.beginArray();
+      for (final var child : children) {
+        TypeAdapters.JSON_ELEMENT.write(out, writer.apply(child));
+      }
+      out.endArray();
+      this.endField();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return this;
+  }
+
+  public <K, V> @NotNull JsonStreamWriter writePrimitiveMap(
+    final @NotNull String field,
+    final @Nullable Map<K, V> map,
+    final @NotNull Function<K, String> keyWriter,
+    final @NotNull Function<V, JsonElement> valueWriter
+  ) {
+    if (map == null) {
+      return this;
+    }
+    try {
+      final var out = this.beginField(field);
+      out.beginObject();
+      for (final var entry : map.entrySet()) {
+        out.name(keyWriter.apply(entry.getKey()));
+        TypeAdapters.JSON_ELEMENT.write(out, valueWriter.apply(entry.getValue()));
+      }
+      out.endObject();
+      this.endField();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return this;
+  }
+
+  /**
+   * Not supported, the written fields aren't kept.
+   *
+   * @return never returns
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public @NotNull JsonObject current() {
+    throw new UnsupportedOperationException("A stream writer doesn't build the written object");
+  }
+
+  /**
+   * Not supported, the object is ended by whoever began it.
+   *
+   * @return never returns
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public @NotNull JsonObject end() {
+    throw new UnsupportedOperationException("A stream writer doesn't build the written object");
+  }
+
+  private static void writeDetailedUuid(
+    final @NotNull JsonWriter out,
+    final @NotNull UUID uuid
+  ) throws IOException {
+    out.beginObject();
+    out.name("least")
+      .value(uuid.getLeastSignificantBits());
+    out.name("most")
+      .value(uuid.getMostSignificantBits());
+    out.endObject();
+  }
+
+  // returns the writer of the value of the field, every field gets its own writer in the map mode
+  private @NotNull JsonWriter beginField(final @NotNull String name) throws IOException {
+    if (this.fields == null) {
+      return this.writer.name(name);
+    }
+    this.fieldName = name;
+    this.fieldBuffer = new StringWriter();
+    final var fieldWriter = new JsonWriter(this.fieldBuffer);
+    fieldWriter.setSerializeNulls(false);
+    return fieldWriter;
+  }
+
+  private void endField() {
+    if (this.fields != null) {
+      this.fields.put(this.fieldName, this.fieldBuffer.toString());
+    }
+  }
+
+  // the children write their fields to the writer of the field they're in
+  private @NotNull JsonStreamWriter nested(final @NotNull JsonWriter out) {
+    return out == this.writer ? this : create(out);
+  }
+}
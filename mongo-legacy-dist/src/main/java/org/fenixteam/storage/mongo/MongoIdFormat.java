@@ -0,0 +1,87 @@
+package org.fenixteam.storage.mongo;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import org.bson.BsonBinarySubType;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * How the model ids are stored in the {@code _id} field. The serializers and deserializers always
+ * see the string id, the repository converts it when writing and reading the documents.
+ */
+public enum MongoIdFormat {
+  /**
+   * The id is stored as a string.
+   */
+  STRING,
+  /**
+   * The id is a UUID stored as a 16 bytes binary of the standard UUID subtype, less than half the
+   * size of its string in the documents and in the {@code _id} index.
+   */
+  UUID_BINARY;
+
+  public @NotNull Object encode(final @NotNull String id) {
+    if (this == STRING) {
+      return id;
+    }
+    final var uuid = UUID.fromString(id);
+    final var bytes = ByteBuffer.allocate(16)
+                        .putLong(uuid.getMostSignificantBits())
+                        .putLong(uuid.getLeastSignificantBits())
+                        .array();
+    return new Binary(BsonBinarySubType.UUID_STANDARD, bytes);
+  }
+
+  public @NotNull List<Object> encodeAll(final @NotNull Collection<String> ids) {
+    final var encodedIds = new ArrayList<Object>(ids.size());
+    for (final var id : ids) {
+      encodedIds.add(this.encode(id));
+    }
+    return encodedIds;
+  }
+
+  /**
+   * Converts a stored {@code _id} back to the id of the model. Binary UUIDs are decoded as
+   * {@link Binary} or as {@link UUID}, depending on the UUID representation of the codecs.
+   *
+   * @param value the stored id
+   * @return the id of the model
+   */
+  public @NotNull String decode(final @NotNull Object value) {
+    if (value instanceof UUID uuid) {
+      return uuid.toString();
+    }
+    if (value instanceof Binary binary && binary.getType() == BsonBinarySubType.UUID_STANDARD.getValue()) {
+      final var bytes = ByteBuffer.wrap(binary.getData());
+      return new UUID(bytes.getLong(), bytes.getLong()).toString();
+    }
+    return value.toString();
+  }
+
+  /**
+   * Replaces the string id of a serialized model with the stored id.
+   *
+   * @param document the serialized model
+   */
+  public void encodeId(final @NotNull Document document) {
+    if (this != STRING) {
+      document.put(MongoModelRepository.ID_FIELD, this.encode(document.getString(MongoModelRepository.ID_FIELD)));
+    }
+  }
+
+  /**
+   * Replaces the stored id of a read document with the id of the model.
+   *
+   * @param document the read document
+   */
+  public void decodeId(final @NotNull Document document) {
+    if (this != STRING) {
+      document.put(MongoModelRepository.ID_FIELD, this.decode(document.get(MongoModelRepository.ID_FIELD)));
+    }
+  }
+}
@@ -1,40 +1,89 @@
 package org.fenixteam.storage.mongo;
 
+import com.mongodb.MongoWriteException;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.bson.Document;
+import org.fenixteam.storage.codec.ModelChangeTracker;
 import org.fenixteam.storage.codec.ModelDeserializer;
 import org.fenixteam.storage.codec.ModelSerializer;
 import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.model.PackedUuidSet;
+import org.fenixteam.storage.model.VersionedModel;
+import org.fenixteam.storage.query.ModelFilter;
+import org.fenixteam.storage.query.ModelPage;
+import org.fenixteam.storage.query.ModelQuery;
 import org.fenixteam.storage.repository.AbstractAsyncModelRepository;
+import org.fenixteam.storage.repository.update.ModelUpdate;
+import org.fenixteam.storage.repository.update.UpdatableModelRepository;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 @SuppressWarnings("unused")
-public class MongoModelRepository<ModelType extends Model> extends AbstractAsyncModelRepository<ModelType> {
+public class MongoModelRepository<ModelType extends Model>
+  extends AbstractAsyncModelRepository<ModelType>
+  implements UpdatableModelRepository<Document> {
   public static final String ID_FIELD = "_id";
   protected final MongoCollection<Document> mongoCollection;
   protected final ModelSerializer<ModelType, Document> modelSerializer;
   protected final ModelDeserializer<ModelType, Document> modelDeserializer;
+  protected final @Nullable ModelChangeTracker<Document, Object> changeTracker;
+  protected final MongoIdFormat idFormat;
 
   protected MongoModelRepository(
     final @NotNull Executor executor,
     final @NotNull MongoCollection<Document> mongoCollection,
     final @NotNull ModelSerializer<ModelType, Document> modelSerializer,
     final @NotNull ModelDeserializer<ModelType, Document> modelDeserializer
+  ) {
+    this(executor, mongoCollection, modelSerializer, modelDeserializer, null);
+  }
+
+  protected MongoModelRepository(
+    final @NotNull Executor executor,
+    final @NotNull MongoCollection<Document> mongoCollection,
+    final @NotNull ModelSerializer<ModelType, Document> modelSerializer,
+    final @NotNull ModelDeserializer<ModelType, Document> modelDeserializer,
+    final @Nullable ModelChangeTracker<Document, Object> changeTracker
+  ) {
+    this(executor, mongoCollection, modelSerializer, modelDeserializer, changeTracker, MongoIdFormat.STRING);
+  }
+
+  protected MongoModelRepository(
+    final @NotNull Executor executor,
+    final @NotNull MongoCollection<Document> mongoCollection,
+    final @NotNull ModelSerializer<ModelType, Document> modelSerializer,
+    final @NotNull ModelDeserializer<ModelType, Document> modelDeserializer,
+    final @Nullable ModelChangeTracker<Document, Object> changeTracker,
+    final @NotNull MongoIdFormat idFormat
   ) {
     super(executor);
     this.mongoCollection = mongoCollection;
     this.modelSerializer = modelSerializer;
     this.modelDeserializer = modelDeserializer;
+    this.changeTracker = changeTracker;
+    this.idFormat = idFormat;
   }
 
   @Contract(value = " -> new")
@@ -44,12 +93,12 @@ public class MongoModelRepository<ModelType extends Model> extends AbstractAsync
 
   @Override
   public @Nullable ModelType findSync(final @NotNull String id) {
-    final var document = this.mongoCollection.find(Filters.eq(ID_FIELD, id))
+    final var document = this.mongoCollection.find(Filters.eq(ID_FIELD, this.idFormat.encode(id)))
                            .first();
     if (document == null) {
       return null;
     }
-    return this.modelDeserializer.deserialize(document);
+    return this.readModel(document);
   }
 
   @Override
@@ -59,17 +108,41 @@ public class MongoModelRepository<ModelType extends Model> extends AbstractAsync
     final @NotNull Function<Integer, C> factory
   ) {
     final var foundModels = factory.apply(1);
-    for (final var document : this.mongoCollection.find(Filters.eq(field, value))) {
-      foundModels.add(this.modelDeserializer.deserialize(document));
+    final var filterValue = field.equals(ID_FIELD) ? this.idFormat.encode(value) : value;
+    for (final var document : this.mongoCollection.find(Filters.eq(field, filterValue))) {
+      foundModels.add(this.readModel(document));
     }
-    return null;
+    return foundModels;
   }
 
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C findManySync(
+    final @NotNull Collection<String> ids,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var foundModels = factory.apply(ids.size());
+    if (ids.isEmpty()) {
+      return foundModels;
+    }
+    for (final var document : this.mongoCollection.find(Filters.in(ID_FIELD, this.idFormat.encodeAll(ids)))) {
+      foundModels.add(this.readModel(document));
+    }
+    return foundModels;
+  }
+
+  /**
+   * Returns the ids of every model, packed in a {@link PackedUuidSet} when the ids are UUIDs.
+   *
+   * @return the ids of the models
+   */
   @Override
   public @Nullable Collection<String> findIdsSync() {
-    final var ids = new ArrayList<String>();
-    for (final var document : this.mongoCollection.find(Projections.include(ID_FIELD))) {
-      ids.add(document.getString(ID_FIELD));
+    final Collection<String> ids = this.idFormat == MongoIdFormat.UUID_BINARY
+                                     ? new PackedUuidSet()
+                                     : new ArrayList<>();
+    for (final var document : this.mongoCollection.find()
+                                .projection(Projections.include(ID_FIELD))) {
+      ids.add(this.idFormat.decode(document.get(ID_FIELD)));
     }
     return ids;
   }
@@ -79,38 +152,328 @@ public class MongoModelRepository<ModelType extends Model> extends AbstractAsync
     final @NotNull Consumer<ModelType> postLoadAction,
     final @NotNull Function<Integer, C> factory
   ) {
-    final var documents = this.mongoCollection.find()
-                            .into(new ArrayList<>());
-    final var foundModels = factory.apply(documents.size());
-    for (final var document : documents) {
-      final var model = this.modelDeserializer.deserialize(document);
+    final var foundModels = factory.apply(1);
+    for (final var document : this.mongoCollection.find()) {
+      final var model = this.readModel(document);
       postLoadAction.accept(model);
       foundModels.add(model);
     }
     return foundModels;
   }
 
+  @Override
+  public @NotNull Stream<ModelType> streamAllSync(final int batchSize) {
+    final var cursor = this.mongoCollection.find()
+                         .batchSize(batchSize)
+                         .cursor();
+    final var spliterator = Spliterators.spliteratorUnknownSize(
+      cursor,
+      Spliterator.ORDERED | Spliterator.NONNULL);
+    return StreamSupport.stream(spliterator, false)
+             .onClose(cursor::close)
+             .map(this::readModel);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C querySync(
+    final @NotNull ModelQuery query,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var foundModels = factory.apply(query.limit() == 0 ? 1 : query.limit());
+    final var documents = this.mongoCollection.find(MongoQueries.filter(query, this.idFormat))
+                            .sort(MongoQueries.sort(query))
+                            .projection(MongoQueries.projection(query))
+                            .skip(query.skip())
+                            .limit(query.limit());
+    // projected documents are partial, so they aren't tracked
+    final var projected = !query.projection()
+                             .isEmpty();
+    for (final var document : documents) {
+      if (projected) {
+        this.idFormat.decodeId(document);
+        foundModels.add(this.modelDeserializer.deserialize(document));
+      } else {
+        foundModels.add(this.readModel(document));
+      }
+    }
+    return foundModels;
+  }
+
+  @Override
+  public @NotNull ModelPage<ModelType> findPageSync(
+    final @Nullable ModelFilter filter,
+    final @Nullable String token,
+    final int pageSize
+  ) {
+    ModelPage.checkPageSize(pageSize);
+    // one extra document tells if there is a next page
+    final var documents = this.mongoCollection.find(MongoQueries.pageFilter(
+                                filter,
+                                ModelPage.decodeToken(token),
+                                this.idFormat))
+                            .sort(MongoQueries.pageSort())
+                            .limit(pageSize + 1);
+    final var models = new ArrayList<ModelType>(pageSize);
+    var hasNext = false;
+    for (final var document : documents) {
+      if (models.size() == pageSize) {
+        hasNext = true;
+        break;
+      }
+      models.add(this.readModel(document));
+    }
+    return ModelPage.of(models, hasNext ? models.get(pageSize - 1)
+                                            .id() : null);
+  }
+
+  @Override
+  public @NotNull Set<String> findExistingIdsSync(final @NotNull Collection<String> ids) {
+    final var existingIds = new HashSet<String>(ids.size() * 2);
+    if (ids.isEmpty()) {
+      return existingIds;
+    }
+    for (final var document : this.mongoCollection.find(Filters.in(ID_FIELD, this.idFormat.encodeAll(ids)))
+                                .projection(Projections.include(ID_FIELD))) {
+      existingIds.add(this.idFormat.decode(document.get(ID_FIELD)));
+    }
+    return existingIds;
+  }
+
+  @Override
+  public @NotNull Map<String, Long> findVersionsSync(final @NotNull Collection<String> ids) {
+    final var versions = new HashMap<String, Long>(ids.size() * 2);
+    if (ids.isEmpty()) {
+      return versions;
+    }
+    for (final var document : this.mongoCollection.find(Filters.in(ID_FIELD, this.idFormat.encodeAll(ids)))
+                                .projection(Projections.include(ID_FIELD, VersionedModel.VERSION_FIELD))) {
+      final var id = this.idFormat.decode(document.get(ID_FIELD));
+      if (!(document.get(VersionedModel.VERSION_FIELD) instanceof Number version)) {
+        throw new IllegalArgumentException("The model " + id + " isn't versioned");
+      }
+      versions.put(id, version.longValue());
+    }
+    return versions;
+  }
+
   @Override
   public boolean existsSync(final @NotNull String id) {
-    return this.mongoCollection.find(Filters.and(
-        Filters.eq(ID_FIELD, id),
-        Projections.include(ID_FIELD)))
+    return this.mongoCollection.find(Filters.eq(ID_FIELD, this.idFormat.encode(id)))
+             .projection(Projections.include(ID_FIELD))
              .first() != null;
   }
 
   @Override
   public @NotNull ModelType saveSync(final @NotNull ModelType model) {
-    this.mongoCollection.replaceOne(
-      Filters.eq(ID_FIELD, model.id()),
-      this.modelSerializer.serialize(model),
-      new ReplaceOptions().upsert(true)
-    );
+    final var document = this.modelSerializer.serialize(model);
+    this.idFormat.encodeId(document);
+    if (this.changeTracker == null) {
+      this.replace(model.id(), document);
+      return model;
+    }
+    final var lock = this.changeTracker.lock(model.id());
+    lock.lock();
+    try {
+      final var delta = this.changeTracker.diff(model.id(), document);
+      if (delta.isEmpty()) {
+        return model;
+      }
+      // the tracked document may have been deleted meanwhile, so a missed update writes it completely
+      final var idFilter = Filters.eq(ID_FIELD, document.get(ID_FIELD));
+      if (delta.full() || this.mongoCollection.updateOne(idFilter, MongoQueries.update(delta))
+                            .getMatchedCount() == 0) {
+        this.replace(model.id(), document);
+      }
+      this.changeTracker.markPersisted(model.id(), document);
+    } finally {
+      lock.unlock();
+    }
     return model;
   }
 
+  @Override
+  public boolean compareAndSaveSync(final @NotNull ModelType model, final long expectedVersion) {
+    final var document = this.modelSerializer.serialize(model);
+    this.idFormat.encodeId(document);
+    final var lock = this.changeTracker == null ? null : this.changeTracker.lock(model.id());
+    if (lock != null) {
+      lock.lock();
+    }
+    try {
+      final boolean saved;
+      if (expectedVersion == VersionedModel.NO_VERSION) {
+        saved = this.insert(document);
+      } else {
+        final var versionFilter = MongoQueries.versionFilter(document.get(ID_FIELD), expectedVersion);
+        saved = this.mongoCollection.replaceOne(versionFilter, document)
+                  .getMatchedCount() > 0;
+      }
+      if (this.changeTracker != null) {
+        if (saved) {
+          this.changeTracker.markPersisted(model.id(), document);
+        } else {
+          this.changeTracker.forget(model.id());
+        }
+      }
+      return saved;
+    } finally {
+      if (lock != null) {
+        lock.unlock();
+      }
+    }
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C saveManySync(final @NotNull C models) {
+    if (models.isEmpty()) {
+      return models;
+    }
+    if (this.changeTracker == null) {
+      return this.writeModels(models);
+    }
+    final var ids = new ArrayList<String>(models.size());
+    for (final var model : models) {
+      ids.add(model.id());
+    }
+    this.changeTracker.lockAll(ids);
+    try {
+      return this.writeModels(models);
+    } finally {
+      this.changeTracker.unlockAll(ids);
+    }
+  }
+
+  // writes the models in a bulk write, holding the tracker locks of their ids when tracking
+  protected <C extends Collection<ModelType>> @NotNull C writeModels(final @NotNull C models) {
+    final var replaceOptions = new ReplaceOptions().upsert(true);
+    final var writes = new ArrayList<WriteModel<Document>>(models.size());
+    final var documents = new ArrayList<Document>(models.size());
+    var updates = 0;
+    for (final var model : models) {
+      final var document = this.modelSerializer.serialize(model);
+      this.idFormat.encodeId(document);
+      final var delta = this.changeTracker == null ? null : this.changeTracker.diff(model.id(), document);
+      if (delta != null && delta.isEmpty()) {
+        continue;
+      }
+      documents.add(document);
+      if (delta == null || delta.full()) {
+        writes.add(new ReplaceOneModel<>(Filters.eq(ID_FIELD, document.get(ID_FIELD)), document, replaceOptions));
+      } else {
+        writes.add(new UpdateOneModel<>(Filters.eq(ID_FIELD, document.get(ID_FIELD)), MongoQueries.update(delta)));
+        updates++;
+      }
+    }
+    if (writes.isEmpty()) {
+      return models;
+    }
+    final var result = this.mongoCollection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    if (this.changeTracker == null) {
+      return models;
+    }
+    if (updates > 0 && result.getMatchedCount() + result.getUpserts()
+                                                    .size() < writes.size()) {
+      // some tracked documents were deleted meanwhile, the replacements are idempotent
+      final var replacements = new ArrayList<ReplaceOneModel<Document>>(documents.size());
+      for (final var document : documents) {
+        replacements.add(new ReplaceOneModel<>(Filters.eq(ID_FIELD, document.get(ID_FIELD)), document, replaceOptions));
+      }
+      this.mongoCollection.bulkWrite(replacements, new BulkWriteOptions().ordered(false));
+    }
+    for (final var document : documents) {
+      this.changeTracker.markPersisted(this.idFormat.decode(document.get(ID_FIELD)), document);
+    }
+    return models;
+  }
+
+  @Override
+  public boolean updateSync(final @NotNull String id, final @NotNull ModelUpdate<Document> update) {
+    if (update.isEmpty()) {
+      return this.existsSync(id);
+    }
+    final var lock = this.changeTracker == null ? null : this.changeTracker.lock(id);
+    if (lock != null) {
+      lock.lock();
+      this.changeTracker.forget(id);
+    }
+    try {
+      return this.mongoCollection.updateOne(Filters.eq(ID_FIELD, this.idFormat.encode(id)), MongoQueries.update(update))
+               .getMatchedCount() > 0;
+    } finally {
+      if (lock != null) {
+        lock.unlock();
+      }
+    }
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> update(
+    final @NotNull String id,
+    final @NotNull ModelUpdate<Document> update
+  ) {
+    return CompletableFuture.supplyAsync(() -> this.updateSync(id, update), this.executor);
+  }
+
   @Override
   public boolean deleteSync(final @NotNull String id) {
-    return this.mongoCollection.deleteOne(Filters.eq(ID_FIELD, id))
-             .wasAcknowledged();
+    final var lock = this.changeTracker == null ? null : this.changeTracker.lock(id);
+    if (lock != null) {
+      lock.lock();
+      this.changeTracker.forget(id);
+    }
+    try {
+      return this.mongoCollection.deleteOne(Filters.eq(ID_FIELD, this.idFormat.encode(id)))
+               .wasAcknowledged();
+    } finally {
+      if (lock != null) {
+        lock.unlock();
+      }
+    }
+  }
+
+  @Override
+  public int deleteManySync(final @NotNull Collection<String> ids) {
+    if (ids.isEmpty()) {
+      return 0;
+    }
+    if (this.changeTracker == null) {
+      return (int) this.mongoCollection.deleteMany(Filters.in(ID_FIELD, this.idFormat.encodeAll(ids)))
+                     .getDeletedCount();
+    }
+    this.changeTracker.lockAll(ids);
+    try {
+      for (final var id : ids) {
+        this.changeTracker.forget(id);
+      }
+      return (int) this.mongoCollection.deleteMany(Filters.in(ID_FIELD, this.idFormat.encodeAll(ids)))
+                     .getDeletedCount();
+    } finally {
+      this.changeTracker.unlockAll(ids);
+    }
+  }
+
+  protected @NotNull ModelType readModel(final @NotNull Document document) {
+    // the read models aren't tracked, a read can't tell if a save ran meanwhile
+    this.idFormat.decodeId(document);
+    return this.modelDeserializer.deserialize(document);
+  }
+
+  protected boolean insert(final @NotNull Document document) {
+    try {
+      this.mongoCollection.insertOne(document);
+      return true;
+    } catch (final MongoWriteException e) {
+      if (MongoQueries.isDuplicateKey(e)) {
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  protected void replace(final @NotNull String id, final @NotNull Document document) {
+    this.mongoCollection.replaceOne(
+      Filters.eq(ID_FIELD, this.idFormat.encode(id)),
+      document,
+      new ReplaceOptions().upsert(true));
   }
 }
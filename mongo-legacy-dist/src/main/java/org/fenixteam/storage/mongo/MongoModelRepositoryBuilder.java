@@ -3,10 +3,10 @@ package org.fenixteam.storage.mongo;
 import com.mongodb.client.MongoDatabase;
 import java.util.concurrent.Executor;
 import org.bson.Document;
+import org.fenixteam.storage.codec.ModelChangeTracker;
 import org.fenixteam.storage.codec.ModelDeserializer;
 import org.fenixteam.storage.codec.ModelSerializer;
 import org.fenixteam.storage.model.Model;
-import org.fenixteam.storage.repository.AsyncModelRepository;
 import org.fenixteam.storage.repository.builder.AbstractModelRepositoryBuilder;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
@@ -18,6 +18,9 @@ public final class MongoModelRepositoryBuilder<ModelType extends Model>
   private String collectionName;
   private ModelSerializer<ModelType, Document> modelSerializer;
   private ModelDeserializer<ModelType, Document> modelDeserializer;
+  private boolean trackChanges;
+  private int trackedModelsMaximumSize = ModelChangeTracker.DEFAULT_MAXIMUM_SIZE;
+  private MongoIdFormat idFormat = MongoIdFormat.STRING;
 
   MongoModelRepositoryBuilder() {
   }
@@ -50,9 +53,56 @@ public final class MongoModelRepositoryBuilder<ModelType extends Model>
     return this;
   }
 
+  /**
+   * Sets whether the repository remembers the last persisted document of the saved models, so the
+   * next saves only send the changed fields with {@code $set} and {@code $unset} and skip the
+   * unchanged models. It assumes that no other process writes the same documents.
+   *
+   * @param trackChanges whether the changes are tracked
+   * @return this builder
+   */
+  @Contract("_ -> this")
+  public @NotNull MongoModelRepositoryBuilder<ModelType> trackChanges(final boolean trackChanges) {
+    this.trackChanges = trackChanges;
+    return this;
+  }
+
+  /**
+   * Sets the max amount of models whose persisted document is remembered when tracking the changes,
+   * {@link ModelChangeTracker#DEFAULT_MAXIMUM_SIZE} by default. A forgotten model is written
+   * completely on its next save.
+   *
+   * @param trackedModelsMaximumSize the max amount of tracked models
+   * @return this builder
+   */
+  @Contract("_ -> this")
+  public @NotNull MongoModelRepositoryBuilder<ModelType> trackedModelsMaximumSize(final int trackedModelsMaximumSize) {
+    this.trackedModelsMaximumSize = trackedModelsMaximumSize;
+    return this;
+  }
+
+  /**
+   * Sets how the ids are stored in the {@code _id} field, {@link MongoIdFormat#UUID_BINARY}
+   * requires every id to be a UUID.
+   *
+   * @param idFormat the format of the stored ids
+   * @return this builder
+   */
+  @Contract("_ -> this")
+  public @NotNull MongoModelRepositoryBuilder<ModelType> idFormat(final @NotNull MongoIdFormat idFormat) {
+    this.idFormat = idFormat;
+    return this;
+  }
+
   @Contract("_ -> new")
-  public @NotNull AsyncModelRepository<ModelType> build(final @NotNull Executor executor) {
+  public @NotNull MongoModelRepository<ModelType> build(final @NotNull Executor executor) {
     final var collection = this.database.getCollection(this.collectionName);
-    return new MongoModelRepository<>(executor, collection, this.modelSerializer, this.modelDeserializer);
+    return new MongoModelRepository<>(
+      executor,
+      collection,
+      this.modelSerializer,
+      this.modelDeserializer,
+      this.trackChanges ? new ModelChangeTracker<>(document -> document, this.trackedModelsMaximumSize) : null,
+      this.idFormat);
   }
 }
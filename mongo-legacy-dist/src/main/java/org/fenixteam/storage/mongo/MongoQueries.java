@@ -0,0 +1,213 @@
+package org.fenixteam.storage.mongo;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.fenixteam.storage.codec.ModelDelta;
+import org.fenixteam.storage.model.VersionedModel;
+import org.fenixteam.storage.mongo.codec.DocumentWriter;
+import org.fenixteam.storage.query.ModelFilter;
+import org.fenixteam.storage.query.ModelQuery;
+import org.fenixteam.storage.repository.ModelRepository;
+import org.fenixteam.storage.repository.update.ModelUpdate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Translates the repository queries into native MongoDB filters, sorts and projections, so they
+ * are evaluated by the server and can use its indexes.
+ */
+public final class MongoQueries {
+  private MongoQueries() {
+    throw new UnsupportedOperationException("This class cannot be instantiated");
+  }
+
+  public static @NotNull Bson filter(final @NotNull ModelQuery query) {
+    return filter(query, MongoIdFormat.STRING);
+  }
+
+  public static @NotNull Bson filter(final @NotNull ModelQuery query, final @NotNull MongoIdFormat idFormat) {
+    final var filter = query.filter();
+    return filter == null ? Filters.empty() : filter(filter, idFormat);
+  }
+
+  public static @NotNull Bson filter(final @NotNull ModelFilter filter) {
+    return filter(filter, MongoIdFormat.STRING);
+  }
+
+  /**
+   * Translates a filter whose id values are stored in the given format.
+   *
+   * @param filter the filter of the models
+   * @param idFormat the format of the stored ids
+   * @return the native filter
+   */
+  public static @NotNull Bson filter(final @NotNull ModelFilter filter, final @NotNull MongoIdFormat idFormat) {
+    if (filter instanceof ModelFilter.And and) {
+      final var filters = new ArrayList<Bson>(and.filters()
+                                                .size());
+      for (final var child : and.filters()) {
+        filters.add(filter(child, idFormat));
+      }
+      return Filters.and(filters);
+    }
+    if (filter instanceof ModelFilter.In in) {
+      final var field = field(in.field());
+      if (!field.equals(MongoModelRepository.ID_FIELD) || idFormat == MongoIdFormat.STRING) {
+        return Filters.in(field, in.values());
+      }
+      final var values = new ArrayList<>(in.values()
+                                           .size());
+      for (final var value : in.values()) {
+        values.add(idFormat.encode(value.toString()));
+      }
+      return Filters.in(field, values);
+    }
+    final var comparison = (ModelFilter.Comparison) filter;
+    final var field = field(comparison.field());
+    final var value = field.equals(MongoModelRepository.ID_FIELD)
+                        ? idFormat.encode(comparison.value()
+                                            .toString())
+                        : comparison.value();
+    return switch (comparison.operator()) {
+      case EQ -> Filters.eq(field, value);
+      case NE -> Filters.ne(field, value);
+      case GT -> Filters.gt(field, value);
+      case GTE -> Filters.gte(field, value);
+      case LT -> Filters.lt(field, value);
+      case LTE -> Filters.lte(field, value);
+    };
+  }
+
+  /**
+   * Creates the filter of a page, which continues after the given id in the {@code _id} order so
+   * the server walks the id index instead of skipping the previous pages.
+   *
+   * @param filter the filter of the models, or null to read every model
+   * @param after the last id of the previous page, or null for the first page
+   * @return the filter of the page
+   */
+  public static @NotNull Bson pageFilter(final @Nullable ModelFilter filter, final @Nullable String after) {
+    return pageFilter(filter, after, MongoIdFormat.STRING);
+  }
+
+  public static @NotNull Bson pageFilter(
+    final @Nullable ModelFilter filter,
+    final @Nullable String after,
+    final @NotNull MongoIdFormat idFormat
+  ) {
+    if (after == null) {
+      return filter == null ? Filters.empty() : filter(filter, idFormat);
+    }
+    final var afterFilter = Filters.gt(MongoModelRepository.ID_FIELD, idFormat.encode(after));
+    return filter == null ? afterFilter : Filters.and(afterFilter, filter(filter, idFormat));
+  }
+
+  public static @NotNull Bson pageSort() {
+    return Sorts.ascending(MongoModelRepository.ID_FIELD);
+  }
+
+  public static @Nullable Bson sort(final @NotNull ModelQuery query) {
+    if (query.sorts()
+          .isEmpty()) {
+      return null;
+    }
+    final var sorts = new ArrayList<Bson>(query.sorts()
+                                            .size());
+    for (final var sort : query.sorts()) {
+      final var field = field(sort.field());
+      sorts.add(sort.ascending() ? Sorts.ascending(field) : Sorts.descending(field));
+    }
+    return Sorts.orderBy(sorts);
+  }
+
+  public static @Nullable Bson projection(final @NotNull ModelQuery query) {
+    if (query.projection()
+          .isEmpty()) {
+      return null;
+    }
+    final var fields = new ArrayList<String>(query.projection()
+                                               .size() + 1);
+    fields.add(MongoModelRepository.ID_FIELD);
+    for (final var field : query.projection()) {
+      fields.add(field(field));
+    }
+    return Projections.include(List.copyOf(fields));
+  }
+
+  /**
+   * Translates a model update into the {@code $set}, {@code $inc} and {@code $unset} operators.
+   *
+   * @param update the model update
+   * @return the update document
+   */
+  public static @NotNull Bson update(final @NotNull ModelUpdate<Document> update) {
+    final var updates = new ArrayList<Bson>();
+    if (update.hasSets()) {
+      for (final var entry : update.writeSets(DocumentWriter.create())
+                               .entrySet()) {
+        final var field = field(entry.getKey());
+        if (field.equals(MongoModelRepository.ID_FIELD)) {
+          throw new IllegalArgumentException("The id of a model can't be updated");
+        }
+        updates.add(Updates.set(field, entry.getValue()));
+      }
+    }
+    for (final var entry : update.increments()
+                             .entrySet()) {
+      updates.add(Updates.inc(entry.getKey(), entry.getValue()));
+    }
+    for (final var field : update.unsets()) {
+      updates.add(Updates.unset(field));
+    }
+    return Updates.combine(updates);
+  }
+
+  /**
+   * Translates the delta of a tracked model into the {@code $set} and {@code $unset} operators.
+   *
+   * @param delta the delta of the model, which must not be full
+   * @return the update document
+   */
+  public static @NotNull Bson update(final @NotNull ModelDelta<Object> delta) {
+    final var updates = new ArrayList<Bson>(delta.changes()
+                                              .size() + delta.removals()
+                                                          .size());
+    for (final var entry : delta.changes()
+                             .entrySet()) {
+      updates.add(Updates.set(entry.getKey(), entry.getValue()));
+    }
+    for (final var field : delta.removals()) {
+      updates.add(Updates.unset(field));
+    }
+    return Updates.combine(updates);
+  }
+
+  public static @NotNull Bson versionFilter(final @NotNull Object id, final long expectedVersion) {
+    return Filters.and(
+      Filters.eq(MongoModelRepository.ID_FIELD, id),
+      Filters.eq(VersionedModel.VERSION_FIELD, expectedVersion));
+  }
+
+  // a versioned insert of an already stored model fails with a duplicate key error
+  public static boolean isDuplicateKey(final @NotNull Throwable throwable) {
+    final var cause = throwable instanceof CompletionException && throwable.getCause() != null
+                        ? throwable.getCause()
+                        : throwable;
+    return cause instanceof MongoWriteException writeException
+             && writeException.getError()
+                  .getCategory() == ErrorCategory.DUPLICATE_KEY;
+  }
+
+  public static @NotNull String field(final @NotNull String field) {
+    return field.equals(ModelRepository.ID_FIELD) ? MongoModelRepository.ID_FIELD : field;
+  }
+}
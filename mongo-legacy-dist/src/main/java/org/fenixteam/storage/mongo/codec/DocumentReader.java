@@ -2,6 +2,7 @@ package org.fenixteam.storage.mongo.codec;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,7 +49,9 @@ public class DocumentReader implements ModelReader<Document> {
     final @NotNull String field,
     final @NotNull Function<Integer, C> factory
   ) {
-    final var documents = this.readRawCollection(field, Document.class, ArrayList::new);
+    final var documents = this.document.get(field) instanceof Document indexedDocuments
+                          ? readIndexedDocuments(indexedDocuments)
+                          : this.readRawCollection(field, Document.class, ArrayList::new);
     if (documents == null) {
       return null;
     }
@@ -62,6 +65,17 @@ public class DocumentReader implements ModelReader<Document> {
     return uuids;
   }
 
+  // DocumentWriter stores the detailed uuids as a document keyed by the element indexes
+  private static @NotNull List<Document> readIndexedDocuments(final @NotNull Document indexedDocuments) {
+    final var entries = new ArrayList<>(indexedDocuments.entrySet());
+    entries.sort(Comparator.comparingInt(entry -> Integer.parseInt(entry.getKey())));
+    final var documents = new ArrayList<Document>(entries.size());
+    for (final var entry : entries) {
+      documents.add((Document) entry.getValue());
+    }
+    return documents;
+  }
+
   private @Nullable UUID readDetailedUuid(final @Nullable Document document) {
     if (document == null) {
       return null;
@@ -0,0 +1,4 @@
+dependencies {
+  api(project(":storage-mongo-legacy-dist"))
+  api("org.mongodb:mongodb-driver-reactivestreams:4.9.0")
+}
@@ -0,0 +1,187 @@
+package org.fenixteam.storage.mongo.reactive;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Bridges the driver publishers to futures without blocking any thread. Elements are consumed and
+ * the returned futures are completed in the given executor, so neither the deserialization nor the
+ * dependent stages of the callers run in the driver threads.
+ */
+final class PublisherFutures {
+  private PublisherFutures() {
+    throw new UnsupportedOperationException("This class cannot be instantiated");
+  }
+
+  static <T> @NotNull CompletableFuture<@Nullable T> first(
+    final @NotNull Publisher<T> publisher,
+    final @NotNull Executor executor
+  ) {
+    final var subscriber = new FirstSubscriber<T>(executor);
+    publisher.subscribe(subscriber);
+    return subscriber.future;
+  }
+
+  static <T> @NotNull CompletableFuture<Void> forEach(
+    final @NotNull Publisher<T> publisher,
+    final int batchSize,
+    final @NotNull Executor executor,
+    final @NotNull Consumer<T> action
+  ) {
+    final var subscriber = new ForEachSubscriber<>(Math.max(1, batchSize), executor, action);
+    publisher.subscribe(subscriber);
+    return subscriber.future;
+  }
+
+  private static final class FirstSubscriber<T> implements Subscriber<T> {
+    private final CompletableFuture<T> future;
+    private final Executor executor;
+    private Subscription subscription;
+    private T value;
+    private boolean done;
+
+    private FirstSubscriber(final @NotNull Executor executor) {
+      this.future = new CompletableFuture<>();
+      this.executor = executor;
+    }
+
+    @Override
+    public void onSubscribe(final @NotNull Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(1);
+    }
+
+    @Override
+    public void onNext(final @NotNull T value) {
+      if (this.done) {
+        return;
+      }
+      this.done = true;
+      this.subscription.cancel();
+      this.executor.execute(() -> this.future.complete(value));
+    }
+
+    @Override
+    public void onError(final @NotNull Throwable throwable) {
+      if (this.done) {
+        return;
+      }
+      this.done = true;
+      this.executor.execute(() -> this.future.completeExceptionally(throwable));
+    }
+
+    @Override
+    public void onComplete() {
+      if (this.done) {
+        return;
+      }
+      this.done = true;
+      this.executor.execute(() -> this.future.complete(this.value));
+    }
+  }
+
+  // the elements are queued by the driver threads and drained by a single task of the executor at a
+  // time, so the action sees them in order and never runs in a driver thread
+  private static final class ForEachSubscriber<T> implements Subscriber<T> {
+    private final CompletableFuture<Void> future;
+    private final long batchSize;
+    private final Executor executor;
+    private final Consumer<T> action;
+    private final Queue<T> elements;
+    private final AtomicInteger drainRequests;
+    private Subscription subscription;
+    private long pending;
+    private volatile boolean terminated;
+    private volatile @Nullable Throwable error;
+    private volatile boolean cancelled;
+
+    private ForEachSubscriber(
+      final long batchSize,
+      final @NotNull Executor executor,
+      final @NotNull Consumer<T> action
+    ) {
+      this.future = new CompletableFuture<>();
+      this.batchSize = batchSize;
+      this.executor = executor;
+      this.action = action;
+      this.elements = new ConcurrentLinkedQueue<>();
+      this.drainRequests = new AtomicInteger();
+    }
+
+    @Override
+    public void onSubscribe(final @NotNull Subscription subscription) {
+      this.subscription = subscription;
+      this.pending = this.batchSize;
+      subscription.request(this.batchSize);
+    }
+
+    @Override
+    public void onNext(final @NotNull T value) {
+      if (this.cancelled) {
+        return;
+      }
+      this.elements.offer(value);
+      this.drain();
+    }
+
+    @Override
+    public void onError(final @NotNull Throwable throwable) {
+      this.error = throwable;
+      this.terminated = true;
+      this.drain();
+    }
+
+    @Override
+    public void onComplete() {
+      this.terminated = true;
+      this.drain();
+    }
+
+    private void drain() {
+      if (this.drainRequests.getAndIncrement() == 0) {
+        this.executor.execute(this::drainLoop);
+      }
+    }
+
+    private void drainLoop() {
+      var missed = 1;
+      do {
+        T value;
+        while (!this.cancelled && (value = this.elements.poll()) != null) {
+          try {
+            this.action.accept(value);
+          } catch (final RuntimeException e) {
+            this.cancelled = true;
+            this.subscription.cancel();
+            this.elements.clear();
+            this.future.completeExceptionally(e);
+            break;
+          }
+          if (--this.pending == 0) {
+            this.pending = this.batchSize;
+            this.subscription.request(this.batchSize);
+          }
+        }
+        // every element is queued before the terminal signal, so an empty queue means all were seen
+        if (!this.cancelled && this.terminated && this.elements.isEmpty()) {
+          final var error = this.error;
+          if (error == null) {
+            this.future.complete(null);
+          } else {
+            this.future.completeExceptionally(error);
+          }
+        }
+        missed = this.drainRequests.addAndGet(-missed);
+      } while (missed != 0);
+    }
+  }
+}
@@ -0,0 +1,316 @@
+package org.fenixteam.storage.mongo.reactive;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.bson.Document;
+import org.fenixteam.storage.codec.ModelDeserializer;
+import org.fenixteam.storage.codec.ModelSerializer;
+import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.model.PackedUuidSet;
+import org.fenixteam.storage.model.VersionedModel;
+import org.fenixteam.storage.mongo.MongoIdFormat;
+import org.fenixteam.storage.mongo.MongoModelRepository;
+import org.fenixteam.storage.mongo.MongoQueries;
+import org.fenixteam.storage.query.ModelFilter;
+import org.fenixteam.storage.query.ModelPage;
+import org.fenixteam.storage.query.ModelQuery;
+import org.fenixteam.storage.repository.AbstractNonBlockingModelRepository;
+import org.fenixteam.storage.repository.update.ModelUpdate;
+import org.fenixteam.storage.repository.update.UpdatableModelRepository;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+@SuppressWarnings("unused")
+public class ReactiveMongoModelRepository<ModelType extends Model>
+  extends AbstractNonBlockingModelRepository<ModelType>
+  implements UpdatableModelRepository<Document> {
+  public static final String ID_FIELD = MongoModelRepository.ID_FIELD;
+  protected final Executor executor;
+  protected final MongoCollection<Document> mongoCollection;
+  protected final ModelSerializer<ModelType, Document> modelSerializer;
+  protected final ModelDeserializer<ModelType, Document> modelDeserializer;
+  protected final int batchSize;
+  protected final MongoIdFormat idFormat;
+
+  protected ReactiveMongoModelRepository(
+    final @NotNull Executor executor,
+    final @NotNull MongoCollection<Document> mongoCollection,
+    final @NotNull ModelSerializer<ModelType, Document> modelSerializer,
+    final @NotNull ModelDeserializer<ModelType, Document> modelDeserializer,
+    final int batchSize
+  ) {
+    this(executor, mongoCollection, modelSerializer, modelDeserializer, batchSize, MongoIdFormat.STRING);
+  }
+
+  protected ReactiveMongoModelRepository(
+    final @NotNull Executor executor,
+    final @NotNull MongoCollection<Document> mongoCollection,
+    final @NotNull ModelSerializer<ModelType, Document> modelSerializer,
+    final @NotNull ModelDeserializer<ModelType, Document> modelDeserializer,
+    final int batchSize,
+    final @NotNull MongoIdFormat idFormat
+  ) {
+    this.executor = executor;
+    this.mongoCollection = mongoCollection;
+    this.modelSerializer = modelSerializer;
+    this.modelDeserializer = modelDeserializer;
+    this.batchSize = batchSize;
+    this.idFormat = idFormat;
+  }
+
+  @Contract(value = " -> new")
+  public static <T extends Model> @NotNull ReactiveMongoModelRepositoryBuilder<T> builder() {
+    return new ReactiveMongoModelRepositoryBuilder<>();
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@Nullable ModelType> find(final @NotNull String id) {
+    return PublisherFutures.first(this.mongoCollection.find(Filters.eq(ID_FIELD, this.idFormat.encode(id)))
+                                    .first(), this.executor)
+             .thenApply(document -> document == null ? null : this.readModel(document));
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@Nullable C> find(
+    final @NotNull String field,
+    final @NotNull String value,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var foundModels = factory.apply(1);
+    final var filterValue = field.equals(ID_FIELD) ? this.idFormat.encode(value) : value;
+    return PublisherFutures.forEach(
+        this.mongoCollection.find(Filters.eq(field, filterValue))
+          .batchSize(this.batchSize),
+        this.batchSize,
+        this.executor,
+        document -> foundModels.add(this.readModel(document)))
+             .thenApply(unused -> foundModels);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@NotNull C> findMany(
+    final @NotNull Collection<String> ids,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var foundModels = factory.apply(ids.size());
+    if (ids.isEmpty()) {
+      return CompletableFuture.completedFuture(foundModels);
+    }
+    return PublisherFutures.forEach(
+        this.mongoCollection.find(Filters.in(ID_FIELD, this.idFormat.encodeAll(ids)))
+          .batchSize(this.batchSize),
+        this.batchSize,
+        this.executor,
+        document -> foundModels.add(this.readModel(document)))
+             .thenApply(unused -> foundModels);
+  }
+
+  /**
+   * Returns the ids of every model, packed in a {@link PackedUuidSet} when the ids are UUIDs.
+   *
+   * @return the ids of the models
+   */
+  @Override
+  public @NotNull CompletableFuture<@Nullable Collection<String>> findIds() {
+    final Collection<String> ids = this.idFormat == MongoIdFormat.UUID_BINARY
+                                     ? new PackedUuidSet()
+                                     : new ArrayList<>();
+    return PublisherFutures.forEach(
+        this.mongoCollection.find()
+          .projection(Projections.include(ID_FIELD))
+          .batchSize(this.batchSize),
+        this.batchSize,
+        this.executor,
+        document -> ids.add(this.idFormat.decode(document.get(ID_FIELD))))
+             .thenApply(unused -> ids);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@Nullable C> findAll(
+    final @NotNull Consumer<ModelType> postLoadAction,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var foundModels = factory.apply(1);
+    return PublisherFutures.forEach(
+        this.mongoCollection.find()
+          .batchSize(this.batchSize),
+        this.batchSize,
+        this.executor,
+        document -> {
+          final var model = this.readModel(document);
+          postLoadAction.accept(model);
+          foundModels.add(model);
+        })
+             .thenApply(unused -> foundModels);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@NotNull C> query(
+    final @NotNull ModelQuery query,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var foundModels = factory.apply(query.limit() == 0 ? 1 : query.limit());
+    return PublisherFutures.forEach(
+        this.mongoCollection.find(MongoQueries.filter(query, this.idFormat))
+          .sort(MongoQueries.sort(query))
+          .projection(MongoQueries.projection(query))
+          .skip(query.skip())
+          .limit(query.limit())
+          .batchSize(this.batchSize),
+        this.batchSize,
+        this.executor,
+        document -> foundModels.add(this.readModel(document)))
+             .thenApply(unused -> foundModels);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull ModelPage<ModelType>> findPage(
+    final @Nullable ModelFilter filter,
+    final @Nullable String token,
+    final int pageSize
+  ) {
+    ModelPage.checkPageSize(pageSize);
+    // one extra document tells if there is a next page
+    final var models = new ArrayList<ModelType>(pageSize + 1);
+    return PublisherFutures.forEach(
+        this.mongoCollection.find(MongoQueries.pageFilter(filter, ModelPage.decodeToken(token), this.idFormat))
+          .sort(MongoQueries.pageSort())
+          .limit(pageSize + 1)
+          .batchSize(pageSize + 1),
+        pageSize + 1,
+        this.executor,
+        document -> models.add(this.readModel(document)))
+             .thenApply(unused -> {
+               if (models.size() <= pageSize) {
+                 return ModelPage.of(models, null);
+               }
+               models.remove(pageSize);
+               return ModelPage.of(models, models.get(pageSize - 1)
+                                             .id());
+             });
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> exists(final @NotNull String id) {
+    return PublisherFutures.first(this.mongoCollection.find(Filters.eq(ID_FIELD, this.idFormat.encode(id)))
+                                    .projection(Projections.include(ID_FIELD))
+                                    .first(), this.executor)
+             .thenApply(document -> document != null);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull ModelType> save(final @NotNull ModelType model) {
+    final var document = this.writeModel(model);
+    return PublisherFutures.first(this.mongoCollection.replaceOne(
+        Filters.eq(ID_FIELD, document.get(ID_FIELD)),
+        document,
+        new ReplaceOptions().upsert(true)), this.executor)
+             .thenApply(result -> model);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> compareAndSave(
+    final @NotNull ModelType model,
+    final long expectedVersion
+  ) {
+    final var document = this.writeModel(model);
+    if (expectedVersion == VersionedModel.NO_VERSION) {
+      return PublisherFutures.first(this.mongoCollection.insertOne(document), this.executor)
+               .handle((result, throwable) -> {
+                 if (throwable == null) {
+                   return true;
+                 }
+                 if (MongoQueries.isDuplicateKey(throwable)) {
+                   return false;
+                 }
+                 throw throwable instanceof CompletionException completionException
+                         ? completionException
+                         : new CompletionException(throwable);
+               });
+    }
+    return PublisherFutures.first(this.mongoCollection.replaceOne(
+        MongoQueries.versionFilter(document.get(ID_FIELD), expectedVersion),
+        document), this.executor)
+             .thenApply(result -> result != null && result.getMatchedCount() > 0);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@NotNull C> saveMany(
+    final @NotNull C models
+  ) {
+    if (models.isEmpty()) {
+      return CompletableFuture.completedFuture(models);
+    }
+    final var replaceOptions = new ReplaceOptions().upsert(true);
+    final var writes = new ArrayList<ReplaceOneModel<Document>>(models.size());
+    for (final var model : models) {
+      final var document = this.writeModel(model);
+      writes.add(new ReplaceOneModel<>(Filters.eq(ID_FIELD, document.get(ID_FIELD)), document, replaceOptions));
+    }
+    return PublisherFutures.first(
+        this.mongoCollection.bulkWrite(writes, new BulkWriteOptions().ordered(false)),
+        this.executor)
+             .thenApply(result -> models);
+  }
+
+  @Override
+  public boolean updateSync(final @NotNull String id, final @NotNull ModelUpdate<Document> update) {
+    return join(this.update(id, update));
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> update(
+    final @NotNull String id,
+    final @NotNull ModelUpdate<Document> update
+  ) {
+    if (update.isEmpty()) {
+      return this.exists(id);
+    }
+    return PublisherFutures.first(this.mongoCollection.updateOne(
+        Filters.eq(ID_FIELD, this.idFormat.encode(id)),
+        MongoQueries.update(update)), this.executor)
+             .thenApply(result -> result != null && result.getMatchedCount() > 0);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> delete(final @NotNull String id) {
+    return PublisherFutures.first(
+        this.mongoCollection.deleteOne(Filters.eq(ID_FIELD, this.idFormat.encode(id))),
+        this.executor)
+             .thenApply(result -> result != null && result.wasAcknowledged());
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Integer> deleteMany(final @NotNull Collection<String> ids) {
+    if (ids.isEmpty()) {
+      return CompletableFuture.completedFuture(0);
+    }
+    return PublisherFutures.first(
+        this.mongoCollection.deleteMany(Filters.in(ID_FIELD, this.idFormat.encodeAll(ids))),
+        this.executor)
+             .thenApply(result -> result == null ? 0 : (int) result.getDeletedCount());
+  }
+
+  protected @NotNull ModelType readModel(final @NotNull Document document) {
+    this.idFormat.decodeId(document);
+    return this.modelDeserializer.deserialize(document);
+  }
+
+  protected @NotNull Document writeModel(final @NotNull ModelType model) {
+    final var document = this.modelSerializer.serialize(model);
+    this.idFormat.encodeId(document);
+    return document;
+  }
+}
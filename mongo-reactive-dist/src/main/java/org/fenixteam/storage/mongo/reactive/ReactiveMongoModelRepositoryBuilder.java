@@ -0,0 +1,89 @@
+package org.fenixteam.storage.mongo.reactive;
+
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import java.util.concurrent.Executor;
+import org.bson.Document;
+import org.fenixteam.storage.codec.ModelDeserializer;
+import org.fenixteam.storage.codec.ModelSerializer;
+import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.mongo.MongoIdFormat;
+import org.fenixteam.storage.repository.ModelRepository;
+import org.fenixteam.storage.repository.builder.AbstractModelRepositoryBuilder;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+@SuppressWarnings("unused")
+public final class ReactiveMongoModelRepositoryBuilder<ModelType extends Model>
+  extends AbstractModelRepositoryBuilder<ModelType> {
+  private MongoDatabase database;
+  private String collectionName;
+  private ModelSerializer<ModelType, Document> modelSerializer;
+  private ModelDeserializer<ModelType, Document> modelDeserializer;
+  private int batchSize = ModelRepository.DEFAULT_STREAM_BATCH_SIZE;
+  private MongoIdFormat idFormat = MongoIdFormat.STRING;
+
+  ReactiveMongoModelRepositoryBuilder() {
+  }
+
+  @Contract("_ -> this")
+  public @NotNull ReactiveMongoModelRepositoryBuilder<ModelType> database(final @NotNull MongoDatabase database) {
+    this.database = database;
+    return this;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull ReactiveMongoModelRepositoryBuilder<ModelType> modelSerializer(
+    final @NotNull ModelSerializer<ModelType, Document> modelSerializer
+  ) {
+    this.modelSerializer = modelSerializer;
+    return this;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull ReactiveMongoModelRepositoryBuilder<ModelType> modelDeserializer(
+    final @NotNull ModelDeserializer<ModelType, Document> modelDeserializer
+  ) {
+    this.modelDeserializer = modelDeserializer;
+    return this;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull ReactiveMongoModelRepositoryBuilder<ModelType> collection(final @NotNull String collection) {
+    this.collectionName = collection;
+    return this;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull ReactiveMongoModelRepositoryBuilder<ModelType> batchSize(final int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("The batch size must be positive");
+    }
+    this.batchSize = batchSize;
+    return this;
+  }
+
+  /**
+   * Sets how the ids are stored in the {@code _id} field, {@link MongoIdFormat#UUID_BINARY}
+   * requires every id to be a UUID.
+   *
+   * @param idFormat the format of the stored ids
+   * @return this builder
+   */
+  @Contract("_ -> this")
+  public @NotNull ReactiveMongoModelRepositoryBuilder<ModelType> idFormat(final @NotNull MongoIdFormat idFormat) {
+    this.idFormat = idFormat;
+    return this;
+  }
+
+  @Contract("_ -> new")
+  public @NotNull ReactiveMongoModelRepository<ModelType> build(final @NotNull Executor executor) {
+    final var collection = this.database.getCollection(this.collectionName);
+    return new ReactiveMongoModelRepository<>(
+      executor,
+      collection,
+      this.modelSerializer,
+      this.modelDeserializer,
+      this.batchSize,
+      this.idFormat);
+  }
+}
@@ -1,4 +1,5 @@
 dependencies {
   api(project(":storage-api-codec"))
+  api(project(":storage-gson-dist"))
   api("redis.clients:jedis:4.3.1")
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+package org.fenixteam.storage.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Encodes the keys of the models of a table and the names of their hash fields for the binary
+ * Jedis commands. The table prefix is encoded once and every key is built in a single array, and
+ * the field names are encoded once and then reused. With UUID keys the id part of a key is the 16
+ * bytes of the UUID instead of its 36 chars.
+ */
+@SuppressWarnings("unused")
+public final class RedisKeys {
+  // the hash fields are the top-level fields of the models, so only a broken model has more
+  private static final int MAX_CACHED_FIELDS = 1024;
+  private static final int UUID_SIZE = 16;
+  private final byte[] prefix;
+  private final byte[] pattern;
+  private final boolean uuidKeys;
+  private final Map<String, byte[]> fields;
+
+  public RedisKeys(final @NotNull String tableName, final boolean uuidKeys) {
+    this.prefix = encode(tableName + ":");
+    this.pattern = encode(tableName + ":*");
+    this.uuidKeys = uuidKeys;
+    this.fields = new ConcurrentHashMap<>();
+  }
+
+  public static byte @NotNull [] encode(final @NotNull String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  public static @NotNull String decode(final byte @NotNull [] value) {
+    return new String(value, StandardCharsets.UTF_8);
+  }
+
+  public boolean uuidKeys() {
+    return this.uuidKeys;
+  }
+
+  /**
+   * Returns the pattern matching every key of the table. The returned array is shared, so it must
+   * not be modified.
+   *
+   * @return the pattern of the keys
+   */
+  public byte @NotNull [] pattern() {
+    return this.pattern;
+  }
+
+  /**
+   * Builds the key of the model with the given id.
+   *
+   * @param id the id of the model
+   * @return the key of the model
+   * @throws IllegalArgumentException if the keys are UUIDs and the id isn't a UUID
+   */
+  public byte @NotNull [] key(final @NotNull String id) {
+    if (this.uuidKeys) {
+      final var uuid = UUID.fromString(id);
+      final var key = Arrays.copyOf(this.prefix, this.prefix.length + UUID_SIZE);
+      writeLong(key, this.prefix.length, uuid.getMostSignificantBits());
+      writeLong(key, this.prefix.length + 8, uuid.getLeastSignificantBits());
+      return key;
+    }
+    // ids are usually ASCII, whose chars are copied right after the prefix
+    final var length = id.length();
+    final var key = Arrays.copyOf(this.prefix, this.prefix.length + length);
+    for (var i = 0; i < length; i++) {
+      final var c = id.charAt(i);
+      if (c >= 0x80) {
+        final var encodedId = encode(id);
+        final var utf8Key = Arrays.copyOf(this.prefix, this.prefix.length + encodedId.length);
+        System.arraycopy(encodedId, 0, utf8Key, this.prefix.length, encodedId.length);
+        return utf8Key;
+      }
+      key[this.prefix.length + i] = (byte) c;
+    }
+    return key;
+  }
+
+  /**
+   * Returns the UUID of the given key.
+   *
+   * @param key the key of a model
+   * @return the UUID of the key, or null if the keys aren't UUIDs or the key isn't a UUID key
+   */
+  public @Nullable UUID uuid(final byte @NotNull [] key) {
+    if (!this.uuidKeys || key.length != this.prefix.length + UUID_SIZE) {
+      return null;
+    }
+    return new UUID(readLong(key, this.prefix.length), readLong(key, this.prefix.length + 8));
+  }
+
+  public @NotNull String id(final byte @NotNull [] key) {
+    final var uuid = this.uuid(key);
+    if (uuid != null) {
+      return uuid.toString();
+    }
+    return new String(key, this.prefix.length, key.length - this.prefix.length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns the encoded name of a hash field. The returned array may be shared, so it must not be
+   * modified.
+   *
+   * @param name the name of the field
+   * @return the encoded name
+   */
+  public byte @NotNull [] field(final @NotNull String name) {
+    final var field = this.fields.get(name);
+    if (field != null) {
+      return field;
+    }
+    final var encodedName = encode(name);
+    if (this.fields.size() < MAX_CACHED_FIELDS) {
+      this.fields.putIfAbsent(name, encodedName);
+    }
+    return encodedName;
+  }
+
+  private static void writeLong(final byte @NotNull [] bytes, final int offset, final long value) {
+    for (var i = 0; i < 8; i++) {
+      bytes[offset + i] = (byte) (value >>> (56 - i * 8));
+    }
+  }
+
+  private static long readLong(final byte @NotNull [] bytes, final int offset) {
+    var value = 0L;
+    for (var i = 0; i < 8; i++) {
+      value = (value << 8) | (bytes[offset + i] & 0xFF);
+    }
+    return value;
+  }
+}
@@ -1,5 +1,6 @@
 package org.fenixteam.storage.redis;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.internal.bind.TypeAdapters;
 import com.google.gson.stream.JsonReader;
@@ -7,31 +8,119 @@ import com.google.gson.stream.JsonWriter;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.fenixteam.storage.codec.ModelChangeTracker;
+import org.fenixteam.storage.codec.ModelDelta;
 import org.fenixteam.storage.codec.ModelDeserializer;
 import org.fenixteam.storage.codec.ModelSerializer;
+import org.fenixteam.storage.codec.StreamingModelDeserializer;
+import org.fenixteam.storage.codec.StreamingModelSerializer;
+import org.fenixteam.storage.gson.JsonQueries;
+import org.fenixteam.storage.gson.JsonUpdates;
+import org.fenixteam.storage.gson.codec.JsonStreamReader;
+import org.fenixteam.storage.gson.codec.JsonStreamWriter;
 import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.model.PackedUuidSet;
+import org.fenixteam.storage.model.VersionedModel;
+import org.fenixteam.storage.query.ModelFilter;
+import org.fenixteam.storage.query.ModelPage;
+import org.fenixteam.storage.query.ModelQuery;
+import org.fenixteam.storage.query.QueryCollector;
+import org.fenixteam.storage.query.QueryEvaluator;
 import org.fenixteam.storage.repository.AbstractAsyncModelRepository;
 import org.fenixteam.storage.repository.ModelRepository;
+import org.fenixteam.storage.repository.update.ModelUpdate;
+import org.fenixteam.storage.repository.update.UpdatableModelRepository;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.ScanParams;
 
 @SuppressWarnings("unused")
-public class RedisModelRepository<ModelType extends Model> extends AbstractAsyncModelRepository<ModelType> {
+public class RedisModelRepository<ModelType extends Model>
+  extends AbstractAsyncModelRepository<ModelType>
+  implements UpdatableModelRepository<JsonObject> {
+  // applies an update to the hash of a model only if it exists. The arguments are the expiration,
+  // the amount of set fields followed by their names and values, the amount of increments followed
+  // by their kind (integer or float), names and deltas and the amount of unset fields followed by
+  // their names
+  protected static final String UPDATE_SCRIPT = String.join(
+    "\n",
+    "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end",
+    "local index = 2",
+    "for _ = 1, tonumber(ARGV[index]) do",
+    "  redis.call('HSET', KEYS[1], ARGV[index + 1], ARGV[index + 2])",
+    "  index = index + 2",
+    "end",
+    "index = index + 1",
+    "for _ = 1, tonumber(ARGV[index]) do",
+    "  if ARGV[index + 1] == 'i' then",
+    "    redis.call('HINCRBY', KEYS[1], ARGV[index + 2], ARGV[index + 3])",
+    "  else",
+    "    redis.call('HINCRBYFLOAT', KEYS[1], ARGV[index + 2], ARGV[index + 3])",
+    "  end",
+    "  index = index + 3",
+    "end",
+    "index = index + 1",
+    "for _ = 1, tonumber(ARGV[index]) do",
+    "  redis.call('HDEL', KEYS[1], ARGV[index + 1])",
+    "  index = index + 1",
+    "end",
+    "if tonumber(ARGV[1]) > 0 then redis.call('EXPIRE', KEYS[1], ARGV[1]) end",
+    "return 1");
+  protected static final String COMPARE_AND_SAVE_SCRIPT = String.join(
+    "\n",
+    "if tonumber(ARGV[1]) == 0 then",
+    "  if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end",
+    "else",
+    "  local current = redis.call('HGET', KEYS[1], ARGV[2])",
+    "  if not current or tonumber(current) ~= tonumber(ARGV[1]) then return 0 end",
+    "  redis.call('DEL', KEYS[1])",
+    "end",
+    "for index = 4, #ARGV, 2 do",
+    "  redis.call('HSET', KEYS[1], ARGV[index], ARGV[index + 1])",
+    "end",
+    "if tonumber(ARGV[3]) > 0 then redis.call('EXPIRE', KEYS[1], ARGV[3]) end",
+    "return 1");
+  private static final byte[] UPDATE_SCRIPT_BYTES = RedisKeys.encode(UPDATE_SCRIPT);
+  private static final byte[] COMPARE_AND_SAVE_SCRIPT_BYTES = RedisKeys.encode(COMPARE_AND_SAVE_SCRIPT);
+  private static final byte[] ZERO = RedisKeys.encode("0");
+  private static final byte[] INTEGER_INCREMENT = RedisKeys.encode("i");
+  private static final byte[] FLOAT_INCREMENT = RedisKeys.encode("f");
+
   protected final ModelSerializer<ModelType, JsonObject> modelSerializer;
   protected final ModelDeserializer<ModelType, JsonObject> modelDeserializer;
   protected final JedisPool jedisPool;
   protected final String tableName;
   protected final int expireAfterSave;
   protected final int expireAfterAccess;
+  protected final @Nullable ModelChangeTracker<Map<String, String>, String> changeTracker;
+  protected final RedisKeys keys;
+  protected final @Nullable StreamingModelSerializer<ModelType, JsonStreamWriter> streamingSerializer;
+  protected final @Nullable StreamingModelDeserializer<ModelType, JsonStreamReader> streamingDeserializer;
+  private final byte[] expireAfterSaveArgument;
 
   protected RedisModelRepository(
     final @NotNull Executor executor,
@@ -41,14 +130,70 @@ public class RedisModelRepository<ModelType extends Model> extends AbstractAsync
     final @NotNull String tableName,
     final int expireAfterSave,
     final int expireAfterAccess
+  ) {
+    this(
+      executor,
+      modelSerializer,
+      modelDeserializer,
+      jedisPool,
+      tableName,
+      expireAfterSave,
+      expireAfterAccess,
+      null);
+  }
+
+  protected RedisModelRepository(
+    final @NotNull Executor executor,
+    final @NotNull ModelSerializer<ModelType, JsonObject> modelSerializer,
+    final @NotNull ModelDeserializer<ModelType, JsonObject> modelDeserializer,
+    final @NotNull JedisPool jedisPool,
+    final @NotNull String tableName,
+    final int expireAfterSave,
+    final int expireAfterAccess,
+    final @Nullable ModelChangeTracker<Map<String, String>, String> changeTracker
+  ) {
+    this(
+      executor,
+      modelSerializer,
+      modelDeserializer,
+      jedisPool,
+      tableName,
+      expireAfterSave,
+      expireAfterAccess,
+      changeTracker,
+      false,
+      null,
+      null);
+  }
+
+  protected RedisModelRepository(
+    final @NotNull Executor executor,
+    final @Nullable ModelSerializer<ModelType, JsonObject> modelSerializer,
+    final @Nullable ModelDeserializer<ModelType, JsonObject> modelDeserializer,
+    final @NotNull JedisPool jedisPool,
+    final @NotNull String tableName,
+    final int expireAfterSave,
+    final int expireAfterAccess,
+    final @Nullable ModelChangeTracker<Map<String, String>, String> changeTracker,
+    final boolean uuidKeys,
+    final @Nullable StreamingModelSerializer<ModelType, JsonStreamWriter> streamingSerializer,
+    final @Nullable StreamingModelDeserializer<ModelType, JsonStreamReader> streamingDeserializer
   ) {
     super(executor);
     this.modelSerializer = modelSerializer;
-    this.modelDeserializer = modelDeserializer;
+    // the queries still evaluate the trees, a streaming deserializer reads them too
+    this.modelDeserializer = modelDeserializer == null
+                               ? JsonStreamReader.treeDeserializer(Objects.requireNonNull(streamingDeserializer))
+                               : modelDeserializer;
     this.jedisPool = jedisPool;
     this.tableName = tableName;
     this.expireAfterSave = expireAfterSave;
     this.expireAfterAccess = expireAfterAccess;
+    this.changeTracker = changeTracker;
+    this.keys = new RedisKeys(tableName, uuidKeys);
+    this.streamingSerializer = streamingSerializer;
+    this.streamingDeserializer = streamingDeserializer;
+    this.expireAfterSaveArgument = RedisKeys.encode(String.valueOf(expireAfterSave));
   }
 
   @Contract(value = " -> new")
@@ -58,40 +203,222 @@ public class RedisModelRepository<ModelType extends Model> extends AbstractAsync
 
   @Override
   public @NotNull ModelType saveSync(final @NotNull ModelType model) {
+    final var map = this.writeModel(model);
     try (final var jedis = this.jedisPool.getResource()) {
-      final var object = this.modelSerializer.serialize(model);
-      final var map = new HashMap<String, String>(object.size());
-      for (final var entry : object.entrySet()) {
-        final var stringWriter = new StringWriter();
-        try (final var writer = new JsonWriter(stringWriter)) {
-          writer.setSerializeNulls(false);
-          TypeAdapters.JSON_ELEMENT.write(writer, entry.getValue());
-        } catch (final IOException e) {
-          throw new RuntimeException(e);
-        }
-        map.put(entry.getKey(), stringWriter.toString());
+      final var key = this.keys.key(model.id());
+      if (this.changeTracker == null) {
+        this.writeMap(jedis, key, map);
+        return model;
       }
-      final var key = this.tableName + ":" + model.id();
-      jedis.hset(key, map);
-      if (this.expireAfterSave > 0) {
-        jedis.expire(key, this.expireAfterSave);
+      final var lock = this.changeTracker.lock(model.id());
+      lock.lock();
+      try {
+        final var delta = this.changeTracker.diff(model.id(), map);
+        // the tracked hash may have expired meanwhile, so a missed delta writes it completely
+        if (delta.full() || !this.writeDelta(jedis, key, delta)) {
+          this.writeMap(jedis, key, map);
+        }
+        this.changeTracker.markPersisted(model.id(), map);
+      } finally {
+        lock.unlock();
       }
       return model;
     }
   }
 
+  /**
+   * Compares the version field of the hash and replaces the whole hash with a script, so the check
+   * and the write are atomic. A hash which expired counts as a model which was never stored.
+   *
+   * @param model the model to save
+   * @param expectedVersion the version the stored model must have
+   * @return true if the model was saved
+   */
+  @Override
+  public boolean compareAndSaveSync(final @NotNull ModelType model, final long expectedVersion) {
+    final var map = this.writeModel(model);
+    final var lock = this.changeTracker == null ? null : this.changeTracker.lock(model.id());
+    if (lock != null) {
+      lock.lock();
+    }
+    try (final var jedis = this.jedisPool.getResource()) {
+      final var saved = jedis.eval(
+        COMPARE_AND_SAVE_SCRIPT_BYTES,
+        List.of(this.keys.key(model.id())),
+        this.compareAndSaveArguments(expectedVersion, map)) instanceof Long written && written > 0;
+      if (this.changeTracker != null) {
+        if (saved) {
+          this.changeTracker.markPersisted(model.id(), map);
+        } else {
+          this.changeTracker.forget(model.id());
+        }
+      }
+      return saved;
+    } finally {
+      if (lock != null) {
+        lock.unlock();
+      }
+    }
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C saveManySync(final @NotNull C models) {
+    if (models.isEmpty()) {
+      return models;
+    }
+    if (this.changeTracker == null) {
+      return this.writeModels(models);
+    }
+    final var ids = new ArrayList<String>(models.size());
+    for (final var model : models) {
+      ids.add(model.id());
+    }
+    this.changeTracker.lockAll(ids);
+    try {
+      return this.writeModels(models);
+    } finally {
+      this.changeTracker.unlockAll(ids);
+    }
+  }
+
+  // writes the models in a pipeline, holding the tracker locks of their ids when tracking
+  protected <C extends Collection<ModelType>> @NotNull C writeModels(final @NotNull C models) {
+    try (final var jedis = this.jedisPool.getResource()) {
+      final var pipeline = jedis.pipelined();
+      final var keys = new ArrayList<byte[]>(models.size());
+      final var maps = new ArrayList<Map<String, String>>(models.size());
+      final var deltaResponses = new ArrayList<Response<?>>(models.size());
+      for (final var model : models) {
+        final var key = this.keys.key(model.id());
+        final var map = this.writeModel(model);
+        final var delta = this.changeTracker == null ? null : this.changeTracker.diff(model.id(), map);
+        keys.add(key);
+        maps.add(map);
+        if (delta == null || delta.full()) {
+          pipeline.hset(key, this.encodeMap(map));
+          if (this.expireAfterSave > 0) {
+            pipeline.expire(key, this.expireAfterSave);
+          }
+          deltaResponses.add(null);
+        } else if (delta.isEmpty()) {
+          deltaResponses.add(this.expireAfterSave > 0 ? pipeline.expire(key, this.expireAfterSave) : null);
+        } else {
+          deltaResponses.add(pipeline.eval(UPDATE_SCRIPT_BYTES, List.of(key), this.deltaArguments(delta)));
+        }
+      }
+      pipeline.sync();
+      if (this.changeTracker == null) {
+        return models;
+      }
+      var index = 0;
+      var missed = false;
+      for (final var model : models) {
+        final var response = deltaResponses.get(index);
+        final var key = keys.get(index);
+        final var map = maps.get(index++);
+        if (response != null && !(response.get() instanceof Long written && written > 0)) {
+          pipeline.hset(key, this.encodeMap(map));
+          if (this.expireAfterSave > 0) {
+            pipeline.expire(key, this.expireAfterSave);
+          }
+          missed = true;
+        }
+        this.changeTracker.markPersisted(model.id(), map);
+      }
+      if (missed) {
+        pipeline.sync();
+      }
+      return models;
+    }
+  }
+
+  /**
+   * Applies the update to the hash of the model with a script, setting, incrementing (HINCRBY or
+   * HINCRBYFLOAT) and removing single hash fields atomically. Only top-level fields can be updated
+   * since every hash field holds the JSON of a whole top-level field.
+   *
+   * @param id the id of the updated model
+   * @param update the changes to apply
+   * @return true if the model exists and was updated
+   */
+  @Override
+  public boolean updateSync(final @NotNull String id, final @NotNull ModelUpdate<JsonObject> update) {
+    final var key = this.keys.key(id);
+    if (update.isEmpty()) {
+      try (final var jedis = this.jedisPool.getResource()) {
+        return jedis.exists(key);
+      }
+    }
+    final var lock = this.changeTracker == null ? null : this.changeTracker.lock(id);
+    if (lock != null) {
+      lock.lock();
+      this.changeTracker.forget(id);
+    }
+    try (final var jedis = this.jedisPool.getResource()) {
+      final var result = jedis.eval(UPDATE_SCRIPT_BYTES, List.of(key), this.writeUpdate(update));
+      return result instanceof Long updated && updated > 0;
+    } finally {
+      if (lock != null) {
+        lock.unlock();
+      }
+    }
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> update(
+    final @NotNull String id,
+    final @NotNull ModelUpdate<JsonObject> update
+  ) {
+    return CompletableFuture.supplyAsync(() -> this.updateSync(id, update), this.executor);
+  }
+
   @Override
   public boolean deleteSync(final @NotNull String id) {
+    final var lock = this.changeTracker == null ? null : this.changeTracker.lock(id);
+    if (lock != null) {
+      lock.lock();
+      this.changeTracker.forget(id);
+    }
     try (final var jedis = this.jedisPool.getResource()) {
-      return jedis.del(this.tableName + ":" + id) > 0;
+      return jedis.del(this.keys.key(id)) > 0;
+    } finally {
+      if (lock != null) {
+        lock.unlock();
+      }
+    }
+  }
+
+  @Override
+  public int deleteManySync(final @NotNull Collection<String> ids) {
+    if (ids.isEmpty()) {
+      return 0;
+    }
+    final var keys = new byte[ids.size()][];
+    var index = 0;
+    for (final var id : ids) {
+      keys[index++] = this.keys.key(id);
+    }
+    if (this.changeTracker != null) {
+      this.changeTracker.lockAll(ids);
+    }
+    try (final var jedis = this.jedisPool.getResource()) {
+      if (this.changeTracker != null) {
+        for (final var id : ids) {
+          this.changeTracker.forget(id);
+        }
+      }
+      return (int) jedis.del(keys);
+    } finally {
+      if (this.changeTracker != null) {
+        this.changeTracker.unlockAll(ids);
+      }
     }
   }
 
   @Override
   public @Nullable ModelType findSync(final @NotNull String id) {
     try (final var jedis = this.jedisPool.getResource()) {
-      final var key = this.tableName + ":" + id;
-      return this.readModel(jedis, key);
+      return this.readModel(jedis, this.keys.key(id));
     }
   }
 
@@ -113,16 +440,112 @@ public class RedisModelRepository<ModelType extends Model> extends AbstractAsync
     return collection;
   }
 
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C findManySync(
+    final @NotNull Collection<String> ids,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var foundModels = factory.apply(ids.size());
+    if (ids.isEmpty()) {
+      return foundModels;
+    }
+    final var keys = new ArrayList<byte[]>(ids.size());
+    for (final var id : ids) {
+      keys.add(this.keys.key(id));
+    }
+    try (final var jedis = this.jedisPool.getResource()) {
+      foundModels.addAll(this.readModels(jedis, keys));
+    }
+    return foundModels;
+  }
+
+  /**
+   * Checks the keys of the ids with a single pipeline of EXISTS, without scanning the key space.
+   *
+   * @param ids the ids to check
+   * @return the ids which are stored
+   */
+  @Override
+  public @NotNull Set<String> findExistingIdsSync(final @NotNull Collection<String> ids) {
+    final var existingIds = new HashSet<String>(ids.size() * 2);
+    if (ids.isEmpty()) {
+      return existingIds;
+    }
+    final var responses = new ArrayList<Response<Boolean>>(ids.size());
+    try (final var jedis = this.jedisPool.getResource()) {
+      final var pipeline = jedis.pipelined();
+      for (final var id : ids) {
+        responses.add(pipeline.exists(this.keys.key(id)));
+      }
+      pipeline.sync();
+    }
+    var index = 0;
+    for (final var id : ids) {
+      if (responses.get(index++)
+            .get()) {
+        existingIds.add(id);
+      }
+    }
+    return existingIds;
+  }
+
+  /**
+   * Reads the version field of every hash with a single pipeline, without reading the models.
+   *
+   * @param ids the ids of the models
+   * @return the stored version of every found model, by id
+   */
+  @Override
+  public @NotNull Map<String, Long> findVersionsSync(final @NotNull Collection<String> ids) {
+    final var versions = new HashMap<String, Long>(ids.size() * 2);
+    if (ids.isEmpty()) {
+      return versions;
+    }
+    final var versionField = this.keys.field(VersionedModel.VERSION_FIELD);
+    final var responses = new ArrayList<Response<byte[]>>(ids.size());
+    try (final var jedis = this.jedisPool.getResource()) {
+      final var pipeline = jedis.pipelined();
+      for (final var id : ids) {
+        responses.add(pipeline.hget(this.keys.key(id), versionField));
+      }
+      pipeline.sync();
+    }
+    var index = 0;
+    for (final var id : ids) {
+      final var version = responses.get(index++)
+                            .get();
+      if (version != null) {
+        versions.put(id, Long.parseLong(RedisKeys.decode(version)));
+      }
+    }
+    return versions;
+  }
+
+  /**
+   * Returns the ids of every model, packed in a {@link PackedUuidSet} when the keys are UUIDs.
+   *
+   * @return the ids of the models, or null if there are none
+   */
   @Override
   public @Nullable Collection<String> findIdsSync() {
     try (final var jedis = this.jedisPool.getResource()) {
-      final var keys = jedis.keys(this.tableName + ":*");
+      final var keys = jedis.keys(this.keys.pattern());
       if (keys == null || keys.isEmpty()) {
         return null;
       }
+      if (this.keys.uuidKeys()) {
+        final var result = new PackedUuidSet(keys.size());
+        for (final var key : keys) {
+          final var uuid = this.keys.uuid(key);
+          if (uuid != null) {
+            result.addUuid(uuid);
+          }
+        }
+        return result;
+      }
       final var result = new ArrayList<String>(keys.size());
       for (final var key : keys) {
-        result.add(key.substring(this.tableName.length() + 1));
+        result.add(this.keys.id(key));
       }
       return result;
     }
@@ -134,7 +557,7 @@ public class RedisModelRepository<ModelType extends Model> extends AbstractAsync
     final @NotNull Function<Integer, C> factory
   ) {
     try (final var jedis = this.jedisPool.getResource()) {
-      final var keys = jedis.keys(this.tableName + ":*");
+      final var keys = jedis.keys(this.keys.pattern());
       if (keys == null || keys.isEmpty()) {
         return null;
       }
@@ -151,14 +574,95 @@ public class RedisModelRepository<ModelType extends Model> extends AbstractAsync
     }
   }
 
+  @Override
+  public @NotNull Stream<ModelType> streamAllSync(final int batchSize) {
+    final var spliterator = Spliterators.spliteratorUnknownSize(
+      new ScanIterator(batchSize),
+      Spliterator.NONNULL);
+    return StreamSupport.stream(spliterator, false);
+  }
+
+  /**
+   * Runs the query scanning the table, evaluating it on the JSON form of the stored hashes so
+   * only the matching models are deserialized.
+   *
+   * @param query the query to run
+   * @param factory the factory of the returned collection
+   * @param <C> the type of the returned collection
+   * @return the matching models, in the order of the query
+   */
+  @Override
+  public <C extends Collection<ModelType>> @NotNull C querySync(
+    final @NotNull ModelQuery query,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var collector = JsonQueries.collector(query);
+    final var scanParams = new ScanParams().match(this.keys.pattern())
+                             .count(ModelRepository.DEFAULT_STREAM_BATCH_SIZE);
+    var cursor = ScanParams.SCAN_POINTER_START;
+    try (final var jedis = this.jedisPool.getResource()) {
+      do {
+        final var result = jedis.scan(RedisKeys.encode(cursor), scanParams);
+        cursor = result.getCursor();
+        if (!this.offerAll(jedis, result.getResult(), collector)) {
+          break;
+        }
+      } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+    }
+    return JsonQueries.deserialize(collector, query, this.modelDeserializer, factory);
+  }
+
+  /**
+   * Reads a page walking the table with SCAN, whose cursor is stored in the token. The page size
+   * is used as the SCAN count and pages are fetched until it is reached, so a page may hold a few
+   * more models than requested.
+   *
+   * @param filter the filter of the models, or null to read every model
+   * @param token the token of the page, or null for the first page
+   * @param pageSize the wanted amount of models of the page
+   * @return the page of models
+   */
+  @Override
+  public @NotNull ModelPage<ModelType> findPageSync(
+    final @Nullable ModelFilter filter,
+    final @Nullable String token,
+    final int pageSize
+  ) {
+    ModelPage.checkPageSize(pageSize);
+    final var scanParams = new ScanParams().match(this.keys.pattern())
+                             .count(pageSize);
+    final var models = new ArrayList<ModelType>(pageSize);
+    var cursor = token == null ? ScanParams.SCAN_POINTER_START : ModelPage.decodeToken(token);
+    try (final var jedis = this.jedisPool.getResource()) {
+      do {
+        final var result = jedis.scan(RedisKeys.encode(cursor), scanParams);
+        cursor = result.getCursor();
+        if (filter == null) {
+          models.addAll(this.readModels(jedis, result.getResult()));
+          continue;
+        }
+        for (final var map : this.readMaps(jedis, result.getResult())) {
+          if (map.isEmpty()) {
+            continue;
+          }
+          final var jsonObject = this.readJson(map);
+          if (QueryEvaluator.matches(filter, jsonObject, JsonQueries.ACCESSOR)) {
+            models.add(this.modelDeserializer.deserialize(jsonObject));
+          }
+        }
+      } while (models.size() < pageSize && !ScanParams.SCAN_POINTER_START.equals(cursor));
+    }
+    return ModelPage.of(models, ScanParams.SCAN_POINTER_START.equals(cursor) ? null : cursor);
+  }
+
   @Override
   public boolean existsSync(final @NotNull String id) {
     try (final var jedis = this.jedisPool.getResource()) {
-      return jedis.exists(this.tableName + ":" + id);
+      return jedis.exists(this.keys.key(id));
     }
   }
 
-  protected @Nullable ModelType readModel(final @NotNull Jedis jedis, final @NotNull String key) {
+  protected @Nullable ModelType readModel(final @NotNull Jedis jedis, final byte @NotNull [] key) {
     final var map = jedis.hgetAll(key);
     if (map.isEmpty()) {
       return null;
@@ -166,6 +670,20 @@ public class RedisModelRepository<ModelType extends Model> extends AbstractAsync
     if (this.expireAfterAccess > 0) {
       jedis.expire(key, this.expireAfterAccess);
     }
+    return this.readModel(this.decodeMap(map));
+  }
+
+  protected @Nullable ModelType readModel(final @NotNull Map<String, String> map) {
+    if (map.isEmpty()) {
+      return null;
+    }
+    // the read models aren't tracked, a read can't tell if a save ran meanwhile
+    return this.streamingDeserializer == null
+             ? this.modelDeserializer.deserialize(this.readJson(map))
+             : this.streamingDeserializer.deserialize(JsonStreamReader.fields(map));
+  }
+
+  protected @NotNull JsonObject readJson(final @NotNull Map<String, String> map) {
     final var jsonObject = new JsonObject();
     for (final var entry : map.entrySet()) {
       try (final var reader = new JsonReader(new StringReader(entry.getValue()))) {
@@ -174,6 +692,238 @@ public class RedisModelRepository<ModelType extends Model> extends AbstractAsync
         throw new RuntimeException(e);
       }
     }
-    return this.modelDeserializer.deserialize(jsonObject);
+    return jsonObject;
+  }
+
+  protected @NotNull Collection<ModelType> readModels(
+    final @NotNull Jedis jedis,
+    final @NotNull Collection<byte[]> keys
+  ) {
+    final var maps = this.readMaps(jedis, keys);
+    final var models = new ArrayList<ModelType>(maps.size());
+    for (final var map : maps) {
+      final var model = this.readModel(map);
+      if (model != null) {
+        models.add(model);
+      }
+    }
+    return models;
+  }
+
+  protected @NotNull List<Map<String, String>> readMaps(
+    final @NotNull Jedis jedis,
+    final @NotNull Collection<byte[]> keys
+  ) {
+    if (keys.isEmpty()) {
+      return List.of();
+    }
+    final var responses = new ArrayList<Response<Map<byte[], byte[]>>>(keys.size());
+    final var pipeline = jedis.pipelined();
+    for (final var key : keys) {
+      responses.add(pipeline.hgetAll(key));
+      if (this.expireAfterAccess > 0) {
+        pipeline.expire(key, this.expireAfterAccess);
+      }
+    }
+    pipeline.sync();
+    final var maps = new ArrayList<Map<String, String>>(responses.size());
+    for (final var response : responses) {
+      maps.add(this.decodeMap(response.get()));
+    }
+    return maps;
+  }
+
+  protected boolean offerAll(
+    final @NotNull Jedis jedis,
+    final @NotNull Collection<byte[]> keys,
+    final @NotNull QueryCollector<JsonObject> collector
+  ) {
+    for (final var map : this.readMaps(jedis, keys)) {
+      if (!map.isEmpty() && !collector.offer(this.readJson(map))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  protected @NotNull Map<String, String> writeModel(final @NotNull ModelType model) {
+    if (this.streamingSerializer != null) {
+      final var map = new HashMap<String, String>();
+      this.streamingSerializer.serialize(model, JsonStreamWriter.fields(map));
+      return map;
+    }
+    final var object = this.modelSerializer.serialize(model);
+    final var map = new HashMap<String, String>(object.size());
+    for (final var entry : object.entrySet()) {
+      map.put(entry.getKey(), this.writeValue(entry.getValue()));
+    }
+    return map;
+  }
+
+  protected @NotNull String writeValue(final @NotNull JsonElement value) {
+    final var stringWriter = new StringWriter();
+    try (final var writer = new JsonWriter(stringWriter)) {
+      writer.setSerializeNulls(false);
+      TypeAdapters.JSON_ELEMENT.write(writer, value);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return stringWriter.toString();
+  }
+
+  protected @NotNull List<byte[]> writeUpdate(final @NotNull ModelUpdate<JsonObject> update) {
+    final var arguments = new ArrayList<byte[]>();
+    arguments.add(this.expireAfterSaveArgument);
+    final var sets = JsonUpdates.sets(update);
+    arguments.add(RedisKeys.encode(String.valueOf(sets.size())));
+    for (final var entry : sets.entrySet()) {
+      arguments.add(this.keys.field(checkTopLevel(entry.getKey())));
+      arguments.add(RedisKeys.encode(this.writeValue(entry.getValue())));
+    }
+    arguments.add(RedisKeys.encode(String.valueOf(update.increments()
+                                                    .size())));
+    for (final var entry : update.increments()
+                             .entrySet()) {
+      arguments.add(ModelUpdate.isIntegral(entry.getValue()) ? INTEGER_INCREMENT : FLOAT_INCREMENT);
+      arguments.add(this.keys.field(checkTopLevel(entry.getKey())));
+      arguments.add(RedisKeys.encode(entry.getValue()
+                                       .toString()));
+    }
+    arguments.add(RedisKeys.encode(String.valueOf(update.unsets()
+                                                    .size())));
+    for (final var field : update.unsets()) {
+      arguments.add(this.keys.field(checkTopLevel(field)));
+    }
+    return arguments;
+  }
+
+  protected @NotNull List<byte[]> compareAndSaveArguments(
+    final long expectedVersion,
+    final @NotNull Map<String, String> map
+  ) {
+    final var arguments = new ArrayList<byte[]>(3 + map.size() * 2);
+    arguments.add(RedisKeys.encode(String.valueOf(expectedVersion)));
+    arguments.add(this.keys.field(VersionedModel.VERSION_FIELD));
+    arguments.add(this.expireAfterSaveArgument);
+    for (final var entry : map.entrySet()) {
+      arguments.add(this.keys.field(entry.getKey()));
+      arguments.add(RedisKeys.encode(entry.getValue()));
+    }
+    return arguments;
+  }
+
+  protected @NotNull List<byte[]> deltaArguments(final @NotNull ModelDelta<String> delta) {
+    final var arguments = new ArrayList<byte[]>(4 + delta.changes()
+                                                      .size() * 2 + delta.removals()
+                                                                      .size());
+    arguments.add(this.expireAfterSaveArgument);
+    arguments.add(RedisKeys.encode(String.valueOf(delta.changes()
+                                                    .size())));
+    for (final var entry : delta.changes()
+                             .entrySet()) {
+      arguments.add(this.keys.field(entry.getKey()));
+      arguments.add(RedisKeys.encode(entry.getValue()));
+    }
+    arguments.add(ZERO);
+    arguments.add(RedisKeys.encode(String.valueOf(delta.removals()
+                                                    .size())));
+    for (final var field : delta.removals()) {
+      arguments.add(this.keys.field(field));
+    }
+    return arguments;
+  }
+
+  // encodes the hash of a model, reusing the encoded field names
+  protected @NotNull Map<byte[], byte[]> encodeMap(final @NotNull Map<String, String> map) {
+    final var encodedMap = new HashMap<byte[], byte[]>(map.size() * 4 / 3 + 1);
+    for (final var entry : map.entrySet()) {
+      encodedMap.put(this.keys.field(entry.getKey()), RedisKeys.encode(entry.getValue()));
+    }
+    return encodedMap;
+  }
+
+  protected @NotNull Map<String, String> decodeMap(final @NotNull Map<byte[], byte[]> map) {
+    final var decodedMap = new HashMap<String, String>(map.size() * 4 / 3 + 1);
+    for (final var entry : map.entrySet()) {
+      decodedMap.put(RedisKeys.decode(entry.getKey()), RedisKeys.decode(entry.getValue()));
+    }
+    return decodedMap;
+  }
+
+  // writes the delta only if the hash exists, an empty delta just refreshes the expiration
+  private boolean writeDelta(
+    final @NotNull Jedis jedis,
+    final byte @NotNull [] key,
+    final @NotNull ModelDelta<String> delta
+  ) {
+    if (delta.isEmpty()) {
+      return this.expireAfterSave <= 0 || jedis.expire(key, this.expireAfterSave) > 0;
+    }
+    final var result = jedis.eval(UPDATE_SCRIPT_BYTES, List.of(key), this.deltaArguments(delta));
+    return result instanceof Long written && written > 0;
+  }
+
+  private void writeMap(
+    final @NotNull Jedis jedis,
+    final byte @NotNull [] key,
+    final @NotNull Map<String, String> map
+  ) {
+    jedis.hset(key, this.encodeMap(map));
+    if (this.expireAfterSave > 0) {
+      jedis.expire(key, this.expireAfterSave);
+    }
+  }
+
+  private static @NotNull String checkTopLevel(final @NotNull String field) {
+    if (field.indexOf('.') != -1 || field.equals(ModelRepository.ID_FIELD)) {
+      throw new IllegalArgumentException("Only top-level fields other than the id can be updated, found " + field);
+    }
+    return field;
+  }
+
+  /**
+   * Walks the table with SCAN, borrowing a pooled connection only while a page is being fetched,
+   * so an abandoned stream never keeps a connection busy.
+   */
+  private final class ScanIterator implements Iterator<ModelType> {
+    private final ScanParams scanParams;
+    private final Queue<ModelType> page;
+    private String cursor;
+    private boolean finished;
+
+    private ScanIterator(final int batchSize) {
+      this.scanParams = new ScanParams().match(RedisModelRepository.this.keys.pattern())
+                          .count(batchSize);
+      this.page = new ArrayDeque<>(batchSize);
+      this.cursor = ScanParams.SCAN_POINTER_START;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (this.page.isEmpty() && !this.finished) {
+        this.fetchPage();
+      }
+      return !this.page.isEmpty();
+    }
+
+    @Override
+    public @NotNull ModelType next() {
+      if (!this.hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return this.page.remove();
+    }
+
+    private void fetchPage() {
+      try (final var jedis = RedisModelRepository.this.jedisPool.getResource()) {
+        final var result = jedis.scan(RedisKeys.encode(this.cursor), this.scanParams);
+        this.cursor = result.getCursor();
+        this.finished = ScanParams.SCAN_POINTER_START.equals(this.cursor);
+        if (!result.getResult()
+               .isEmpty()) {
+          this.page.addAll(RedisModelRepository.this.readModels(jedis, result.getResult()));
+        }
+      }
+    }
   }
 }
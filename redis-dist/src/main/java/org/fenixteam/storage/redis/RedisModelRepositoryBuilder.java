@@ -2,8 +2,13 @@ package org.fenixteam.storage.redis;
 
 import com.google.gson.JsonObject;
 import java.util.concurrent.Executor;
+import org.fenixteam.storage.codec.ModelChangeTracker;
 import org.fenixteam.storage.codec.ModelDeserializer;
 import org.fenixteam.storage.codec.ModelSerializer;
+import org.fenixteam.storage.codec.StreamingModelDeserializer;
+import org.fenixteam.storage.codec.StreamingModelSerializer;
+import org.fenixteam.storage.gson.codec.JsonStreamReader;
+import org.fenixteam.storage.gson.codec.JsonStreamWriter;
 import org.fenixteam.storage.model.Model;
 import org.fenixteam.storage.repository.AsyncModelRepository;
 import org.fenixteam.storage.repository.builder.AbstractModelRepositoryBuilder;
@@ -20,6 +25,11 @@ public class RedisModelRepositoryBuilder<ModelType extends Model>
   private JedisPool jedisPool;
   private ModelSerializer<ModelType, JsonObject> modelSerializer;
   private ModelDeserializer<ModelType, JsonObject> modelDeserializer;
+  private boolean trackChanges;
+  private int trackedModelsMaximumSize = ModelChangeTracker.DEFAULT_MAXIMUM_SIZE;
+  private boolean uuidKeys;
+  private StreamingModelSerializer<ModelType, JsonStreamWriter> streamingSerializer;
+  private StreamingModelDeserializer<ModelType, JsonStreamReader> streamingDeserializer;
 
   protected RedisModelRepositoryBuilder() {
   }
@@ -64,8 +74,94 @@ public class RedisModelRepositoryBuilder<ModelType extends Model>
     return this;
   }
 
+  /**
+   * Sets a serializer streaming every top-level field of the models straight to the JSON of its
+   * hash field, used by the saves instead of the model serializer so no {@link JsonObject} is built.
+   *
+   * @param streamingSerializer the streaming serializer of the models
+   * @return this builder
+   */
+  @Contract("_ -> this")
+  public @NotNull RedisModelRepositoryBuilder<ModelType> streamingSerializer(
+    final @NotNull StreamingModelSerializer<ModelType, JsonStreamWriter> streamingSerializer
+  ) {
+    this.streamingSerializer = streamingSerializer;
+    return this;
+  }
+
+  /**
+   * Sets a deserializer reading the models straight from the JSON of their hash fields, used by the
+   * finds instead of the model deserializer so no {@link JsonObject} is built. The model
+   * deserializer may be left unset, the queries then adapt this one to the trees they evaluate.
+   *
+   * @param streamingDeserializer the streaming deserializer of the models
+   * @return this builder
+   */
+  @Contract("_ -> this")
+  public @NotNull RedisModelRepositoryBuilder<ModelType> streamingDeserializer(
+    final @NotNull StreamingModelDeserializer<ModelType, JsonStreamReader> streamingDeserializer
+  ) {
+    this.streamingDeserializer = streamingDeserializer;
+    return this;
+  }
+
+  /**
+   * Sets whether the repository remembers the last persisted hash of the saved models, so the
+   * next saves only write the changed hash fields and skip the unchanged models, just refreshing
+   * their expiration. It assumes that no other process writes the same hashes.
+   *
+   * @param trackChanges whether the changes are tracked
+   * @return this builder
+   */
+  @Contract("_ -> this")
+  public @NotNull RedisModelRepositoryBuilder<ModelType> trackChanges(final boolean trackChanges) {
+    this.trackChanges = trackChanges;
+    return this;
+  }
+
+  /**
+   * Sets the max amount of models whose persisted hash is remembered when tracking the changes,
+   * {@link ModelChangeTracker#DEFAULT_MAXIMUM_SIZE} by default. A forgotten model is written
+   * completely on its next save.
+   *
+   * @param trackedModelsMaximumSize the max amount of tracked models
+   * @return this builder
+   */
+  @Contract("_ -> this")
+  public @NotNull RedisModelRepositoryBuilder<ModelType> trackedModelsMaximumSize(final int trackedModelsMaximumSize) {
+    this.trackedModelsMaximumSize = trackedModelsMaximumSize;
+    return this;
+  }
+
+  /**
+   * Sets whether the ids are UUIDs stored as 16 bytes after the table prefix of the keys, instead
+   * of their 36 chars. Every id must be a UUID, and the ids are returned as a
+   * {@link org.fenixteam.storage.model.PackedUuidSet}.
+   *
+   * @param uuidKeys whether the ids are stored as binary UUIDs
+   * @return this builder
+   */
+  @Contract("_ -> this")
+  public @NotNull RedisModelRepositoryBuilder<ModelType> uuidKeys(final boolean uuidKeys) {
+    this.uuidKeys = uuidKeys;
+    return this;
+  }
+
+  /**
+   * Builds the repository on virtual threads, capping the concurrent operations to the max amount
+   * of connections of the pool.
+   *
+   * @return the new repository
+   * @throws UnsupportedOperationException if the running JVM doesn't support virtual threads
+   */
+  @Contract(" -> new")
+  public @NotNull AsyncModelRepository<ModelType> buildVirtual() {
+    final var maxTotal = this.jedisPool.getMaxTotal();
+    return this.buildVirtual(maxTotal > 0 ? maxTotal : Integer.MAX_VALUE);
+  }
+
   @Contract("_ -> new")
-  public @NotNull AsyncModelRepository<ModelType> build(final @NotNull Executor executor) {
+  public @NotNull RedisModelRepository<ModelType> build(final @NotNull Executor executor) {
     if (this.expireAfterSave <= 0) {
       this.expireAfterSave = -1;
     }
@@ -79,6 +175,10 @@ public class RedisModelRepositoryBuilder<ModelType extends Model>
       this.jedisPool,
       this.tableName,
       this.expireAfterSave,
-      this.expireAfterAccess);
+      this.expireAfterAccess,
+      this.trackChanges ? new ModelChangeTracker<>(map -> map, this.trackedModelsMaximumSize) : null,
+      this.uuidKeys,
+      this.streamingSerializer,
+      this.streamingDeserializer);
   }
 }
@@ -2,13 +2,19 @@ package org.fenixteam.storage.redis.channel;
 
 import com.google.gson.JsonObject;
 import com.google.gson.internal.bind.TypeAdapters;
+import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.util.HashSet;
+import java.util.Objects;
 import java.util.Set;
 import org.fenixteam.storage.codec.ModelDeserializer;
 import org.fenixteam.storage.codec.ModelSerializer;
+import org.fenixteam.storage.codec.StreamingModelDeserializer;
+import org.fenixteam.storage.codec.StreamingModelSerializer;
+import org.fenixteam.storage.gson.codec.JsonStreamReader;
+import org.fenixteam.storage.gson.codec.JsonStreamWriter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import redis.clients.jedis.JedisPool;
@@ -21,7 +27,9 @@ public class RedisChannel<MessageType> {
   private final String name;
   private final String parentChannel;
   private final String serverId;
-  private final ModelSerializer<MessageType, JsonObject> serializer;
+  private final @Nullable ModelSerializer<MessageType, JsonObject> serializer;
+  private final @Nullable StreamingModelSerializer<MessageType, JsonStreamWriter> streamingSerializer;
+  private final @Nullable StreamingModelDeserializer<MessageType, JsonStreamReader> streamingDeserializer;
 
   public RedisChannel(
     final @NotNull ModelDeserializer<MessageType, JsonObject> deserializer,
@@ -30,6 +38,49 @@ public class RedisChannel<MessageType> {
     final @NotNull String name,
     final @NotNull JedisPool jedisPool,
     final @NotNull ModelSerializer<MessageType, JsonObject> serializer
+  ) {
+    this(deserializer, parentChannel, serverId, name, jedisPool, serializer, null, null);
+  }
+
+  public RedisChannel(
+    final @NotNull ModelDeserializer<MessageType, JsonObject> deserializer,
+    final @NotNull String parentChannel,
+    final @NotNull String serverId,
+    final @NotNull String name,
+    final @NotNull JedisPool jedisPool,
+    final @NotNull StreamingModelSerializer<MessageType, JsonStreamWriter> streamingSerializer
+  ) {
+    this(deserializer, parentChannel, serverId, name, jedisPool, null, streamingSerializer, null);
+  }
+
+  public RedisChannel(
+    final @NotNull StreamingModelDeserializer<MessageType, JsonStreamReader> streamingDeserializer,
+    final @NotNull String parentChannel,
+    final @NotNull String serverId,
+    final @NotNull String name,
+    final @NotNull JedisPool jedisPool,
+    final @NotNull StreamingModelSerializer<MessageType, JsonStreamWriter> streamingSerializer
+  ) {
+    this(
+      JsonStreamReader.treeDeserializer(streamingDeserializer),
+      parentChannel,
+      serverId,
+      name,
+      jedisPool,
+      null,
+      streamingSerializer,
+      streamingDeserializer);
+  }
+
+  private RedisChannel(
+    final @NotNull ModelDeserializer<MessageType, JsonObject> deserializer,
+    final @NotNull String parentChannel,
+    final @NotNull String serverId,
+    final @NotNull String name,
+    final @NotNull JedisPool jedisPool,
+    final @Nullable ModelSerializer<MessageType, JsonObject> serializer,
+    final @Nullable StreamingModelSerializer<MessageType, JsonStreamWriter> streamingSerializer,
+    final @Nullable StreamingModelDeserializer<MessageType, JsonStreamReader> streamingDeserializer
   ) {
     this.deserializer = deserializer;
     this.parentChannel = parentChannel;
@@ -37,6 +88,8 @@ public class RedisChannel<MessageType> {
     this.name = name;
     this.jedisPool = jedisPool;
     this.serializer = serializer;
+    this.streamingSerializer = streamingSerializer;
+    this.streamingDeserializer = streamingDeserializer;
     this.listeners = new HashSet<>();
   }
 
@@ -44,22 +97,49 @@ public class RedisChannel<MessageType> {
     return this.deserializer;
   }
 
+  /**
+   * Reads a message from the given reader, positioned at the object of the message.
+   *
+   * @param reader the reader of the published JSON
+   * @return the read message
+   */
+  public @NotNull MessageType readMessage(final @NotNull JsonReader reader) {
+    if (this.streamingDeserializer != null) {
+      return JsonStreamReader.deserialize(reader, this.streamingDeserializer);
+    }
+    try {
+      return this.deserializer.deserialize(TypeAdapters.JSON_ELEMENT.read(reader)
+                                             .getAsJsonObject());
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   public @NotNull String name() {
     return this.name;
   }
 
   public void sendMessage(final @NotNull MessageType message, final @Nullable String targetServer) {
-    final var objectToSend = new JsonObject();
-    objectToSend.addProperty("channel", this.name);
-    objectToSend.addProperty("server", this.serverId);
-    if (targetServer != null) {
-      objectToSend.addProperty("targetServer", targetServer);
-    }
-    objectToSend.add("message", this.serializer.serialize(message));
     final var stringWriter = new StringWriter();
     try (final var writer = new JsonWriter(stringWriter)) {
       writer.setSerializeNulls(false);
-      TypeAdapters.JSON_ELEMENT.write(writer, objectToSend);
+      writer.beginObject();
+      writer.name("channel")
+        .value(this.name);
+      writer.name("server")
+        .value(this.serverId);
+      if (targetServer != null) {
+        writer.name("targetServer")
+          .value(targetServer);
+      }
+      writer.name("message");
+      if (this.streamingSerializer != null) {
+        JsonStreamWriter.serialize(writer, message, this.streamingSerializer);
+      } else {
+        TypeAdapters.JSON_ELEMENT.write(writer, Objects.requireNonNull(this.serializer)
+                                                  .serialize(message));
+      }
+      writer.endObject();
     } catch (final IOException e) {
       throw new RuntimeException(e);
     }
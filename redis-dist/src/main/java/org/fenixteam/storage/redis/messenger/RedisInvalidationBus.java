@@ -0,0 +1,115 @@
+package org.fenixteam.storage.redis.messenger;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.fenixteam.storage.concurrent.ScheduledTasks;
+import org.fenixteam.storage.redis.channel.RedisChannel;
+import org.fenixteam.storage.repository.ModelInvalidationBus;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Invalidation bus over a channel of a {@link RedisMessenger}. The published ids are queued and
+ * sent once per tick, deduplicated and split in messages of at most {@link #MAX_IDS_PER_MESSAGE}
+ * ids, so a burst of writes costs a few messages instead of one per write. The messages sent by
+ * this server are ignored by the messenger itself.
+ */
+@SuppressWarnings("unused")
+public class RedisInvalidationBus implements ModelInvalidationBus {
+  public static final int MAX_IDS_PER_MESSAGE = 1_000;
+  private static final String IDS_FIELD = "ids";
+  private final RedisChannel<List<String>> channel;
+  private final Queue<String> pendingIds;
+  private final ScheduledFuture<?> tick;
+
+  public RedisInvalidationBus(
+    final @NotNull RedisMessenger messenger,
+    final @NotNull String channelName,
+    final @NotNull ScheduledExecutorService scheduler,
+    final long tickPeriod,
+    final @NotNull TimeUnit unit
+  ) {
+    this.channel = messenger.channel(
+      channelName,
+      RedisInvalidationBus::serialize,
+      RedisInvalidationBus::deserialize);
+    this.pendingIds = new ConcurrentLinkedQueue<>();
+    this.tick = scheduler.scheduleWithFixedDelay(
+      ScheduledTasks.reportingFailures(this::flush),
+      tickPeriod,
+      tickPeriod,
+      unit);
+  }
+
+  private static @NotNull JsonObject serialize(final @NotNull List<String> ids) {
+    final var array = new JsonArray(ids.size());
+    for (final var id : ids) {
+      array.add(id);
+    }
+    final var message = new JsonObject();
+    message.add(IDS_FIELD, array);
+    return message;
+  }
+
+  private static @NotNull List<String> deserialize(final @NotNull JsonObject message) {
+    final var array = message.getAsJsonArray(IDS_FIELD);
+    final var ids = new ArrayList<String>(array.size());
+    for (final JsonElement element : array) {
+      ids.add(element.getAsString());
+    }
+    return ids;
+  }
+
+  @Override
+  public void publish(final @NotNull Collection<String> ids) {
+    this.pendingIds.addAll(ids);
+  }
+
+  @Override
+  public void subscribe(final @NotNull Consumer<Collection<String>> listener) {
+    this.channel.addListener((channel, server, ids) -> listener.accept(ids));
+  }
+
+  /**
+   * Sends the ids published since the last tick.
+   */
+  public void flush() {
+    final var ids = new LinkedHashSet<String>();
+    String id;
+    while ((id = this.pendingIds.poll()) != null) {
+      ids.add(id);
+    }
+    if (ids.isEmpty()) {
+      return;
+    }
+    final var orderedIds = new ArrayList<>(ids);
+    for (var from = 0; from < orderedIds.size(); from += MAX_IDS_PER_MESSAGE) {
+      final var chunk = orderedIds.subList(from, Math.min(from + MAX_IDS_PER_MESSAGE, orderedIds.size()));
+      try {
+        this.channel.sendMessage(chunk);
+      } catch (final RuntimeException e) {
+        // queue the ids that weren't sent again so the next tick retries them
+        this.pendingIds.addAll(orderedIds.subList(from, orderedIds.size()));
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Stops the tick and sends the pending ids, the messenger is left open.
+   */
+  public void close() {
+    this.tick.cancel(false);
+    this.flush();
+  }
+}
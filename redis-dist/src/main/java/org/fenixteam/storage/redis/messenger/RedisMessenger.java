@@ -4,13 +4,20 @@ import com.google.gson.JsonObject;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import org.fenixteam.storage.codec.ModelDeserializer;
 import org.fenixteam.storage.codec.ModelSerializer;
+import org.fenixteam.storage.codec.StreamingModelDeserializer;
+import org.fenixteam.storage.codec.StreamingModelSerializer;
+import org.fenixteam.storage.gson.codec.JsonStreamReader;
+import org.fenixteam.storage.gson.codec.JsonStreamWriter;
 import org.fenixteam.storage.redis.channel.RedisChannel;
 import org.fenixteam.storage.redis.connection.JedisInstance;
 import org.fenixteam.storage.redis.messenger.pubsub.RedisSubChannelPubsub;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPubSub;
 
@@ -19,6 +26,7 @@ public class RedisMessenger {
   private final String parentChannel;
   private final String serverId;
   private final JedisPool jedisPool;
+  private final Jedis listenerConnection;
   private final Map<String, RedisChannel<?>> channels;
   private final JedisPubSub pubSub;
 
@@ -27,15 +35,46 @@ public class RedisMessenger {
     final @NotNull String serverId,
     final @NotNull Executor executor,
     final @NotNull JedisInstance jedisInstance
+  ) {
+    this(parentChannel, serverId, jedisInstance);
+    executor.execute(this::listen);
+  }
+
+  /**
+   * Creates a messenger whose subscription runs in a dedicated thread of the given factory instead
+   * of an executor, since it blocks the thread until the messenger is closed. This way a bounded or
+   * virtual thread executor is never occupied by the subscription.
+   *
+   * @param parentChannel the redis channel used by all the sub channels
+   * @param serverId the id of this server
+   * @param threadFactory the factory of the subscription thread
+   * @param jedisInstance the redis connections
+   */
+  public RedisMessenger(
+    final @NotNull String parentChannel,
+    final @NotNull String serverId,
+    final @NotNull ThreadFactory threadFactory,
+    final @NotNull JedisInstance jedisInstance
+  ) {
+    this(parentChannel, serverId, jedisInstance);
+    final var thread = threadFactory.newThread(this::listen);
+    if (thread == null) {
+      throw new RejectedExecutionException("The thread factory didn't create the subscription thread");
+    }
+    thread.start();
+  }
+
+  private RedisMessenger(
+    final @NotNull String parentChannel,
+    final @NotNull String serverId,
+    final @NotNull JedisInstance jedisInstance
   ) {
     this.parentChannel = parentChannel;
     this.serverId = serverId;
     this.jedisPool = jedisInstance.jedisPool();
+    this.listenerConnection = jedisInstance.listenerConnection();
     this.channels = new ConcurrentHashMap<>();
     this.pubSub = new RedisSubChannelPubsub(parentChannel, serverId, this.channels);
-    //noinspection resource
-    executor.execute(() -> jedisInstance.listenerConnection()
-                             .subscribe(this.pubSub, parentChannel));
   }
 
   @Contract(value = "_, _, _ -> new")
@@ -59,6 +98,62 @@ public class RedisMessenger {
     return newChannel;
   }
 
+  @Contract(value = "_, _, _ -> new")
+  public <T> @NotNull RedisChannel<T> channel(
+    final @NotNull String name,
+    final @NotNull StreamingModelSerializer<T, JsonStreamWriter> streamingSerializer,
+    final @NotNull ModelDeserializer<T, JsonObject> modelDeserializer
+  ) {
+    @SuppressWarnings("unchecked") final var channel = (RedisChannel<T>) this.channels.get(name);
+    if (channel != null) {
+      return channel;
+    }
+    final var newChannel = new RedisChannel<T>(
+      modelDeserializer,
+      this.parentChannel,
+      this.serverId,
+      name,
+      this.jedisPool,
+      streamingSerializer);
+    this.channels.put(name, newChannel);
+    return newChannel;
+  }
+
+  /**
+   * Creates a channel streaming the messages in both ways. It isn't an overload of
+   * {@code channel}, since a lambda deserializer would match both kinds of deserializers.
+   *
+   * @param name the name of the channel
+   * @param streamingSerializer the serializer of the sent messages
+   * @param streamingDeserializer the deserializer of the received messages
+   * @param <T> the type of the messages
+   * @return the channel with the given name
+   */
+  @Contract(value = "_, _, _ -> new")
+  public <T> @NotNull RedisChannel<T> streamingChannel(
+    final @NotNull String name,
+    final @NotNull StreamingModelSerializer<T, JsonStreamWriter> streamingSerializer,
+    final @NotNull StreamingModelDeserializer<T, JsonStreamReader> streamingDeserializer
+  ) {
+    @SuppressWarnings("unchecked") final var channel = (RedisChannel<T>) this.channels.get(name);
+    if (channel != null) {
+      return channel;
+    }
+    final var newChannel = new RedisChannel<T>(
+      streamingDeserializer,
+      this.parentChannel,
+      this.serverId,
+      name,
+      this.jedisPool,
+      streamingSerializer);
+    this.channels.put(name, newChannel);
+    return newChannel;
+  }
+
+  private void listen() {
+    this.listenerConnection.subscribe(this.pubSub, this.parentChannel);
+  }
+
   public void close() {
     this.channels.clear();
     if (this.pubSub.isSubscribed()) {
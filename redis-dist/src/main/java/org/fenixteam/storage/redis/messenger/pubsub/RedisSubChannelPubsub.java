@@ -8,6 +8,7 @@ import java.io.StringReader;
 import java.util.Map;
 import org.fenixteam.storage.redis.channel.RedisChannel;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import redis.clients.jedis.JedisPubSub;
 
 public class RedisSubChannelPubsub extends JedisPubSub {
@@ -31,37 +32,57 @@ public class RedisSubChannelPubsub extends JedisPubSub {
     if (!channel.equals(this.parentChannel)) {
       return;
     }
-    // we can parse the message as a json object
-    final JsonObject jsonObject;
+    // the envelope is written with the message last, so it's usually read straight from the stream
+    String serverId = null;
+    String targetServer = null;
+    RedisChannel<Object> channelObject = null;
+    JsonObject bufferedMessage = null;
+    Object deserializedObject = null;
     try (final var reader = new JsonReader(new StringReader(message))) {
-      jsonObject = TypeAdapters.JSON_ELEMENT.read(reader).getAsJsonObject();
+      reader.beginObject();
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "server" -> serverId = reader.nextString();
+          case "targetServer" -> targetServer = reader.nextString();
+          case "channel" -> channelObject = this.channel(reader.nextString());
+          case "message" -> {
+            if (serverId != null && channelObject != null) {
+              if (!this.accepts(serverId, targetServer)) {
+                return;
+              }
+              deserializedObject = channelObject.readMessage(reader);
+            } else {
+              bufferedMessage = TypeAdapters.JSON_ELEMENT.read(reader)
+                                  .getAsJsonObject();
+            }
+          }
+          default -> reader.skipValue();
+        }
+      }
     } catch (final IOException e) {
       throw new RuntimeException(e);
     }
-    final var serverId = jsonObject.get("server")
-                           .getAsString();
-    // if the message is from the server we're listening to
-    if (serverId.equals(this.serverId)) {
+    // if the channel doesn't exist, we can't do anything
+    if (serverId == null || channelObject == null || !this.accepts(serverId, targetServer)) {
       return;
     }
-    final var targetServerElement = jsonObject.get("targetServer");
-    if (targetServerElement != null) {
-      final var targetServer = targetServerElement.getAsString();
-      // if the message isn't for this server, ignore it
-      if (!targetServer.equals(this.serverId)) {
+    if (deserializedObject == null) {
+      if (bufferedMessage == null) {
         return;
       }
+      deserializedObject = channelObject.deserializer()
+                             .deserialize(bufferedMessage);
     }
-    final var subChannel = jsonObject.get("channel")
-                             .getAsString();
-    @SuppressWarnings("unchecked") final var channelObject = (RedisChannel<Object>) this.channels.get(subChannel);
-    // if the channel doesn't exist, we can't do anything
-    if (channelObject == null) {
-      return;
-    }
-    final var object = jsonObject.getAsJsonObject("message");
-    final var deserializedObject = channelObject.deserializer()
-                                     .deserialize(object);
     channelObject.listen(serverId, deserializedObject);
   }
+
+  @SuppressWarnings("unchecked")
+  private @Nullable RedisChannel<Object> channel(final @NotNull String name) {
+    return (RedisChannel<Object>) this.channels.get(name);
+  }
+
+  // ignores the messages sent by this server and the ones for other servers
+  private boolean accepts(final @NotNull String serverId, final @Nullable String targetServer) {
+    return !serverId.equals(this.serverId) && (targetServer == null || targetServer.equals(this.serverId));
+  }
 }
@@ -0,0 +1,6 @@
+dependencies {
+  api(project(":storage-api-codec"))
+  api(project(":storage-gson-dist"))
+  api("io.lettuce:lettuce-core:6.2.4.RELEASE")
+  compileOnlyApi("com.google.code.gson:gson:2.9.0")
+}
@@ -0,0 +1,566 @@
+package org.fenixteam.storage.redis.lettuce;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.internal.bind.TypeAdapters;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.fenixteam.storage.codec.ModelDeserializer;
+import org.fenixteam.storage.codec.ModelSerializer;
+import org.fenixteam.storage.gson.JsonQueries;
+import org.fenixteam.storage.gson.JsonUpdates;
+import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.model.VersionedModel;
+import org.fenixteam.storage.query.ModelFilter;
+import org.fenixteam.storage.query.ModelPage;
+import org.fenixteam.storage.query.ModelQuery;
+import org.fenixteam.storage.query.QueryEvaluator;
+import org.fenixteam.storage.repository.AbstractNonBlockingModelRepository;
+import org.fenixteam.storage.repository.ModelRepository;
+import org.fenixteam.storage.repository.update.ModelUpdate;
+import org.fenixteam.storage.repository.update.UpdatableModelRepository;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Redis repository over a single multiplexed Lettuce connection. Commands are pipelined by the
+ * connection itself, so no thread waits for a reply; the models are decoded and the returned
+ * futures are completed in the given executor instead of the Netty event loop, so the dependent
+ * stages of the callers never block it. The stored format is the same as the Jedis based repository.
+ *
+ * @param <ModelType> the type of the stored models
+ */
+@SuppressWarnings("unused")
+public class LettuceModelRepository<ModelType extends Model>
+  extends AbstractNonBlockingModelRepository<ModelType>
+  implements UpdatableModelRepository<JsonObject> {
+  // same script as the Jedis based repository: applies an update to the hash of a model only if it
+  // exists. The arguments are the expiration, the amount of set fields followed by their names and
+  // values, the amount of increments followed by their kind (integer or float), names and deltas
+  // and the amount of unset fields followed by their names
+  protected static final String UPDATE_SCRIPT = String.join(
+    "\n",
+    "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end",
+    "local index = 2",
+    "for _ = 1, tonumber(ARGV[index]) do",
+    "  redis.call('HSET', KEYS[1], ARGV[index + 1], ARGV[index + 2])",
+    "  index = index + 2",
+    "end",
+    "index = index + 1",
+    "for _ = 1, tonumber(ARGV[index]) do",
+    "  if ARGV[index + 1] == 'i' then",
+    "    redis.call('HINCRBY', KEYS[1], ARGV[index + 2], ARGV[index + 3])",
+    "  else",
+    "    redis.call('HINCRBYFLOAT', KEYS[1], ARGV[index + 2], ARGV[index + 3])",
+    "  end",
+    "  index = index + 3",
+    "end",
+    "index = index + 1",
+    "for _ = 1, tonumber(ARGV[index]) do",
+    "  redis.call('HDEL', KEYS[1], ARGV[index + 1])",
+    "  index = index + 1",
+    "end",
+    "if tonumber(ARGV[1]) > 0 then redis.call('EXPIRE', KEYS[1], ARGV[1]) end",
+    "return 1");
+  protected static final String COMPARE_AND_SAVE_SCRIPT = String.join(
+    "\n",
+    "if tonumber(ARGV[1]) == 0 then",
+    "  if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end",
+    "else",
+    "  local current = redis.call('HGET', KEYS[1], ARGV[2])",
+    "  if not current or tonumber(current) ~= tonumber(ARGV[1]) then return 0 end",
+    "  redis.call('DEL', KEYS[1])",
+    "end",
+    "for index = 4, #ARGV, 2 do",
+    "  redis.call('HSET', KEYS[1], ARGV[index], ARGV[index + 1])",
+    "end",
+    "if tonumber(ARGV[3]) > 0 then redis.call('EXPIRE', KEYS[1], ARGV[3]) end",
+    "return 1");
+
+  protected final Executor executor;
+  protected final ModelSerializer<ModelType, JsonObject> modelSerializer;
+  protected final ModelDeserializer<ModelType, JsonObject> modelDeserializer;
+  protected final RedisAsyncCommands<String, String> commands;
+  protected final String tableName;
+  protected final int expireAfterSave;
+  protected final int expireAfterAccess;
+  protected final int scanBatchSize;
+
+  protected LettuceModelRepository(
+    final @NotNull Executor executor,
+    final @NotNull ModelSerializer<ModelType, JsonObject> modelSerializer,
+    final @NotNull ModelDeserializer<ModelType, JsonObject> modelDeserializer,
+    final @NotNull StatefulRedisConnection<String, String> connection,
+    final @NotNull String tableName,
+    final int expireAfterSave,
+    final int expireAfterAccess,
+    final int scanBatchSize
+  ) {
+    this.executor = executor;
+    this.modelSerializer = modelSerializer;
+    this.modelDeserializer = modelDeserializer;
+    this.commands = connection.async();
+    this.tableName = tableName;
+    this.expireAfterSave = expireAfterSave;
+    this.expireAfterAccess = expireAfterAccess;
+    this.scanBatchSize = scanBatchSize;
+  }
+
+  @Contract(value = " -> new")
+  public static <T extends Model> @NotNull LettuceModelRepositoryBuilder<T> builder() {
+    return new LettuceModelRepositoryBuilder<>();
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@Nullable ModelType> find(final @NotNull String id) {
+    final var key = this.tableName + ":" + id;
+    return this.readMap(key)
+             .thenApplyAsync(this::readModel, this.executor);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@Nullable C> find(
+    final @NotNull String field,
+    final @NotNull String value,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    if (!field.equals(ModelRepository.ID_FIELD)) {
+      throw new IllegalArgumentException("Only ID field is supported for JSON find");
+    }
+    return this.find(value)
+             .thenApply(model -> {
+               if (model == null) {
+                 return null;
+               }
+               final var collection = factory.apply(1);
+               collection.add(model);
+               return collection;
+             });
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@NotNull C> findMany(
+    final @NotNull Collection<String> ids,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var keys = new ArrayList<String>(ids.size());
+    for (final var id : ids) {
+      keys.add(this.tableName + ":" + id);
+    }
+    return this.readModels(keys)
+             .thenApply(models -> {
+               final var foundModels = factory.apply(models.size());
+               foundModels.addAll(models);
+               return foundModels;
+             });
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@Nullable Collection<String>> findIds() {
+    final var ids = new ArrayList<String>();
+    final var prefixLength = this.tableName.length() + 1;
+    return this.scan(ScanCursor.INITIAL, keys -> {
+      for (final var key : keys) {
+        ids.add(key.substring(prefixLength));
+      }
+      return CompletableFuture.completedFuture(true);
+    })
+             .thenApplyAsync(unused -> ids.isEmpty() ? null : ids, this.executor);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@Nullable C> findAll(
+    final @NotNull Consumer<ModelType> postLoadAction,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var foundModels = factory.apply(1);
+    return this.scan(ScanCursor.INITIAL, keys -> this.readModels(keys)
+                                                   .thenAccept(models -> {
+                                                     for (final var model : models) {
+                                                       postLoadAction.accept(model);
+                                                       foundModels.add(model);
+                                                     }
+                                                   })
+                                                   .thenApply(unused -> true))
+             .thenApply(unused -> foundModels.isEmpty() ? null : foundModels);
+  }
+
+  /**
+   * Runs the query scanning the table, evaluating it on the JSON form of the stored hashes so
+   * only the matching models are deserialized. The scan stops as soon as an unsorted query has
+   * collected enough models.
+   *
+   * @param query the query to run
+   * @param factory the factory of the returned collection
+   * @param <C> the type of the returned collection
+   * @return the matching models, in the order of the query
+   */
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@NotNull C> query(
+    final @NotNull ModelQuery query,
+    final @NotNull Function<Integer, C> factory
+  ) {
+    final var collector = JsonQueries.collector(query);
+    return this.scan(ScanCursor.INITIAL, keys -> this.readMaps(keys)
+                                                   .thenApplyAsync(maps -> {
+                                                     for (final var map : maps) {
+                                                       if (!map.isEmpty() && !collector.offer(this.readJson(map))) {
+                                                         return false;
+                                                       }
+                                                     }
+                                                     return true;
+                                                   }, this.executor))
+             .thenApply(unused -> JsonQueries.deserialize(collector, query, this.modelDeserializer, factory));
+  }
+
+  /**
+   * Reads a page walking the table with SCAN, whose cursor is stored in the token. The page size
+   * is used as the SCAN count and pages are fetched until it is reached, so a page may hold a few
+   * more models than requested.
+   *
+   * @param filter the filter of the models, or null to read every model
+   * @param token the token of the page, or null for the first page
+   * @param pageSize the wanted amount of models of the page
+   * @return the page of models
+   */
+  @Override
+  public @NotNull CompletableFuture<@NotNull ModelPage<ModelType>> findPage(
+    final @Nullable ModelFilter filter,
+    final @Nullable String token,
+    final int pageSize
+  ) {
+    ModelPage.checkPageSize(pageSize);
+    final var cursor = token == null ? ScanCursor.INITIAL : ScanCursor.of(ModelPage.decodeToken(token));
+    return this.findPage(filter, cursor, pageSize, new ArrayList<>(pageSize));
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> exists(final @NotNull String id) {
+    return this.commands.exists(this.tableName + ":" + id)
+             .toCompletableFuture()
+             .thenApplyAsync(count -> count > 0, this.executor);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull ModelType> save(final @NotNull ModelType model) {
+    return CompletableFuture.supplyAsync(() -> this.writeModel(model), this.executor)
+             .thenCompose(map -> this.writeMap(this.tableName + ":" + model.id(), map))
+             .thenApplyAsync(unused -> model, this.executor);
+  }
+
+  /**
+   * Compares the version field of the hash and replaces the whole hash with a script, so the check
+   * and the write are atomic. A hash which expired counts as a model which was never stored.
+   *
+   * @param model the model to save
+   * @param expectedVersion the version the stored model must have
+   * @return true if the model was saved
+   */
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> compareAndSave(
+    final @NotNull ModelType model,
+    final long expectedVersion
+  ) {
+    return CompletableFuture.supplyAsync(() -> this.compareAndSaveArguments(expectedVersion, this.writeModel(model)),
+        this.executor)
+             .thenCompose(arguments -> this.commands.<Long>eval(
+                 COMPARE_AND_SAVE_SCRIPT,
+                 ScriptOutputType.INTEGER,
+                 new String[] {this.tableName + ":" + model.id()},
+                 arguments))
+             .thenApplyAsync(saved -> saved != null && saved > 0, this.executor);
+  }
+
+  @Override
+  public <C extends Collection<ModelType>> @NotNull CompletableFuture<@NotNull C> saveMany(
+    final @NotNull C models
+  ) {
+    if (models.isEmpty()) {
+      return CompletableFuture.completedFuture(models);
+    }
+    return CompletableFuture.supplyAsync(() -> {
+      final var maps = new ArrayList<Map<String, String>>(models.size());
+      for (final var model : models) {
+        maps.add(this.writeModel(model));
+      }
+      return maps;
+    }, this.executor)
+             .thenCompose(maps -> {
+               final var writes = new CompletableFuture<?>[maps.size()];
+               var index = 0;
+               for (final var model : models) {
+                 writes[index] = this.writeMap(this.tableName + ":" + model.id(), maps.get(index));
+                 index++;
+               }
+               return CompletableFuture.allOf(writes);
+             })
+             .thenApplyAsync(unused -> models, this.executor);
+  }
+
+  @Override
+  public boolean updateSync(final @NotNull String id, final @NotNull ModelUpdate<JsonObject> update) {
+    return join(this.update(id, update));
+  }
+
+  /**
+   * Applies the update to the hash of the model with a script, setting, incrementing (HINCRBY or
+   * HINCRBYFLOAT) and removing single hash fields atomically. Only top-level fields can be updated
+   * since every hash field holds the JSON of a whole top-level field.
+   *
+   * @param id the id of the updated model
+   * @param update the changes to apply
+   * @return true if the model exists and was updated
+   */
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> update(
+    final @NotNull String id,
+    final @NotNull ModelUpdate<JsonObject> update
+  ) {
+    if (update.isEmpty()) {
+      return this.exists(id);
+    }
+    return CompletableFuture.supplyAsync(() -> this.writeUpdate(update), this.executor)
+             .thenCompose(arguments -> this.commands.<Long>eval(
+                 UPDATE_SCRIPT,
+                 ScriptOutputType.INTEGER,
+                 new String[] {this.tableName + ":" + id},
+                 arguments))
+             .thenApplyAsync(updated -> updated != null && updated > 0, this.executor);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Boolean> delete(final @NotNull String id) {
+    return this.commands.del(this.tableName + ":" + id)
+             .toCompletableFuture()
+             .thenApplyAsync(count -> count > 0, this.executor);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@NotNull Integer> deleteMany(final @NotNull Collection<String> ids) {
+    if (ids.isEmpty()) {
+      return CompletableFuture.completedFuture(0);
+    }
+    final var keys = new String[ids.size()];
+    var index = 0;
+    for (final var id : ids) {
+      keys[index++] = this.tableName + ":" + id;
+    }
+    return this.commands.del(keys)
+             .toCompletableFuture()
+             .thenApplyAsync(Long::intValue, this.executor);
+  }
+
+  protected @NotNull CompletableFuture<Map<String, String>> readMap(final @NotNull String key) {
+    final var future = this.commands.hgetall(key);
+    if (this.expireAfterAccess > 0) {
+      this.commands.expire(key, this.expireAfterAccess);
+    }
+    return future.toCompletableFuture();
+  }
+
+  protected @NotNull CompletableFuture<Void> writeMap(
+    final @NotNull String key,
+    final @NotNull Map<String, String> map
+  ) {
+    final var future = this.commands.hset(key, map);
+    if (this.expireAfterSave > 0) {
+      return this.commands.expire(key, this.expireAfterSave)
+               .toCompletableFuture()
+               .thenCombine(future, (expired, fields) -> null);
+    }
+    return future.toCompletableFuture()
+             .thenApply(fields -> null);
+  }
+
+  protected @NotNull CompletableFuture<@NotNull List<ModelType>> readModels(final @NotNull List<String> keys) {
+    return this.readMaps(keys)
+             .thenApplyAsync(maps -> {
+               final var models = new ArrayList<ModelType>(maps.size());
+               for (final var map : maps) {
+                 final var model = this.readModel(map);
+                 if (model != null) {
+                   models.add(model);
+                 }
+               }
+               return models;
+             }, this.executor);
+  }
+
+  protected @NotNull CompletableFuture<@NotNull List<Map<String, String>>> readMaps(final @NotNull List<String> keys) {
+    if (keys.isEmpty()) {
+      return CompletableFuture.completedFuture(List.of());
+    }
+    final var responses = new ArrayList<CompletableFuture<Map<String, String>>>(keys.size());
+    for (final var key : keys) {
+      responses.add(this.commands.hgetall(key)
+                      .toCompletableFuture());
+      if (this.expireAfterAccess > 0) {
+        this.commands.expire(key, this.expireAfterAccess);
+      }
+    }
+    return CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new))
+             .thenApply(unused -> {
+               final var maps = new ArrayList<Map<String, String>>(responses.size());
+               for (final var response : responses) {
+                 maps.add(response.join());
+               }
+               return maps;
+             });
+  }
+
+  protected @Nullable ModelType readModel(final @Nullable Map<String, String> map) {
+    if (map == null || map.isEmpty()) {
+      return null;
+    }
+    return this.modelDeserializer.deserialize(this.readJson(map));
+  }
+
+  protected @NotNull JsonObject readJson(final @NotNull Map<String, String> map) {
+    final var jsonObject = new JsonObject();
+    for (final var entry : map.entrySet()) {
+      try (final var reader = new JsonReader(new StringReader(entry.getValue()))) {
+        jsonObject.add(entry.getKey(), TypeAdapters.JSON_ELEMENT.read(reader));
+      } catch (final IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return jsonObject;
+  }
+
+  protected @NotNull Map<String, String> writeModel(final @NotNull ModelType model) {
+    final var object = this.modelSerializer.serialize(model);
+    final var map = new HashMap<String, String>(object.size());
+    for (final var entry : object.entrySet()) {
+      map.put(entry.getKey(), this.writeValue(entry.getValue()));
+    }
+    return map;
+  }
+
+  protected @NotNull String writeValue(final @NotNull JsonElement value) {
+    final var stringWriter = new StringWriter();
+    try (final var writer = new JsonWriter(stringWriter)) {
+      writer.setSerializeNulls(false);
+      TypeAdapters.JSON_ELEMENT.write(writer, value);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return stringWriter.toString();
+  }
+
+  protected @NotNull String[] compareAndSaveArguments(
+    final long expectedVersion,
+    final @NotNull Map<String, String> map
+  ) {
+    final var arguments = new ArrayList<String>(3 + map.size() * 2);
+    arguments.add(String.valueOf(expectedVersion));
+    arguments.add(VersionedModel.VERSION_FIELD);
+    arguments.add(String.valueOf(this.expireAfterSave));
+    for (final var entry : map.entrySet()) {
+      arguments.add(entry.getKey());
+      arguments.add(entry.getValue());
+    }
+    return arguments.toArray(String[]::new);
+  }
+
+  protected @NotNull String[] writeUpdate(final @NotNull ModelUpdate<JsonObject> update) {
+    final var arguments = new ArrayList<String>();
+    arguments.add(String.valueOf(this.expireAfterSave));
+    final var sets = JsonUpdates.sets(update);
+    arguments.add(String.valueOf(sets.size()));
+    for (final var entry : sets.entrySet()) {
+      arguments.add(checkTopLevel(entry.getKey()));
+      arguments.add(this.writeValue(entry.getValue()));
+    }
+    arguments.add(String.valueOf(update.increments()
+                                   .size()));
+    for (final var entry : update.increments()
+                             .entrySet()) {
+      arguments.add(ModelUpdate.isIntegral(entry.getValue()) ? "i" : "f");
+      arguments.add(checkTopLevel(entry.getKey()));
+      arguments.add(entry.getValue()
+                      .toString());
+    }
+    arguments.add(String.valueOf(update.unsets()
+                                   .size()));
+    for (final var field : update.unsets()) {
+      arguments.add(checkTopLevel(field));
+    }
+    return arguments.toArray(String[]::new);
+  }
+
+  private static @NotNull String checkTopLevel(final @NotNull String field) {
+    if (field.indexOf('.') != -1 || field.equals(ModelRepository.ID_FIELD)) {
+      throw new IllegalArgumentException("Only top-level fields other than the id can be updated, found " + field);
+    }
+    return field;
+  }
+
+  private @NotNull CompletableFuture<@NotNull ModelPage<ModelType>> findPage(
+    final @Nullable ModelFilter filter,
+    final @NotNull ScanCursor cursor,
+    final int pageSize,
+    final @NotNull List<ModelType> models
+  ) {
+    final var scanArgs = ScanArgs.Builder.matches(this.tableName + ":*")
+                           .limit(pageSize);
+    return this.commands.scan(cursor, scanArgs)
+             .toCompletableFuture()
+             .thenCompose(result -> this.readMaps(result.getKeys())
+                                      .thenApplyAsync(maps -> {
+                                        for (final var map : maps) {
+                                          if (map.isEmpty()) {
+                                            continue;
+                                          }
+                                          final var jsonObject = this.readJson(map);
+                                          if (QueryEvaluator.matches(filter, jsonObject, JsonQueries.ACCESSOR)) {
+                                            models.add(this.modelDeserializer.deserialize(jsonObject));
+                                          }
+                                        }
+                                        return result;
+                                      }, this.executor))
+             .thenCompose(result -> {
+               if (result.isFinished()) {
+                 return CompletableFuture.completedFuture(ModelPage.of(models, null));
+               }
+               if (models.size() >= pageSize) {
+                 return CompletableFuture.completedFuture(ModelPage.of(models, result.getCursor()));
+               }
+               return this.findPage(filter, result, pageSize, models);
+             });
+  }
+
+  // walks the table with SCAN, requesting the next page only after the previous one has been
+  // handled, so the whole key space is never held in memory; the handler completes with false to
+  // stop the walk early
+  private @NotNull CompletableFuture<Void> scan(
+    final @NotNull ScanCursor cursor,
+    final @NotNull Function<List<String>, CompletableFuture<Boolean>> pageHandler
+  ) {
+    final var scanArgs = ScanArgs.Builder.matches(this.tableName + ":*")
+                           .limit(this.scanBatchSize);
+    return this.commands.scan(cursor, scanArgs)
+             .toCompletableFuture()
+             .thenCompose(result -> pageHandler.apply(result.getKeys())
+                                      .thenCompose(proceed -> !proceed || result.isFinished()
+                                                               ? CompletableFuture.<Void>completedFuture(null)
+                                                               : this.scan(result, pageHandler)));
+  }
+}
@@ -0,0 +1,91 @@
+package org.fenixteam.storage.redis.lettuce;
+
+import com.google.gson.JsonObject;
+import io.lettuce.core.api.StatefulRedisConnection;
+import java.util.concurrent.Executor;
+import org.fenixteam.storage.codec.ModelDeserializer;
+import org.fenixteam.storage.codec.ModelSerializer;
+import org.fenixteam.storage.model.Model;
+import org.fenixteam.storage.repository.ModelRepository;
+import org.fenixteam.storage.repository.builder.AbstractModelRepositoryBuilder;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+@SuppressWarnings("unused")
+public class LettuceModelRepositoryBuilder<ModelType extends Model>
+  extends AbstractModelRepositoryBuilder<ModelType> {
+  private String tableName;
+  private int expireAfterSave;
+  private int expireAfterAccess;
+  private int scanBatchSize = ModelRepository.DEFAULT_STREAM_BATCH_SIZE;
+  private StatefulRedisConnection<String, String> connection;
+  private ModelSerializer<ModelType, JsonObject> modelSerializer;
+  private ModelDeserializer<ModelType, JsonObject> modelDeserializer;
+
+  protected LettuceModelRepositoryBuilder() {
+  }
+
+  @Contract("_ -> this")
+  public @NotNull LettuceModelRepositoryBuilder<ModelType> tableName(final @NotNull String tableName) {
+    this.tableName = tableName;
+    return this;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull LettuceModelRepositoryBuilder<ModelType> expireAfterSave(final int expireAfterSave) {
+    this.expireAfterSave = expireAfterSave;
+    return this;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull LettuceModelRepositoryBuilder<ModelType> expireAfterAccess(final int expireAfterAccess) {
+    this.expireAfterAccess = expireAfterAccess;
+    return this;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull LettuceModelRepositoryBuilder<ModelType> scanBatchSize(final int scanBatchSize) {
+    if (scanBatchSize < 1) {
+      throw new IllegalArgumentException("The scan batch size must be positive");
+    }
+    this.scanBatchSize = scanBatchSize;
+    return this;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull LettuceModelRepositoryBuilder<ModelType> connection(
+    final @NotNull StatefulRedisConnection<String, String> connection
+  ) {
+    this.connection = connection;
+    return this;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull LettuceModelRepositoryBuilder<ModelType> modelDeserializer(
+    final @NotNull ModelDeserializer<ModelType, JsonObject> modelDeserializer
+  ) {
+    this.modelDeserializer = modelDeserializer;
+    return this;
+  }
+
+  @Contract("_ -> this")
+  public @NotNull LettuceModelRepositoryBuilder<ModelType> modelSerializer(
+    final @NotNull ModelSerializer<ModelType, JsonObject> modelSerializer
+  ) {
+    this.modelSerializer = modelSerializer;
+    return this;
+  }
+
+  @Contract("_ -> new")
+  public @NotNull LettuceModelRepository<ModelType> build(final @NotNull Executor executor) {
+    return new LettuceModelRepository<>(
+      executor,
+      this.modelSerializer,
+      this.modelDeserializer,
+      this.connection,
+      this.tableName,
+      Math.max(this.expireAfterSave, -1),
+      Math.max(this.expireAfterAccess, -1),
+      this.scanBatchSize);
+  }
+}
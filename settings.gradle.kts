@@ -1,6 +1,16 @@
 rootProject.name = "storage"
 
-arrayOf("api", "api-codec", "caffeine-dist", "mongo-legacy-dist", "redis-dist", "gson-dist").forEach {
+arrayOf(
+  "api",
+  "api-codec",
+  "benchmarks",
+  "caffeine-dist",
+  "mongo-legacy-dist",
+  "mongo-reactive-dist",
+  "redis-dist",
+  "redis-lettuce-dist",
+  "gson-dist"
+).forEach {
   includePrefixed(it)
 }
 